@@ -12,7 +12,6 @@ import mathLib.fem.core.Face;
 import mathLib.fem.core.FaceLocal;
 import mathLib.fem.core.Mesh;
 import mathLib.fem.core.Node;
-import mathLib.fem.core.NodeRefined;
 import mathLib.fem.core.NodeType;
 import mathLib.fem.core.Volume;
 import mathLib.fem.core.geometry.GeoEntity;
@@ -41,6 +40,9 @@ public class AssemblerScalar implements AssemblerOld {
 	protected WeakFormOld weakForm;
 	protected SparseMatrix globalStiff;
 	protected SparseVector globalLoad;
+	protected Constraints dirichlet;
+	// constraints recorded in dirichlet but not imposed yet
+	protected boolean pending = false;
 	private boolean printInfo = true;
 
 	public AssemblerScalar(Mesh mesh, WeakFormOld weakForm) {
@@ -51,11 +53,32 @@ public class AssemblerScalar implements AssemblerOld {
 		globalStiff = new SparseMatrixRowMajor(dim,dim);
 		globalLoad = new SparseVectorHashMap(dim);
 	}
+
+	/**
+	 * Assemble into the given (empty) global stiffness matrix, e.g. a
+	 * <tt>SparseMatrixRowMajorPrimitive</tt> to avoid boxed map entries
+	 * on large meshes
+	 *
+	 * @param mesh
+	 * @param weakForm
+	 * @param globalStiff
+	 */
+	public AssemblerScalar(Mesh mesh, WeakFormOld weakForm, SparseMatrix globalStiff) {
+		this.mesh = mesh;
+		this.weakForm = weakForm;
+
+		int dim = mesh.getNodeList().size();
+		this.globalStiff = globalStiff;
+		this.globalStiff.setRowDim(dim);
+		this.globalStiff.setColDim(dim);
+		globalLoad = new SparseVectorHashMap(dim);
+	}
 	
 	@Override
 	public SparseMatrix getStiffnessMatrix() {
 		if(status == 0)
 			throw new FutureyeException("Call assemble() function first!");
+		applyConstraints();
 		return this.globalStiff;
 	}
 	
@@ -63,6 +86,7 @@ public class AssemblerScalar implements AssemblerOld {
 	public SparseVector getLoadVector() {
 		if(status == 0)
 			throw new FutureyeException("Call assemble() function first!");
+		applyConstraints();
 		return this.globalLoad;
 	}
 	
@@ -73,6 +97,8 @@ public class AssemblerScalar implements AssemblerOld {
 	
 	public void assemble(boolean procHangingNode) {
 		status = 1;
+		dirichlet = null;
+		pending = false;
 		ElementList eList = mesh.getElementList();
 		int nEle = eList.size();
 		int nProgress = 20;
@@ -87,9 +113,11 @@ public class AssemblerScalar implements AssemblerOld {
 		int nPS = nEle/nProgress;
 		if(nPS == 0) nPS = 1;
 		int nProgressPrint = 0;
-		for(int i=1; i<=nEle; i++) {
+		for(int i=1; i<=nEle; i++)
 			eList.at(i).adjustVerticeToCounterClockwise();
-
+		//The vertices may have been reordered, the cached Jacobians must follow them
+		mesh.invalidateGeometry();
+		for(int i=1; i<=nEle; i++) {
 			assembleGlobal(eList.at(i),	globalStiff,globalLoad);
 			if(printInfo) {
 				if(i%nPS==0) {
@@ -113,21 +141,30 @@ public class AssemblerScalar implements AssemblerOld {
 	}
 
 	
+	/**
+	 * Record the value of a Dirichlet DOF, they are imposed together at the end
+	 * of <tt>imposeDirichletCondition()</tt>
+	 */
 	protected void setDirichlet(int matIndex, double value) {
-		int row = matIndex;
-		int col = matIndex;
-		this.globalStiff.set(row, col, 1.0);
-		this.globalLoad.set(row,value);
-		for(int r=1;r<=this.globalStiff.getRowDim();r++) {
-			if(r != row) {
-				this.globalLoad.add(r,-this.globalStiff.get(r, col)*value);
-				this.globalStiff.set(r, col, 0.0);
-			}
-		}
-		for(int c=1;c<=this.globalStiff.getColDim();c++) {
-			if(c != col) {
-				this.globalStiff.set(row, c, 0.0);
-			}
+		getConstraints().addDirichlet(matIndex, value);
+	}
+
+	/**
+	 * @return the hanging node and Dirichlet constraints recorded since <tt>assemble()</tt>
+	 */
+	protected Constraints getConstraints() {
+		if(dirichlet == null)
+			dirichlet = new Constraints(globalStiff.getRowDim());
+		return dirichlet;
+	}
+
+	/**
+	 * Impose the recorded constraints in one pass, if any of them has not been imposed yet
+	 */
+	protected void applyConstraints() {
+		if(pending) {
+			dirichlet.apply(globalStiff, globalLoad);
+			pending = false;
 		}
 	}
 	
@@ -187,6 +224,8 @@ public class AssemblerScalar implements AssemblerOld {
 				}
 			}
 		}
+		pending = true;
+		applyConstraints();
 	}
 	
 	public void assembleGlobal(Element e, Matrix stiff, Vector load) {
@@ -195,7 +234,7 @@ public class AssemblerScalar implements AssemblerOld {
 		int nDOFs = DOFs.size();
 		
 		//Update Jacobin on e
-		e.updateJacobin();
+		e.updateJacobin(mesh.getGeometry());
 		
 		for(int i=1;i<=nDOFs;i++) {
 			DOFs.at(i).getSSF().assignElement(e);
@@ -292,7 +331,7 @@ public class AssemblerScalar implements AssemblerOld {
 		localLoad.setDim(nDOFs);
 		
 		//Update Jacobin on e
-		e.updateJacobin();
+		e.updateJacobin(mesh.getGeometry());
 		
 		for(int i=1;i<=nDOFs;i++) {
 			DOFs.at(i).getSSF().assignElement(e);
@@ -357,21 +396,17 @@ public class AssemblerScalar implements AssemblerOld {
 		}
 	}
 	
+	/**
+	 * Condense the hanging nodes into their constrain nodes and replace their rows by
+	 * <tt>nh - 0.5*n1 - 0.5*n2 = 0</tt>, see <tt>Constraints</tt>.
+	 * The rows are replaced together with the Dirichlet rows at the end of
+	 * <tt>imposeDirichletCondition()</tt>, or by the next <tt>getStiffnessMatrix()</tt>
+	 * or <tt>getLoadVector()</tt> if there is no Dirichlet condition.
+	 */
 	public void procHangingNode(Mesh mesh) {
 		status = 5;
-		for(int i=1;i<=mesh.getNodeList().size();i++) {
-			Node node = mesh.getNodeList().at(i);
-			if(node instanceof NodeRefined) {
-				NodeRefined nRefined = (NodeRefined)node;
-				if(nRefined.isHangingNode()) {
-					globalStiff.set(nRefined.globalIndex, nRefined.globalIndex, 1.0);
-					globalStiff.set(nRefined.globalIndex,
-							nRefined.constrainNodes.at(1).globalIndex,-0.5);
-					globalStiff.set(nRefined.globalIndex,
-							nRefined.constrainNodes.at(2).globalIndex,-0.5);
-				}
-			}
-		}
+		getConstraints().addHangingNodes(mesh);
+		pending = true;
 	}
 
 	public void plusToGlobalLoad(Element e, Vector local) {
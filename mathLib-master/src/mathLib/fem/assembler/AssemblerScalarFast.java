@@ -1,14 +1,9 @@
 package mathLib.fem.assembler;
 
 import mathLib.fem.core.Mesh;
-import mathLib.fem.core.Node;
-import mathLib.fem.core.NodeRefined;
-import mathLib.fem.core.NodeType;
 import mathLib.fem.core.intf.AssemblerOld;
 import mathLib.fem.core.intf.WeakFormOld;
 import mathLib.fem.util.container.ElementList;
-import mathLib.fem.util.container.NodeList;
-import mathLib.func.symbolic.Variable;
 import mathLib.func.symbolic.intf.MathFunc;
 import mathLib.func.symbolic.intf.VecMathFunc;
 import mathLib.matrix.algebra.SparseMatrixRowMajor;
@@ -21,6 +16,9 @@ public class AssemblerScalarFast implements AssemblerOld{
 	protected WeakFormOld weakForm;
 	protected SparseMatrix globalStiff;
 	protected SparseVector globalLoad;
+	protected Constraints constraints;
+	// constraints recorded but not imposed yet
+	protected boolean pending = false;
 
 	public AssemblerScalarFast(Mesh mesh, WeakFormOld weakForm) {
 		this.mesh = mesh;
@@ -31,9 +29,31 @@ public class AssemblerScalarFast implements AssemblerOld{
 		globalLoad = new SparseVectorHashMap(dim);
 
 	}
+
+	/**
+	 * Assemble into the given (empty) global stiffness matrix, e.g. a
+	 * <tt>SparseMatrixRowMajorPrimitive</tt> to avoid boxed map entries
+	 * on large meshes
+	 *
+	 * @param mesh
+	 * @param weakForm
+	 * @param globalStiff
+	 */
+	public AssemblerScalarFast(Mesh mesh, WeakFormOld weakForm, SparseMatrix globalStiff) {
+		this.mesh = mesh;
+		this.weakForm = weakForm;
+
+		int dim = mesh.getNodeList().size();
+		this.globalStiff = globalStiff;
+		this.globalStiff.setRowDim(dim);
+		this.globalStiff.setColDim(dim);
+		globalLoad = new SparseVectorHashMap(dim);
+	}
 	
 	@Override
 	public void assemble() {
+		constraints = null;
+		pending = false;
 		ElementList eList = mesh.getElementList();
 		int nEle = eList.size();
 		for(int i=1; i<=nEle; i++) {
@@ -50,50 +70,43 @@ public class AssemblerScalarFast implements AssemblerOld{
 	
 	@Override
 	public SparseVector getLoadVector() {
+		applyConstraints();
 		return globalLoad;
 	}
 
 	@Override
 	public SparseMatrix getStiffnessMatrix() {
+		applyConstraints();
 		return globalStiff;
 	}
 	
+	/**
+	 * The Dirichlet nodes are gathered first and imposed together with the
+	 * hanging nodes in one pass over the matrix, see <tt>Constraints</tt>
+	 */
 	@Override
 	public void imposeDirichletCondition(MathFunc diri) {
-		NodeList nList = mesh.getNodeList();
-		for(int i=1;i<=nList.size();i++) {
-			Node n = nList.at(i);
-			if(n.getNodeType() == NodeType.Dirichlet) {
-				Variable v = Variable.createFrom(diri, n, n.globalIndex);
-				this.globalStiff.set(n.globalIndex, n.globalIndex, 1.0);
-				double val = diri.apply(v);
-				this.globalLoad.set(n.globalIndex, val);
-				for(int j=1;j<=this.globalStiff.getRowDim();j++) {
-					if(j!=n.globalIndex) {
-						this.globalLoad.add(j, -this.globalStiff.get(j, n.globalIndex)*val);
-						this.globalStiff.set(j, n.globalIndex, 0.0);
-						this.globalStiff.set(n.globalIndex, j, 0.0);
-					}
-				}
-			}
-		}
+		getConstraints().addDirichlet(mesh, diri);
+		pending = true;
+		applyConstraints();
 	}
 	
-	// nh - 0.5*n1 - 0.5*n2 = 0
+	// condensed, row nh - 0.5*n1 - 0.5*n2 = 0, imposed with the Dirichlet nodes or by the next get...()
 	public void procHangingNode(Mesh mesh) {
-		
-		for(int i=1;i<=mesh.getNodeList().size();i++) {
-			Node node = mesh.getNodeList().at(i);
-			if(node instanceof NodeRefined) {
-				NodeRefined nRefined = (NodeRefined)node;
-				if(nRefined.isHangingNode()) {
-					globalStiff.set(nRefined.globalIndex, nRefined.globalIndex, 1.0);
-					globalStiff.set(nRefined.globalIndex,
-							nRefined.constrainNodes.at(1).globalIndex,-0.5);
-					globalStiff.set(nRefined.globalIndex,
-							nRefined.constrainNodes.at(2).globalIndex,-0.5);
-				}
-			}
+		getConstraints().addHangingNodes(mesh);
+		pending = true;
+	}
+
+	protected Constraints getConstraints() {
+		if(constraints == null)
+			constraints = new Constraints(globalStiff.getRowDim());
+		return constraints;
+	}
+
+	protected void applyConstraints() {
+		if(pending) {
+			constraints.apply(globalStiff, globalLoad);
+			pending = false;
 		}
 	}
 	
@@ -1,8 +1,6 @@
 package mathLib.fem.assembler;
 
 import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import mathLib.fem.core.DOF;
@@ -28,7 +26,6 @@ import mathLib.fem.util.container.VertexList;
 import mathLib.func.symbolic.Variable;
 import mathLib.func.symbolic.intf.MathFunc;
 import mathLib.func.symbolic.intf.VecMathFunc;
-import mathLib.matrix.algebra.FullMatrix;
 import mathLib.matrix.algebra.SparseBlockMatrix;
 import mathLib.matrix.algebra.SparseBlockVector;
 import mathLib.matrix.algebra.SparseMatrixRowMajor;
@@ -41,6 +38,7 @@ public class AssemblerVector implements AssemblerOld {
 	protected WeakFormOld weakForm;
 	protected SparseBlockMatrix globalStiff;
 	protected SparseBlockVector globalLoad;
+	protected Constraints dirichlet;
 	
 	/**
 	 * 
@@ -85,8 +83,11 @@ public class AssemblerVector implements AssemblerOld {
 		System.out.print("Progress[");
 		int nPS = nEle/nProgress;
 		int nProgressPrint = 0;
-		for(int i=1; i<=nEle; i++) {
+		for(int i=1; i<=nEle; i++)
 			eList.at(i).adjustVerticeToCounterClockwise();
+		//The vertices may have been reordered, the cached Jacobians must follow them
+		mesh.invalidateGeometry();
+		for(int i=1; i<=nEle; i++) {
 			assembleGlobal(eList.at(i),	globalStiff,globalLoad);
 			if(i%nPS==0) {
 				nProgressPrint++;
@@ -112,7 +113,7 @@ public class AssemblerVector implements AssemblerOld {
 		int nDOFs = DOFs.size();
 		
 		//Update Jacobin on e
-		e.updateJacobin();
+		e.updateJacobin(mesh.getGeometry());
 		
 		for(int i=1;i<=nDOFs;i++) {
 			DOFs.at(i).getVSF().assignElement(e);
@@ -213,66 +214,12 @@ public class AssemblerVector implements AssemblerOld {
 	}
 	
 	
-	protected void setDirichlet(FullMatrix stiff, int matIndex, double value) {
-		int row = matIndex-1;
-		int col = matIndex-1;
-		double[][] data = stiff.getData();
-
-		data[row][col] = 1.0;
-		this.globalLoad.set(row+1,value);
-		
-		int nRow = stiff.getRowDim();
-		int nCol = stiff.getColDim();
-		if(Math.abs(value) > Matrix.zeroEps) {
-			for(int r=0; r<nRow; r++) { 
-				if(r != row) {
-					//bugfix
-					//this.globalLoad.add(r+1,-this.globalStiff.get(r+1, col+1)*value);
-					this.globalLoad.add(r+1,-data[r][col]*value);
-					data[r][col] = 0.0; 
-				}
-			}
-		} else {
-			for(int r=0; r<nRow; r++) {
-				if(r != row) {
-					data[r][col] = 0.0; 
-				}
-			}
-		}
-		for(int c=0; c<nCol; c++) {
-			if(c != col) {
-				data[row][c] = 0.0; 
-			}
-		}
-	}
-	
+	/**
+	 * Record the value of a Dirichlet DOF, they are imposed together at the end
+	 * of <tt>imposeDirichletCondition()</tt>
+	 */
 	protected void setDirichlet(int matIndex, double value) {
-		int row = matIndex;
-		int col = matIndex;
-		this.globalStiff.set(row, col, 1.0);
-		this.globalLoad.set(row,value);
-		int nRow = globalStiff.getRowDim();
-		int nCol = globalStiff.getColDim();
-		//value!=0
-		if(Math.abs(value) > Matrix.zeroEps) {
-			for(int r=1;r<=nRow;r++) {
-				if(r != row) {
-					this.globalLoad.add(r,-this.globalStiff.get(r, col)*value);
-					this.globalStiff.set(r, col, 0.0);
-				}
-			}
-		} else { //value=0
-			for(int r=1;r<=nRow;r++) {
-				if(r != row) {
-					this.globalStiff.set(r, col, 0.0);
-				}
-			}
-		}
-		for(int c=1;c<=nCol;c++) {
-			if(c != col) {
-				this.globalStiff.set(row, c, 0.0);
-			}
-		}
+		dirichlet.addDirichlet(matIndex, value);
 	}
 	
 	@SuppressWarnings({"unused", "rawtypes" })
@@ -280,25 +227,7 @@ public class AssemblerVector implements AssemblerOld {
 	public void imposeDirichletCondition(VecMathFunc diri) {
 		ElementList eList = mesh.getElementList();
 		
-		int nRow = this.globalStiff.getRowDim();
-		int nCol = this.globalStiff.getColDim();
-		FullMatrix fStiff = new FullMatrix(nRow,nCol);
-		double [][]fsData = fStiff.getData();
-		//System.out.println(this.globalStiff.getNonZeroNumber());
-		Map<Integer,Map<Integer,Double>> sData = this.globalStiff.getAll();
-		//int size = 0;
-		for(Entry<Integer,Map<Integer,Double>> e1 : sData.entrySet()) {
-			int r = e1.getKey();
-			Map<Integer,Double> row = e1.getValue();
-			for(Entry<Integer,Double> e2 : row.entrySet()) {
-				int c = e2.getKey();
-				Double v = e2.getValue();
-				fsData[r-1][c-1] = v;
-				//size++;
-			}
-		}
-		//System.out.println(this.globalStiff.getNonZeroNumber()+"=="+size);
-		
+		dirichlet = new Constraints(this.globalStiff.getRowDim());
 		Set<Integer> nodeDOFSet = new HashSet<Integer>();
 		for(int ie=1;ie<=eList.size();ie++) {
 			Element e = eList.at(ie);
@@ -313,7 +242,7 @@ public class AssemblerVector implements AssemblerOld {
 						Node n = (Node)ge;
 						if(n.getNodeType(nVVFCmpt) == NodeType.Dirichlet) {
 							Variable v = Variable.createFrom(fdiri, n, 0);
-							setDirichlet(fStiff,dof.getGlobalIndex(),fdiri.apply(v));
+							setDirichlet(dof.getGlobalIndex(),fdiri.apply(v));
 						}
 					//	nodeDOFSet.add(dof.getGlobalIndex());
 					//}
@@ -336,7 +265,7 @@ public class AssemblerVector implements AssemblerOld {
 						Node n = vs.at(k).globalNode();
 						if(NodeType.Dirichlet == n.getNodeType(nVVFCmpt)) {
 							Variable v = Variable.createFrom(fdiri, n, 0);
-							setDirichlet(fStiff,dof.getGlobalIndex(),fdiri.apply(v));
+							setDirichlet(dof.getGlobalIndex(),fdiri.apply(v));
 						}
 					}
 				} else if(ge instanceof Face) {
@@ -346,7 +275,7 @@ public class AssemblerVector implements AssemblerOld {
 						Node n = vs.at(k).globalNode();
 						if(NodeType.Dirichlet == n.getNodeType(nVVFCmpt)) {
 							Variable v = Variable.createFrom(fdiri, n, 0);
-							setDirichlet(fStiff,dof.getGlobalIndex(),fdiri.apply(v));
+							setDirichlet(dof.getGlobalIndex(),fdiri.apply(v));
 						}
 					}
 				} else if(ge instanceof Volume) {
@@ -355,26 +284,12 @@ public class AssemblerVector implements AssemblerOld {
 						Node n = vs.at(k).globalNode();
 						if(NodeType.Dirichlet == n.getNodeType(nVVFCmpt)) {
 							Variable v = Variable.createFrom(fdiri, n, 0);
-							setDirichlet(fStiff,dof.getGlobalIndex(),fdiri.apply(v));
+							setDirichlet(dof.getGlobalIndex(),fdiri.apply(v));
 						}
 					}
 				}
 			}
 		}
-		this.globalStiff.clearData();
-		long begin = System.currentTimeMillis();
-		for(int i=nRow; --i>=0; ) {
-		//for(int i=0; i<nRow; i++) {
-			double[] _fsDatai = fsData[i];
-			for(int j=nCol; --j>=0; ) {
-			//for(int j=0; j<nCol; j++) {
-				double v = _fsDatai[j];
-				if(Math.abs(v) > Matrix.zeroEps) {
-					this.globalStiff.set(i+1, j+1, v);
-				}
-			}
-		}
-		long end = System.currentTimeMillis();
-		System.out.println("time="+(end-begin)+"ms");
+		dirichlet.apply(globalStiff, globalLoad);
 	}		
 }
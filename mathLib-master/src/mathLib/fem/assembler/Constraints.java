@@ -0,0 +1,601 @@
+package mathLib.fem.assembler;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import mathLib.fem.core.Mesh;
+import mathLib.fem.core.Node;
+import mathLib.fem.core.NodeRefined;
+import mathLib.fem.core.NodeType;
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.container.NodeList;
+import mathLib.func.symbolic.Variable;
+import mathLib.func.symbolic.intf.MathFunc;
+import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.IntDoubleHashMap;
+import mathLib.matrix.algebra.SparseBlockMatrix;
+import mathLib.matrix.algebra.SparseMatrixRowMajor;
+import mathLib.matrix.algebra.SparseMatrixRowMajorPrimitive;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+import mathLib.matrix.algebra.intf.MatrixEntry;
+import mathLib.matrix.algebra.intf.SparseMatrix;
+import mathLib.matrix.algebra.intf.Vector;
+
+/**
+ * Dirichlet and linear (hanging node) constraints of a global system, gathered
+ * first and then imposed in one pass over the non-zeros of the matrix
+ * <p>
+ * For a Dirichlet DOF <tt>i</tt> with value <tt>g_i</tt> the row becomes <tt>u_i = g_i</tt>
+ * and the column is eliminated symmetrically: <tt>b_r -= a_ri*g_i</tt> and <tt>a_ri = 0</tt>
+ * for every other row. A linear constraint <tt>u_h = sum_k w_k u_mk</tt> (e.g. a
+ * hanging <tt>NodeRefined</tt> in the middle of an edge, <tt>w_k = 1/2</tt>) is condensed:
+ * <tt>w_k</tt> times row <tt>h</tt> and <tt>b_h</tt> are added to the rows of the masters,
+ * <tt>w_k</tt> times column <tt>h</tt> is added to the columns of the masters, then the row
+ * becomes <tt>u_h - sum_k w_k u_mk = 0</tt>. The free rows are those of <tt>C'AC</tt>
+ * (<tt>C</tt> maps the free DOFs to all the DOFs), so the system stays symmetric and the
+ * solution is the Galerkin solution in the constrained space. The masters must not
+ * have linear constraints themselves.
+ * <p>
+ * Imposing the DOFs one after another costs a scan of all the rows for each of them,
+ * here every stored row is visited once, so the cost is <tt>O(nnz)</tt> whatever the number
+ * of constrained DOFs. The DOF indices are 1-based as in the assemblers.
+ *
+ * <pre>
+ * Constraints c = new Constraints(n);
+ * c.addDirichlet(mesh, diri).addHangingNodes(mesh);
+ * c.apply(stiff, load);
+ * </pre>
+ *
+ */
+public class Constraints {
+	protected static final byte FREE = 0;
+	protected static final byte DIRICHLET = 1;
+	protected static final byte LINEAR = 2;
+
+	protected int nDOF;
+	protected byte[] type;
+	protected double[] value;
+	protected int[][] master;
+	protected double[][] weight;
+	protected int nConstrained = 0;
+
+	/**
+	 * @param nDOF number of DOFs (rows) of the system
+	 */
+	public Constraints(int nDOF) {
+		this.nDOF = nDOF;
+		this.type = new byte[nDOF];
+		this.value = new double[nDOF];
+	}
+
+	/**
+	 * <tt>u_dof = value</tt>, a Dirichlet value replaces a linear constraint of the same DOF
+	 *
+	 * @param dof 1-based
+	 * @param value
+	 * @return <tt>this</tt> for convenience only
+	 */
+	public Constraints addDirichlet(int dof, double value) {
+		int i = check(dof);
+		if(type[i] == FREE)
+			nConstrained++;
+		type[i] = DIRICHLET;
+		this.value[i] = value;
+		if(master != null)
+			master[i] = null;
+		return this;
+	}
+
+	/**
+	 * <tt>u_dof = sum_k weights[k]*u_masters[k]</tt>, ignored if the DOF has a Dirichlet value
+	 *
+	 * @param dof 1-based
+	 * @param masters 1-based
+	 * @param weights
+	 * @return <tt>this</tt> for convenience only
+	 */
+	public Constraints addLinear(int dof, int[] masters, double[] weights) {
+		int i = check(dof);
+		if(type[i] == DIRICHLET)
+			return this;
+		if(masters.length != weights.length)
+			throw new FutureyeException("masters.length="+masters.length+" != weights.length="+weights.length);
+		if(master == null) {
+			master = new int[nDOF][];
+			weight = new double[nDOF][];
+		}
+		if(type[i] == FREE)
+			nConstrained++;
+		type[i] = LINEAR;
+		master[i] = new int[masters.length];
+		for(int k=0; k<masters.length; k++)
+			master[i][k] = check(masters[k]);
+		weight[i] = weights.clone();
+		return this;
+	}
+
+	/**
+	 * Dirichlet values of the nodes with <tt>NodeType.Dirichlet</tt>, for one DOF per node
+	 * numbered as the nodes
+	 *
+	 * @param mesh
+	 * @param diri <tt>null</tt> for homogeneous values
+	 * @return <tt>this</tt> for convenience only
+	 */
+	public Constraints addDirichlet(Mesh mesh, MathFunc diri) {
+		NodeList nList = mesh.getNodeList();
+		for(int i=1; i<=nList.size(); i++) {
+			Node n = nList.at(i);
+			if(n.getNodeType() == NodeType.Dirichlet) {
+				double v = 0.0;
+				if(diri != null)
+					v = diri.apply(Variable.createFrom(diri, n, n.globalIndex));
+				addDirichlet(n.globalIndex, v);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Hanging nodes of a refined mesh: the value is the mean of the constrain nodes,
+	 * for one DOF per node numbered as the nodes
+	 *
+	 * @param mesh
+	 * @return <tt>this</tt> for convenience only
+	 */
+	public Constraints addHangingNodes(Mesh mesh) {
+		NodeList nList = mesh.getNodeList();
+		for(int i=1; i<=nList.size(); i++) {
+			Node node = nList.at(i);
+			if(node instanceof NodeRefined && ((NodeRefined)node).isHangingNode()) {
+				NodeList cns = ((NodeRefined)node).constrainNodes;
+				int[] masters = new int[cns.size()];
+				double[] weights = new double[cns.size()];
+				for(int k=0; k<masters.length; k++) {
+					masters[k] = cns.at(k+1).globalIndex;
+					weights[k] = 1.0/masters.length;
+				}
+				addLinear(node.globalIndex, masters, weights);
+			}
+		}
+		return this;
+	}
+
+	public int getNumberOfConstraints() {
+		return nConstrained;
+	}
+
+	/**
+	 * @param dof 1-based
+	 */
+	public boolean isConstrained(int dof) {
+		return type[check(dof)] != FREE;
+	}
+
+	private int check(int dof) {
+		if(dof < 1 || dof > nDOF)
+			throw new FutureyeException("DOF "+dof+" exceeds dimension [1,"+nDOF+"]");
+		return dof-1;
+	}
+
+	/**
+	 * Impose the constraints on a sparse (or sparse block) matrix and its load vector
+	 *
+	 * @param A
+	 * @param b
+	 */
+	public void apply(SparseMatrix A, Vector b) {
+		if(A.getRowDim() != nDOF)
+			throw new FutureyeException("Matrix rows "+A.getRowDim()+" != "+nDOF);
+		if(nConstrained == 0)
+			return;
+		checkMasters();
+		double[] db = new double[nDOF];
+		for(int i=0; i<nDOF; i++) {
+			if(type[i] == LINEAR)
+				distributeLoad(i, b.get(i+1), db);
+			if(type[i] != FREE)
+				b.set(i+1, type[i] == DIRICHLET ? value[i] : 0.0);
+		}
+		Additions add = new Additions();
+
+		if(A instanceof SparseBlockMatrix) {
+			SparseBlockMatrix B = (SparseBlockMatrix)A;
+			int nr = B.getRowBlockDim(), nc = B.getColBlockDim();
+			int[] rBase = new int[nr+1], cBase = new int[nc+1];
+			for(int i=1; i<=nr; i++)
+				rBase[i] = rBase[i-1] + B.getBlock(i, 1).getRowDim();
+			for(int j=1; j<=nc; j++)
+				cBase[j] = cBase[j-1] + B.getBlock(1, j).getColDim();
+			for(int i=1; i<=nr; i++)
+				for(int j=1; j<=nc; j++)
+					eliminate(B.getBlock(i, j), rBase[i-1], cBase[j-1], add, db);
+			for(int k=0; k<add.n; k++) {
+				int bi = blockOf(rBase, add.row[k]), bj = blockOf(cBase, add.col[k]);
+				B.getBlock(bi, bj).add(add.row[k]+1-rBase[bi-1], add.col[k]+1-cBase[bj-1], add.val[k]);
+			}
+			addLoad(db, b);
+			for(int r=0; r<nDOF; r++) {
+				if(type[r] == FREE)
+					continue;
+				int bi = blockOf(rBase, r);
+				setConstraintRow(r, (row, col, v) -> {
+					int bj = blockOf(cBase, col);
+					B.getBlock(bi, bj).set(row+1-rBase[bi-1], col+1-cBase[bj-1], v);
+				}, b);
+			}
+		} else {
+			eliminate(A, 0, 0, add, db);
+			for(int k=0; k<add.n; k++)
+				A.add(add.row[k]+1, add.col[k]+1, add.val[k]);
+			addLoad(db, b);
+			for(int r=0; r<nDOF; r++)
+				if(type[r] != FREE)
+					setConstraintRow(r, (row, col, v) -> A.set(row+1, col+1, v), b);
+		}
+	}
+
+	/**
+	 * Impose the constraints on a matrix in compressed row format and its load vector,
+	 * the eliminated entries are removed from the rows and the entries of the condensed
+	 * linear constraints are inserted
+	 *
+	 * @param A
+	 * @param b
+	 */
+	public void apply(CompressedRowMatrix A, AlgebraVector b) {
+		if(A.getRowDim() != nDOF)
+			throw new FutureyeException("Matrix rows "+A.getRowDim()+" != "+nDOF);
+		if(nConstrained == 0)
+			return;
+		checkMasters();
+		int[][] colIndex = A.getColIndex();
+		double[][] data = A.getData();
+		double[] bData = b.getData();
+		double[] db = new double[nDOF];
+		Additions add = new Additions();
+		for(int r=0; r<nDOF; r++) {
+			int[] cols = colIndex[r];
+			double[] vals = data[r];
+			if(type[r] != FREE) {
+				if(type[r] == LINEAR) {
+					distributeLoad(r, bData[r], db);
+					for(int k=0; k<cols.length; k++)
+						distribute(r, cols[k], vals[k], add, db);
+				}
+				continue;
+			}
+			int n = 0;
+			for(int k=0; k<cols.length; k++) {
+				int c = cols[k];
+				if(type[c] != FREE) {
+					distribute(r, c, vals[k], add, db);
+				} else {
+					cols[n] = c;
+					vals[n++] = vals[k];
+				}
+			}
+			if(n < cols.length) {
+				colIndex[r] = Arrays.copyOf(cols, n);
+				data[r] = Arrays.copyOf(vals, n);
+			}
+		}
+		for(int k=0; k<add.n; k++) {
+			int r = add.row[k];
+			int[] cols = colIndex[r];
+			int i = Arrays.binarySearch(cols, add.col[k]);
+			if(i >= 0) {
+				data[r][i] += add.val[k];
+			} else {
+				//fill-in, the additions are few (rows and columns of the linear constraints)
+				i = -i-1;
+				int[] c = new int[cols.length+1];
+				double[] v = new double[cols.length+1];
+				System.arraycopy(cols, 0, c, 0, i);
+				System.arraycopy(data[r], 0, v, 0, i);
+				c[i] = add.col[k];
+				v[i] = add.val[k];
+				System.arraycopy(cols, i, c, i+1, cols.length-i);
+				System.arraycopy(data[r], i, v, i+1, cols.length-i);
+				colIndex[r] = c;
+				data[r] = v;
+			}
+		}
+		for(int i=0; i<nDOF; i++)
+			bData[i] += db[i];
+		for(int r=0; r<nDOF; r++) {
+			if(type[r] == FREE)
+				continue;
+			bData[r] = type[r] == DIRICHLET ? value[r] : 0.0;
+			// the constraint row, kept sorted
+			int[] cols;
+			double[] vals;
+			if(type[r] == DIRICHLET) {
+				cols = new int[] {r};
+				vals = new double[] {1.0};
+			} else {
+				int[] m = master[r];
+				double[] w = weight[r];
+				int n = 0;
+				cols = new int[m.length+1];
+				vals = new double[m.length+1];
+				cols[n] = r;
+				vals[n++] = 1.0;
+				for(int k=0; k<m.length; k++) {
+					if(type[m[k]] == DIRICHLET) {
+						bData[r] += w[k]*value[m[k]];
+					} else {
+						cols[n] = m[k];
+						vals[n++] = -w[k];
+					}
+				}
+				sortRow(cols, vals, n);
+				cols = Arrays.copyOf(cols, n);
+				vals = Arrays.copyOf(vals, n);
+			}
+			colIndex[r] = cols;
+			data[r] = vals;
+		}
+	}
+
+	/**
+	 * Impose the constraints on a matrix in flat compressed row format and its load
+	 * vector. The sparsity pattern is not changed: eliminated entries are set to zero and
+	 * the entries of the constraint rows must be in the pattern (they are for the
+	 * assembled patterns of the mesh). The entries the condensation of a linear constraint
+	 * adds to the rows of the masters must be in the pattern too, a <tt>FutureyeException</tt>
+	 * is thrown otherwise.
+	 *
+	 * @param A
+	 * @param b
+	 */
+	public void apply(FlatCompressedRowMatrix A, AlgebraVector b) {
+		if(A.getRowDim() != nDOF)
+			throw new FutureyeException("Matrix rows "+A.getRowDim()+" != "+nDOF);
+		if(nConstrained == 0)
+			return;
+		checkMasters();
+		int[] rowPtr = A.getRowPtr();
+		int[] colIdx = A.getColIdx();
+		double[] values = A.getValues();
+		double[] bData = b.getData();
+		double[] db = new double[nDOF];
+		Additions add = new Additions();
+		for(int r=0; r<nDOF; r++) {
+			if(type[r] == LINEAR)
+				distributeLoad(r, bData[r], db);
+			for(int k=rowPtr[r]; k<rowPtr[r+1]; k++) {
+				if(type[r] != FREE || type[colIdx[k]] != FREE) {
+					distribute(r, colIdx[k], values[k], add, db);
+					values[k] = 0.0;
+				}
+			}
+		}
+		EntrySetter entry = (row, col, v) -> {
+			int k = Arrays.binarySearch(colIdx, rowPtr[row], rowPtr[row+1], col);
+			if(k < 0)
+				throw new FutureyeException("Entry ("+(row+1)+","+(col+1)+") is not in the pattern");
+			values[k] += v;
+		};
+		for(int k=0; k<add.n; k++)
+			entry.set(add.row[k], add.col[k], add.val[k]);
+		for(int r=0; r<nDOF; r++) {
+			if(type[r] == FREE)
+				bData[r] += db[r];
+			else {
+				bData[r] = type[r] == DIRICHLET ? value[r] : 0.0;
+				setConstraintRow(r, entry, null);
+			}
+		}
+		for(int r=0; r<nDOF; r++)
+			if(type[r] == LINEAR)
+				for(int k=0; k<master[r].length; k++)
+					if(type[master[r][k]] == DIRICHLET)
+						bData[r] += weight[r][k]*value[master[r][k]];
+	}
+
+	/**
+	 * Setter of a 0-based entry
+	 */
+	protected interface EntrySetter {
+		void set(int row, int col, double value);
+	}
+
+	/**
+	 * 0-based entries to be added to the matrix after the pass over the stored entries
+	 */
+	protected static class Additions {
+		int n = 0;
+		int[] row = new int[16];
+		int[] col = new int[16];
+		double[] val = new double[16];
+
+		void add(int r, int c, double v) {
+			if(n == row.length) {
+				row = Arrays.copyOf(row, 2*n);
+				col = Arrays.copyOf(col, 2*n);
+				val = Arrays.copyOf(val, 2*n);
+			}
+			row[n] = r;
+			col[n] = c;
+			val[n++] = v;
+		}
+	}
+
+	private void checkMasters() {
+		if(master == null)
+			return;
+		for(int r=0; r<nDOF; r++)
+			if(type[r] == LINEAR)
+				for(int m : master[r])
+					if(type[m] == LINEAR)
+						throw new FutureyeException("Master "+(m+1)+" of DOF "+(r+1)+" has a linear constraint");
+	}
+
+	/**
+	 * Entry <tt>(r,c)</tt> with value <tt>v</tt>, where <tt>r</tt> or <tt>c</tt> is constrained,
+	 * moved to the free rows and columns: the Dirichlet columns go to the load changes
+	 * <tt>db</tt>, the linear rows and columns to their masters. The rows of Dirichlet DOFs
+	 * are dropped.
+	 */
+	protected void distribute(int r, int c, double v, Additions add, double[] db) {
+		if(type[r] == FREE) {
+			distributeColumn(r, c, v, add, db);
+		} else if(type[r] == LINEAR) {
+			int[] m = master[r];
+			double[] w = weight[r];
+			for(int k=0; k<m.length; k++)
+				if(type[m[k]] == FREE)
+					distributeColumn(m[k], c, w[k]*v, add, db);
+		}
+	}
+
+	private void distributeColumn(int r, int c, double v, Additions add, double[] db) {
+		if(type[c] == FREE) {
+			add.add(r, c, v);
+		} else if(type[c] == DIRICHLET) {
+			db[r] -= v*value[c];
+		} else {
+			int[] m = master[c];
+			double[] w = weight[c];
+			for(int k=0; k<m.length; k++) {
+				if(type[m[k]] == FREE)
+					add.add(r, m[k], w[k]*v);
+				else
+					db[r] -= w[k]*v*value[m[k]];
+			}
+		}
+	}
+
+	/**
+	 * <tt>w_k*b_h</tt> of linear constraint row <tt>h</tt> to the free masters
+	 */
+	private void distributeLoad(int h, double bh, double[] db) {
+		int[] m = master[h];
+		double[] w = weight[h];
+		for(int k=0; k<m.length; k++)
+			if(type[m[k]] == FREE)
+				db[m[k]] += w[k]*bh;
+	}
+
+	private void addLoad(double[] db, Vector b) {
+		for(int i=0; i<nDOF; i++)
+			if(db[i] != 0.0)
+				b.add(i+1, db[i]);
+	}
+
+	/**
+	 * Write the entries of constraint row <tt>r</tt>, the Dirichlet masters of a linear
+	 * constraint go to <tt>b</tt> (if not <tt>null</tt>)
+	 */
+	protected void setConstraintRow(int r, EntrySetter A, Vector b) {
+		A.set(r, r, 1.0);
+		if(type[r] != LINEAR)
+			return;
+		int[] m = master[r];
+		double[] w = weight[r];
+		for(int k=0; k<m.length; k++) {
+			if(type[m[k]] == DIRICHLET) {
+				if(b != null)
+					b.add(r+1, w[k]*value[m[k]]);
+			} else
+				A.set(r, m[k], -w[k]);
+		}
+	}
+
+	/**
+	 * One pass over the stored entries of <tt>M</tt>, a block at <tt>(rBase, cBase)</tt> of the
+	 * system: the entries of the constrained rows and columns are removed and distributed,
+	 * see <tt>distribute()</tt>
+	 */
+	protected void eliminate(SparseMatrix M, int rBase, int cBase, Additions add, double[] db) {
+		if(M == null)
+			return;
+		if(M instanceof SparseMatrixRowMajor) {
+			Map<Integer,Map<Integer,Double>> rows = M.getAll();
+			for(Entry<Integer,Map<Integer,Double>> er : rows.entrySet()) {
+				int r = rBase + er.getKey() - 1;
+				Map<Integer,Double> row = er.getValue();
+				if(type[r] == DIRICHLET) {
+					row.clear();
+					continue;
+				}
+				Iterator<Entry<Integer,Double>> it = row.entrySet().iterator();
+				while(it.hasNext()) {
+					Entry<Integer,Double> ec = it.next();
+					int c = cBase + ec.getKey() - 1;
+					if(type[r] != FREE || type[c] != FREE) {
+						distribute(r, c, ec.getValue(), add, db);
+						it.remove();
+					}
+				}
+			}
+		} else if(M instanceof SparseMatrixRowMajorPrimitive) {
+			SparseMatrixRowMajorPrimitive P = (SparseMatrixRowMajorPrimitive)M;
+			int[] removed = new int[8];
+			for(int i=1; i<=P.getRowDim(); i++) {
+				IntDoubleHashMap row = P.getRow(i);
+				if(row == null)
+					continue;
+				int r = rBase + i - 1;
+				if(type[r] == DIRICHLET) {
+					row.clear();
+					continue;
+				}
+				int nRemoved = 0;
+				for(int s=0; s<row.capacity(); s++) {
+					int key = row.keyAt(s);
+					if(key == 0)
+						continue;
+					int c = cBase + key - 1;
+					if(type[r] != FREE || type[c] != FREE) {
+						distribute(r, c, row.valueAt(s), add, db);
+						if(nRemoved == removed.length)
+							removed = Arrays.copyOf(removed, 2*nRemoved);
+						removed[nRemoved++] = key;
+					}
+				}
+				//removal shifts the slots, so it is done after the scan
+				for(int k=0; k<nRemoved; k++)
+					row.remove(removed[k]);
+			}
+		} else {
+			for(MatrixEntry e : M) {
+				int r = rBase + e.getRow() - 1;
+				int c = cBase + e.getCol() - 1;
+				if(type[r] != FREE || type[c] != FREE) {
+					distribute(r, c, e.getValue(), add, db);
+					e.setValue(0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 1-based block of the 0-based index <tt>i</tt>, <tt>base[k]</tt> is the first index after block k
+	 */
+	private static int blockOf(int[] base, int i) {
+		int k = 1;
+		while(base[k] <= i)
+			k++;
+		return k;
+	}
+
+	private static void sortRow(int[] cols, double[] vals, int n) {
+		for(int i=1; i<n; i++) {
+			int c = cols[i];
+			double v = vals[i];
+			int j = i-1;
+			while(j >= 0 && cols[j] > c) {
+				cols[j+1] = cols[j];
+				vals[j+1] = vals[j];
+				j--;
+			}
+			cols[j+1] = c;
+			vals[j+1] = v;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package mathLib.fem.assembler;
+
+import mathLib.fem.core.Element;
+
+/**
+ * Numeric element kernel used by <tt>ParallelAssembler</tt>
+ * <p>
+ * A kernel computes the dense local stiffness matrix and local load vector
+ * of one element together with the global indices of its DOFs.
+ * <p>
+ * Kernels may keep scratch state (e.g. quadrature buffers), each assembly
+ * thread obtains its own instance from a <tt>Supplier&lt;ElementKernel&gt;</tt>,
+ * so an implementation only has to be safe against other instances running
+ * at the same time.
+ * <p>
+ * Weak forms with a numeric kernel provide it by <tt>createKernel()</tt>:
+ * <pre>
+ * ParallelAssembler assembler = new ParallelAssembler(mesh, weakForm::createKernel);
+ * </pre>
+ *
+ */
+public interface ElementKernel {
+	/**
+	 * @param e
+	 * @return number of DOFs on element <tt>e</tt>
+	 */
+	int getNumberOfDOFs(Element e);
+
+	/**
+	 * Global indices (1-based) of the DOFs on element <tt>e</tt>
+	 *
+	 * @param e
+	 * @param globalIndex (Output) array of length at least <tt>getNumberOfDOFs(e)</tt>
+	 */
+	void getGlobalIndex(Element e, int[] globalIndex);
+
+	/**
+	 * Compute the local system of element <tt>e</tt>, the order of rows and
+	 * columns is the same as in <tt>getGlobalIndex(e, globalIndex)</tt>
+	 *
+	 * @param e
+	 * @param A (Output) local stiffness matrix, <tt>A[i][j]</tt> for test DOF <tt>i</tt>
+	 *        and trial DOF <tt>j</tt>, zeroed by the caller
+	 * @param b (Output) local load vector, zeroed by the caller
+	 */
+	void assembleLocal(Element e, double[][] A, double[] b);
+}
@@ -0,0 +1,69 @@
+package mathLib.fem.assembler;
+
+import mathLib.fem.core.Mesh;
+
+/**
+ * Matrix-free operator of isotropic linear elasticity <tt>(sigma(u), eps(v))</tt>,
+ * <tt>sigma = lambda*tr(eps)*I + 2*mu*eps</tt>, on quadrilaterals (plane strain or
+ * plane stress) or hexahedra, see <tt>MatrixFreeOperator</tt>
+ * <p>
+ * The displacement components are stored one after another: <tt>u_1</tt> at the
+ * nodes <tt>0..N-1</tt>, <tt>u_2</tt> at <tt>N..2N-1</tt> ...
+ *
+ */
+public class MatrixFreeElasticity extends MatrixFreeOperator {
+	protected double lambda, mu;
+
+	/**
+	 * @param mesh
+	 * @param E Young's modulus
+	 * @param nu Poisson's ratio
+	 * @param planeStress for quadrilaterals, plane strain otherwise
+	 */
+	public MatrixFreeElasticity(Mesh mesh, double E, double nu, boolean planeStress) {
+		super(mesh, mesh.getElementList().at(1).dim());
+		mu = E/(2*(1+nu));
+		if(dim == 2 && planeStress)
+			lambda = E*nu/(1-nu*nu);
+		else
+			lambda = E*nu/((1+nu)*(1-2*nu));
+	}
+
+	/**
+	 * Plane strain or 3D
+	 */
+	public MatrixFreeElasticity(Mesh mesh, double E, double nu) {
+		this(mesh, E, nu, false);
+	}
+
+	@Override
+	protected void flux(Workspace w, int q, double[][] invJ, double JxW) {
+		double[][] gx = w.gx, sx = w.sx;
+		// gx[c][d] = du_c/dx_d
+		double div = 0;
+		for(int c=0; c<dim; c++) {
+			double[][] g = w.grad[c];
+			for(int d=0; d<dim; d++) {
+				double s = 0;
+				for(int r=0; r<dim; r++)
+					s += g[r][q]*invJ[r][d];
+				gx[c][d] = s;
+			}
+			div += gx[c][c];
+		}
+		for(int c=0; c<dim; c++) {
+			for(int d=0; d<dim; d++)
+				sx[c][d] = JxW*mu*(gx[c][d] + gx[d][c]);
+			sx[c][c] += JxW*lambda*div;
+		}
+		for(int c=0; c<dim; c++) {
+			double[][] f = w.flux[c];
+			for(int r=0; r<dim; r++) {
+				double s = 0;
+				for(int d=0; d<dim; d++)
+					s += sx[c][d]*invJ[r][d];
+				f[r][q] = s;
+			}
+		}
+	}
+}
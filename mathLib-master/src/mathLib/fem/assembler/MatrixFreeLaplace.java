@@ -0,0 +1,49 @@
+package mathLib.fem.assembler;
+
+import mathLib.fem.core.Mesh;
+
+/**
+ * Matrix-free operator of <tt>(k*grad(u), grad(v)) + (c*u, v)</tt> with constant
+ * coefficients on quadrilaterals or hexahedra, see <tt>MatrixFreeOperator</tt>
+ *
+ */
+public class MatrixFreeLaplace extends MatrixFreeOperator {
+	protected double k, c;
+
+	/**
+	 * @param mesh
+	 * @param k diffusion coefficient
+	 * @param c mass coefficient (0 for the Laplacian)
+	 */
+	public MatrixFreeLaplace(Mesh mesh, double k, double c) {
+		super(mesh, 1);
+		this.k = k;
+		this.c = c;
+	}
+
+	@Override
+	protected boolean needsValues() {
+		return c != 0.0;
+	}
+
+	@Override
+	protected void flux(Workspace w, int q, double[][] invJ, double JxW) {
+		double[][] g = w.grad[0], f = w.flux[0];
+		double[] gx = w.gx[0];
+		// physical gradient, then back to the reference directions
+		for(int d=0; d<dim; d++) {
+			double s = 0;
+			for(int r=0; r<dim; r++)
+				s += g[r][q]*invJ[r][d];
+			gx[d] = k*JxW*s;
+		}
+		for(int r=0; r<dim; r++) {
+			double s = 0;
+			for(int d=0; d<dim; d++)
+				s += invJ[r][d]*gx[d];
+			f[r][q] = s;
+		}
+		if(c != 0.0)
+			w.fval[0][q] = c*JxW*w.val[0][q];
+	}
+}
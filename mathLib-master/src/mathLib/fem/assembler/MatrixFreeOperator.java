@@ -0,0 +1,667 @@
+package mathLib.fem.assembler;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mathLib.fem.core.Element;
+import mathLib.fem.core.Mesh;
+import mathLib.fem.core.Node;
+import mathLib.fem.core.NodeType;
+import mathLib.fem.shapefun.ShapeFunctionTable;
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.container.ElementList;
+import mathLib.matrix.algebra.FullVector;
+import mathLib.matrix.algebra.intf.AlgebraMatrix;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+
+/**
+ * Matrix-free operator of a bilinear form on a mesh of quadrilaterals
+ * (<tt>SFBilinearLocal2D</tt>) or hexahedra (<tt>SFTrilinearLocal3D</tt>)
+ * <p>
+ * No global matrix is stored: <tt>mult()</tt> gathers the nodal values of each element,
+ * evaluates their reference gradients at the tensor product Gauss points by sum factorization
+ * (one sweep of the 1D basis per direction, <tt>O(n^(d+1))</tt> instead of <tt>O(n^(2d))</tt>
+ * for a dense local matrix), applies the pointwise flux of the subclass and integrates it
+ * against the test gradients by the transposed sweeps. The Jacobians are evaluated the same
+ * way from the node coordinates and by default kept per Gauss point, see <tt>setGeometryCache()</tt>.
+ * <p>
+ * No assembly is needed and the memory does not grow with the couplings of the DOFs
+ * (a 3D elasticity matrix has 81 non-zeros per row), but for these low order elements a
+ * product costs several times more than with the assembled matrix.
+ * <p>
+ * The DOFs of a component are the nodes of the mesh in global order and the components
+ * are stored one after another (as <tt>FEBilinearRectangleVector</tt>), so the operator
+ * can be used in place of the assembled matrix, e.g. in <tt>Solver.solveCG()</tt>.
+ * The elements are colored as in <tt>ParallelAssembler</tt> and the elements of a color
+ * are processed in parallel on the common <tt>ForkJoinPool</tt>.
+ * <p>
+ * With <tt>setDirichlet()</tt> the constrained rows and columns are replaced by the identity,
+ * which keeps the operator symmetric.
+ *
+ * <pre>
+ * MatrixFreeLaplace A = new MatrixFreeLaplace(mesh, 1.0, 0.0);
+ * A.setDirichlet();
+ * A.liftDirichlet(b, g);
+ * Solver.solveCG(A, b, x, new JacobiPreconditioner(A.getDiagonal(new double[n])));
+ * </pre>
+ *
+ */
+public abstract class MatrixFreeOperator implements AlgebraMatrix {
+	/**
+	 * Number of elements below which <tt>mult()</tt> runs serially
+	 */
+	public static int defaultParallelThreshold = 2000;
+
+	protected int dim;
+	protected int nComponents;
+	protected int nNodes;
+	protected int nElements;
+	protected int nDOFs;
+
+	/**
+	 * 1D basis size and number of Gauss points per direction
+	 */
+	protected int n1, nq1;
+	/**
+	 * Nodes (and Gauss points) per element
+	 */
+	protected int nv, nq;
+	/**
+	 * 0-based node indices of element <tt>e</tt> in tensor order (first direction fastest)
+	 * <tt>elemNode[e*nv .. (e+1)*nv-1]</tt>
+	 */
+	protected int[] elemNode;
+	protected double[] coords;
+	protected Node[] nodes;
+	/**
+	 * <tt>JxW</tt> and <tt>invJ</tt> (row major) at the Gauss points of the elements,
+	 * <tt>null</tt> if they are computed on the fly
+	 */
+	protected double[] geometry = null;
+	protected boolean cacheGeometry = true;
+
+	/**
+	 * 1D values <tt>B[q*n1+i]</tt> and derivatives <tt>D[q*n1+i]</tt> of the basis at the Gauss
+	 * points, the transposed ones <tt>Bt[i*nq1+q]</tt> for the integration
+	 */
+	protected double[] B, D, Bt, Dt;
+	protected double[] weights;
+
+	protected boolean[] constrained = null;
+	protected SparsityPattern coloring;
+	protected int parallelThreshold = defaultParallelThreshold;
+	protected int grainSize = 64;
+	protected ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace());
+
+	/**
+	 * @param mesh quadrilaterals or hexahedra, all the elements of the same type
+	 * @param nComponents number of unknowns per node
+	 */
+	public MatrixFreeOperator(Mesh mesh, int nComponents) {
+		this.nComponents = nComponents;
+		ElementList eList = mesh.getElementList();
+		nElements = eList.size();
+		if(nElements == 0)
+			throw new FutureyeException("Empty mesh");
+		Element e1 = eList.at(1);
+		dim = e1.dim();
+		if((dim != 2 && dim != 3) || e1.nodes.size() != (1 << dim))
+			throw new FutureyeException("Matrix-free operator: quadrilaterals or hexahedra only");
+		nNodes = mesh.getNodeList().size();
+		nDOFs = nComponents*nNodes;
+
+		ShapeFunctionTable.Cell cell = dim == 2 ?
+				ShapeFunctionTable.Cell.RECTANGLE : ShapeFunctionTable.Cell.HEXAHEDRON;
+		double[][] vt = ShapeFunctionTable.referenceVertices(cell);
+		nv = vt.length;
+		// vertex j of the element is tensor node perm[j]
+		int[] perm = new int[nv];
+		for(int j=0; j<nv; j++)
+			for(int k=0; k<dim; k++)
+				if(vt[j][k] > 0)
+					perm[j] += 1 << k;
+
+		elemNode = new int[nElements*nv];
+		int[] elemPtr = new int[nElements+1];
+		for(int e=0; e<nElements; e++) {
+			Element ele = eList.at(e+1);
+			if(ele.dim() != dim || ele.nodes.size() != nv)
+				throw new FutureyeException("Matrix-free operator: mixed element types");
+			for(int j=0; j<nv; j++)
+				elemNode[e*nv+perm[j]] = ele.nodes.at(j+1).globalIndex-1;
+			elemPtr[e+1] = (e+1)*nv;
+		}
+		coloring = SparsityPattern.connectivity(nNodes, elemPtr, elemNode);
+
+		nodes = new Node[nNodes];
+		for(int i=0; i<nNodes; i++)
+			nodes[i] = mesh.getNodeList().at(i+1);
+		coords = new double[nNodes*dim];
+		updateCoordinates();
+		setQuadrature(2);
+	}
+
+	/**
+	 * Read the node coordinates again, e.g. after the mesh has been moved
+	 */
+	public void updateCoordinates() {
+		for(int i=0; i<nNodes; i++)
+			for(int k=0; k<dim; k++)
+				coords[i*dim+k] = nodes[i].coord(k+1);
+		geometry = null;
+	}
+
+	/**
+	 * Keep the inverse Jacobians and the integration weights of all the Gauss points
+	 * (default) or evaluate them from the node coordinates in each <tt>mult()</tt>.
+	 * The cache takes <tt>(d*d+1)*2^d</tt> doubles per element, without it only the
+	 * mesh and the vectors are stored but the Jacobians cost most of the element work.
+	 *
+	 * @param cache
+	 */
+	public void setGeometryCache(boolean cache) {
+		this.cacheGeometry = cache;
+		if(!cache)
+			geometry = null;
+	}
+
+	protected void buildGeometry() {
+		int stride = dim*dim+1;
+		double[] g = new double[nElements*nq*stride];
+		Workspace w = workspaces.get();
+		for(int e=0; e<nElements; e++) {
+			w.jacobian(e);
+			for(int q=0; q<nq; q++) {
+				int pos = (e*nq+q)*stride;
+				g[pos++] = w.geometry(q);
+				for(int k=0; k<dim; k++)
+					for(int d=0; d<dim; d++)
+						g[pos++] = w.invJ[k][d];
+			}
+		}
+		geometry = g;
+	}
+
+	/**
+	 * Number of Gauss points per direction, 2 by default (exact on parallelograms)
+	 *
+	 * @param nPoints 2 or 3
+	 */
+	public void setQuadrature(int nPoints) {
+		double[] r, w;
+		if(nPoints == 2) {
+			r = new double[] {-1/Math.sqrt(3), 1/Math.sqrt(3)};
+			w = new double[] {1, 1};
+		} else if(nPoints == 3) {
+			r = new double[] {-Math.sqrt(0.6), 0, Math.sqrt(0.6)};
+			w = new double[] {5.0/9, 8.0/9, 5.0/9};
+		} else
+			throw new FutureyeException("nPoints="+nPoints+" must be 2 or 3");
+		n1 = 2;
+		nq1 = nPoints;
+		B = new double[nq1*n1];
+		D = new double[nq1*n1];
+		Bt = new double[n1*nq1];
+		Dt = new double[n1*nq1];
+		for(int q=0; q<nq1; q++) {
+			B[q*n1] = (1-r[q])/2; D[q*n1] = -0.5;
+			B[q*n1+1] = (1+r[q])/2; D[q*n1+1] = 0.5;
+			for(int i=0; i<n1; i++) {
+				Bt[i*nq1+q] = B[q*n1+i];
+				Dt[i*nq1+q] = D[q*n1+i];
+			}
+		}
+		nq = dim == 2 ? nq1*nq1 : nq1*nq1*nq1;
+		weights = new double[nq];
+		for(int q=0; q<nq; q++) {
+			weights[q] = w[q%nq1]*w[(q/nq1)%nq1];
+			if(dim == 3)
+				weights[q] *= w[q/(nq1*nq1)];
+		}
+		workspaces = ThreadLocal.withInitial(() -> new Workspace());
+		geometry = null;
+	}
+
+	/**
+	 * Replace the rows and columns of the nodes with <tt>NodeType.Dirichlet</tt>
+	 * (of the component for vector problems) by the identity
+	 */
+	public void setDirichlet() {
+		boolean[] mask = new boolean[nDOFs];
+		for(int c=0; c<nComponents; c++)
+			for(int i=0; i<nNodes; i++) {
+				NodeType nt = nComponents == 1 ?
+						nodes[i].getNodeType() : nodes[i].getNodeType(c+1);
+				mask[c*nNodes+i] = (nt == NodeType.Dirichlet);
+			}
+		setDirichlet(mask);
+	}
+
+	/**
+	 * @param mask constrained DOFs (0-based), <tt>null</tt> for none
+	 */
+	public void setDirichlet(boolean[] mask) {
+		if(mask != null && mask.length != nDOFs)
+			throw new FutureyeException("mask.length="+mask.length+" != "+nDOFs);
+		this.constrained = mask;
+	}
+
+	/**
+	 * Right hand side of the constrained system: <tt>b = b - A*g</tt> on the free rows, with
+	 * <tt>g</tt> restricted to the constrained DOFs, and <tt>b = g</tt> on the constrained rows
+	 *
+	 * @param b (Input/Output)
+	 * @param g Dirichlet values, the free entries are ignored
+	 */
+	public void liftDirichlet(AlgebraVector b, AlgebraVector g) {
+		if(constrained == null)
+			return;
+		boolean[] mask = constrained;
+		double[] gData = g.getData();
+		double[] bData = b.getData();
+		FullVector gD = new FullVector(nDOFs);
+		for(int i=0; i<nDOFs; i++)
+			if(mask[i])
+				gD.getData()[i] = gData[i];
+		FullVector r = new FullVector(nDOFs);
+		constrained = null;
+		try {
+			mult(gD, r);
+		} finally {
+			constrained = mask;
+		}
+		for(int i=0; i<nDOFs; i++)
+			bData[i] = mask[i] ? gData[i] : bData[i] - r.getData()[i];
+	}
+
+	/**
+	 * Set the number of elements below which <tt>mult()</tt> runs serially.
+	 * Use <tt>Integer.MAX_VALUE</tt> to disable multithreading.
+	 *
+	 * @param nElements
+	 * @return <tt>this</tt> for convenience only
+	 */
+	public MatrixFreeOperator setParallelThreshold(int nElements) {
+		this.parallelThreshold = nElements;
+		return this;
+	}
+
+	/**
+	 * Pointwise flux at Gauss point <tt>q</tt> of the workspace: from the reference gradients
+	 * <tt>w.grad[c][k][q]</tt> (and the values <tt>w.val[c][q]</tt> if <tt>needsValues()</tt>)
+	 * compute <tt>w.flux[c][k][q]</tt> (and <tt>w.fval[c][q]</tt>) such that the local result is
+	 * <tt>sum_q flux[c][k][q]*dv/dr_k + fval[c][q]*v</tt>.
+	 *
+	 * @param w
+	 * @param q
+	 * @param invJ inverse Jacobian <tt>dr_k/dx_d = invJ[k][d]</tt>
+	 * @param JxW quadrature weight times |det(J)|
+	 */
+	protected abstract void flux(Workspace w, int q, double[][] invJ, double JxW);
+
+	/**
+	 * Whether <tt>flux()</tt> uses the values of the unknowns (e.g. mass terms)
+	 */
+	protected boolean needsValues() {
+		return false;
+	}
+
+	/**
+	 * Per thread element buffers
+	 */
+	protected class Workspace {
+		public final double[][] u = new double[nComponents][nv];
+		public final double[][] out = new double[nComponents][nv];
+		public final double[][] x = new double[dim][nv];
+		public final double[][][] grad = new double[nComponents][dim][nq];
+		public final double[][][] gradX = new double[dim][dim][nq];
+		public final double[][] val = new double[nComponents][nq];
+		public final double[][][] flux = new double[nComponents][dim][nq];
+		public final double[][] fval = new double[nComponents][nq];
+		/**
+		 * Scratch for the physical gradients and fluxes at one point
+		 */
+		public final double[][] gx = new double[nComponents][dim];
+		public final double[][] sx = new double[nComponents][dim];
+		final double[][] invJ = new double[dim][dim];
+		final double[][] J = new double[dim][dim];
+		final double[][] t = new double[5][Math.max(n1, nq1)*Math.max(n1, nq1)*Math.max(n1, nq1)];
+
+		/**
+		 * Reference gradient of the nodal values <tt>in</tt> at the Gauss points: one 1D sweep
+		 * with <tt>B</tt> and <tt>D</tt> per direction, the partial results are shared
+		 */
+		void gradient(double[] in, double[][] g) {
+			int n = n1, m = nq1;
+			double[] tB = t[0], tD = t[1];
+			int post = dim == 2 ? n : n*n;
+			sweep(B, m, n, 1, post, in, tB, false);
+			sweep(D, m, n, 1, post, in, tD, false);
+			if(dim == 2) {
+				sweep(B, m, n, m, 1, tD, g[0], false);
+				sweep(D, m, n, m, 1, tB, g[1], false);
+				return;
+			}
+			double[] tBB = t[2], tDB = t[3], tBD = t[4];
+			sweep(B, m, n, m, n, tB, tBB, false);
+			sweep(B, m, n, m, n, tD, tDB, false);
+			sweep(D, m, n, m, n, tB, tBD, false);
+			sweep(B, m, n, m*m, 1, tDB, g[0], false);
+			sweep(B, m, n, m*m, 1, tBD, g[1], false);
+			sweep(D, m, n, m*m, 1, tBB, g[2], false);
+		}
+
+		/**
+		 * Values of the nodal values <tt>in</tt> at the Gauss points
+		 */
+		void interpolate(double[] in, double[] v) {
+			int n = n1, m = nq1;
+			if(dim == 2) {
+				sweep(B, m, n, 1, n, in, t[0], false);
+				sweep(B, m, n, m, 1, t[0], v, false);
+				return;
+			}
+			sweep(B, m, n, 1, n*n, in, t[0], false);
+			sweep(B, m, n, m, n, t[0], t[1], false);
+			sweep(B, m, n, m*m, 1, t[1], v, false);
+		}
+
+		/**
+		 * <tt>out (+)= sum_q f[k][q]*dN/dr_k(q)</tt>, the transposed sweeps of <tt>gradient()</tt>
+		 */
+		void integrateGradient(double[][] f, double[] out, boolean add) {
+			int n = nq1, m = n1;
+			if(dim == 2) {
+				double[] a0 = t[0], a1 = t[1];
+				sweep(Dt, m, n, 1, n, f[0], a0, false);
+				sweep(Bt, m, n, 1, n, f[1], a1, false);
+				sweep(Bt, m, n, m, 1, a0, out, add);
+				sweep(Dt, m, n, m, 1, a1, out, true);
+				return;
+			}
+			double[] a0 = t[0], a1 = t[1], a2 = t[2], b01 = t[3], b2 = t[4];
+			sweep(Dt, m, n, 1, n*n, f[0], a0, false);
+			sweep(Bt, m, n, 1, n*n, f[1], a1, false);
+			sweep(Bt, m, n, 1, n*n, f[2], a2, false);
+			sweep(Bt, m, n, m, n, a0, b01, false);
+			sweep(Dt, m, n, m, n, a1, b01, true);
+			sweep(Bt, m, n, m, n, a2, b2, false);
+			sweep(Bt, m, n, m*m, 1, b01, out, add);
+			sweep(Dt, m, n, m*m, 1, b2, out, true);
+		}
+
+		/**
+		 * <tt>out += sum_q f[q]*N(q)</tt>
+		 */
+		void integrateValue(double[] f, double[] out) {
+			int n = nq1, m = n1;
+			if(dim == 2) {
+				sweep(Bt, m, n, 1, n, f, t[0], false);
+				sweep(Bt, m, n, m, 1, t[0], out, true);
+				return;
+			}
+			sweep(Bt, m, n, 1, n*n, f, t[0], false);
+			sweep(Bt, m, n, m, n, t[0], t[1], false);
+			sweep(Bt, m, n, m*m, 1, t[1], out, true);
+		}
+
+		/**
+		 * Reference gradients of the coordinates of element <tt>e</tt>
+		 */
+		void jacobian(int e) {
+			for(int k=0; k<dim; k++) {
+				for(int j=0; j<nv; j++)
+					x[k][j] = coords[elemNode[e*nv+j]*dim+k];
+				gradient(x[k], gradX[k]);
+			}
+		}
+
+		/**
+		 * <tt>invJ</tt> at Gauss point q from <tt>gradX</tt>
+		 *
+		 * @return JxW
+		 */
+		double geometry(int q) {
+			for(int d=0; d<dim; d++)
+				for(int k=0; k<dim; k++)
+					J[d][k] = gradX[d][k][q];
+			return weights[q]*Math.abs(invert(J, invJ));
+		}
+
+		/**
+		 * Local result of element <tt>e</tt> in <tt>out</tt> from the nodal values in <tt>u</tt>
+		 */
+		void apply(int e) {
+			double[] g = geometry;
+			if(g == null)
+				jacobian(e);
+			boolean values = needsValues();
+			for(int c=0; c<nComponents; c++) {
+				gradient(u[c], grad[c]);
+				if(values)
+					interpolate(u[c], val[c]);
+			}
+			int stride = dim*dim+1;
+			for(int q=0; q<nq; q++) {
+				double JxW;
+				if(g == null)
+					JxW = geometry(q);
+				else {
+					int pos = (e*nq+q)*stride;
+					JxW = g[pos++];
+					for(int k=0; k<dim; k++)
+						for(int d=0; d<dim; d++)
+							invJ[k][d] = g[pos++];
+				}
+				flux(this, q, invJ, JxW);
+			}
+			for(int c=0; c<nComponents; c++) {
+				integrateGradient(flux[c], out[c], false);
+				if(values)
+					integrateValue(fval[c], out[c]);
+			}
+		}
+
+		void multAdd(int e, double alpha, double[] xData, double[] yData) {
+			int base = e*nv;
+			for(int c=0; c<nComponents; c++) {
+				int off = c*nNodes;
+				for(int j=0; j<nv; j++) {
+					int i = off + elemNode[base+j];
+					u[c][j] = (constrained != null && constrained[i]) ? 0.0 : xData[i];
+				}
+			}
+			apply(e);
+			for(int c=0; c<nComponents; c++) {
+				int off = c*nNodes;
+				for(int j=0; j<nv; j++) {
+					int i = off + elemNode[base+j];
+					if(constrained == null || !constrained[i])
+						yData[i] += alpha*out[c][j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * 1D sweep <tt>out (+)= M in</tt> along one direction of a tensor, <tt>M</tt> is <tt>m x n</tt>
+	 * (row major), <tt>pre</tt> and <tt>post</tt> are the sizes of the faster and the slower
+	 * directions
+	 */
+	protected static void sweep(double[] M, int m, int n, int pre, int post,
+			double[] in, double[] out, boolean add) {
+		for(int p=0; p<post; p++) {
+			int ib = p*n*pre;
+			for(int a=0; a<m; a++) {
+				int ob = (p*m+a)*pre;
+				int mb = a*n;
+				for(int r=0; r<pre; r++) {
+					double s = 0;
+					for(int i=0; i<n; i++)
+						s += M[mb+i]*in[ib+i*pre+r];
+					if(add)
+						out[ob+r] += s;
+					else
+						out[ob+r] = s;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inverse of the 2x2 or 3x3 matrix J
+	 *
+	 * @return det(J)
+	 */
+	protected static double invert(double[][] J, double[][] invJ) {
+		if(J.length == 2) {
+			double det = J[0][0]*J[1][1] - J[0][1]*J[1][0];
+			invJ[0][0] = J[1][1]/det;  invJ[0][1] = -J[0][1]/det;
+			invJ[1][0] = -J[1][0]/det; invJ[1][1] = J[0][0]/det;
+			return det;
+		}
+		double c00 = J[1][1]*J[2][2] - J[1][2]*J[2][1];
+		double c01 = J[1][2]*J[2][0] - J[1][0]*J[2][2];
+		double c02 = J[1][0]*J[2][1] - J[1][1]*J[2][0];
+		double det = J[0][0]*c00 + J[0][1]*c01 + J[0][2]*c02;
+		invJ[0][0] = c00/det;
+		invJ[1][0] = c01/det;
+		invJ[2][0] = c02/det;
+		invJ[0][1] = (J[0][2]*J[2][1] - J[0][1]*J[2][2])/det;
+		invJ[1][1] = (J[0][0]*J[2][2] - J[0][2]*J[2][0])/det;
+		invJ[2][1] = (J[0][1]*J[2][0] - J[0][0]*J[2][1])/det;
+		invJ[0][2] = (J[0][1]*J[1][2] - J[0][2]*J[1][1])/det;
+		invJ[1][2] = (J[0][2]*J[1][0] - J[0][0]*J[1][2])/det;
+		invJ[2][2] = (J[0][0]*J[1][1] - J[0][1]*J[1][0])/det;
+		return det;
+	}
+
+	@Override
+	public int getRowDim() {
+		return nDOFs;
+	}
+
+	@Override
+	public int getColDim() {
+		return nDOFs;
+	}
+
+	@Override
+	public void mult(AlgebraVector x, AlgebraVector y) {
+		multAdd(1.0, x, 0.0, y);
+	}
+
+	/**
+	 * <code>y = alpha*A*x + beta*y</code>
+	 */
+	@Override
+	public void multAdd(double alpha, AlgebraVector x, double beta, AlgebraVector y) {
+		double[] xData = x.getData();
+		double[] yData = y.getData();
+		if(xData == yData)
+			throw new FutureyeException("x and y must be different vectors");
+		if(cacheGeometry && geometry == null)
+			buildGeometry();
+		if(beta == 0.0)
+			Arrays.fill(yData, 0, nDOFs, 0.0);
+		else if(beta != 1.0)
+			for(int i=0; i<nDOFs; i++)
+				yData[i] *= beta;
+		if(nElements < parallelThreshold || ForkJoinPool.getCommonPoolParallelism() < 2) {
+			Workspace w = workspaces.get();
+			for(int e=0; e<nElements; e++)
+				w.multAdd(e, alpha, xData, yData);
+		} else {
+			int[] colorPtr = coloring.getColorPtr();
+			int[] colorElem = coloring.getColorElement();
+			for(int c=0; c<coloring.getNumberOfColors(); c++)
+				ForkJoinPool.commonPool().invoke(
+						new ColorTask(colorElem, colorPtr[c], colorPtr[c+1], alpha, xData, yData));
+		}
+		if(constrained != null)
+			for(int i=0; i<nDOFs; i++)
+				if(constrained[i])
+					yData[i] += alpha*xData[i];
+	}
+
+	@SuppressWarnings("serial")
+	private class ColorTask extends RecursiveAction {
+		final int[] colorElem;
+		final int begin, end;
+		final double alpha;
+		final double[] xData, yData;
+
+		ColorTask(int[] colorElem, int begin, int end, double alpha, double[] xData, double[] yData) {
+			this.colorElem = colorElem;
+			this.begin = begin;
+			this.end = end;
+			this.alpha = alpha;
+			this.xData = xData;
+			this.yData = yData;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - begin <= grainSize) {
+				Workspace w = workspaces.get();
+				for(int k=begin; k<end; k++)
+					w.multAdd(colorElem[k], alpha, xData, yData);
+			} else {
+				int mid = (begin + end) >>> 1;
+				invokeAll(new ColorTask(colorElem, begin, mid, alpha, xData, yData),
+						new ColorTask(colorElem, mid, end, alpha, xData, yData));
+			}
+		}
+	}
+
+	/**
+	 * Diagonal of the operator, one element application per local DOF
+	 * (e.g. for <tt>JacobiPreconditioner</tt>)
+	 *
+	 * @param diag (Output)
+	 * @return <tt>diag</tt>
+	 */
+	public double[] getDiagonal(double[] diag) {
+		if(cacheGeometry && geometry == null)
+			buildGeometry();
+		Arrays.fill(diag, 0, nDOFs, 0.0);
+		Workspace w = workspaces.get();
+		for(int e=0; e<nElements; e++) {
+			int base = e*nv;
+			for(int c=0; c<nComponents; c++) {
+				for(int j=0; j<nv; j++) {
+					for(int cc=0; cc<nComponents; cc++)
+						Arrays.fill(w.u[cc], 0.0);
+					w.u[c][j] = 1.0;
+					w.apply(e);
+					diag[c*nNodes+elemNode[base+j]] += w.out[c][j];
+				}
+			}
+		}
+		if(constrained != null)
+			for(int i=0; i<nDOFs; i++)
+				if(constrained[i])
+					diag[i] = 1.0;
+		return diag;
+	}
+
+	/**
+	 * The bilinear forms are symmetric
+	 */
+	@Override
+	public AlgebraMatrix getTrans() {
+		return this;
+	}
+
+	@Override
+	public void mult(AlgebraMatrix B, AlgebraMatrix C) {
+		throw new UnsupportedOperationException("Matrix-free operator");
+	}
+
+	@Override
+	public void print() {
+		System.out.println(getClass().getSimpleName()+"("+nDOFs+"x"+nDOFs+", elements="+
+				nElements+", components="+nComponents+", Gauss points="+nq+")");
+	}
+}
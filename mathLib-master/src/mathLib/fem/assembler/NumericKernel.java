@@ -0,0 +1,381 @@
+package mathLib.fem.assembler;
+
+import java.util.HashMap;
+
+import mathLib.fem.core.DOF;
+import mathLib.fem.core.DOFOrder;
+import mathLib.fem.core.Element;
+import mathLib.fem.core.MeshGeometry;
+import mathLib.fem.core.Node;
+import mathLib.fem.core.NodeType;
+import mathLib.fem.core.Vertex;
+import mathLib.fem.shapefun.ShapeFunctionTable;
+import mathLib.fem.shapefun.ShapeFunctionTable.Cell;
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.container.DOFList;
+import mathLib.fem.util.container.ElementList;
+import mathLib.fem.util.container.VertexList;
+import mathLib.func.symbolic.Variable;
+import mathLib.func.symbolic.intf.MathFunc;
+
+/**
+ * Base class of the numeric element kernels: the shape functions are taken from the
+ * tabulated <tt>ShapeFunctionTable</tt>s and the Jacobian of the (iso-parametric, linear
+ * or multi-linear) element map is computed at each quadrature point, so a subclass
+ * fills the whole local matrix in one pass over the quadrature points instead of
+ * building and integrating one symbolic expression per pair of DOFs.
+ * <p>
+ * Before <tt>assembleDomain()</tt> is called the fields below describe element <tt>e</tt>:
+ * <blockquote><pre>
+ * nDOFs          number of DOFs (rows of the local matrix, DOFOrder.NEFV as WeakFormOldKernel)
+ * component[a]   VVF component (1-based) of DOF a
+ * nq, JxW[q]     quadrature points and weight times |det J|
+ * phi[q][a]      value of the shape function of DOF a at point q
+ * dphi[q][a][d]  derivative with respect to x_d
+ * </pre></blockquote>
+ * and before each call of <tt>assembleBorder()</tt> (if <tt>hasBorder()</tt>) the border fields
+ * <tt>nbDOFs, bRow, bComponent, nbq, bJxW, bPhi</tt> describe the DOFs of the border element
+ * whose component is of Neumann/Robin type, their rows in the local matrix are <tt>bRow[i]</tt>.
+ * <p>
+ * Coefficients are interpolated from their values at the vertices by <tt>interpolate()</tt>,
+ * as <tt>Utils.interpolateOnElement()</tt> does for the symbolic weak forms.
+ * <p>
+ * The shape functions of a component are identified by the number of DOFs of the component
+ * on the element: (2,3) on lines, (1,3,6) on triangles, (1,4) on rectangles and tetrahedra,
+ * (1,8) on hexahedra, numbered in the order of their local indices.
+ *
+ */
+public abstract class NumericKernel implements ElementKernel {
+	protected int dim;
+	protected int nDOFs;
+	protected int[] component = new int[0];
+	protected int nq;
+	protected double[] JxW = new double[0];
+	protected double[][] phi = new double[1][0];
+	protected double[][][] dphi = new double[1][0][0];
+
+	protected int nbDOFs;
+	protected int[] bRow = new int[0];
+	protected int[] bComponent = new int[0];
+	protected int nbq;
+	protected double[] bJxW = new double[0];
+	protected double[][] bPhi = new double[0][0];
+
+	// basis index of each DOF and the table of its component
+	protected int[] basis = new int[0];
+	protected ShapeFunctionTable[] table = new ShapeFunctionTable[0];
+
+	// vertices and geometry basis values used by interpolate()
+	protected VertexList geoVertices;
+	protected Element geoElement;
+	protected double[][] geoValues;
+	protected double[] vertexValues = new double[8];
+
+	protected double[][] J = new double[3][3];
+	protected double[][] invJ = new double[3][3];
+	protected HashMap<String, FaceRule> faceRules = new HashMap<String, FaceRule>();
+	protected MeshGeometry geometry;
+
+	/**
+	 * Integrate the domain terms on the current element
+	 *
+	 * @param A (Output) local matrix, <tt>A[test][trial]</tt>
+	 * @param b (Output) local load vector
+	 */
+	protected abstract void assembleDomain(double[][] A, double[] b);
+
+	/**
+	 * Integrate the terms of the current border element, nothing by default
+	 *
+	 * @param A (Output) local matrix of the element, use the rows <tt>bRow[i]</tt>
+	 * @param b (Output) local load vector of the element
+	 */
+	protected void assembleBorder(double[][] A, double[] b) {
+	}
+
+	/**
+	 * @return true if there are border integrals, i.e. <tt>assembleBorder()</tt> must be called
+	 */
+	protected boolean hasBorder() {
+		return false;
+	}
+
+	@Override
+	public int getNumberOfDOFs(Element e) {
+		return e.getAllDOFList(DOFOrder.NEFV).size();
+	}
+
+	@Override
+	public void getGlobalIndex(Element e, int[] globalIndex) {
+		DOFList DOFs = e.getAllDOFList(DOFOrder.NEFV);
+		for(int i=1;i<=DOFs.size();i++)
+			globalIndex[i-1] = DOFs.at(i).getGlobalIndex();
+	}
+
+	@Override
+	public void assembleLocal(Element e, double[][] A, double[] b) {
+		DOFList DOFs = e.getAllDOFList(DOFOrder.NEFV);
+		dim = e.dim();
+		Cell cell = getCell(dim, e.vertices().size());
+		prepareDOFs(cell, DOFs);
+		ShapeFunctionTable geo = ShapeFunctionTable.get(cell, e.vertices().size());
+
+		nq = geo.nPoints;
+		if(JxW.length < nq || phi[0].length < nDOFs || dphi[0][0].length != dim) {
+			JxW = new double[nq];
+			phi = new double[nq][nDOFs];
+			dphi = new double[nq][nDOFs][dim];
+		}
+		VertexList vertices = e.vertices();
+		int index = geometry == null ? -1 : geometry.indexOf(e);
+		for(int q=0;q<nq;q++) {
+			double det = index < 0 ? jacobian(vertices, geo.gradients[q]) :
+				geometry.getJacobian(index, q, invJ);
+			JxW[q] = geo.weights[q]*Math.abs(det);
+			for(int a=0;a<nDOFs;a++) {
+				ShapeFunctionTable t = table[a];
+				int i = basis[a];
+				phi[q][a] = t.values[q][i];
+				double[] dN = t.gradients[q][i];
+				for(int d=0;d<dim;d++) {
+					double s = 0.0;
+					for(int k=0;k<dim;k++)
+						s += dN[k]*invJ[k][d];
+					dphi[q][a][d] = s;
+				}
+			}
+		}
+		geoElement = e;
+		geoVertices = vertices;
+		geoValues = geo.values;
+		assembleDomain(A, b);
+
+		if(!hasBorder() || !e.isBorderElement())
+			return;
+		ElementList beList = e.getBorderElements();
+		for(int n=1;n<=beList.size();n++) {
+			Element be = beList.at(n);
+			prepareBorder(e, cell, DOFs, be);
+			if(nbDOFs > 0)
+				assembleBorder(A, b);
+		}
+	}
+
+	/**
+	 * Take the Jacobians of the elements from <tt>geometry</tt> instead of computing
+	 * them on each assembly, the elements not in <tt>geometry</tt> are computed as before.
+	 * The inverse Jacobian is then in <tt>invJ</tt>, <tt>J</tt> is not set.
+	 *
+	 * @param geometry <tt>Mesh.getGeometry()</tt> of the assembled mesh, or null
+	 */
+	public void setGeometry(MeshGeometry geometry) {
+		this.geometry = geometry;
+	}
+
+	/**
+	 * Values of <tt>f</tt> at the quadrature points of the current element (or border element),
+	 * interpolated from the values at the vertices. A <tt>null</tt> function is zero.
+	 *
+	 * @param f
+	 * @param fq (Output) array of length at least <tt>nq</tt> (<tt>nbq</tt>)
+	 */
+	protected void interpolate(MathFunc f, double[] fq) {
+		int n = geoValues.length;
+		if(f == null) {
+			for(int q=0;q<n;q++)
+				fq[q] = 0.0;
+			return;
+		}
+		int nv = geoVertices.size();
+		if(vertexValues.length < nv)
+			vertexValues = new double[nv];
+		for(int v=1;v<=nv;v++) {
+			Vertex vt = geoVertices.at(v);
+			Node node = vt.globalNode();
+			int index = node.globalIndex;
+			DOFList vDOFs = geoElement.getNodeDOFList(vt.localNode().localIndex);
+			if(vDOFs != null && vDOFs.size() > 0)
+				index = vDOFs.at(1).getGlobalIndex();
+			Variable var = Variable.createFrom(f, vt, index);
+			var.setElement(geoElement);
+			vertexValues[v-1] = f.apply(var);
+		}
+		for(int q=0;q<n;q++) {
+			double s = 0.0;
+			for(int v=0;v<nv;v++)
+				s += geoValues[q][v]*vertexValues[v];
+			fq[q] = s;
+		}
+	}
+
+	protected static Cell getCell(int dim, int nVertices) {
+		Cell cell = ShapeFunctionTable.getCell(dim, nVertices);
+		if(cell == null)
+			throw new FutureyeException("Unsupported element: dim="+dim+", vertices="+nVertices);
+		return cell;
+	}
+
+	/**
+	 * Component, basis index and table of each DOF
+	 */
+	protected void prepareDOFs(Cell cell, DOFList DOFs) {
+		nDOFs = DOFs.size();
+		if(component.length < nDOFs) {
+			component = new int[nDOFs];
+			basis = new int[nDOFs];
+			table = new ShapeFunctionTable[nDOFs];
+		}
+		for(int a=0;a<nDOFs;a++) {
+			DOF dof = DOFs.at(a+1);
+			int c = dof.getVVFComponent();
+			int li = dof.getLocalIndex();
+			int rank = 0, count = 0;
+			for(int k=1;k<=nDOFs;k++) {
+				DOF other = DOFs.at(k);
+				if(other.getVVFComponent() != c)
+					continue;
+				count++;
+				if(other.getLocalIndex() < li)
+					rank++;
+			}
+			component[a] = c;
+			basis[a] = rank;
+			table[a] = ShapeFunctionTable.get(cell, count);
+		}
+	}
+
+	/**
+	 * Jacobian <tt>J[d][k] = dx_d/dr_k</tt> of the element map and its inverse <tt>invJ</tt>,
+	 * from the global nodes as in <tt>MeshGeometry</tt>
+	 *
+	 * @return det(J)
+	 */
+	protected double jacobian(VertexList vertices, double[][] dG) {
+		int nv = vertices.size();
+		for(int d=0;d<dim;d++)
+			for(int k=0;k<dim;k++) {
+				double s = 0.0;
+				for(int v=0;v<nv;v++)
+					s += MeshGeometry.nodeCoord(vertices.at(v+1), d+1)*dG[v][k];
+				J[d][k] = s;
+			}
+		return MeshGeometry.invert(dim, J, invJ);
+	}
+
+	/**
+	 * Quadrature on a face (edge in 2D) of an element: the points in the reference
+	 * coordinates of the element and the element shape functions at these points
+	 */
+	protected static class FaceRule {
+		ShapeFunctionTable face;
+		double[][] xi;
+		HashMap<Integer, ShapeFunctionTable> tables = new HashMap<Integer, ShapeFunctionTable>();
+
+		ShapeFunctionTable get(Cell cell, int nBasis) {
+			ShapeFunctionTable t = tables.get(nBasis);
+			if(t == null) {
+				t = new ShapeFunctionTable(cell, nBasis, xi, face.weights);
+				tables.put(nBasis, t);
+			}
+			return t;
+		}
+	}
+
+	/**
+	 * Border fields for border element <tt>be</tt> of element <tt>e</tt>
+	 */
+	protected void prepareBorder(Element e, Cell cell, DOFList DOFs, Element be) {
+		VertexList vertices = e.vertices();
+		VertexList bVertices = be.vertices();
+		int nbv = bVertices.size();
+		Cell faceCell = getCell(dim-1, nbv);
+
+		//Element vertices of the face, the key of the cached face rule
+		StringBuilder key = new StringBuilder().append(cell).append(vertices.size());
+		int[] map = new int[nbv];
+		for(int i=0;i<nbv;i++) {
+			Vertex bv = bVertices.at(i+1);
+			int k = 0;
+			while(k < vertices.size() && !vertices.at(k+1).coordEquals(bv))
+				k++;
+			if(k == vertices.size())
+				throw new FutureyeException("Border vertex "+bv+" is not a vertex of element "+e.globalIndex);
+			map[i] = k;
+			key.append(':').append(k);
+		}
+		FaceRule rule = faceRules.get(key.toString());
+		if(rule == null) {
+			rule = new FaceRule();
+			rule.face = ShapeFunctionTable.get(faceCell, nbv);
+			double[][] ref = ShapeFunctionTable.referenceVertices(cell);
+			rule.xi = new double[rule.face.nPoints][dim];
+			for(int q=0;q<rule.face.nPoints;q++)
+				for(int i=0;i<nbv;i++)
+					for(int k=0;k<dim;k++)
+						rule.xi[q][k] += rule.face.values[q][i]*ref[map[i]][k];
+			faceRules.put(key.toString(), rule);
+		}
+
+		DOFList beDOFs = be.getAllDOFList(DOFOrder.NEFV);
+		nbDOFs = beDOFs.size();
+		nbq = rule.face.nPoints;
+		if(bRow.length < nbDOFs || bJxW.length < nbq) {
+			int n = Math.max(nbDOFs, bRow.length);
+			bRow = new int[n];
+			bComponent = new int[n];
+			bJxW = new double[Math.max(nbq, bJxW.length)];
+			bPhi = new double[bJxW.length][n];
+		}
+		//Map border DOFs of Neumann/Robin components to the row/column of the element DOF
+		//with the same global index
+		int nb = 0;
+		for(int i=0;i<nbDOFs;i++) {
+			DOF dof = beDOFs.at(i+1);
+			NodeType nodeType = be.getBorderNodeType(Math.max(dof.getVVFComponent(), 1));
+			if(nodeType != NodeType.Neumann && nodeType != NodeType.Robin)
+				continue;
+			int gi = dof.getGlobalIndex();
+			int k = 0;
+			while(k < nDOFs && DOFs.at(k+1).getGlobalIndex() != gi)
+				k++;
+			if(k == nDOFs)
+				throw new FutureyeException("Border DOF "+gi+" is not a DOF of element "+e.globalIndex);
+			bRow[nb] = k;
+			bComponent[nb] = component[k];
+			ShapeFunctionTable t = rule.get(cell, table[k].nBasis);
+			for(int q=0;q<nbq;q++)
+				bPhi[q][nb] = t.values[q][basis[k]];
+			nb++;
+		}
+		nbDOFs = nb;
+
+		//Measure of the face: |dx/dr| on edges, |dx/dr x dx/ds| on faces
+		double[] t1 = new double[3], t2 = new double[3];
+		for(int q=0;q<nbq;q++) {
+			double[][] dG = rule.face.gradients[q];
+			for(int d=0;d<dim;d++) {
+				t1[d] = 0.0; t2[d] = 0.0;
+				for(int i=0;i<nbv;i++) {
+					double c = MeshGeometry.nodeCoord(bVertices.at(i+1), d+1);
+					t1[d] += c*dG[i][0];
+					if(dim == 3)
+						t2[d] += c*dG[i][1];
+				}
+			}
+			double ds;
+			if(dim == 2)
+				ds = Math.sqrt(t1[0]*t1[0] + t1[1]*t1[1]);
+			else if(dim == 3) {
+				double n0 = t1[1]*t2[2] - t1[2]*t2[1];
+				double n1 = t1[2]*t2[0] - t1[0]*t2[2];
+				double n2 = t1[0]*t2[1] - t1[1]*t2[0];
+				ds = Math.sqrt(n0*n0 + n1*n1 + n2*n2);
+			} else
+				ds = 1.0;
+			bJxW[q] = rule.face.weights[q]*ds;
+		}
+		geoElement = be;
+		geoVertices = bVertices;
+		geoValues = rule.face.values;
+	}
+}
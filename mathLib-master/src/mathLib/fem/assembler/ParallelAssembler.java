@@ -0,0 +1,248 @@
+package mathLib.fem.assembler;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import mathLib.fem.core.Element;
+import mathLib.fem.core.Mesh;
+import mathLib.fem.core.MeshGeometry;
+import mathLib.fem.core.intf.WeakFormOld;
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.container.ElementList;
+import mathLib.fem.weakform.WeakForm;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.FullVector;
+
+/**
+ * Multi-threaded assembly of the global stiffness matrix and load vector
+ * <p>
+ * The global matrix is preallocated with the <tt>SparsityPattern</tt> of the mesh,
+ * so no hash maps are involved during assembly. The elements are split into
+ * colors (no two elements of the same color share a DOF). The colors are processed
+ * one after another and the elements of a color in parallel, so every thread
+ * scatters its local matrix directly into the CSR value array without locks.
+ * <p>
+ * Each thread gets its own <tt>ElementKernel</tt> from the factory passed
+ * to the constructor. The symbolic weak forms share mutable state
+ * between elements, use <tt>WeakFormOldKernel</tt> with <tt>nThreads=1</tt>
+ * unless every kernel has its own weak form and DOFs.
+ * <p>
+ * The pattern, the element-to-CSR offsets and the global matrix are kept, so
+ * calling <tt>assemble()</tt> again (e.g. each time step) zeroes the values and
+ * scatters into the same arrays without any symbolic work. <tt>NumericKernel</tt>s (and
+ * <tt>WeakFormOldKernel</tt>s, for the affine elements) take the Jacobians from
+ * <tt>Mesh.getGeometry()</tt>, which is recomputed when nodes have been moved.
+ *
+ * <pre>
+ * ParallelAssembler assembler = new ParallelAssembler(mesh, () -&gt; new MyLaplaceKernel(), 8);
+ * assembler.assemble();
+ * FlatCompressedRowMatrix A = assembler.getStiffnessMatrix();
+ * FullVector b = assembler.getLoadVector();
+ * </pre>
+ *
+ */
+public class ParallelAssembler {
+	private int status = 0;
+	protected Mesh mesh;
+	protected Supplier<ElementKernel> kernelFactory;
+	protected int nThreads;
+	protected Element[] elements;
+	protected SparsityPattern pattern;
+	protected FlatCompressedRowMatrix globalStiff;
+	protected FullVector globalLoad;
+	protected MeshGeometry geometry;
+
+	protected ForkJoinPool pool;
+	protected ThreadLocal<Worker> workers;
+	/**
+	 * Minimum number of elements per task
+	 */
+	protected int grainSize = 64;
+
+	/**
+	 * Use all available processors
+	 *
+	 * @param mesh
+	 * @param kernelFactory creates one kernel per thread
+	 */
+	public ParallelAssembler(Mesh mesh, Supplier<ElementKernel> kernelFactory) {
+		this(mesh, kernelFactory, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param mesh
+	 * @param kernelFactory creates one kernel per thread
+	 * @param nThreads number of assembly threads
+	 */
+	public ParallelAssembler(Mesh mesh, Supplier<ElementKernel> kernelFactory, int nThreads) {
+		if(nThreads < 1)
+			throw new FutureyeException("nThreads="+nThreads+" must be positive");
+		this.mesh = mesh;
+		this.kernelFactory = kernelFactory;
+		this.nThreads = nThreads;
+
+		ElementList eList = mesh.getElementList();
+		this.elements = new Element[eList.size()];
+		for(int i=1; i<=eList.size(); i++) {
+			//Same preprocessing as AssemblerScalar, done serially before the DOF
+			//order of the elements is frozen into the pattern
+			eList.at(i).adjustVerticeToCounterClockwise();
+			elements[i-1] = eList.at(i);
+		}
+		//The vertices may have been reordered
+		mesh.invalidateGeometry();
+		this.pattern = new SparsityPattern(mesh, kernelFactory.get());
+		this.workers = ThreadLocal.withInitial(() -> new Worker(kernelFactory.get()));
+	}
+
+	/**
+	 * Single threaded assembly of a symbolic weak form into the CSR pattern
+	 *
+	 * @param mesh
+	 * @param weakForm
+	 */
+	public ParallelAssembler(Mesh mesh, WeakFormOld weakForm) {
+		this(mesh, () -> new WeakFormOldKernel(weakForm), 1);
+	}
+
+	/**
+	 * Single threaded assembly of a compiled weak form into the CSR pattern
+	 *
+	 * @param mesh
+	 * @param weakForm
+	 */
+	public ParallelAssembler(Mesh mesh, WeakForm weakForm) {
+		this(mesh, () -> new WeakFormKernel(mesh, weakForm), 1);
+	}
+
+	public void setGrainSize(int grainSize) {
+		this.grainSize = Math.max(1, grainSize);
+	}
+
+	public int getNumberOfThreads() {
+		return nThreads;
+	}
+
+	public SparsityPattern getSparsityPattern() {
+		return pattern;
+	}
+
+	public FlatCompressedRowMatrix getStiffnessMatrix() {
+		if(status == 0)
+			throw new FutureyeException("Call assemble() function first!");
+		return globalStiff;
+	}
+
+	public FullVector getLoadVector() {
+		if(status == 0)
+			throw new FutureyeException("Call assemble() function first!");
+		return globalLoad;
+	}
+
+	/**
+	 * Assemble the global matrix and load vector. The first call allocates them,
+	 * later calls zero and refill the same objects.
+	 */
+	public void assemble() {
+		status = 1;
+		if(globalStiff == null) {
+			globalStiff = pattern.createMatrix();
+			globalLoad = new FullVector(pattern.getNumberOfDOFs());
+		} else {
+			globalStiff.clearValues();
+			Arrays.fill(globalLoad.getData(), 0.0);
+		}
+		double[] stiff = globalStiff.getValues();
+		double[] load = globalLoad.getData();
+		//Computed once here, the workers only read them
+		pattern.getElementOffsets();
+		geometry = mesh.getGeometry();
+
+		if(nThreads == 1) {
+			Worker w = workers.get();
+			for(int e=0; e<elements.length; e++)
+				w.assemble(e, stiff, load);
+			return;
+		}
+
+		if(pool == null)
+			pool = new ForkJoinPool(nThreads);
+		int[] colorPtr = pattern.getColorPtr();
+		int[] colorElem = pattern.getColorElement();
+		for(int c=0; c<pattern.getNumberOfColors(); c++) {
+			pool.invoke(new ColorTask(colorElem, colorPtr[c], colorPtr[c+1], stiff, load));
+		}
+	}
+
+	/**
+	 * Per thread kernel and local buffers
+	 */
+	protected class Worker {
+		final ElementKernel kernel;
+		double[][] A = new double[0][];
+		double[] b = new double[0];
+
+		Worker(ElementKernel kernel) {
+			this.kernel = kernel;
+			if(kernel instanceof NumericKernel)
+				((NumericKernel)kernel).setGeometry(geometry);
+			else if(kernel instanceof WeakFormOldKernel)
+				((WeakFormOldKernel)kernel).setGeometry(geometry);
+		}
+
+		void assemble(int e, double[] stiff, double[] load) {
+			int[] elemPtr = pattern.elemPtr;
+			int[] dof = pattern.elemDOF;
+			int[] offset = pattern.elemOffset;
+			int begin = elemPtr[e];
+			int n = elemPtr[e+1] - begin;
+			if(b.length < n) {
+				A = new double[n][n];
+				b = new double[n];
+			} else {
+				for(int i=0; i<n; i++)
+					Arrays.fill(A[i], 0, n, 0.0);
+				Arrays.fill(b, 0, n, 0.0);
+			}
+			kernel.assembleLocal(elements[e], A, b);
+
+			int pos = pattern.elemMatPtr[e];
+			for(int i=0; i<n; i++) {
+				double[] Ai = A[i];
+				for(int j=0; j<n; j++)
+					stiff[offset[pos++]] += Ai[j];
+				load[dof[begin+i]] += b[i];
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private class ColorTask extends RecursiveAction {
+		final int[] colorElem;
+		final int begin, end;
+		final double[] stiff, load;
+
+		ColorTask(int[] colorElem, int begin, int end, double[] stiff, double[] load) {
+			this.colorElem = colorElem;
+			this.begin = begin;
+			this.end = end;
+			this.stiff = stiff;
+			this.load = load;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - begin <= grainSize) {
+				Worker w = workers.get();
+				for(int k=begin; k<end; k++)
+					w.assemble(colorElem[k], stiff, load);
+			} else {
+				int mid = (begin + end) >>> 1;
+				invokeAll(new ColorTask(colorElem, begin, mid, stiff, load),
+						new ColorTask(colorElem, mid, end, stiff, load));
+			}
+		}
+	}
+}
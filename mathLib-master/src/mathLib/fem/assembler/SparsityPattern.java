@@ -0,0 +1,365 @@
+package mathLib.fem.assembler;
+
+import java.util.Arrays;
+
+import mathLib.fem.core.Mesh;
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.container.ElementList;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+
+/**
+ * Sparsity pattern of a global FE matrix derived from element connectivity
+ * <p>
+ * Built once from the global DOF indices of every element in
+ * <tt>mesh.getElementList()</tt>: entry <tt>(i,j)</tt> is in the pattern if DOF
+ * <tt>i</tt> and DOF <tt>j</tt> belong to a common element. The pattern
+ * is stored in the 0-based CSR format of <tt>FlatCompressedRowMatrix</tt>
+ * with sorted column indices.
+ * <p>
+ * An element coloring is also provided: two elements of the same color never
+ * share a DOF, so the elements of one color can be scattered concurrently
+ * without locks.
+ * <p>
+ * For repeated assembly on the same mesh (time stepping, nonlinear iterations)
+ * the pattern is computed once, <tt>getElementOffsets()</tt> then maps every
+ * local matrix entry directly to its position in the CSR value array, so
+ * re-assembly only zeroes the values and accumulates into them.
+ *
+ */
+public class SparsityPattern {
+	protected int nDOF;
+	protected int nElement;
+	/**
+	 * 0-based global DOF indices of element <tt>e</tt> (0-based index in the
+	 * element list) are <tt>elemDOF[elemPtr[e]...elemPtr[e+1]-1]</tt>
+	 */
+	protected int[] elemPtr;
+	protected int[] elemDOF;
+	/**
+	 * Transposed connectivity: elements containing DOF <tt>i</tt>
+	 */
+	protected int[] dofElemPtr;
+	protected int[] dofElem;
+
+	protected int[] rowPtr;
+	protected int[] colIdx;
+
+	/**
+	 * Element-to-CSR offset map: local entry <tt>(i,j)</tt> of element <tt>e</tt>
+	 * with <tt>n</tt> DOFs goes to <tt>values[elemOffset[elemMatPtr[e]+i*n+j]]</tt>
+	 */
+	protected int[] elemMatPtr;
+	protected int[] elemOffset;
+
+	protected int nColor = -1;
+	protected int[] colorPtr;
+	protected int[] colorElem;
+
+	/**
+	 * The number of DOFs is the largest global index returned by <tt>kernel</tt>
+	 *
+	 * @param mesh
+	 * @param kernel used only to query the global indices of the elements
+	 */
+	public SparsityPattern(Mesh mesh, ElementKernel kernel) {
+		this(mesh, kernel, 0);
+	}
+
+	/**
+	 * @param mesh
+	 * @param kernel used only to query the global indices of the elements
+	 * @param nDOF total number of DOFs, <tt>0</tt> to use the largest global index
+	 */
+	public SparsityPattern(Mesh mesh, ElementKernel kernel, int nDOF) {
+		ElementList eList = mesh.getElementList();
+		this.nElement = eList.size();
+		this.elemPtr = new int[nElement+1];
+		for(int e=0; e<nElement; e++)
+			elemPtr[e+1] = elemPtr[e] + kernel.getNumberOfDOFs(eList.at(e+1));
+		this.elemDOF = new int[elemPtr[nElement]];
+		int[] idx = new int[0];
+		int maxIndex = 0;
+		for(int e=0; e<nElement; e++) {
+			int n = elemPtr[e+1] - elemPtr[e];
+			if(idx.length < n)
+				idx = new int[n];
+			kernel.getGlobalIndex(eList.at(e+1), idx);
+			for(int i=0; i<n; i++) {
+				if(idx[i] < 1)
+					throw new FutureyeException("Invalid global index "+idx[i]+
+							" on element "+(e+1));
+				elemDOF[elemPtr[e]+i] = idx[i]-1;
+				if(idx[i] > maxIndex)
+					maxIndex = idx[i];
+			}
+		}
+		if(nDOF == 0)
+			nDOF = maxIndex;
+		else if(maxIndex > nDOF)
+			throw new FutureyeException("Global index "+maxIndex+" exceeds nDOF="+nDOF);
+		this.nDOF = nDOF;
+
+		buildDOFToElement();
+		buildRows();
+	}
+
+	protected SparsityPattern() {
+	}
+
+	/**
+	 * Element connectivity and coloring without the CSR rows, e.g. for matrix-free
+	 * operators that only need the coloring. The row related methods (<tt>createMatrix()</tt>,
+	 * <tt>getRowPtr()</tt>, element offsets...) must not be used.
+	 *
+	 * @param nDOF
+	 * @param elemPtr
+	 * @param elemDOF 0-based global DOF indices of the elements, see <tt>getElementDOF()</tt>
+	 * @return
+	 */
+	public static SparsityPattern connectivity(int nDOF, int[] elemPtr, int[] elemDOF) {
+		SparsityPattern p = new SparsityPattern();
+		p.nDOF = nDOF;
+		p.nElement = elemPtr.length-1;
+		p.elemPtr = elemPtr;
+		p.elemDOF = elemDOF;
+		p.buildDOFToElement();
+		return p;
+	}
+
+	protected void buildDOFToElement() {
+		dofElemPtr = new int[nDOF+1];
+		for(int k=0; k<elemDOF.length; k++)
+			dofElemPtr[elemDOF[k]+1]++;
+		for(int i=0; i<nDOF; i++)
+			dofElemPtr[i+1] += dofElemPtr[i];
+		dofElem = new int[dofElemPtr[nDOF]];
+		int[] next = Arrays.copyOf(dofElemPtr, nDOF);
+		for(int e=0; e<nElement; e++) {
+			for(int k=elemPtr[e]; k<elemPtr[e+1]; k++) {
+				int i = elemDOF[k];
+				//A DOF listed twice on one element is counted once
+				if(next[i] == dofElemPtr[i] || dofElem[next[i]-1] != e)
+					dofElem[next[i]++] = e;
+			}
+		}
+		//Compact away the slots left by duplicated DOFs
+		int pos = 0;
+		for(int i=0; i<nDOF; i++) {
+			int begin = dofElemPtr[i];
+			dofElemPtr[i] = pos;
+			for(int k=begin; k<next[i]; k++)
+				dofElem[pos++] = dofElem[k];
+		}
+		dofElemPtr[nDOF] = pos;
+	}
+
+	/**
+	 * Union of the DOFs of all elements around each row, counting pass then filling pass
+	 */
+	protected void buildRows() {
+		int[] marker = new int[nDOF];
+		Arrays.fill(marker, -1);
+		rowPtr = new int[nDOF+1];
+		for(int i=0; i<nDOF; i++) {
+			int cnt = 0;
+			for(int p=dofElemPtr[i]; p<dofElemPtr[i+1]; p++) {
+				int e = dofElem[p];
+				for(int k=elemPtr[e]; k<elemPtr[e+1]; k++) {
+					int j = elemDOF[k];
+					if(marker[j] != i) {
+						marker[j] = i;
+						cnt++;
+					}
+				}
+			}
+			rowPtr[i+1] = rowPtr[i] + cnt;
+		}
+		colIdx = new int[rowPtr[nDOF]];
+		Arrays.fill(marker, -1);
+		for(int i=0; i<nDOF; i++) {
+			int pos = rowPtr[i];
+			for(int p=dofElemPtr[i]; p<dofElemPtr[i+1]; p++) {
+				int e = dofElem[p];
+				for(int k=elemPtr[e]; k<elemPtr[e+1]; k++) {
+					int j = elemDOF[k];
+					if(marker[j] != i) {
+						marker[j] = i;
+						colIdx[pos++] = j;
+					}
+				}
+			}
+			Arrays.sort(colIdx, rowPtr[i], rowPtr[i+1]);
+		}
+	}
+
+	protected void computeElementOffsets() {
+		int[] matPtr = new int[nElement+1];
+		for(int e=0; e<nElement; e++) {
+			int n = elemPtr[e+1] - elemPtr[e];
+			matPtr[e+1] = matPtr[e] + n*n;
+		}
+		int[] offset = new int[matPtr[nElement]];
+		for(int e=0; e<nElement; e++) {
+			int begin = elemPtr[e];
+			int n = elemPtr[e+1] - begin;
+			int pos = matPtr[e];
+			for(int i=0; i<n; i++) {
+				int row = elemDOF[begin+i];
+				for(int j=0; j<n; j++)
+					offset[pos++] = indexOf(row, elemDOF[begin+j]);
+			}
+		}
+		elemOffset = offset;
+		elemMatPtr = matPtr;
+	}
+
+	/**
+	 * Greedy coloring of the element conflict graph (elements sharing a DOF),
+	 * elements are visited in mesh order and get the smallest color not used
+	 * by any neighbor
+	 */
+	protected void computeColoring() {
+		int[] color = new int[nElement];
+		Arrays.fill(color, -1);
+		int[] forbidden = new int[8];
+		Arrays.fill(forbidden, -1);
+		nColor = 0;
+		for(int e=0; e<nElement; e++) {
+			for(int k=elemPtr[e]; k<elemPtr[e+1]; k++) {
+				int i = elemDOF[k];
+				for(int p=dofElemPtr[i]; p<dofElemPtr[i+1]; p++) {
+					int c = color[dofElem[p]];
+					if(c >= 0)
+						forbidden[c] = e;
+				}
+			}
+			int c = 0;
+			while(c < nColor && forbidden[c] == e)
+				c++;
+			if(c == nColor) {
+				nColor++;
+				if(nColor > forbidden.length) {
+					int old = forbidden.length;
+					forbidden = Arrays.copyOf(forbidden, 2*old);
+					Arrays.fill(forbidden, old, forbidden.length, -1);
+				}
+			}
+			color[e] = c;
+		}
+		colorPtr = new int[nColor+1];
+		for(int e=0; e<nElement; e++)
+			colorPtr[color[e]+1]++;
+		for(int c=0; c<nColor; c++)
+			colorPtr[c+1] += colorPtr[c];
+		colorElem = new int[nElement];
+		int[] next = Arrays.copyOf(colorPtr, nColor);
+		for(int e=0; e<nElement; e++)
+			colorElem[next[color[e]]++] = e;
+	}
+
+	/**
+	 * Create a zero matrix with this pattern, the index arrays are shared
+	 * with the pattern (not copied)
+	 *
+	 * @return
+	 */
+	public FlatCompressedRowMatrix createMatrix() {
+		return new FlatCompressedRowMatrix(nDOF, nDOF, rowPtr, colIdx,
+				new double[rowPtr[nDOF]]);
+	}
+
+	public int getNumberOfDOFs() {
+		return nDOF;
+	}
+
+	public int getNumberOfElements() {
+		return nElement;
+	}
+
+	public int getNonZeroNumber() {
+		return rowPtr[nDOF];
+	}
+
+	public int[] getRowPtr() {
+		return rowPtr;
+	}
+
+	public int[] getColIdx() {
+		return colIdx;
+	}
+
+	public int[] getElementPtr() {
+		return elemPtr;
+	}
+
+	/**
+	 * @return 0-based global DOF indices of all elements, see <tt>getElementPtr()</tt>
+	 */
+	public int[] getElementDOF() {
+		return elemDOF;
+	}
+
+	/**
+	 * Start of the offsets of each element in <tt>getElementOffsets()</tt>
+	 *
+	 * @return
+	 */
+	public int[] getElementMatrixPtr() {
+		if(elemOffset == null)
+			computeElementOffsets();
+		return elemMatPtr;
+	}
+
+	/**
+	 * Positions in the CSR value array of the local matrix entries of all elements,
+	 * computed on first call.
+	 * The <tt>n*n</tt> entries of element <tt>e</tt> are stored row by row from
+	 * <tt>getElementMatrixPtr()[e]</tt>
+	 *
+	 * @return
+	 */
+	public int[] getElementOffsets() {
+		if(elemOffset == null)
+			computeElementOffsets();
+		return elemOffset;
+	}
+
+	public int getNumberOfColors() {
+		if(nColor < 0)
+			computeColoring();
+		return nColor;
+	}
+
+	/**
+	 * Elements (0-based index in the element list) of color <tt>c</tt> are
+	 * <tt>getColorElement()[getColorPtr()[c]...getColorPtr()[c+1]-1]</tt>
+	 *
+	 * @return
+	 */
+	public int[] getColorPtr() {
+		if(nColor < 0)
+			computeColoring();
+		return colorPtr;
+	}
+
+	public int[] getColorElement() {
+		if(nColor < 0)
+			computeColoring();
+		return colorElem;
+	}
+
+	/**
+	 * Position of entry <tt>(row,col)</tt> (0-based) in the value array of a
+	 * matrix created by <tt>createMatrix()</tt>, <tt>-1</tt> if not in the pattern
+	 */
+	public int indexOf(int row, int col) {
+		int k = Arrays.binarySearch(colIdx, rowPtr[row], rowPtr[row+1], col);
+		return k < 0 ? -1 : k;
+	}
+
+	@Override
+	public String toString() {
+		return "SparsityPattern("+nDOF+"x"+nDOF+", nnz="+(rowPtr==null?"-":rowPtr[nDOF])+
+				", elements="+nElement+(nColor<0?"":", colors="+nColor)+")";
+	}
+}
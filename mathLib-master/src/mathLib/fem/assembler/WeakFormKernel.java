@@ -0,0 +1,48 @@
+package mathLib.fem.assembler;
+
+import mathLib.fem.core.Element;
+import mathLib.fem.core.Mesh;
+import mathLib.fem.core.intf.FiniteElement;
+import mathLib.fem.weakform.WeakForm;
+
+/**
+ * <tt>ElementKernel</tt> adapter for the compiled <tt>WeakForm</tt>, the local
+ * system is computed by <tt>BasicAssembler.assembleLocal()</tt>.
+ * <p>
+ * Not thread-safe: the compiled Jacobian of a <tt>WeakForm</tt> is stored in
+ * a static field, use it with <tt>nThreads=1</tt>.
+ *
+ */
+public class WeakFormKernel implements ElementKernel {
+	protected Mesh mesh;
+	protected FiniteElement fe;
+	protected BasicAssembler assembler;
+
+	public WeakFormKernel(Mesh mesh, WeakForm weakForm) {
+		this.mesh = mesh;
+		this.fe = weakForm.getFiniteElement();
+		this.assembler = new BasicAssembler(mesh, weakForm);
+	}
+
+	@Override
+	public int getNumberOfDOFs(Element e) {
+		return fe.getNumberOfDOFs();
+	}
+
+	@Override
+	public void getGlobalIndex(Element e, int[] globalIndex) {
+		for(int i=0; i<fe.getNumberOfDOFs(); i++)
+			globalIndex[i] = fe.getGlobalIndex(mesh, e, i+1);
+	}
+
+	@Override
+	public void assembleLocal(Element e, double[][] A, double[] b) {
+		assembler.assembleLocal(e);
+		int nDOFs = fe.getNumberOfDOFs();
+		for(int j=0; j<nDOFs; j++) {
+			for(int i=0; i<nDOFs; i++)
+				A[j][i] += assembler.A[j][i];
+			b[j] += assembler.b[j];
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package mathLib.fem.assembler;
+
+import mathLib.fem.core.DOF;
+import mathLib.fem.core.DOFOrder;
+import mathLib.fem.core.Element;
+import mathLib.fem.core.MeshGeometry;
+import mathLib.fem.core.NodeType;
+import mathLib.fem.core.intf.WeakFormOld;
+import mathLib.fem.core.intf.WeakFormOld.ItemType;
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.container.DOFList;
+import mathLib.fem.util.container.ElementList;
+import mathLib.func.symbolic.intf.MathFunc;
+
+/**
+ * <tt>ElementKernel</tt> adapter for the symbolic <tt>WeakFormOld</tt>,
+ * computes the same local contributions as <tt>AssemblerScalar.assembleGlobal()</tt>
+ * including Neumann/Robin border elements.
+ * <p>
+ * Not thread-safe: <tt>WeakFormOld.setDOF()</tt> and <tt>ShapeFunction.assignElement()</tt>
+ * modify objects shared by all elements. Use it with one thread, or supply a
+ * separately constructed weak form (and mesh DOFs) to each thread.
+ *
+ */
+public class WeakFormOldKernel implements ElementKernel {
+	protected WeakFormOld weakForm;
+	protected int[] borderLocal = new int[16];
+	protected MeshGeometry geometry;
+
+	public WeakFormOldKernel(WeakFormOld weakForm) {
+		this.weakForm = weakForm;
+	}
+
+	/**
+	 * Use the cached Jacobians of the affine elements in <tt>Element.updateJacobin(MeshGeometry)</tt>
+	 *
+	 * @param geometry <tt>Mesh.getGeometry()</tt> of the assembled mesh, or null
+	 */
+	public void setGeometry(MeshGeometry geometry) {
+		this.geometry = geometry;
+	}
+
+	@Override
+	public int getNumberOfDOFs(Element e) {
+		return e.getAllDOFList(DOFOrder.NEFV).size();
+	}
+
+	@Override
+	public void getGlobalIndex(Element e, int[] globalIndex) {
+		DOFList DOFs = e.getAllDOFList(DOFOrder.NEFV);
+		for(int i=1;i<=DOFs.size();i++)
+			globalIndex[i-1] = DOFs.at(i).getGlobalIndex();
+	}
+
+	@Override
+	public void assembleLocal(Element e, double[][] A, double[] b) {
+		DOFList DOFs = e.getAllDOFList(DOFOrder.NEFV);
+		int nDOFs = DOFs.size();
+
+		if(geometry != null)
+			e.updateJacobin(geometry);
+		else
+			e.updateJacobin();
+		for(int i=1;i<=nDOFs;i++)
+			DOFs.at(i).getSSF().assignElement(e);
+		weakForm.preProcess(e);
+
+		for(int i=1;i<=nDOFs;i++) {
+			DOF dofI = DOFs.at(i);
+			for(int j=1;j<=nDOFs;j++) {
+				weakForm.setDOF(DOFs.at(j), dofI);
+				MathFunc lhs = weakForm.leftHandSide(e, ItemType.Domain);
+				A[i-1][j-1] += weakForm.integrate(e, lhs);
+			}
+			weakForm.setDOF(null, dofI);
+			MathFunc rhs = weakForm.rightHandSide(e, ItemType.Domain);
+			b[i-1] += weakForm.integrate(e, rhs);
+		}
+
+		if(!e.isBorderElement())
+			return;
+		ElementList beList = e.getBorderElements();
+		for(int n=1;n<=beList.size();n++) {
+			Element be = beList.at(n);
+			NodeType nodeType = be.getBorderNodeType();
+			if(nodeType != NodeType.Neumann && nodeType != NodeType.Robin)
+				continue;
+			be.updateJacobin();
+			weakForm.preProcess(be);
+			DOFList beDOFs = be.getAllDOFList(DOFOrder.NEFV);
+			int nBeDOF = beDOFs.size();
+			if(borderLocal.length < nBeDOF)
+				borderLocal = new int[nBeDOF];
+			//Map border DOFs to the row/column of the element DOF with the same global index
+			for(int i=1;i<=nBeDOF;i++) {
+				beDOFs.at(i).getSSF().assignElement(be);
+				int gi = beDOFs.at(i).getGlobalIndex();
+				int k = 0;
+				while(k < nDOFs && DOFs.at(k+1).getGlobalIndex() != gi)
+					k++;
+				if(k == nDOFs)
+					throw new FutureyeException("Border DOF "+gi+" is not a DOF of element "+e.globalIndex);
+				borderLocal[i-1] = k;
+			}
+			for(int i=1;i<=nBeDOF;i++) {
+				DOF dofI = beDOFs.at(i);
+				int row = borderLocal[i-1];
+				for(int j=1;j<=nBeDOF;j++) {
+					weakForm.setDOF(beDOFs.at(j), dofI);
+					MathFunc lhsBr = weakForm.leftHandSide(be, ItemType.Border);
+					A[row][borderLocal[j-1]] += weakForm.integrate(be, lhsBr);
+				}
+				weakForm.setDOF(null, dofI);
+				MathFunc rhsBr = weakForm.rightHandSide(be, ItemType.Border);
+				b[row] += weakForm.integrate(be, rhsBr);
+			}
+		}
+	}
+}
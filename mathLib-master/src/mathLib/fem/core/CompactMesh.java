@@ -0,0 +1,556 @@
+package mathLib.fem.core;
+
+import java.util.Arrays;
+
+import mathLib.fem.core.geometry.topology.HexahedronTp;
+import mathLib.fem.core.geometry.topology.RectangleTp;
+import mathLib.fem.core.geometry.topology.TetrahedronTp;
+import mathLib.fem.core.geometry.topology.TriangleTp;
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.container.ElementList;
+import mathLib.fem.util.container.NodeList;
+
+/**
+ * Mesh stored in flat arrays, for meshes too large for <tt>Node</tt> and <tt>Element</tt>
+ * objects
+ * <p>
+ * All the indices in the arrays are 0-based, node <tt>i</tt> and element <tt>e</tt> are
+ * the objects with <tt>globalIndex</tt> <tt>i+1</tt> and <tt>e+1</tt>:
+ * <blockquote><pre>
+ * coords[i*dim+d]                          coordinate d of node i
+ * elemNode[elemPtr[e]..elemPtr[e+1]-1]     nodes of element e, in the order of Element.nodes
+ * nodeElem[nodeElemPtr[i]..]               elements of node i      computeNodeBelongsToElements()
+ * nodeNode[nodeNodePtr[i]..]               neighbor nodes of node i computeNeighborNodes()
+ * edgeNode[2*k], edgeNode[2*k+1]           end nodes of edge k      computeGlobalEdge()
+ * elemEdge[elemEdgePtr[e]..]               edges of element e
+ * faceNode[facePtr[k]..facePtr[k+1]-1]     vertices of face k (3D)  computeGlobalFace()
+ * elemFace[elemFacePtr[e]..]               faces of element e
+ * elemElem[elemElemPtr[e]..]               neighbor elements of e   computeNeighborElements()
+ * </pre></blockquote>
+ * Every <tt>compute</tt> method is a single linear pass over the connectivity (the
+ * methods it depends on are called first if needed), the adjacency rows are sorted.
+ * As in <tt>Mesh</tt>, two nodes are neighbors if they are the end nodes of an edge of
+ * an element, and two elements are neighbors if they share an edge. The local edges
+ * and faces are those of <tt>TriangleTp, RectangleTp, TetrahedronTp</tt> and
+ * <tt>HexahedronTp</tt> (the first 3 nodes of a 6 node triangle), a 1D element has the
+ * edge between its first and last node. Edges and faces are numbered in the order they
+ * are first found in the elements.
+ * <p>
+ * <tt>getNode()</tt> and <tt>getElement()</tt> create the objects of single nodes and
+ * elements on first access, <tt>toMesh()</tt> creates a <tt>Mesh</tt> of all of them
+ * for code working on objects.
+ *
+ */
+public class CompactMesh {
+	protected int dim;
+	protected int nNodes;
+	protected int nElements;
+	protected double[] coords;
+	protected int[] elemPtr;
+	protected int[] elemNode;
+
+	protected int[] nodeElemPtr;
+	protected int[] nodeElem;
+	protected int[] nodeNodePtr;
+	protected int[] nodeNode;
+	protected int nEdges;
+	protected int[] edgeNode;
+	protected int[] elemEdgePtr;
+	protected int[] elemEdge;
+	protected int nFaces;
+	protected int[] facePtr;
+	protected int[] faceNode;
+	protected int[] elemFacePtr;
+	protected int[] elemFace;
+	protected int[] elemElemPtr;
+	protected int[] elemElem;
+
+	protected Node[] nodes;
+	protected Element[] elements;
+
+	// 0-based local edges and faces of the elements of each number of nodes
+	protected static final int[][][] edges2D = {
+		null, null, null, zeroBased(TriangleTp.edges), zeroBased(RectangleTp.edges),
+		null, zeroBased(TriangleTp.edges)};
+	protected static final int[][][] edges3D = {
+		null, null, null, null, zeroBased(TetrahedronTp.edges),
+		null, null, null, zeroBased(HexahedronTp.edges)};
+	protected static final int[][][] faces3D = {
+		null, null, null, null, zeroBased(TetrahedronTp.faces),
+		null, null, null, zeroBased(HexahedronTp.faces)};
+
+	/**
+	 * @param dim space dimension, also the dimension of the elements
+	 * @param coords node coordinates <tt>coords[i*dim+d]</tt>
+	 * @param elemPtr
+	 * @param elemNode 0-based node indices of the elements
+	 */
+	public CompactMesh(int dim, double[] coords, int[] elemPtr, int[] elemNode) {
+		if(dim < 1 || dim > 3)
+			throw new FutureyeException("dim="+dim);
+		if(coords.length % dim != 0)
+			throw new FutureyeException("coords.length="+coords.length+" is not a multiple of dim="+dim);
+		this.dim = dim;
+		this.coords = coords;
+		this.nNodes = coords.length/dim;
+		this.nElements = elemPtr.length-1;
+		this.elemPtr = elemPtr;
+		this.elemNode = elemNode;
+		for(int e=0; e<nElements; e++) {
+			localEdges(e);
+			for(int k=elemPtr[e]; k<elemPtr[e+1]; k++)
+				if(elemNode[k] < 0 || elemNode[k] >= nNodes)
+					throw new FutureyeException("Node "+elemNode[k]+" of element "+e+" is not in [0,"+nNodes+")");
+		}
+	}
+
+	/**
+	 * Arrays of the nodes and elements of <tt>mesh</tt>, the global indices of the nodes
+	 * must be their positions in the node list
+	 *
+	 * @param mesh
+	 */
+	public CompactMesh(Mesh mesh) {
+		this(dimOf(mesh), coordsOf(mesh), elemPtrOf(mesh), elemNodeOf(mesh));
+	}
+
+	private static int dimOf(Mesh mesh) {
+		NodeList list = mesh.getNodeList();
+		return list.size() == 0 ? 1 : list.at(1).dim();
+	}
+
+	private static double[] coordsOf(Mesh mesh) {
+		NodeList list = mesh.getNodeList();
+		int dim = dimOf(mesh);
+		double[] coords = new double[list.size()*dim];
+		for(int i=1; i<=list.size(); i++) {
+			Node node = list.at(i);
+			if(node.globalIndex != i)
+				throw new FutureyeException("Node "+i+" of the list has globalIndex "+node.globalIndex);
+			for(int d=0; d<dim; d++)
+				coords[(i-1)*dim+d] = node.coord(d+1);
+		}
+		return coords;
+	}
+
+	private static int[] elemPtrOf(Mesh mesh) {
+		ElementList list = mesh.getElementList();
+		int[] ptr = new int[list.size()+1];
+		for(int e=1; e<=list.size(); e++)
+			ptr[e] = ptr[e-1] + list.at(e).nodes.size();
+		return ptr;
+	}
+
+	private static int[] elemNodeOf(Mesh mesh) {
+		ElementList list = mesh.getElementList();
+		int[] ptr = elemPtrOf(mesh);
+		int[] elemNode = new int[ptr[list.size()]];
+		for(int e=1; e<=list.size(); e++) {
+			NodeList nodes = list.at(e).nodes;
+			for(int j=1; j<=nodes.size(); j++)
+				elemNode[ptr[e-1]+j-1] = nodes.at(j).globalIndex-1;
+		}
+		return elemNode;
+	}
+
+	private static int[][] zeroBased(int[][] table) {
+		int[][] rlt = new int[table.length][];
+		for(int i=0; i<table.length; i++) {
+			rlt[i] = new int[table[i].length];
+			for(int j=0; j<table[i].length; j++)
+				rlt[i][j] = table[i][j]-1;
+		}
+		return rlt;
+	}
+
+	// local edges of element e
+	protected int[][] localEdges(int e) {
+		int n = elemPtr[e+1]-elemPtr[e];
+		int[][] rlt = null;
+		if(dim == 1 && n >= 2)
+			return new int[][] {{0, n-1}};
+		else if(dim == 2 && n < edges2D.length)
+			rlt = edges2D[n];
+		else if(dim == 3 && n < edges3D.length)
+			rlt = edges3D[n];
+		if(rlt == null)
+			throw new FutureyeException("Unsupported element "+e+": dim="+dim+", nodes="+n);
+		return rlt;
+	}
+
+	// local faces of element e, empty unless 3D
+	protected int[][] localFaces(int e) {
+		if(dim != 3)
+			return new int[0][];
+		return faces3D[elemPtr[e+1]-elemPtr[e]];
+	}
+
+	/**
+	 * Node to element adjacency by a counting sort of the connectivity
+	 */
+	public void computeNodeBelongsToElements() {
+		nodeElemPtr = new int[nNodes+1];
+		for(int k=0; k<elemNode.length; k++)
+			nodeElemPtr[elemNode[k]+1]++;
+		for(int i=0; i<nNodes; i++)
+			nodeElemPtr[i+1] += nodeElemPtr[i];
+		int[] pos = Arrays.copyOf(nodeElemPtr, nNodes);
+		nodeElem = new int[elemNode.length];
+		int n = 0;
+		for(int e=0; e<nElements; e++)
+			for(int k=elemPtr[e]; k<elemPtr[e+1]; k++) {
+				int i = elemNode[k];
+				//an element listing a node twice is added once
+				if(pos[i] == nodeElemPtr[i] || nodeElem[pos[i]-1] != e)
+					nodeElem[pos[i]++] = e;
+			}
+		//compact the rows if there were repeated nodes
+		for(int i=0; i<nNodes; i++) {
+			int begin = nodeElemPtr[i];
+			System.arraycopy(nodeElem, begin, nodeElem, n, pos[i]-begin);
+			nodeElemPtr[i] = n;
+			n += pos[i]-begin;
+		}
+		nodeElemPtr[nNodes] = n;
+		if(n < nodeElem.length)
+			nodeElem = Arrays.copyOf(nodeElem, n);
+	}
+
+	/**
+	 * Neighbor nodes: the other end nodes of the edges of the elements of each node
+	 */
+	public void computeNeighborNodes() {
+		if(nodeElem == null)
+			computeNodeBelongsToElements();
+		int[] marker = new int[nNodes];
+		Arrays.fill(marker, -1);
+		nodeNodePtr = new int[nNodes+1];
+		int[] buf = new int[Math.max(16, nNodes)];
+		int n = 0;
+		for(int i=0; i<nNodes; i++) {
+			marker[i] = i;
+			for(int m=nodeElemPtr[i]; m<nodeElemPtr[i+1]; m++) {
+				int e = nodeElem[m];
+				int base = elemPtr[e];
+				for(int[] edge : localEdges(e)) {
+					int a = elemNode[base+edge[0]], b = elemNode[base+edge[1]];
+					int j = a == i ? b : (b == i ? a : -1);
+					if(j < 0 || marker[j] == i)
+						continue;
+					marker[j] = i;
+					if(n == buf.length)
+						buf = Arrays.copyOf(buf, 2*n);
+					buf[n++] = j;
+				}
+			}
+			Arrays.sort(buf, nodeNodePtr[i], n);
+			nodeNodePtr[i+1] = n;
+		}
+		nodeNode = Arrays.copyOf(buf, n);
+	}
+
+	/**
+	 * Global edges and the edges of each element, in the order of the local edges
+	 */
+	public void computeGlobalEdge() {
+		elemEdgePtr = new int[nElements+1];
+		for(int e=0; e<nElements; e++)
+			elemEdgePtr[e+1] = elemEdgePtr[e] + localEdges(e).length;
+		elemEdge = new int[elemEdgePtr[nElements]];
+		//edges are chained by their smaller end node
+		int[] head = new int[nNodes];
+		Arrays.fill(head, -1);
+		int[] next = new int[Math.max(16, nNodes)];
+		int[] ends = new int[2*next.length];
+		nEdges = 0;
+		for(int e=0; e<nElements; e++) {
+			int base = elemPtr[e];
+			int[][] edges = localEdges(e);
+			for(int l=0; l<edges.length; l++) {
+				int a = elemNode[base+edges[l][0]], b = elemNode[base+edges[l][1]];
+				int lo = Math.min(a, b), hi = Math.max(a, b);
+				int k = head[lo];
+				while(k >= 0 && ends[2*k+1] != hi)
+					k = next[k];
+				if(k < 0) {
+					if(nEdges == next.length) {
+						next = Arrays.copyOf(next, 2*nEdges);
+						ends = Arrays.copyOf(ends, 4*nEdges);
+					}
+					k = nEdges++;
+					ends[2*k] = lo;
+					ends[2*k+1] = hi;
+					next[k] = head[lo];
+					head[lo] = k;
+				}
+				elemEdge[elemEdgePtr[e]+l] = k;
+			}
+		}
+		edgeNode = Arrays.copyOf(ends, 2*nEdges);
+	}
+
+	/**
+	 * Global faces and the faces of each element (3D), in the order of the local faces.
+	 * The vertices of a face are in the order of the element it is first found in.
+	 */
+	public void computeGlobalFace() {
+		elemFacePtr = new int[nElements+1];
+		for(int e=0; e<nElements; e++)
+			elemFacePtr[e+1] = elemFacePtr[e] + localFaces(e).length;
+		elemFace = new int[elemFacePtr[nElements]];
+		//faces are chained by their smallest vertex
+		int[] head = new int[nNodes];
+		Arrays.fill(head, -1);
+		int[] next = new int[Math.max(16, nElements)];
+		int[] ptr = new int[next.length+1];
+		int[] vs = new int[4*next.length];
+		nFaces = 0;
+		for(int e=0; e<nElements; e++) {
+			int base = elemPtr[e];
+			int[][] faces = localFaces(e);
+			for(int l=0; l<faces.length; l++) {
+				int[] face = faces[l];
+				int lo = Integer.MAX_VALUE;
+				for(int v : face)
+					lo = Math.min(lo, elemNode[base+v]);
+				int k = head[lo];
+				while(k >= 0 && !sameFace(vs, ptr[k], ptr[k+1], face, base))
+					k = next[k];
+				if(k < 0) {
+					if(nFaces == next.length) {
+						next = Arrays.copyOf(next, 2*nFaces);
+						ptr = Arrays.copyOf(ptr, 2*nFaces+1);
+					}
+					k = nFaces++;
+					if(ptr[k]+face.length > vs.length)
+						vs = Arrays.copyOf(vs, 2*vs.length);
+					for(int v=0; v<face.length; v++)
+						vs[ptr[k]+v] = elemNode[base+face[v]];
+					ptr[k+1] = ptr[k]+face.length;
+					next[k] = head[lo];
+					head[lo] = k;
+				}
+				elemFace[elemFacePtr[e]+l] = k;
+			}
+		}
+		facePtr = Arrays.copyOf(ptr, nFaces+1);
+		faceNode = Arrays.copyOf(vs, facePtr[nFaces]);
+	}
+
+	// true if vertices vs[begin..end-1] are the nodes of local face of the element at base
+	private boolean sameFace(int[] vs, int begin, int end, int[] face, int base) {
+		if(end-begin != face.length)
+			return false;
+		for(int v : face) {
+			int node = elemNode[base+v];
+			int k = begin;
+			while(k < end && vs[k] != node)
+				k++;
+			if(k == end)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Neighbor elements: the elements sharing an edge, as <tt>Mesh.computeNeighborElements()</tt>
+	 */
+	public void computeNeighborElements() {
+		if(elemEdge == null)
+			computeGlobalEdge();
+		//edge to element adjacency
+		int[] edgeElemPtr = new int[nEdges+1];
+		for(int k=0; k<elemEdge.length; k++)
+			edgeElemPtr[elemEdge[k]+1]++;
+		for(int k=0; k<nEdges; k++)
+			edgeElemPtr[k+1] += edgeElemPtr[k];
+		int[] pos = Arrays.copyOf(edgeElemPtr, nEdges);
+		int[] edgeElem = new int[elemEdge.length];
+		for(int e=0; e<nElements; e++)
+			for(int m=elemEdgePtr[e]; m<elemEdgePtr[e+1]; m++)
+				edgeElem[pos[elemEdge[m]]++] = e;
+
+		int[] marker = new int[nElements];
+		Arrays.fill(marker, -1);
+		elemElemPtr = new int[nElements+1];
+		int[] buf = new int[Math.max(16, nElements)];
+		int n = 0;
+		for(int e=0; e<nElements; e++) {
+			marker[e] = e;
+			for(int m=elemEdgePtr[e]; m<elemEdgePtr[e+1]; m++) {
+				int k = elemEdge[m];
+				for(int p=edgeElemPtr[k]; p<edgeElemPtr[k+1]; p++) {
+					int f = edgeElem[p];
+					if(marker[f] == e)
+						continue;
+					marker[f] = e;
+					if(n == buf.length)
+						buf = Arrays.copyOf(buf, 2*n);
+					buf[n++] = f;
+				}
+			}
+			Arrays.sort(buf, elemElemPtr[e], n);
+			elemElemPtr[e+1] = n;
+		}
+		elemElem = Arrays.copyOf(buf, n);
+	}
+
+	/**
+	 * Object of node <tt>i</tt>, created on first access
+	 *
+	 * @param i global index (1-based)
+	 * @return
+	 */
+	public Node getNode(int i) {
+		if(nodes == null)
+			nodes = new Node[nNodes];
+		Node node = nodes[i-1];
+		if(node == null) {
+			int b = (i-1)*dim;
+			node = new Node(i, coords[b], Arrays.copyOfRange(coords, b+1, b+dim));
+			nodes[i-1] = node;
+		}
+		return node;
+	}
+
+	/**
+	 * Object of element <tt>e</tt> built on the objects of its nodes, created on first access
+	 *
+	 * @param e global index (1-based)
+	 * @return
+	 */
+	public Element getElement(int e) {
+		if(elements == null)
+			elements = new Element[nElements];
+		Element ele = elements[e-1];
+		if(ele == null) {
+			NodeList list = new NodeList();
+			for(int k=elemPtr[e-1]; k<elemPtr[e]; k++)
+				list.add(getNode(elemNode[k]+1));
+			ele = new Element(list);
+			ele.globalIndex = e;
+			elements[e-1] = ele;
+		}
+		return ele;
+	}
+
+	/**
+	 * A <tt>Mesh</tt> of the objects of all the nodes and elements. The node to element,
+	 * node to node and element to element adjacency computed so far is copied to the
+	 * objects, so the corresponding methods of the returned mesh need not be called.
+	 *
+	 * @return
+	 */
+	public Mesh toMesh() {
+		Mesh mesh = new Mesh();
+		for(int i=1; i<=nNodes; i++)
+			mesh.addNode(getNode(i));
+		for(int e=1; e<=nElements; e++)
+			mesh.addElement(getElement(e));
+		if(nodeElem != null)
+			for(int i=0; i<nNodes; i++) {
+				ElementList list = new ElementList();
+				for(int m=nodeElemPtr[i]; m<nodeElemPtr[i+1]; m++)
+					list.add(elements[nodeElem[m]]);
+				nodes[i].belongToElements = list;
+			}
+		if(nodeNode != null)
+			for(int i=0; i<nNodes; i++) {
+				NodeList list = new NodeList();
+				for(int m=nodeNodePtr[i]; m<nodeNodePtr[i+1]; m++)
+					list.add(nodes[nodeNode[m]]);
+				nodes[i].neighbors = list;
+			}
+		if(elemElem != null)
+			for(int e=0; e<nElements; e++) {
+				elements[e].neighbors.clear();
+				for(int m=elemElemPtr[e]; m<elemElemPtr[e+1]; m++)
+					elements[e].neighbors.add(elements[elemElem[m]]);
+			}
+		return mesh;
+	}
+
+	public int getDimension() {
+		return dim;
+	}
+
+	public int getNumberOfNodes() {
+		return nNodes;
+	}
+
+	public int getNumberOfElements() {
+		return nElements;
+	}
+
+	public int getNumberOfEdges() {
+		return nEdges;
+	}
+
+	public int getNumberOfFaces() {
+		return nFaces;
+	}
+
+	public double[] getCoords() {
+		return coords;
+	}
+
+	public int[] getElemPtr() {
+		return elemPtr;
+	}
+
+	public int[] getElemNode() {
+		return elemNode;
+	}
+
+	public int[] getNodeElemPtr() {
+		return nodeElemPtr;
+	}
+
+	public int[] getNodeElem() {
+		return nodeElem;
+	}
+
+	public int[] getNodeNodePtr() {
+		return nodeNodePtr;
+	}
+
+	public int[] getNodeNode() {
+		return nodeNode;
+	}
+
+	public int[] getEdgeNode() {
+		return edgeNode;
+	}
+
+	public int[] getElemEdgePtr() {
+		return elemEdgePtr;
+	}
+
+	public int[] getElemEdge() {
+		return elemEdge;
+	}
+
+	public int[] getFacePtr() {
+		return facePtr;
+	}
+
+	public int[] getFaceNode() {
+		return faceNode;
+	}
+
+	public int[] getElemFacePtr() {
+		return elemFacePtr;
+	}
+
+	public int[] getElemFace() {
+		return elemFace;
+	}
+
+	public int[] getElemElemPtr() {
+		return elemElemPtr;
+	}
+
+	public int[] getElemElem() {
+		return elemElem;
+	}
+}
@@ -334,6 +334,23 @@ public class CoordinateTransform {
 		return this.Jacobian;
 	}
 
+	/**
+	 * Set a constant Jacobian matrix and determinant instead of computing them from
+	 * the transform functions, e.g. for an affine element from <tt>MeshGeometry</tt>
+	 *
+	 * @param J <tt>J[d][k] = dx_d/dr_k</tt>, the layout of <tt>getJacobianMatrix()</tt>
+	 * @param det det(Jac)
+	 */
+	public void setJacobian(double[][] J, double det) {
+		int n = J[0].length;
+		MathFunc[] funs = new MathFunc[J.length*n];
+		for(int d=0; d<J.length; d++)
+			for(int k=0; k<n; k++)
+				funs[d*n+k] = new FC(J[d][k]);
+		this.JacobianMatrix = funs;
+		this.Jacobian = new FC(det);
+	}
+
 	/**
 	 *  Compute 1D determinant of Jacobian matrix
 	 *  1D: det(Jac) = x_r
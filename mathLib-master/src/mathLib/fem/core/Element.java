@@ -1078,6 +1078,33 @@ public class Element {
 		}
 	}
 
+	/**
+	 * Same as <tt>updateJacobin()</tt>, but if the Jacobian of this element is constant in
+	 * <tt>geometry</tt> (triangles, parallelograms and parallelepipeds) the Jacobian matrix
+	 * and its determinant are constants of the cached values, the symbolic derivatives of
+	 * the coordinate transform are not computed. Tetrahedra are already computed numerically.
+	 *
+	 * @param geometry <tt>Mesh.getGeometry()</tt> of the mesh of this element
+	 */
+	public void updateJacobin(MeshGeometry geometry) {
+		int i = geometry.indexOf(this);
+		if(i < 0 || !geometry.isAffine(i) || eleDim == 1 || nodes.at(1).dim() != eleDim ||
+				(eleDim == 3 && getGeoEntity3D().getTopology() instanceof TetrahedronTp)) {
+			updateJacobin();
+			return;
+		}
+		double[][] invJ = new double[eleDim][eleDim], J = new double[eleDim][eleDim];
+		double det = geometry.getJacobian(i, 0, invJ);
+		MeshGeometry.invert(eleDim, invJ, J);
+		trans = new CoordinateTransform(eleDim);
+		if(eleDim == 2)
+			trans.transformLinear2D(this);
+		else
+			trans.transformLinear3D(this);
+		trans.setJacobian(J, det);
+		jac = trans.getJacobian();
+	}
+
 	/**
 	 * Call updateJacobin() if null returned
 	 *
@@ -49,6 +49,13 @@ public class Mesh {
 
 	public boolean debug = false;
 
+	//Spatial index for point location, built on first query
+	protected MeshSpatialIndex spatialIndex = null;
+	protected long spatialIndexVersion;
+
+	//Jacobians and measures of the elements, built on first query
+	protected MeshGeometry geometry = null;
+
 	public EdgeList getEdgeList() {
 		return edgeList;
 	}
@@ -261,6 +268,8 @@ public class Mesh {
 	 * @return the node object in the mesh if success, null if no matches
 	 */
 	public Node findNode(Node node) {
+		if(nodeList.size() > 0 && node.dim() == nodeList.at(1).dim())
+			return getSpatialIndex().findNode(nodeList, node.coords(), Constant.meshEps);
 		for(int i=1;i<=nodeList.size();i++) {
 			int nDim = node.dim();
 			boolean same = true;
@@ -285,19 +294,18 @@ public class Mesh {
 	 * @return the node object in the mesh if success, null if no matches
 	 */
 	public Node findNodeByCoord(double[] coord, double threshold) {
-		for(int i=1;i<=nodeList.size();i++) {
-			int nDim = nodeList.at(1).dim();
-			boolean same = true;
-			for(int j=1;j<=nDim;j++) {
-				if(Math.abs(coord[j-1]-nodeList.at(i).coord(j)) > threshold) {
-					same = false;
-					break;
-				}
-			}
-			if(same)
-				return nodeList.at(i);
-		}
-		return null;
+		return getSpatialIndex().findNode(nodeList, coord, threshold);
+	}
+
+	/**
+	 * Batch version of <tt>findNodeByCoord()</tt>
+	 *
+	 * @param coords coordinates of the points
+	 * @param threshold
+	 * @return the nodes found, null for the points with no matches
+	 */
+	public Node[] findNodeByCoord(double[][] coords, double threshold) {
+		return getSpatialIndex().findNode(nodeList, coords, threshold);
 	}
 
 	public Element getElementByNodes(NodeList nodes) {
@@ -318,15 +326,76 @@ public class Mesh {
 		return null;
 	}
 
+	/**
+	 * Find the element that contains the point
+	 *
+	 * @param coord
+	 * @return the first element containing the point, null if the point is outside the mesh
+	 */
 	public Element getElementByCoord(double[] coord) {
-		Node node = new Node(2);
-		node.set(0, coord);
-		for(int i=1;i<=eleList.size();i++) {
-			Element e = eleList.at(i);
-			if(e.isCoordInElement(coord))
-				return e;
+		return getSpatialIndex().findElement(eleList, coord);
+	}
+
+	/**
+	 * Batch version of <tt>getElementByCoord()</tt>
+	 *
+	 * @param coords coordinates of the points
+	 * @return the elements found, null for the points outside the mesh
+	 */
+	public Element[] getElementByCoord(double[][] coords) {
+		return getSpatialIndex().findElement(eleList, coords);
+	}
+
+	/**
+	 * The spatial index used by <tt>findNode()</tt>, <tt>findNodeByCoord()</tt> and
+	 * <tt>getElementByCoord()</tt>. Nodes and elements added to the mesh are
+	 * indexed automatically, the index is rebuilt if nodes have been moved by
+	 * <tt>Node.setCoord()</tt>.
+	 *
+	 * @return
+	 */
+	public MeshSpatialIndex getSpatialIndex() {
+		long version = Node.getCoordVersion();
+		if(spatialIndex == null || spatialIndexVersion != version) {
+			spatialIndex = new MeshSpatialIndex();
+			spatialIndexVersion = version;
 		}
-		return null;
+		return spatialIndex;
+	}
+
+	/**
+	 * Discard the spatial index, it is rebuilt on the next query.
+	 * Moves by <tt>Node.setCoord()</tt> are detected, this must be called after writing
+	 * into the array of <tt>Node.coords()</tt>.
+	 */
+	public void invalidateSpatialIndex() {
+		spatialIndex = null;
+	}
+
+	/**
+	 * Jacobian determinants, inverse Jacobians and measures of the elements, computed on
+	 * the first query and recomputed if the element list has been changed, nodes have been
+	 * moved by <tt>Node.setCoord()</tt> or <tt>invalidateGeometry()</tt> has been called.
+	 *
+	 * @return
+	 */
+	public MeshGeometry getGeometry() {
+		if(geometry == null)
+			geometry = new MeshGeometry(this);
+		else if(!geometry.isValid())
+			geometry.update();
+		return geometry;
+	}
+
+	/**
+	 * Recompute the geometry of the elements on the next query of <tt>getGeometry()</tt>.
+	 * Moves by <tt>Node.setCoord()</tt> are detected, this must be called after writing
+	 * into the array of <tt>Node.coords()</tt>. The geometry is computed from the nodes,
+	 * not from the (copied) coordinates of the vertices.
+	 */
+	public void invalidateGeometry() {
+		if(geometry != null)
+			geometry.invalidate();
 	}
 
 	/**
@@ -371,8 +440,13 @@ public class Mesh {
 	 *  computeGlobalEdge() (2D,3D case)
 	 *  computeGlobalFace() (3D case)
 	 *
+	 * A conforming 2D mesh is done in linear time by <tt>CompactMesh</tt> without
+	 * the dependencies, the neighbors are then in the order of their global indices.
+	 *
 	 */
 	public void computeNeighborElements() {
+		if(computeNeighborElementsCompact())
+			return;
 		for(int i=1;i<=eleList.size();i++) {
 			eleList.at(i).neighbors.clear();
 		}
@@ -402,6 +476,38 @@ public class Mesh {
 
 	}
 
+	/**
+	 * Neighbor elements of a 2D mesh without hanging nodes, the global indices of
+	 * the nodes must be their positions in the node list
+	 *
+	 * @return false if the mesh is not such a mesh
+	 */
+	protected boolean computeNeighborElementsCompact() {
+		for(int i=1;i<=nodeList.size();i++) {
+			Node node = nodeList.at(i);
+			if(node.globalIndex != i || node.dim() != 2)
+				return false;
+			if(node instanceof NodeRefined && ((NodeRefined)node).isHangingNode())
+				return false;
+		}
+		for(int i=1;i<=eleList.size();i++) {
+			int n = eleList.at(i).nodes.size();
+			if(n != 3 && n != 4 && n != 6)
+				return false;
+		}
+		CompactMesh compact = new CompactMesh(this);
+		compact.computeNeighborElements();
+		int[] ptr = compact.getElemElemPtr();
+		int[] nb = compact.getElemElem();
+		for(int i=1;i<=eleList.size();i++) {
+			Element e = eleList.at(i);
+			e.neighbors.clear();
+			for(int k=ptr[i-1];k<ptr[i];k++)
+				e.neighbors.add(eleList.at(nb[k]+1));
+		}
+		return true;
+	}
+
 	/**
 	 * Compute global edges in grid
 	 *
@@ -0,0 +1,301 @@
+package mathLib.fem.core;
+
+import java.util.Arrays;
+
+import mathLib.fem.core.geometry.Point;
+import mathLib.fem.shapefun.ShapeFunctionTable;
+import mathLib.fem.shapefun.ShapeFunctionTable.Cell;
+import mathLib.fem.util.container.ElementList;
+import mathLib.fem.util.container.VertexList;
+
+/**
+ * Numeric geometry of the elements of a mesh: determinant and inverse of the Jacobian
+ * <tt>J[d][k] = dx_d/dr_k</tt> of the (iso-parametric, linear or multi-linear) element map
+ * and the measure (length, area or volume) of each element, used by <tt>Mesh.getGeometry()</tt>
+ * <p>
+ * The Jacobian is evaluated at the points of the default quadrature rule of
+ * <tt>ShapeFunctionTable</tt>. If it is the same at all the points (simplices, parallelograms,
+ * parallelepipeds) one point is stored for the element, otherwise one per quadrature point.
+ * The values are kept in flat arrays, the points of element <tt>i</tt> (0-based index in
+ * the element list) are <tt>pointPtr[i] .. pointPtr[i+1]-1</tt>:
+ * <blockquote><pre>
+ * detJ[p]                        det(J)
+ * invJ[p*dim*dim + k*dim + d]    dr_k/dx_d, dim is the largest element dimension
+ * measure[i]                     |element i|
+ * </pre></blockquote>
+ * Elements of an unsupported shape have no points and measure 0.
+ * <p>
+ * The coordinates are read from the global nodes of the vertices, so moving the nodes
+ * is enough, there is no need to update the vertices of the elements. The geometry is
+ * recomputed on the next query of <tt>Mesh.getGeometry()</tt> after elements have been
+ * appended or nodes have been moved (see <tt>Node.getCoordVersion()</tt>).
+ * <tt>Mesh.invalidateGeometry()</tt> is needed only after writing into <tt>Node.coords()</tt>.
+ *
+ */
+public class MeshGeometry {
+	// relative tolerance of the test for a constant Jacobian
+	protected static final double affineEps = 1e-12;
+
+	protected Mesh mesh;
+	protected ElementList list;
+	protected Element[] elements = new Element[0];
+	// first vertex of each element when it was computed, changed by a reordering of the vertices
+	protected Vertex[] firstVertex = new Vertex[0];
+	protected int nElements;
+	protected int dim;
+	protected boolean valid;
+	protected long coordVersion;
+
+	protected int[] pointPtr = new int[1];
+	protected double[] detJ = new double[0];
+	protected double[] invJ = new double[0];
+	protected double[] measure = new double[0];
+
+	public MeshGeometry(Mesh mesh) {
+		this.mesh = mesh;
+		update();
+	}
+
+	/**
+	 * Recompute the geometry of all the elements, the arrays are reused if they are large enough
+	 */
+	public void update() {
+		coordVersion = Node.getCoordVersion();
+		list = mesh.getElementList();
+		nElements = list.size();
+		dim = 0;
+		for(int i=1; i<=nElements; i++)
+			dim = Math.max(dim, list.at(i).dim());
+		if(elements.length < nElements) {
+			elements = new Element[nElements];
+			firstVertex = new Vertex[nElements];
+			measure = new double[nElements];
+		}
+		if(pointPtr.length < nElements+1)
+			pointPtr = new int[nElements+1];
+		if(invJ.length < detJ.length*dim*dim)
+			invJ = new double[detJ.length*dim*dim];
+		for(int i=0; i<nElements; i++) {
+			elements[i] = list.at(i+1);
+			compute(i);
+		}
+		valid = true;
+	}
+
+	/**
+	 * Geometry will be recomputed before the next query of <tt>Mesh.getGeometry()</tt>
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * @return false if nodes have been moved or the element list has been changed
+	 */
+	public boolean isValid() {
+		return valid && coordVersion == Node.getCoordVersion() &&
+				list == mesh.getElementList() && list.size() == nElements &&
+				(nElements == 0 || list.at(nElements) == elements[nElements-1]);
+	}
+
+	// geometry of element elements[i] at pointPtr[i]
+	protected void compute(int i) {
+		Element e = elements[i];
+		int ed = e.dim();
+		VertexList vertices = e.vertices();
+		int nv = vertices.size();
+		int p = pointPtr[i];
+		firstVertex[i] = nv > 0 ? vertices.at(1) : null;
+		Cell cell = ShapeFunctionTable.getCell(ed, nv);
+		if(cell == null) {
+			pointPtr[i+1] = p;
+			measure[i] = 0.0;
+			return;
+		}
+		ShapeFunctionTable geo = ShapeFunctionTable.get(cell, nv);
+		int nq = geo.nPoints;
+		int stride = dim*dim;
+		ensureCapacity(p+nq);
+
+		double[][] x = new double[nv][ed];
+		for(int v=0; v<nv; v++) {
+			Vertex vt = vertices.at(v+1);
+			if(vt.localNode() != null && vt.globalNode() != null)
+				vt.globalNode().watchCoords();
+			for(int d=0; d<ed; d++)
+				x[v][d] = nodeCoord(vt, d+1);
+		}
+		double[][] J = new double[ed][ed], inv = new double[ed][ed], J0 = new double[ed][ed];
+		double vol = 0.0;
+		boolean affine = true;
+		double scale = 0.0;
+		for(int q=0; q<nq; q++) {
+			double[][] dG = geo.gradients[q];
+			for(int d=0; d<ed; d++)
+				for(int k=0; k<ed; k++) {
+					double s = 0.0;
+					for(int v=0; v<nv; v++)
+						s += x[v][d]*dG[v][k];
+					J[d][k] = s;
+				}
+			double det = invert(ed, J, inv);
+			vol += geo.weights[q]*Math.abs(det);
+			detJ[p+q] = det;
+			int base = (p+q)*stride;
+			for(int k=0; k<ed; k++)
+				for(int d=0; d<ed; d++)
+					invJ[base+k*dim+d] = inv[k][d];
+			if(q == 0) {
+				for(int d=0; d<ed; d++) {
+					J0[d] = J[d].clone();
+					for(int k=0; k<ed; k++)
+						scale = Math.max(scale, Math.abs(J[d][k]));
+				}
+			} else if(affine) {
+				for(int d=0; d<ed && affine; d++)
+					for(int k=0; k<ed; k++)
+						if(Math.abs(J[d][k]-J0[d][k]) > affineEps*scale) {
+							affine = false;
+							break;
+						}
+			}
+		}
+		measure[i] = vol;
+		pointPtr[i+1] = affine ? p+1 : p+nq;
+	}
+
+	protected void ensureCapacity(int nPoints) {
+		if(detJ.length < nPoints) {
+			int n = Math.max(nPoints, 2*detJ.length);
+			detJ = Arrays.copyOf(detJ, n);
+			invJ = Arrays.copyOf(invJ, n*dim*dim);
+		}
+	}
+
+	/**
+	 * Coordinate of the global node of vertex <tt>v</tt>, the vertex keeps a copy that is
+	 * not updated when the node is moved. The vertex is used if it has no global node.
+	 *
+	 * @param v
+	 * @param index 1-based
+	 * @return
+	 */
+	public static double nodeCoord(Vertex v, int index) {
+		Point p = v.localNode() == null ? null : v.globalNode();
+		return p == null ? v.coord(index) : p.coord(index);
+	}
+
+	/**
+	 * Inverse of the <tt>dim</tt> by <tt>dim</tt> matrix <tt>J</tt>
+	 *
+	 * @param dim
+	 * @param J
+	 * @param invJ (Output)
+	 * @return det(J)
+	 */
+	public static double invert(int dim, double[][] J, double[][] invJ) {
+		double det;
+		if(dim == 1) {
+			det = J[0][0];
+			invJ[0][0] = 1.0/det;
+		} else if(dim == 2) {
+			det = J[0][0]*J[1][1] - J[0][1]*J[1][0];
+			invJ[0][0] =  J[1][1]/det; invJ[0][1] = -J[0][1]/det;
+			invJ[1][0] = -J[1][0]/det; invJ[1][1] =  J[0][0]/det;
+		} else {
+			double c00 = J[1][1]*J[2][2] - J[1][2]*J[2][1];
+			double c01 = J[1][2]*J[2][0] - J[1][0]*J[2][2];
+			double c02 = J[1][0]*J[2][1] - J[1][1]*J[2][0];
+			det = J[0][0]*c00 + J[0][1]*c01 + J[0][2]*c02;
+			invJ[0][0] = c00/det;
+			invJ[1][0] = c01/det;
+			invJ[2][0] = c02/det;
+			invJ[0][1] = (J[0][2]*J[2][1] - J[0][1]*J[2][2])/det;
+			invJ[1][1] = (J[0][0]*J[2][2] - J[0][2]*J[2][0])/det;
+			invJ[2][1] = (J[0][1]*J[2][0] - J[0][0]*J[2][1])/det;
+			invJ[0][2] = (J[0][1]*J[1][2] - J[0][2]*J[1][1])/det;
+			invJ[1][2] = (J[0][2]*J[1][0] - J[0][0]*J[1][2])/det;
+			invJ[2][2] = (J[0][0]*J[1][1] - J[0][1]*J[1][0])/det;
+		}
+		return det;
+	}
+
+	/**
+	 * 0-based index of element <tt>e</tt> in the geometry, found by its global index
+	 *
+	 * @param e
+	 * @return -1 if <tt>e</tt> is not in the geometry, has no points or its vertices
+	 *         have been reordered (e.g. by <tt>adjustVerticeToCounterClockwise()</tt>)
+	 *         since the geometry was computed
+	 */
+	public int indexOf(Element e) {
+		int i = e.globalIndex-1;
+		if(i < 0 || i >= nElements || elements[i] != e || pointPtr[i+1] == pointPtr[i] ||
+				e.vertices().at(1) != firstVertex[i])
+			return -1;
+		return i;
+	}
+
+	/**
+	 * Inverse Jacobian and determinant of element <tt>i</tt> (0-based) at quadrature point <tt>q</tt>
+	 *
+	 * @param i
+	 * @param q
+	 * @param inv (Output) <tt>inv[k][d] = dr_k/dx_d</tt>
+	 * @return det(J)
+	 */
+	public double getJacobian(int i, int q, double[][] inv) {
+		int p = pointPtr[i];
+		if(pointPtr[i+1]-p > 1)
+			p += q;
+		int ed = elements[i].dim();
+		int base = p*dim*dim;
+		for(int k=0; k<ed; k++)
+			for(int d=0; d<ed; d++)
+				inv[k][d] = invJ[base+k*dim+d];
+		return detJ[p];
+	}
+
+	/**
+	 * @param i 0-based element index
+	 * @return true if the Jacobian of element <tt>i</tt> is constant (one stored point)
+	 */
+	public boolean isAffine(int i) {
+		return pointPtr[i+1]-pointPtr[i] == 1;
+	}
+
+	/**
+	 * @param i 0-based element index
+	 * @return length, area or volume of element <tt>i</tt>
+	 */
+	public double getMeasure(int i) {
+		return measure[i];
+	}
+
+	public int getNumberOfElements() {
+		return nElements;
+	}
+
+	/**
+	 * @return stride of <tt>getInvJ()</tt> is <tt>dim*dim</tt>
+	 */
+	public int getDimension() {
+		return dim;
+	}
+
+	public int[] getPointPtr() {
+		return pointPtr;
+	}
+
+	public double[] getDetJ() {
+		return detJ;
+	}
+
+	public double[] getInvJ() {
+		return invJ;
+	}
+
+	public double[] getMeasure() {
+		return measure;
+	}
+}
@@ -0,0 +1,334 @@
+package mathLib.fem.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import mathLib.fem.util.Constant;
+import mathLib.fem.util.container.ElementList;
+import mathLib.fem.util.container.NodeList;
+import mathLib.fem.util.container.ObjList;
+
+/**
+ * Uniform bucket grid over the nodes and the element bounding boxes of a mesh,
+ * used by <tt>Mesh.findNode()</tt>, <tt>Mesh.findNodeByCoord()</tt> and
+ * <tt>Mesh.getElementByCoord()</tt>
+ * <p>
+ * The cells are hashed, so nodes outside the box the grid was built for
+ * can still be inserted. Nodes and elements appended to the lists of the mesh
+ * (e.g. while reading or refining a mesh) are inserted incrementally before
+ * the next query, the grid is rebuilt when the number of objects has doubled
+ * or the lists have been changed otherwise.
+ * <p>
+ * The results are the same as the linear search: the object with the smallest
+ * index in the list that matches the query.
+ * <tt>Mesh.getSpatialIndex()</tt> builds a new index after nodes have been moved by
+ * <tt>Node.setCoord()</tt>, see <tt>Node.getCoordVersion()</tt>.
+ *
+ */
+public class MeshSpatialIndex {
+	protected Grid nodeGrid;
+	protected Grid elementGrid;
+
+	/**
+	 * Buckets of 0-based list indices in increasing order
+	 */
+	protected static class Grid {
+		Object list;
+		int count;
+		Object last;
+		int builtCount;
+		int dim;
+		double[] origin = new double[3];
+		double h;
+		Map<Long, int[]> cells = new HashMap<Long, int[]>();
+
+		/**
+		 * @return false if the list has been changed other than by appending
+		 */
+		boolean isValidFor(ObjList<?> list) {
+			int size = list.size();
+			return this.list == list && size >= count && size <= 2*builtCount &&
+					(count == 0 || last == list.at(count));
+		}
+
+		int cellIndex(double x, int d) {
+			return (int)Math.floor((x - origin[d])/h);
+		}
+
+		static long key(int ix, int iy, int iz) {
+			return ((long)(ix & 0x1FFFFF) << 42) | ((long)(iy & 0x1FFFFF) << 21) | (iz & 0x1FFFFF);
+		}
+
+		void add(long key, int idx) {
+			int[] b = cells.get(key);
+			if(b == null) {
+				b = new int[5];
+				cells.put(key, b);
+			} else if(b[0] == b.length-1) {
+				int[] nb = new int[2*b.length];
+				System.arraycopy(b, 0, nb, 0, b.length);
+				b = nb;
+				cells.put(key, b);
+			}
+			b[++b[0]] = idx;
+		}
+
+		/**
+		 * Insert <tt>idx</tt> into all cells overlapping the box <tt>[lo,hi]</tt>
+		 */
+		void add(double[] lo, double[] hi, int idx) {
+			int[] i0 = new int[3], i1 = new int[3];
+			for(int d=0; d<dim; d++) {
+				i0[d] = cellIndex(lo[d], d);
+				i1[d] = cellIndex(hi[d], d);
+			}
+			for(int ix=i0[0]; ix<=i1[0]; ix++)
+				for(int iy=i0[1]; iy<=i1[1]; iy++)
+					for(int iz=i0[2]; iz<=i1[2]; iz++)
+						add(key(ix, iy, iz), idx);
+		}
+
+		/**
+		 * Number of cells overlapping the box <tt>[c-r,c+r]</tt>
+		 */
+		double countCells(double[] c, double r) {
+			double n = 1;
+			for(int d=0; d<dim; d++)
+				n *= Math.floor((c[d]+r-origin[d])/h) - Math.floor((c[d]-r-origin[d])/h) + 1;
+			return n;
+		}
+	}
+
+	/////////////////////////////Nodes/////////////////////////////
+
+	/**
+	 * Find the first node whose coordinates differ from <tt>coord</tt> by
+	 * at most <tt>threshold</tt> in every direction
+	 *
+	 * @param nodeList
+	 * @param coord
+	 * @param threshold
+	 * @return <tt>null</tt> if no matches
+	 */
+	public Node findNode(NodeList nodeList, double[] coord, double threshold) {
+		int n = nodeList.size();
+		if(n == 0)
+			return null;
+		int dim = nodeList.at(1).dim();
+		updateNodes(nodeList);
+		if(dim > 3 || coord.length < dim || nodeGrid.countCells(coord, threshold) > n)
+			return findNodeLinear(nodeList, coord, dim, threshold);
+
+		int[] i0 = new int[3], i1 = new int[3];
+		for(int d=0; d<dim; d++) {
+			i0[d] = nodeGrid.cellIndex(coord[d]-threshold, d);
+			i1[d] = nodeGrid.cellIndex(coord[d]+threshold, d);
+		}
+		int best = Integer.MAX_VALUE;
+		for(int ix=i0[0]; ix<=i1[0]; ix++) {
+			for(int iy=i0[1]; iy<=i1[1]; iy++) {
+				for(int iz=i0[2]; iz<=i1[2]; iz++) {
+					int[] b = nodeGrid.cells.get(Grid.key(ix, iy, iz));
+					if(b == null)
+						continue;
+					//Indices in a bucket are increasing
+					for(int k=1; k<=b[0] && b[k]<best; k++) {
+						if(isSame(nodeList.at(b[k]+1), coord, dim, threshold)) {
+							best = b[k];
+							break;
+						}
+					}
+				}
+			}
+		}
+		return best == Integer.MAX_VALUE ? null : nodeList.at(best+1);
+	}
+
+	protected static boolean isSame(Node node, double[] coord, int dim, double threshold) {
+		for(int j=1; j<=dim; j++) {
+			if(Math.abs(coord[j-1]-node.coord(j)) > threshold)
+				return false;
+		}
+		return true;
+	}
+
+	protected static Node findNodeLinear(NodeList nodeList, double[] coord, int dim, double threshold) {
+		for(int i=1; i<=nodeList.size(); i++) {
+			if(isSame(nodeList.at(i), coord, dim, threshold))
+				return nodeList.at(i);
+		}
+		return null;
+	}
+
+	protected void updateNodes(NodeList nodeList) {
+		int n = nodeList.size();
+		Grid g = nodeGrid;
+		if(g == null || !g.isValidFor(nodeList)) {
+			g = new Grid();
+			g.list = nodeList;
+			g.dim = Math.min(3, nodeList.at(1).dim());
+			double[] lo = new double[3], hi = new double[3];
+			boundingBox(nodeList, lo, hi);
+			g.h = cellSize(lo, hi, g.dim, n, 0.0);
+			g.origin = lo;
+			g.builtCount = n;
+			nodeGrid = g;
+		}
+		double[] c = new double[3];
+		for(int i=g.count; i<n; i++) {
+			Node node = nodeList.at(i+1);
+			node.watchCoords();
+			for(int d=0; d<g.dim; d++)
+				c[d] = node.coord(d+1);
+			g.add(c, c, i);
+		}
+		g.count = n;
+		g.last = nodeList.at(n);
+	}
+
+	/////////////////////////////Elements/////////////////////////////
+
+	/**
+	 * Find the first element that contains the point <tt>coord</tt>,
+	 * see <tt>Element.isCoordInElement()</tt>
+	 *
+	 * @param eleList
+	 * @param coord
+	 * @return <tt>null</tt> if no matches
+	 */
+	public Element findElement(ElementList eleList, double[] coord) {
+		int n = eleList.size();
+		if(n == 0)
+			return null;
+		updateElements(eleList);
+		int[] ic = new int[3];
+		for(int d=0; d<elementGrid.dim; d++) {
+			if(d >= coord.length)
+				return findElementLinear(eleList, coord);
+			ic[d] = elementGrid.cellIndex(coord[d], d);
+		}
+		int[] b = elementGrid.cells.get(Grid.key(ic[0], ic[1], ic[2]));
+		if(b == null)
+			return null;
+		//Every element containing the point overlaps its cell with the bounding box
+		for(int k=1; k<=b[0]; k++) {
+			Element e = eleList.at(b[k]+1);
+			if(e.isCoordInElement(coord))
+				return e;
+		}
+		return null;
+	}
+
+	protected static Element findElementLinear(ElementList eleList, double[] coord) {
+		for(int i=1; i<=eleList.size(); i++) {
+			Element e = eleList.at(i);
+			if(e.isCoordInElement(coord))
+				return e;
+		}
+		return null;
+	}
+
+	protected void updateElements(ElementList eleList) {
+		int n = eleList.size();
+		Grid g = elementGrid;
+		double[] lo = new double[3], hi = new double[3];
+		if(g == null || !g.isValidFor(eleList)) {
+			g = new Grid();
+			g.list = eleList;
+			g.dim = Math.min(3, eleList.at(1).nodes.at(1).dim());
+			double[] mlo = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+			double[] mhi = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+			double ext = 0.0;
+			for(int i=1; i<=n; i++) {
+				boundingBox(eleList.at(i).nodes, lo, hi);
+				double e = 0.0;
+				for(int d=0; d<g.dim; d++) {
+					mlo[d] = Math.min(mlo[d], lo[d]);
+					mhi[d] = Math.max(mhi[d], hi[d]);
+					e = Math.max(e, hi[d]-lo[d]);
+				}
+				ext += e;
+			}
+			//A cell about the size of an element keeps both the buckets and the
+			//number of cells covered by an element small
+			g.h = cellSize(mlo, mhi, g.dim, n, ext/n);
+			for(int d=0; d<g.dim; d++)
+				g.origin[d] = mlo[d];
+			g.builtCount = n;
+			elementGrid = g;
+		}
+		for(int i=g.count; i<n; i++) {
+			NodeList nodes = eleList.at(i+1).nodes;
+			for(int j=1; j<=nodes.size(); j++)
+				nodes.at(j).watchCoords();
+			boundingBox(nodes, lo, hi);
+			for(int d=0; d<g.dim; d++) {
+				lo[d] -= Constant.meshEps;
+				hi[d] += Constant.meshEps;
+			}
+			g.add(lo, hi, i);
+		}
+		g.count = n;
+		g.last = eleList.at(n);
+	}
+
+	/////////////////////////////Batch queries/////////////////////////////
+
+	public Node[] findNode(NodeList nodeList, double[][] coords, double threshold) {
+		Node[] rlt = new Node[coords.length];
+		for(int i=0; i<coords.length; i++)
+			rlt[i] = findNode(nodeList, coords[i], threshold);
+		return rlt;
+	}
+
+	public Element[] findElement(ElementList eleList, double[][] coords) {
+		Element[] rlt = new Element[coords.length];
+		for(int i=0; i<coords.length; i++)
+			rlt[i] = findElement(eleList, coords[i]);
+		return rlt;
+	}
+
+	/////////////////////////////////////////////////////////////////////
+
+	protected static void boundingBox(NodeList nodes, double[] lo, double[] hi) {
+		int dim = Math.min(3, nodes.at(1).dim());
+		for(int d=0; d<3; d++) {
+			lo[d] = d < dim ? Double.MAX_VALUE : 0.0;
+			hi[d] = d < dim ? -Double.MAX_VALUE : 0.0;
+		}
+		for(int i=1; i<=nodes.size(); i++) {
+			Node node = nodes.at(i);
+			for(int d=0; d<dim; d++) {
+				double x = node.coord(d+1);
+				if(x < lo[d]) lo[d] = x;
+				if(x > hi[d]) hi[d] = x;
+			}
+		}
+	}
+
+	/**
+	 * Cell size giving about one object per cell in the box <tt>[lo,hi]</tt>,
+	 * at least <tt>minSize</tt>
+	 */
+	protected static double cellSize(double[] lo, double[] hi, int dim, int n, double minSize) {
+		double vol = 1.0, maxExt = 0.0;
+		for(int d=0; d<dim; d++) {
+			double ext = hi[d] - lo[d];
+			maxExt = Math.max(maxExt, ext);
+		}
+		//Degenerated directions (e.g. a surface mesh in 3D) do not count
+		int nd = 0;
+		for(int d=0; d<dim; d++) {
+			double ext = hi[d] - lo[d];
+			if(ext > 1e-12*maxExt) {
+				vol *= ext;
+				nd++;
+			}
+		}
+		double h = nd == 0 ? 0.0 : Math.pow(vol/n, 1.0/nd);
+		h = Math.max(h, minSize);
+		if(h <= 0.0)
+			h = maxExt > 0.0 ? maxExt : 1.0;
+		return h;
+	}
+}
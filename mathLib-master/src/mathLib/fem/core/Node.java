@@ -1,5 +1,7 @@
 package mathLib.fem.core;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import mathLib.fem.core.geometry.Point;
 import mathLib.fem.triangulation.Vector2D;
 import mathLib.fem.util.Constant;
@@ -22,6 +24,12 @@ public class Node extends Vector2D implements Point {
 	protected ObjVector<NodeType> nodeTypes = null;
 	protected int refineLevel = 1;
 
+	// incremented each time the coordinates of a watched node are changed
+	private static final AtomicLong coordVersion = new AtomicLong();
+
+	// the coordinates are used by a cache of a mesh, see watchCoords()
+	private boolean watched = false;
+
 	public Node() {
 		super(0.0, 0.0) ;
 	}
@@ -58,6 +66,8 @@ public class Node extends Vector2D implements Point {
 	public Node set(int globalIndex, double ...coords) {
 		this.globalIndex = globalIndex;
 		if(coords!=null && coords.length > 0) {
+			if(watched)
+				coordVersion.incrementAndGet();
 			this.dim = coords.length;
 			for(int i=0;i<dim;i++)
 				this.coords[i] = coords[i];
@@ -99,7 +109,34 @@ public class Node extends Vector2D implements Point {
 	}
 
 	public void setCoord(int index,double val) {
-		coords[index-1] = val;
+		if(coords[index-1] != val) {
+			coords[index-1] = val;
+			if(watched)
+				coordVersion.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Counter of the coordinate changes by <tt>setCoord()</tt> and <tt>set()</tt> of the
+	 * nodes marked by <tt>watchCoords()</tt>. Caches computed from the coordinates
+	 * (<tt>Mesh.getGeometry()</tt> and <tt>Mesh.getSpatialIndex()</tt>) compare it to detect
+	 * moved nodes. Writes into the array returned by <tt>coords()</tt> are not counted.
+	 * <p>
+	 * Nodes that are not watched (e.g. a new node used as a query of <tt>Mesh.findNode()</tt>)
+	 * do not change the counter, so they do not discard the caches.
+	 *
+	 * @return
+	 */
+	public static long getCoordVersion() {
+		return coordVersion.get();
+	}
+
+	/**
+	 * Count the coordinate changes of this node in <tt>getCoordVersion()</tt>,
+	 * called by the caches that read the coordinates
+	 */
+	void watchCoords() {
+		watched = true;
 	}
 
 	@Override
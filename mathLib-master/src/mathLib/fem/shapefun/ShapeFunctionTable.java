@@ -0,0 +1,301 @@
+package mathLib.fem.shapefun;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import mathLib.fem.util.FutureyeException;
+
+/**
+ * Values and reference gradients of the Lagrange shape functions of a reference
+ * cell at the points of a quadrature rule, tabulated once and shared by all the
+ * elements (and threads) of an assembly.
+ * <p>
+ * The shape functions are numbered as the symbolic ones of this package:
+ * <blockquote><pre>
+ * LINE        r in [-1,1]       2: SFLinearLocal1D, 3: SFQuadraticLocal1D
+ * TRIANGLE    (r,s), t=1-r-s    3: SFLinearLocal2D, 6: SFQuadraticLocal2D
+ * RECTANGLE   (r,s) in [-1,1]^2 4: SFBilinearLocal2D
+ * TETRAHEDRON (r,s,t), u=1-r-s-t 4: SFLinearLocal3D
+ * HEXAHEDRON  (r,s,t) in [-1,1]^3 8: SFTrilinearLocal3D
+ * </pre></blockquote>
+ * and one basis function is the constant of the element (e.g. pressure of BilinearV_ConstantP).
+ * <p>
+ * The default rules are exact for the mass matrices of these bases times a linear
+ * coefficient: 3 Gauss points on the line, 7 points (degree 5) on the triangle,
+ * 2x2 and 2x2x2 Gauss points on the rectangle and the hexahedron and 5 points (degree 3)
+ * on the tetrahedron.
+ *
+ */
+public class ShapeFunctionTable {
+	public enum Cell {
+		LINE(1), TRIANGLE(2), RECTANGLE(2), TETRAHEDRON(3), HEXAHEDRON(3);
+
+		public final int dim;
+
+		Cell(int dim) {
+			this.dim = dim;
+		}
+	}
+
+	public final Cell cell;
+	public final int nBasis;
+	public final int nPoints;
+	/**
+	 * Reference coordinates of the quadrature points <tt>points[q][k]</tt>
+	 */
+	public final double[][] points;
+	/**
+	 * Quadrature weights on the reference cell
+	 */
+	public final double[] weights;
+	/**
+	 * <tt>values[q][i]</tt> = N_i at point q
+	 */
+	public final double[][] values;
+	/**
+	 * <tt>gradients[q][i][k]</tt> = dN_i/dr_k at point q
+	 */
+	public final double[][][] gradients;
+
+	private static final ConcurrentHashMap<String, ShapeFunctionTable> tables =
+			new ConcurrentHashMap<String, ShapeFunctionTable>();
+
+	/**
+	 * Tabulate the <tt>nBasis</tt> shape functions of <tt>cell</tt> at the given points
+	 *
+	 * @param cell
+	 * @param nBasis
+	 * @param points reference coordinates
+	 * @param weights
+	 */
+	public ShapeFunctionTable(Cell cell, int nBasis, double[][] points, double[] weights) {
+		this.cell = cell;
+		this.nBasis = nBasis;
+		this.nPoints = points.length;
+		this.points = points;
+		this.weights = weights;
+		this.values = new double[nPoints][nBasis];
+		this.gradients = new double[nPoints][nBasis][cell.dim];
+		for(int q=0; q<nPoints; q++)
+			evaluate(cell, nBasis, points[q], values[q], gradients[q]);
+	}
+
+	/**
+	 * Shared table of the default quadrature rule of <tt>cell</tt>
+	 *
+	 * @param cell
+	 * @param nBasis
+	 * @return
+	 */
+	public static ShapeFunctionTable get(Cell cell, int nBasis) {
+		return tables.computeIfAbsent(cell+":"+nBasis, key -> {
+			double[][] points = defaultPoints(cell);
+			return new ShapeFunctionTable(cell, nBasis, points, defaultWeights(cell, points.length));
+		});
+	}
+
+	/**
+	 * Reference cell of an element with <tt>nVertices</tt> vertices in dimension <tt>dim</tt>
+	 *
+	 * @param dim
+	 * @param nVertices
+	 * @return null if there is no such cell
+	 */
+	public static Cell getCell(int dim, int nVertices) {
+		if(dim == 1 && nVertices == 2)
+			return Cell.LINE;
+		else if(dim == 2 && nVertices == 3)
+			return Cell.TRIANGLE;
+		else if(dim == 2 && nVertices == 4)
+			return Cell.RECTANGLE;
+		else if(dim == 3 && nVertices == 4)
+			return Cell.TETRAHEDRON;
+		else if(dim == 3 && nVertices == 8)
+			return Cell.HEXAHEDRON;
+		return null;
+	}
+
+	/**
+	 * Values <tt>N[i]</tt> and reference gradients <tt>dN[i][k]</tt> at the reference point <tt>r</tt>
+	 *
+	 * @param cell
+	 * @param nBasis
+	 * @param r
+	 * @param N (Output)
+	 * @param dN (Output)
+	 */
+	public static void evaluate(Cell cell, int nBasis, double[] r, double[] N, double[][] dN) {
+		if(nBasis == 1) {
+			N[0] = 1.0;
+			for(int k=0; k<cell.dim; k++)
+				dN[0][k] = 0.0;
+			return;
+		}
+		switch(cell) {
+		case LINE:
+			if(nBasis == 2) {
+				N[0] = (1-r[0])/2; dN[0][0] = -0.5;
+				N[1] = (1+r[0])/2; dN[1][0] = 0.5;
+				return;
+			} else if(nBasis == 3) {
+				N[0] = r[0]*(r[0]-1)/2; dN[0][0] = r[0]-0.5;
+				N[1] = (r[0]+1)*r[0]/2; dN[1][0] = r[0]+0.5;
+				N[2] = 1-r[0]*r[0];     dN[2][0] = -2*r[0];
+				return;
+			}
+			break;
+		case TRIANGLE: {
+			double a = r[0], b = r[1], c = 1-a-b;
+			if(nBasis == 3) {
+				N[0] = a; dN[0][0] = 1;  dN[0][1] = 0;
+				N[1] = b; dN[1][0] = 0;  dN[1][1] = 1;
+				N[2] = c; dN[2][0] = -1; dN[2][1] = -1;
+				return;
+			} else if(nBasis == 6) {
+				N[0] = (2*a-1)*a; dN[0][0] = 4*a-1;     dN[0][1] = 0;
+				N[1] = (2*b-1)*b; dN[1][0] = 0;         dN[1][1] = 4*b-1;
+				N[2] = (2*c-1)*c; dN[2][0] = 1-4*c;     dN[2][1] = 1-4*c;
+				N[3] = 4*a*b;     dN[3][0] = 4*b;       dN[3][1] = 4*a;
+				N[4] = 4*b*c;     dN[4][0] = -4*b;      dN[4][1] = 4*(c-b);
+				N[5] = 4*a*c;     dN[5][0] = 4*(c-a);   dN[5][1] = -4*a;
+				return;
+			}
+			break;
+		}
+		case RECTANGLE:
+			if(nBasis == 4) {
+				double[][] vt = {{-1,-1}, {1,-1}, {1,1}, {-1,1}};
+				for(int i=0; i<4; i++) {
+					double fr = 1+vt[i][0]*r[0], fs = 1+vt[i][1]*r[1];
+					N[i] = fr*fs/4;
+					dN[i][0] = vt[i][0]*fs/4;
+					dN[i][1] = fr*vt[i][1]/4;
+				}
+				return;
+			}
+			break;
+		case TETRAHEDRON:
+			if(nBasis == 4) {
+				N[0] = r[0]; N[1] = r[1]; N[2] = r[2]; N[3] = 1-r[0]-r[1]-r[2];
+				for(int i=0; i<4; i++)
+					for(int k=0; k<3; k++)
+						dN[i][k] = (i == 3) ? -1 : (i == k ? 1 : 0);
+				return;
+			}
+			break;
+		case HEXAHEDRON:
+			if(nBasis == 8) {
+				double[][] vt = hexVertices;
+				for(int i=0; i<8; i++) {
+					double fr = 1+vt[i][0]*r[0], fs = 1+vt[i][1]*r[1], ft = 1+vt[i][2]*r[2];
+					N[i] = fr*fs*ft/8;
+					dN[i][0] = vt[i][0]*fs*ft/8;
+					dN[i][1] = fr*vt[i][1]*ft/8;
+					dN[i][2] = fr*fs*vt[i][2]/8;
+				}
+				return;
+			}
+			break;
+		}
+		throw new FutureyeException("No shape functions with "+nBasis+" DOFs on "+cell);
+	}
+
+	/**
+	 * Reference coordinates of the vertices, in the order of the vertex shape functions
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public static double[][] referenceVertices(Cell cell) {
+		switch(cell) {
+		case LINE:
+			return new double[][] {{-1}, {1}};
+		case TRIANGLE:
+			return new double[][] {{1,0}, {0,1}, {0,0}};
+		case RECTANGLE:
+			return new double[][] {{-1,-1}, {1,-1}, {1,1}, {-1,1}};
+		case TETRAHEDRON:
+			return new double[][] {{1,0,0}, {0,1,0}, {0,0,1}, {0,0,0}};
+		default:
+			double[][] vt = new double[8][];
+			for(int i=0; i<8; i++)
+				vt[i] = hexVertices[i].clone();
+			return vt;
+		}
+	}
+
+	// vertices of the reference hexahedron, same order as SFTrilinearLocal3D.vt
+	private static final double[][] hexVertices = {
+		{1,1,1}, {1,-1,1}, {-1,-1,1}, {-1,1,1},
+		{1,1,-1}, {1,-1,-1}, {-1,-1,-1}, {-1,1,-1}
+	};
+
+	// Gauss-Legendre points and weights on [-1,1]
+	private static final double[][] gauss2 = {{-1/Math.sqrt(3), 1/Math.sqrt(3)}, {1, 1}};
+	private static final double[][] gauss3 = {{-Math.sqrt(0.6), 0, Math.sqrt(0.6)}, {5.0/9, 8.0/9, 5.0/9}};
+
+	/**
+	 * Points of the default quadrature rule of <tt>cell</tt>
+	 */
+	public static double[][] defaultPoints(Cell cell) {
+		switch(cell) {
+		case LINE: {
+			double[][] p = new double[3][];
+			for(int i=0; i<3; i++)
+				p[i] = new double[] {gauss3[0][i]};
+			return p;
+		}
+		case TRIANGLE: {
+			double s15 = Math.sqrt(15);
+			double a1 = (6-s15)/21, a2 = (6+s15)/21;
+			return new double[][] {
+				{1.0/3, 1.0/3},
+				{a1, a1}, {1-2*a1, a1}, {a1, 1-2*a1},
+				{a2, a2}, {1-2*a2, a2}, {a2, 1-2*a2}
+			};
+		}
+		case RECTANGLE: {
+			double[][] p = new double[4][];
+			for(int i=0, c=0; i<2; i++)
+				for(int j=0; j<2; j++)
+					p[c++] = new double[] {gauss2[0][i], gauss2[0][j]};
+			return p;
+		}
+		case TETRAHEDRON:
+			return new double[][] {
+				{0.25, 0.25, 0.25},
+				{0.5, 1.0/6, 1.0/6}, {1.0/6, 0.5, 1.0/6}, {1.0/6, 1.0/6, 0.5}, {1.0/6, 1.0/6, 1.0/6}
+			};
+		default: {
+			double[][] p = new double[8][];
+			for(int i=0, c=0; i<2; i++)
+				for(int j=0; j<2; j++)
+					for(int k=0; k<2; k++)
+						p[c++] = new double[] {gauss2[0][i], gauss2[0][j], gauss2[0][k]};
+			return p;
+		}
+		}
+	}
+
+	/**
+	 * Weights of the default quadrature rule of <tt>cell</tt>, they sum up to the
+	 * measure of the reference cell
+	 */
+	public static double[] defaultWeights(Cell cell, int nPoints) {
+		switch(cell) {
+		case LINE:
+			return gauss3[1].clone();
+		case TRIANGLE: {
+			double s15 = Math.sqrt(15);
+			double w1 = (155-s15)/2400, w2 = (155+s15)/2400;
+			return new double[] {9.0/80, w1, w1, w1, w2, w2, w2};
+		}
+		case TETRAHEDRON:
+			return new double[] {-2.0/15, 3.0/40, 3.0/40, 3.0/40, 3.0/40};
+		default: {
+			double[] w = new double[nPoints];
+			java.util.Arrays.fill(w, 1.0);
+			return w;
+		}
+		}
+	}
+}
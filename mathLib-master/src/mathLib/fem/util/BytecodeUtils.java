@@ -6,40 +6,94 @@ import static org.apache.bcel.Constants.ACC_SUPER;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.bcel.generic.AALOAD;
+import org.apache.bcel.generic.ALOAD;
 import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.BranchHandle;
 import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.DALOAD;
+import org.apache.bcel.generic.DASTORE;
+import org.apache.bcel.generic.GOTO;
+import org.apache.bcel.generic.IF_ICMPLT;
+import org.apache.bcel.generic.IINC;
+import org.apache.bcel.generic.ILOAD;
+import org.apache.bcel.generic.ISTORE;
 import org.apache.bcel.generic.InstructionConstants;
 import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
 import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.LocalVariableGen;
 import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.PUSH;
 import org.apache.bcel.generic.Type;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 import mathLib.fem.assembler.AssembleParam;
 import mathLib.func.symbolic.basic.FComposite;
 import mathLib.func.symbolic.intf.MathFunc;
+import mathLib.func.symbolic.MathFuncOptimizer;
 import mathLib.func.symbolic.operator.FBinaryOp;
+import mathLib.func.symbolic.operator.FUniaryOp;
+import mathLib.util.CompiledFunc;
 
 @SuppressWarnings("deprecation")
 public class BytecodeUtils {
 	public static void postOrder(MathFunc func, List<MathFunc> list) {
+		postOrder(func, list, new IdentityHashMap<MathFunc, Boolean>());
+	}
+
+	/**
+	 * Nodes shared by several parents (e.g. after <tt>MathFuncOptimizer</tt>)
+	 * are listed once
+	 */
+	protected static void postOrder(MathFunc func, List<MathFunc> list, Map<MathFunc, Boolean> visited) {
+		if(visited.put(func, Boolean.TRUE) != null)
+			return;
 		if(func instanceof FBinaryOp) {
-			postOrder(((FBinaryOp) func).arg1, list);
-			postOrder(((FBinaryOp) func).arg2, list);
+			postOrder(((FBinaryOp) func).arg1, list, visited);
+			postOrder(((FBinaryOp) func).arg2, list, visited);
+		} else if(func instanceof FUniaryOp) {
+			postOrder(((FUniaryOp) func).arg, list, visited);
 		} else if(func instanceof FComposite) {
 			FComposite fc = (FComposite)func;
 			for(Entry<String, MathFunc> e : fc.fInners.entrySet()) {
-				postOrder(e.getValue(), list);
+				postOrder(e.getValue(), list, visited);
 			}
-			postOrder(fc.fOuter, list);
+			postOrder(fc.fOuter, list, visited);
 		}
 		list.add(func);
 	}
 
+	/**
+	 * Key of a compiled class in the <tt>FuncClassLoader</tt> cache
+	 *
+	 * @param generator - code generator, e.g. "asm" or "bcel"
+	 * @param func - function to be compiled
+	 * @param varNames - variable order passed to <tt>compile()</tt>, the order of
+	 *        <tt>func.getVarNames()</tt> if empty
+	 * @param canonical - see <tt>MathFuncOptimizer.getCanonicalKey()</tt>
+	 * @return
+	 */
+	public static String getCacheKey(String generator, MathFunc func, String[] varNames, String canonical) {
+		StringBuilder sb = new StringBuilder(generator).append('|');
+		if(varNames == null || varNames.length == 0) {
+			for(String name : func.getVarNames())
+				sb.append(name).append(',');
+		} else {
+			for(String name : varNames)
+				sb.append(name).append(',');
+		}
+		return sb.append('|').append(canonical).toString();
+	}
+
 	public static Map<MathFunc, Integer> getFuncRefsMap(MathFunc func) {
 		List<MathFunc> list = new ArrayList<MathFunc>();
 		postOrder(func, list);
@@ -52,10 +106,25 @@ public class BytecodeUtils {
 
 	public static ClassGen genClass(MathFunc func, String[] varNames, String funcClsName,
 			boolean writeClassFile, boolean staticMethod) {
+		return genClass(func, varNames, funcClsName, writeClassFile, staticMethod, null);
+	}
+
+	/**
+	 * @param func
+	 * @param varNames
+	 * @param funcClsName
+	 * @param writeClassFile
+	 * @param staticMethod
+	 * @param funcRefs (Output) if not <tt>null</tt>, the nodes of the generated
+	 *        (optimized) expression in the order expected by <tt>CompiledFunc.setFuncRefs()</tt>
+	 * @return
+	 */
+	public static ClassGen genClass(MathFunc func, String[] varNames, String funcClsName,
+			boolean writeClassFile, boolean staticMethod, List<MathFunc> funcRefs) {
 		String packageName = "edu.uta.futureye.bytecode";
 		String clsName = funcClsName;
 		String fullClsName = packageName+"."+clsName;
-		ClassGen cg = new ClassGen(fullClsName, "edu.uta.futureye.bytecode.CompiledFunc",
+		ClassGen cg = new ClassGen(fullClsName, CompiledFunc.class.getName(),
 				"<generated>", ACC_PUBLIC | ACC_SUPER, null);
 		ConstantPoolGen cp = cg.getConstantPool(); // cg creates constant pool
 		InstructionList il = new InstructionList();
@@ -100,7 +169,16 @@ public class BytecodeUtils {
 		//TODO the call of 'setArgIdx()' in 'bytecodeGen()' may be not necessary
 		func.setArgIdx(argsMap);
 
+		MathFuncOptimizer opt = null;
+		if(MathFuncOptimizer.enabled) {
+			opt = new MathFuncOptimizer();
+			func = opt.optimize(func);
+			opt.beginMethod(-1);
+		}
+
 		Map<MathFunc, Integer> refsMap = getFuncRefsMap(func);
+		if(funcRefs != null)
+			postOrder(func, funcRefs);
 
 		if(staticMethod)
 			func.bytecodeGen(clsName, mg, cp, factory, il, argsMap, BytecodeConst.argIdx, refsMap);
@@ -112,6 +190,9 @@ public class BytecodeUtils {
 		cg.addMethod(mg.getMethod());
 		il.dispose(); // Allow instruction handles to be reused
 
+		if(!staticMethod)
+			genBatchMethod(cg, func, fullClsName, factory, argsMap, refsMap, opt);
+
 		cg.addEmptyConstructor(ACC_PUBLIC);
 		if(writeClassFile) {
 			try {
@@ -122,4 +203,134 @@ public class BytecodeUtils {
 		}
 		return cg;
 	}
+
+	/**
+	 * Generate the batch method overriding <tt>CompiledFunc.applyBatch()</tt> (BCEL version)
+	 * <pre>
+	 * void applyBatch(AssembleParam ap, double[] row, double[][] args, double[] out, int n) {
+	 *   for(int i=0; i&lt;n; i++) {
+	 *     row[0] = args[0][i]; row[1] = args[1][i]; ...
+	 *     out[i] = {expression on row};
+	 *   }
+	 * }
+	 * </pre>
+	 * <tt>row</tt> takes the place of <tt>args</tt> in <tt>apply(ap, args)</tt>,
+	 * so the code of each node is generated exactly as for <tt>apply()</tt>.
+	 */
+	public static void genBatchMethod(ClassGen cg, MathFunc func, String fullClsName,
+			InstructionFactory factory, Map<String, Integer> argsMap, Map<MathFunc, Integer> refsMap,
+			MathFuncOptimizer opt) {
+		if(opt != null)
+			opt.beginMethod(-1);
+		ConstantPoolGen cp = cg.getConstantPool();
+		InstructionList il = new InstructionList();
+		MethodGen mg = new MethodGen(ACC_PUBLIC, Type.VOID,
+				new Type[] {
+					Type.getType(AssembleParam.class),
+					new ArrayType(Type.DOUBLE, 1),
+					new ArrayType(Type.DOUBLE, 2),
+					new ArrayType(Type.DOUBLE, 1),
+					Type.INT
+				},
+				new String[] { "ap", "row", "args", "out", "n" },
+				"applyBatch", fullClsName, il, cp);
+		int rowIdx = BytecodeConst.argIdx+1;
+		int argsIdx = rowIdx+1, outIdx = rowIdx+2, nIdx = rowIdx+3;
+
+		LocalVariableGen lg = mg.addLocalVariable("i", Type.INT, null, null);
+		int iIdx = lg.getIndex();
+		il.append(new PUSH(cp, 0));
+		lg.setStart(il.append(new ISTORE(iIdx)));
+		BranchHandle gotoCond = il.append(new GOTO(null));
+
+		InstructionHandle body = null;
+		for(int k=0; k<argsMap.size(); k++) {
+			InstructionHandle h = il.append(new ALOAD(rowIdx));
+			if(body == null) body = h;
+			il.append(new PUSH(cp, k));
+			il.append(new ALOAD(argsIdx));
+			il.append(new PUSH(cp, k));
+			il.append(new AALOAD());
+			il.append(new ILOAD(iIdx));
+			il.append(new DALOAD());
+			il.append(new DASTORE());
+		}
+		InstructionHandle h = il.append(new ALOAD(outIdx));
+		if(body == null) body = h;
+		il.append(new ILOAD(iIdx));
+		func.bytecodeGen(cg.getClassName(), mg, cp, factory, il, argsMap, rowIdx, refsMap);
+		il.append(new DASTORE());
+		il.append(new IINC(iIdx, 1));
+
+		InstructionHandle cond = il.append(new ILOAD(iIdx));
+		il.append(new ILOAD(nIdx));
+		il.append(new IF_ICMPLT(body));
+		gotoCond.setTarget(cond);
+		il.append(InstructionConstants.RETURN);
+
+		mg.setMaxStack();
+		mg.setMaxLocals();
+		cg.addMethod(mg.getMethod());
+		il.dispose();
+	}
+
+	/**
+	 * Generate the batch method overriding <tt>CompiledFunc.applyBatch()</tt> (ASM version),
+	 * see <tt>genBatchMethod(ClassGen,...)</tt>
+	 */
+	public static void genBatchMethod(ClassGenerator cgen, MathFunc func,
+			Map<String, Integer> argsMap, Map<MathFunc, Integer> refsMap, MathFuncOptimizer opt) {
+		int rowIdx = BytecodeConst.argIdx+1;
+		int outIdx = rowIdx+2, nIdx = rowIdx+3, iIdx = rowIdx+4;
+		//'args' is moved out of slot 3 which FComposite uses as scratch array
+		int argsIdx = rowIdx+5;
+		if(opt != null)
+			opt.beginMethod(argsIdx+1);
+		String desc = org.objectweb.asm.Type.getMethodDescriptor(org.objectweb.asm.Type.VOID_TYPE,
+				org.objectweb.asm.Type.getType(AssembleParam.class),
+				org.objectweb.asm.Type.getType(double[].class),
+				org.objectweb.asm.Type.getType(double[][].class),
+				org.objectweb.asm.Type.getType(double[].class),
+				org.objectweb.asm.Type.INT_TYPE);
+		MethodVisitor mv = cgen.startMethod(Opcodes.ACC_PUBLIC, "applyBatch", desc);
+		Label start = new Label();
+		Label end = new Label();
+		cgen.startCode(mv, start);
+
+		mv.visitVarInsn(Opcodes.ALOAD, rowIdx+1);
+		mv.visitVarInsn(Opcodes.ASTORE, argsIdx);
+		mv.visitInsn(Opcodes.ACONST_NULL);
+		mv.visitVarInsn(Opcodes.ASTORE, rowIdx+1);
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitVarInsn(Opcodes.ISTORE, iIdx);
+		Label cond = new Label();
+		Label body = new Label();
+		mv.visitJumpInsn(Opcodes.GOTO, cond);
+
+		mv.visitLabel(body);
+		for(int k=0; k<argsMap.size(); k++) {
+			mv.visitVarInsn(Opcodes.ALOAD, rowIdx);
+			mv.visitLdcInsn(k);
+			mv.visitVarInsn(Opcodes.ALOAD, argsIdx);
+			mv.visitLdcInsn(k);
+			mv.visitInsn(Opcodes.AALOAD);
+			mv.visitVarInsn(Opcodes.ILOAD, iIdx);
+			mv.visitInsn(Opcodes.DALOAD);
+			mv.visitInsn(Opcodes.DASTORE);
+		}
+		mv.visitVarInsn(Opcodes.ALOAD, outIdx);
+		mv.visitVarInsn(Opcodes.ILOAD, iIdx);
+		func.bytecodeGen(mv, argsMap, rowIdx, refsMap, cgen.getClassName());
+		mv.visitInsn(Opcodes.DASTORE);
+		mv.visitIincInsn(iIdx, 1);
+
+		mv.visitLabel(cond);
+		mv.visitVarInsn(Opcodes.ILOAD, iIdx);
+		mv.visitVarInsn(Opcodes.ILOAD, nIdx);
+		mv.visitJumpInsn(Opcodes.IF_ICMPLT, body);
+		mv.visitInsn(Opcodes.RETURN);
+
+		mv.visitMaxs(-1, -1); // Auto generated
+		cgen.endCode(mv, end);
+	}
 }
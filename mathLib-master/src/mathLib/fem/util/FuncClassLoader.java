@@ -1,14 +1,34 @@
 package mathLib.fem.util;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.apache.bcel.generic.ClassGen;
 
 public class FuncClassLoader<T> extends ClassLoader {
 	public static FuncClassLoader<?> instance = null;
-	
+
+	/**
+	 * Maximum number of compiled classes kept in the cache
+	 */
+	protected static int cacheCapacity = 256;
+
+	/**
+	 * Compiled classes keyed by canonical expression and variable order,
+	 * in least recently used order
+	 */
+	@SuppressWarnings("serial")
+	protected static final Map<String, Class<?>> cache = new LinkedHashMap<String, Class<?>>(64, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Class<?>> eldest) {
+			return size() > cacheCapacity;
+		}
+	};
+
 	public FuncClassLoader(ClassLoader classLoader) {
 		super(classLoader);
 	}
-	
+
 	@SuppressWarnings("unchecked")
 	public static <T> FuncClassLoader<T> getInstance(ClassLoader classLoader) {
 		if(instance == null) {
@@ -17,7 +37,7 @@ public class FuncClassLoader<T> extends ClassLoader {
 		}
 		return (FuncClassLoader<T>) instance;
 	}
-	
+
 	/**
 	 * Return an instance from a ClassGen object
 	 *
@@ -40,7 +60,7 @@ public class FuncClassLoader<T> extends ClassLoader {
 
 	/**
 	 * Define a class by giving the bytecode array
-	 * 
+	 *
 	 * @param name
 	 * @param data
 	 * @return
@@ -48,4 +68,73 @@ public class FuncClassLoader<T> extends ClassLoader {
 	public Class<?> defineClassForName(String name, byte[] data) {
 		return this.defineClass(name, data, 0, data.length);
 	}
+
+	//////////////////////////Compiled class cache//////////////////////////
+
+	/**
+	 * Define a class in a new class loader of its own, so that the class can
+	 * be unloaded once it is evicted from the cache and no instance is in use
+	 *
+	 * @param parent
+	 * @param name
+	 * @param data
+	 * @return
+	 */
+	public static Class<?> defineIsolated(ClassLoader parent, String name, byte[] data) {
+		return new FuncClassLoader<Object>(parent).defineClassForName(name, data);
+	}
+
+	/**
+	 * Return the cached class compiled for <tt>key</tt> and mark it as recently used
+	 *
+	 * @param key
+	 * @return <tt>null</tt> if not in the cache
+	 */
+	public static Class<?> getCachedClass(String key) {
+		synchronized(cache) {
+			return cache.get(key);
+		}
+	}
+
+	/**
+	 * Put a compiled class into the cache, the least recently used class
+	 * is evicted if the cache is full
+	 *
+	 * @param key
+	 * @param cls
+	 */
+	public static void putCachedClass(String key, Class<?> cls) {
+		synchronized(cache) {
+			cache.put(key, cls);
+		}
+	}
+
+	/**
+	 * Set the maximum number of cached classes, <tt>0</tt> disables the cache
+	 *
+	 * @param capacity
+	 */
+	public static void setCacheCapacity(int capacity) {
+		synchronized(cache) {
+			cacheCapacity = Math.max(0, capacity);
+			while(cache.size() > cacheCapacity)
+				cache.remove(cache.keySet().iterator().next());
+		}
+	}
+
+	public static int getCacheCapacity() {
+		return cacheCapacity;
+	}
+
+	public static int getCacheSize() {
+		synchronized(cache) {
+			return cache.size();
+		}
+	}
+
+	public static void clearCache() {
+		synchronized(cache) {
+			cache.clear();
+		}
+	}
 }
@@ -93,6 +93,53 @@ public class MeshGenerator {
 		return mesh;
 	}
 
+	/**
+	 * Generate a quadrilateral mesh on [x0,x1]*[y0,y1] with nx elements in X
+	 * direction and ny elements in Y direction. The nodes of the reference grid
+	 * (s,t) in [0,1]^2 are mapped to
+	 * <tt>x = x0 + (x1-x0)*(s + distortion*s*t), y = y0 + (y1-y0)*t</tt>,
+	 * <tt>distortion=0</tt> gives rectangles, otherwise the elements are not parallelograms.
+	 * <p>
+	 * Node <tt>j*(nx+1)+i+1</tt> is grid point (i,j), the vertices of each element are
+	 * numbered counterclockwise from the lower left.
+	 *
+	 * @param x0
+	 * @param x1
+	 * @param y0
+	 * @param y1
+	 * @param nx
+	 * @param ny
+	 * @param distortion
+	 * @return
+	 */
+	public static Mesh quadrilateral2D(double x0, double x1, double y0, double y1,
+			int nx, int ny, double distortion) {
+		Mesh mesh = new Mesh();
+		for (int j = 0; j <= ny; j++) {
+			double t = (double) j / ny;
+			for (int i = 0; i <= nx; i++) {
+				double s = (double) i / nx;
+				Node node = new Node(j * (nx + 1) + i + 1,
+						x0 + (x1 - x0) * (s + distortion * s * t), y0 + (y1 - y0) * t);
+				mesh.addNode(node);
+			}
+		}
+
+		NodeList nodes = mesh.getNodeList();
+		for (int j = 0; j < ny; j++) {
+			for (int i = 0; i < nx; i++) {
+				int n1 = j * (nx + 1) + i + 1;
+				NodeList list = new NodeList();
+				list.add(nodes.at(n1));
+				list.add(nodes.at(n1 + 1));
+				list.add(nodes.at(n1 + nx + 2));
+				list.add(nodes.at(n1 + nx + 1));
+				mesh.addElement(new Element(list));
+			}
+		}
+		return mesh;
+	}
+
 	public static void main(String[] args) {
 		// TODO Auto-generated method stub
 		Mesh test = rectangle2D(0,1,0,1,3,3);
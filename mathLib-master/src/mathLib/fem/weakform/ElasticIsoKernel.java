@@ -0,0 +1,89 @@
+package mathLib.fem.weakform;
+
+import mathLib.fem.assembler.NumericKernel;
+import mathLib.func.symbolic.intf.VecMathFunc;
+
+/**
+ * Numeric kernel of the 2D isotropic linear elasticity weak forms:
+ * <blockquote><pre>
+ *   (D*\epsilon(u), \epsilon(v)) = (b, v) + (t, v)_\Gamma2
+ *
+ *   \epsilon(u) = (u1_x, u2_y, u1_y+u2_x)
+ *   D = coef1*[d11 d12 0; d12 d11 0; 0 0 d33]
+ * </pre></blockquote>
+ * The material matrix, body force <tt>b</tt> and traction <tt>t</tt> are read from the
+ * weak form at assembly time.
+ *
+ */
+abstract class ElasticIsoKernel extends NumericKernel {
+	// coef1, d11, d12, d33
+	protected double[] material = new double[4];
+	protected double[] fb1 = new double[0], fb2 = new double[0];
+
+	/**
+	 * @param material (Output) coef1, d11, d12, d33
+	 */
+	protected abstract void getMaterial(double[] material);
+
+	protected abstract VecMathFunc getBodyForce();
+
+	protected abstract VecMathFunc getTraction();
+
+	@Override
+	protected void assembleDomain(double[][] A, double[] b) {
+		getMaterial(material);
+		double d11 = material[0]*material[1];
+		double d12 = material[0]*material[2];
+		double d33 = material[0]*material[3];
+		VecMathFunc g_b = getBodyForce();
+		if(fb1.length < nq) {
+			fb1 = new double[nq]; fb2 = new double[nq];
+		}
+		interpolate(g_b == null ? null : g_b.get(1), fb1);
+		interpolate(g_b == null ? null : g_b.get(2), fb2);
+		for(int q=0;q<nq;q++) {
+			double w = JxW[q];
+			double[][] dN = dphi[q];
+			for(int i=0;i<nDOFs;i++) {
+				double[] Ai = A[i];
+				double ix = w*dN[i][0], iy = w*dN[i][1];
+				boolean i1 = component[i] == 1;
+				for(int j=0;j<nDOFs;j++) {
+					double jx = dN[j][0], jy = dN[j][1];
+					if(i1) {
+						if(component[j] == 1)
+							Ai[j] += d11*ix*jx + d33*iy*jy;
+						else
+							Ai[j] += d12*ix*jy + d33*iy*jx;
+					} else {
+						if(component[j] == 1)
+							Ai[j] += d12*iy*jx + d33*ix*jy;
+						else
+							Ai[j] += d11*iy*jy + d33*ix*jx;
+					}
+				}
+				b[i] += w*(i1 ? fb1[q] : fb2[q])*phi[q][i];
+			}
+		}
+	}
+
+	@Override
+	protected boolean hasBorder() {
+		return getTraction() != null;
+	}
+
+	@Override
+	protected void assembleBorder(double[][] A, double[] b) {
+		VecMathFunc g_t = getTraction();
+		if(fb1.length < nbq) {
+			fb1 = new double[nbq]; fb2 = new double[nbq];
+		}
+		interpolate(g_t.get(1), fb1);
+		interpolate(g_t.get(2), fb2);
+		for(int q=0;q<nbq;q++) {
+			double w = bJxW[q];
+			for(int i=0;i<nbDOFs;i++)
+				b[bRow[i]] += w*(bComponent[i] == 1 ? fb1[q] : fb2[q])*bPhi[q][i];
+		}
+	}
+}
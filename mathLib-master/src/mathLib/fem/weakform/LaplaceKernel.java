@@ -0,0 +1,76 @@
+package mathLib.fem.weakform;
+
+import mathLib.fem.assembler.NumericKernel;
+
+/**
+ * Numeric kernel of <tt>WeakFormLaplace</tt>:
+ * <blockquote><pre>
+ *   (k*Grad{u}, Grad{v}) + (c*u, v) + (d*u, v)_\Gamma2 = (f, v) + (g, v)_\Gamma2
+ * </pre></blockquote>
+ * The coefficients are read from the weak form at assembly time.
+ *
+ */
+class LaplaceKernel extends NumericKernel {
+	protected WeakFormLaplace weakForm;
+	protected double[] fk = new double[0], fc = new double[0], ff = new double[0];
+
+	LaplaceKernel(WeakFormLaplace weakForm) {
+		this.weakForm = weakForm;
+	}
+
+	@Override
+	protected void assembleDomain(double[][] A, double[] b) {
+		if(fk.length < nq) {
+			fk = new double[nq]; fc = new double[nq]; ff = new double[nq];
+		}
+		boolean hasK = weakForm.g_k != null;
+		if(hasK) {
+			interpolate(weakForm.g_k, fk);
+			interpolate(weakForm.g_c, fc);
+		}
+		interpolate(weakForm.g_f, ff);
+		for(int q=0;q<nq;q++) {
+			double w = JxW[q];
+			double wk = hasK ? w*fk[q] : w;
+			double wc = hasK ? w*fc[q] : 0.0;
+			double[] N = phi[q];
+			double[][] dN = dphi[q];
+			for(int i=0;i<nDOFs;i++) {
+				double[] Ai = A[i];
+				double[] dNi = dN[i];
+				for(int j=0;j<nDOFs;j++) {
+					double[] dNj = dN[j];
+					double s = 0.0;
+					for(int d=0;d<dim;d++)
+						s += dNi[d]*dNj[d];
+					Ai[j] += wk*s + wc*N[i]*N[j];
+				}
+				b[i] += w*ff[q]*N[i];
+			}
+		}
+	}
+
+	@Override
+	protected boolean hasBorder() {
+		return weakForm.g_d != null || weakForm.g_g != null;
+	}
+
+	@Override
+	protected void assembleBorder(double[][] A, double[] b) {
+		if(fk.length < nbq) {
+			fk = new double[nbq]; fc = new double[nbq]; ff = new double[nbq];
+		}
+		interpolate(weakForm.g_d, fc);
+		interpolate(weakForm.g_g, ff);
+		for(int q=0;q<nbq;q++) {
+			double w = bJxW[q];
+			double[] N = bPhi[q];
+			for(int i=0;i<nbDOFs;i++) {
+				double[] Ai = A[bRow[i]];
+				for(int j=0;j<nbDOFs;j++)
+					Ai[bRow[j]] += w*fc[q]*N[i]*N[j];
+				b[bRow[i]] += w*ff[q]*N[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package mathLib.fem.weakform;
+
+import mathLib.fem.assembler.NumericKernel;
+import mathLib.func.symbolic.intf.MathFunc;
+import mathLib.func.symbolic.intf.VecMathFunc;
+
+/**
+ * Numeric kernel of the (linearized) Navier-Stokes weak forms in 2D and 3D, the
+ * velocity components are 1..dim and the pressure is component dim+1:
+ * <blockquote><pre>
+ *   (\nabla\vec{v},k*\nabla\vec{u}) + (\vec{U}\cdot\nabla\vec{u},\vec{v}) + (c*\vec{u},\vec{v})
+ *   	- (div{\vec{v}},p) + (q,div{\vec{u}}) + (d*\vec{u},\vec{v})_\Gamma2 = (\vec{v},\vec{f})
+ * </pre></blockquote>
+ * The coefficients are read from the weak form at assembly time.
+ *
+ */
+abstract class NavierStokesKernel extends NumericKernel {
+	protected int nVelocity;
+	protected double[] fk = new double[0], fc = new double[0];
+	protected double[][] fU = new double[0][], ff = new double[0][];
+
+	NavierStokesKernel(int nVelocity) {
+		this.nVelocity = nVelocity;
+	}
+
+	protected abstract VecMathFunc getF();
+
+	protected abstract MathFunc getK();
+
+	protected abstract VecMathFunc getU();
+
+	protected abstract MathFunc getC();
+
+	protected abstract VecMathFunc getD();
+
+	private void allocate(int n) {
+		if(fk.length < n) {
+			fk = new double[n]; fc = new double[n];
+			fU = new double[nVelocity][n]; ff = new double[nVelocity][n];
+		}
+	}
+
+	@Override
+	protected void assembleDomain(double[][] A, double[] b) {
+		allocate(nq);
+		interpolate(getK(), fk);
+		interpolate(getC(), fc);
+		VecMathFunc g_U = getU(), g_f = getF();
+		for(int c=0;c<nVelocity;c++) {
+			interpolate(g_U == null ? null : g_U.get(c+1), fU[c]);
+			interpolate(g_f == null ? null : g_f.get(c+1), ff[c]);
+		}
+		int pressure = nVelocity+1;
+		for(int q=0;q<nq;q++) {
+			double w = JxW[q];
+			double[] N = phi[q];
+			double[][] dN = dphi[q];
+			for(int i=0;i<nDOFs;i++) {
+				double[] Ai = A[i];
+				int ci = component[i];
+				if(ci == pressure) {
+					//(q,div{\vec{u}})
+					for(int j=0;j<nDOFs;j++) {
+						int cj = component[j];
+						if(cj != pressure)
+							Ai[j] += w*N[i]*dN[j][cj-1];
+					}
+					continue;
+				}
+				for(int j=0;j<nDOFs;j++) {
+					int cj = component[j];
+					if(cj == ci) {
+						double grad = 0.0, conv = 0.0;
+						for(int d=0;d<dim;d++) {
+							grad += dN[i][d]*dN[j][d];
+							conv += fU[d][q]*dN[j][d];
+						}
+						Ai[j] += w*(fk[q]*grad + (conv + fc[q]*N[j])*N[i]);
+					} else if(cj == pressure) {
+						//- (div{\vec{v}},p)
+						Ai[j] -= w*dN[i][ci-1]*N[j];
+					}
+				}
+				b[i] += w*ff[ci-1][q]*N[i];
+			}
+		}
+	}
+
+	@Override
+	protected boolean hasBorder() {
+		return getD() != null;
+	}
+
+	@Override
+	protected void assembleBorder(double[][] A, double[] b) {
+		VecMathFunc g_d = getD();
+		allocate(nbq);
+		for(int c=0;c<nVelocity;c++)
+			interpolate(g_d.get(c+1), fU[c]);
+		for(int q=0;q<nbq;q++) {
+			double w = bJxW[q];
+			double[] N = bPhi[q];
+			for(int i=0;i<nbDOFs;i++) {
+				int ci = bComponent[i];
+				if(ci > nVelocity)
+					continue;
+				double[] Ai = A[bRow[i]];
+				for(int j=0;j<nbDOFs;j++)
+					if(bComponent[j] == ci)
+						Ai[bRow[j]] += w*fU[ci-1][q]*N[i]*N[j];
+			}
+		}
+	}
+}
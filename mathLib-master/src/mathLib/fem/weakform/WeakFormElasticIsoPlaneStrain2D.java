@@ -1,5 +1,6 @@
 package mathLib.fem.weakform;
 
+import mathLib.fem.assembler.ElementKernel;
 import mathLib.fem.core.Element;
 import mathLib.fem.util.Utils;
 import mathLib.func.symbolic.intf.MathFunc;
@@ -89,4 +90,29 @@ public class WeakFormElasticIsoPlaneStrain2D extends AbstractVectorWeakForm {
 		this.E = E;
 		this.gamma = gamma;
 	}
+
+	/**
+	 * @return plane strain <tt>ElasticIsoKernel</tt>, it assembles both cross terms u1x*v2y and u2y*v1x of the D-matrix
+	 */
+	public ElementKernel createKernel() {
+		return new ElasticIsoKernel() {
+			@Override
+			protected void getMaterial(double[] material) {
+				material[0] = E/((1+gamma)*(1-2.0*gamma));
+				material[1] = 1-gamma;
+				material[2] = gamma;
+				material[3] = (1-2.0*gamma)/2.0;
+			}
+
+			@Override
+			protected VecMathFunc getBodyForce() {
+				return g_b;
+			}
+
+			@Override
+			protected VecMathFunc getTraction() {
+				return g_t;
+			}
+		};
+	}
 }
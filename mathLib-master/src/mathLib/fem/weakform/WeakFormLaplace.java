@@ -2,6 +2,7 @@ package mathLib.fem.weakform;
 
 import static mathLib.func.symbolic.FMath.*;
 
+import mathLib.fem.assembler.ElementKernel;
 import mathLib.fem.core.Element;
 import mathLib.fem.util.Utils;
 import mathLib.func.symbolic.intf.MathFunc;
@@ -101,4 +102,11 @@ public class WeakFormLaplace extends AbstractScalarWeakForm {
 		}
 		return null;		
 	}
+
+	/**
+	 * @return <tt>LaplaceKernel</tt> of the same integrals as <tt>leftHandSide()</tt> and <tt>rightHandSide()</tt>
+	 */
+	public ElementKernel createKernel() {
+		return new LaplaceKernel(this);
+	}
 }
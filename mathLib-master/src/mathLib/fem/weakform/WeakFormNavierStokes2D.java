@@ -2,6 +2,7 @@ package mathLib.fem.weakform;
 
 import static mathLib.func.symbolic.FMath.*;
 
+import mathLib.fem.assembler.ElementKernel;
 import mathLib.fem.core.Edge;
 import mathLib.fem.core.Element;
 import mathLib.fem.core.Node;
@@ -183,4 +184,36 @@ public class WeakFormNavierStokes2D extends AbstractVectorWeakForm {
 		else if(nComponent1 == 3 || nComponent2 == 3) return true;
 		else return false;
 	}
+
+	/**
+	 * @return <tt>NavierStokesKernel(2)</tt> of the Galerkin form, without the upwinding of <tt>leftHandSide()</tt>
+	 */
+	public ElementKernel createKernel() {
+		return new NavierStokesKernel(2) {
+			@Override
+			protected VecMathFunc getF() {
+				return g_f;
+			}
+
+			@Override
+			protected MathFunc getK() {
+				return g_k;
+			}
+
+			@Override
+			protected VecMathFunc getU() {
+				return g_U;
+			}
+
+			@Override
+			protected MathFunc getC() {
+				return g_c;
+			}
+
+			@Override
+			protected VecMathFunc getD() {
+				return g_d;
+			}
+		};
+	}
 }
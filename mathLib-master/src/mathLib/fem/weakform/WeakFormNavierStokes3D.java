@@ -3,6 +3,7 @@ package mathLib.fem.weakform;
 import static mathLib.func.symbolic.FMath.C;
 import static mathLib.func.symbolic.FMath.grad;
 
+import mathLib.fem.assembler.ElementKernel;
 import mathLib.fem.core.Element;
 import mathLib.fem.core.Face;
 import mathLib.fem.core.Node;
@@ -191,4 +192,36 @@ public class WeakFormNavierStokes3D extends AbstractVectorWeakForm {
 		else if(nComponent1 == 4 || nComponent2 == 4) return true;
 		else return false;
 	}
+
+	/**
+	 * @return <tt>NavierStokesKernel(3)</tt> of the Galerkin form, without the upwinding of <tt>leftHandSide()</tt>
+	 */
+	public ElementKernel createKernel() {
+		return new NavierStokesKernel(3) {
+			@Override
+			protected VecMathFunc getF() {
+				return g_f;
+			}
+
+			@Override
+			protected MathFunc getK() {
+				return g_k;
+			}
+
+			@Override
+			protected VecMathFunc getU() {
+				return g_U;
+			}
+
+			@Override
+			protected MathFunc getC() {
+				return g_c;
+			}
+
+			@Override
+			protected VecMathFunc getD() {
+				return g_d;
+			}
+		};
+	}
 }
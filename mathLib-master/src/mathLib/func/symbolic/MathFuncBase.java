@@ -35,6 +35,7 @@ import mathLib.fem.util.BytecodeUtils;
 import mathLib.fem.util.ClassGenerator;
 import mathLib.fem.util.Constant;
 import mathLib.fem.util.FuncClassLoader;
+import mathLib.fem.util.FutureyeException;
 import mathLib.func.symbolic.basic.FC;
 import mathLib.func.symbolic.basic.FComposite;
 import mathLib.func.symbolic.intf.MathFunc;
@@ -195,7 +196,7 @@ public abstract class MathFuncBase implements MathFunc, Cloneable {
 //		throw new UnsupportedOperationException();
 		FieldGen fg = new FieldGen(ACC_PUBLIC, new ArrayType(Type.getType(MathFunc.class), 1), "funcRefs", cp);
 		//System.out.println(fg.getSignature());
-		int idxFuncRefs = cp.addFieldref("edu.uta.futureye.bytecode.CompiledFunc", "funcRefs", fg.getSignature());
+		int idxFuncRefs = cp.addFieldref(CompiledFunc.class.getName(), "funcRefs", fg.getSignature());
 
 		il.append(new ALOAD(0));
 		il.append(new GETFIELD(idxFuncRefs));
@@ -203,7 +204,7 @@ public abstract class MathFuncBase implements MathFunc, Cloneable {
 		il.append(new AALOAD());
 		il.append(new ALOAD(BytecodeConst.assembleParamIdx+1));
 		il.append(new ALOAD(BytecodeConst.argIdx+1));
-		return  il.append(factory.createInvoke("edu.uta.futureye.function.intf.MathFunc", "apply",
+		return  il.append(factory.createInvoke(MathFunc.class.getName(), "apply",
 				Type.DOUBLE, new Type[] {
 					Type.getType(AssembleParam.class),
 					new ArrayType(Type.DOUBLE, 1)
@@ -236,18 +237,53 @@ public abstract class MathFuncBase implements MathFunc, Cloneable {
 			clsName = this.getClass().getSimpleName();
 		clsName = clsName + java.util.UUID.randomUUID().toString().replaceAll("-", "");
 
+		// Reuse the class compiled for an identical expression
+		String cacheKey = null;
+		if(MathFuncOptimizer.enabled) {
+			MathFuncOptimizer opt = new MathFuncOptimizer();
+			String canonical = opt.getCanonicalKey(opt.optimize(this));
+			if(canonical != null) {
+				cacheKey = BytecodeUtils.getCacheKey("bcel", this, varNames, canonical);
+				Class<?> c = FuncClassLoader.getCachedClass(cacheKey);
+				if(c != null)
+					return newCompiledFunc(c, null);
+			}
+		}
+
 		FuncClassLoader<CompiledFunc> fcl = new FuncClassLoader<CompiledFunc>(CompiledFunc.class.getClassLoader());
-		ClassGen genClass = BytecodeUtils.genClass(this, varNames, clsName, true, false);
+		List<MathFunc> list = new ArrayList<MathFunc>();
+		ClassGen genClass = BytecodeUtils.genClass(this, varNames, clsName, true, false, list);
 		CompiledFunc func = fcl.newInstance(genClass);
+		if(cacheKey != null)
+			FuncClassLoader.putCachedClass(cacheKey, func.getClass());
 
 		// Set funcRefs field in CompiledFunc
-		List<MathFunc> list = new ArrayList<MathFunc>();
-		BytecodeUtils.postOrder(this, list);
 		func.setFuncRefs(list.toArray(new MathFunc[0]));
 
 		return func;
 	}
 
+	/**
+	 * Create an instance of a compiled class and set its function references
+	 *
+	 * @param c
+	 * @param root - the expression the class was generated from, <tt>null</tt> if
+	 *        the expression contains only constants, variables and operators
+	 * @return
+	 */
+	protected static CompiledFunc newCompiledFunc(Class<?> c, MathFunc root) {
+		try {
+			CompiledFunc func = (CompiledFunc) c.newInstance();
+			List<MathFunc> list = new ArrayList<MathFunc>();
+			if(root != null)
+				BytecodeUtils.postOrder(root, list);
+			func.setFuncRefs(list.toArray(new MathFunc[0]));
+			return func;
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new FutureyeException(e.getMessage());
+		}
+	}
+
 	@Override
 	public CompiledFunc compileWithASM(String ...varNames) {
 
@@ -302,7 +338,30 @@ public abstract class MathFuncBase implements MathFunc, Cloneable {
 				//System.out.println("JIT compileWithASM: "+this.getName()+sb.toString()+" = "+expr);
 			}
 
-			Map<MathFunc, Integer> refsMap = BytecodeUtils.getFuncRefsMap(this);
+			// Simplify and share common subexpressions, a function compiled to
+			// a static field is generated as it is
+			MathFunc root = this;
+			MathFuncOptimizer opt = null;
+			if(MathFuncOptimizer.enabled && !this.compileToStaticField) {
+				opt = new MathFuncOptimizer();
+				root = opt.optimize(this);
+				opt.beginMethod(4); //slot 3 is used by FComposite
+			}
+
+			// Reuse the class compiled for an identical expression. Only expressions of constants,
+			// variables and operators are cached, they do not refer to other generated classes
+			// and get a class loader of their own so that they can be unloaded after eviction
+			String cacheKey = null;
+			if(opt != null) {
+				String canonical = opt.getCanonicalKey(root);
+				if(canonical != null) {
+					cacheKey = BytecodeUtils.getCacheKey("asm", this, varNames, canonical);
+					Class<?> c = FuncClassLoader.getCachedClass(cacheKey);
+					if(c != null)
+						return newCompiledFunc(c, root);
+				}
+			}
+			Map<MathFunc, Integer> refsMap = BytecodeUtils.getFuncRefsMap(root);
 
 			if (this.compileToStaticField) {
 				this.bytecodeGen(mv, argsMap, 2, refsMap, genClassName); //2 for args: double apply(Element e, Node n, double ...args);
@@ -319,7 +378,7 @@ public abstract class MathFuncBase implements MathFunc, Cloneable {
 
 				this.isCompiledToStaticFiled = true;
 			} else {
-				this.bytecodeGen(mv, argsMap, 2, refsMap, genClassName); //2 for args: double apply(Element e, Node n, double ...args);
+				root.bytecodeGen(mv, argsMap, 2, refsMap, genClassName); //2 for args: double apply(Element e, Node n, double ...args);
 			}
 			mv.visitInsn(retType.getOpcode(Opcodes.IRETURN));
 
@@ -329,6 +388,11 @@ public abstract class MathFuncBase implements MathFunc, Cloneable {
 			mv.visitMaxs(-1, -1); // Auto generated
 			cgen.endCode(mv, endMatchesLabel);
 
+			//A function compiled to a static field keeps the per-point apply() in
+			//the default CompiledFunc.applyBatch() so that the field is assigned
+			if(!this.compileToStaticField)
+				BytecodeUtils.genBatchMethod(cgen, root, argsMap, refsMap, opt);
+
 			cgen.endClass();
 
 			byte[] bcode = cgen.dump();
@@ -343,16 +407,16 @@ public abstract class MathFuncBase implements MathFunc, Cloneable {
 				fos.close();
 			}
 
-			Class<?> c = mcl.defineClassForName(null, bcode);
-
-			CompiledFunc func = (CompiledFunc) c.newInstance();
+			Class<?> c;
+			if(cacheKey != null) {
+				c = FuncClassLoader.defineIsolated(ClassGenerator.class.getClassLoader(), null, bcode);
+				FuncClassLoader.putCachedClass(cacheKey, c);
+			} else {
+				c = mcl.defineClassForName(null, bcode);
+			}
 
 			// Set funcRefs field in CompiledFunc
-			List<MathFunc> list = new ArrayList<MathFunc>();
-			BytecodeUtils.postOrder(this, list);
-			func.setFuncRefs(list.toArray(new MathFunc[0]));
-
-			return func;
+			return newCompiledFunc(c, root);
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException(e.getMessage());
@@ -0,0 +1,279 @@
+package mathLib.func.symbolic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mathLib.func.symbolic.basic.FC;
+import mathLib.func.symbolic.basic.FX;
+import mathLib.func.symbolic.intf.MathFunc;
+import mathLib.func.symbolic.operator.FAdd;
+import mathLib.func.symbolic.operator.FBinaryOp;
+import mathLib.func.symbolic.operator.FDiv;
+import mathLib.func.symbolic.operator.FMax;
+import mathLib.func.symbolic.operator.FMin;
+import mathLib.func.symbolic.operator.FMul;
+import mathLib.func.symbolic.operator.FShared;
+import mathLib.func.symbolic.operator.FSub;
+import mathLib.func.symbolic.operator.FUniaryOp;
+
+/**
+ * Simplification pass applied to an expression tree before code generation
+ * <ul>
+ * <li>Constant folding: an operator whose arguments are all constants is replaced
+ *     by its value, and <tt>f+0, 0+f, f-0, f*1, 1*f, f*0, 0*f, f/1</tt> are reduced</li>
+ * <li>Common-subexpression elimination: identical subtrees of <tt>FBinaryOp</tt>/<tt>FUniaryOp</tt>
+ *     nodes are hash-consed into one node, every node referenced more than once
+ *     is wrapped into an <tt>FShared</tt> which the code generators keep in a local variable</li>
+ * </ul>
+ * The input tree is not modified, all operators of the result are copies.
+ * Other nodes (composite functions, shape functions, user defined functions, functions
+ * compiled to a static field) are kept as they are and only shared by identity.
+ * <p>
+ * One optimizer instance is used for one compilation. Call <tt>beginMethod()</tt> before
+ * generating each method from the optimized tree.
+ *
+ */
+public class MathFuncOptimizer {
+	/**
+	 * Global switch used by <tt>compile()</tt> and <tt>compileWithASM()</tt>
+	 */
+	public static boolean enabled = true;
+
+	protected Map<String, MathFunc> table = new HashMap<String, MathFunc>();
+	protected Map<MathFunc, Integer> ids = new IdentityHashMap<MathFunc, Integer>();
+	protected Map<MathFunc, Integer> refCount = new IdentityHashMap<MathFunc, Integer>();
+	protected List<FShared> shared = new ArrayList<FShared>();
+
+	/**
+	 * Return the optimized copy of <tt>func</tt>
+	 *
+	 * @param func
+	 * @return
+	 */
+	public MathFunc optimize(MathFunc func) {
+		MathFunc root = canonical(func);
+		countRefs(root, new IdentityHashMap<MathFunc, Boolean>());
+		Map<MathFunc, FShared> wrappers = new IdentityHashMap<MathFunc, FShared>();
+		insertShared(root, wrappers, new IdentityHashMap<MathFunc, Boolean>());
+		return root;
+	}
+
+	/**
+	 * Number of subexpressions kept in local variables
+	 */
+	public int getSharedCount() {
+		return shared.size();
+	}
+
+	/**
+	 * Reset the state of the shared subexpressions before generating a method.
+	 * The <tt>i</tt>-th shared value uses the local variable slot <tt>firstLocal+2*i</tt>,
+	 * pass <tt>-1</tt> to let BCEL allocate the slots from the <tt>MethodGen</tt>.
+	 *
+	 * @param firstLocal
+	 */
+	public void beginMethod(int firstLocal) {
+		for(int i=0; i<shared.size(); i++) {
+			FShared s = shared.get(i);
+			s.localIndex = firstLocal < 0 ? -1 : firstLocal + 2*i;
+			s.stored = false;
+		}
+	}
+
+	/**
+	 * Canonical text of an optimized expression, equal for expressions that generate
+	 * the same code. Used as the key of the compiled class cache in <tt>FuncClassLoader</tt>.
+	 *
+	 * @param root - expression returned by <tt>optimize()</tt>
+	 * @return <tt>null</tt> if the expression contains nodes other than constants, variables
+	 *         and operators, since their generated code refers to the node objects
+	 */
+	public String getCanonicalKey(MathFunc root) {
+		StringBuilder sb = new StringBuilder();
+		if(appendKey(root, new IdentityHashMap<MathFunc, Integer>(), sb) < 0)
+			return null;
+		return sb.toString();
+	}
+
+	protected int appendKey(MathFunc f, Map<MathFunc, Integer> nums, StringBuilder sb) {
+		Integer num = nums.get(f);
+		if(num != null)
+			return num;
+		String node;
+		if(f.getClass() == FC.class) {
+			node = "c"+Long.toHexString(Double.doubleToLongBits(f.apply()));
+		} else if(f.getClass() == FX.class) {
+			node = "x"+f.getName();
+		} else if(f instanceof FShared || isOperator(f)) {
+			StringBuilder args = new StringBuilder();
+			for(MathFunc c : children(f)) {
+				int n = appendKey(c, nums, sb);
+				if(n < 0)
+					return -1;
+				args.append(n).append(',');
+			}
+			node = f.getClass().getSimpleName()+"("+args+")";
+		} else {
+			return -1;
+		}
+		num = nums.size();
+		nums.put(f, num);
+		sb.append(node).append(';');
+		return num;
+	}
+
+	protected boolean isOperator(MathFunc f) {
+		if(f instanceof FShared)
+			return false;
+		if(f instanceof MathFuncBase && ((MathFuncBase)f).compileToStaticField)
+			return false;
+		return f instanceof FBinaryOp || f instanceof FUniaryOp;
+	}
+
+	protected static boolean isConst(MathFunc f) {
+		return f.getClass() == FC.class;
+	}
+
+	protected static boolean isConst(MathFunc f, double v) {
+		return f.getClass() == FC.class && f.apply() == v;
+	}
+
+	protected int id(MathFunc f) {
+		Integer id = ids.get(f);
+		if(id == null) {
+			id = ids.size();
+			ids.put(f, id);
+		}
+		return id;
+	}
+
+	protected MathFunc intern(String key, MathFunc f) {
+		MathFunc old = table.get(key);
+		if(old != null)
+			return old;
+		table.put(key, f);
+		id(f);
+		return f;
+	}
+
+	/**
+	 * Bottom-up rebuild: fold constants and return the unique representative of each subtree
+	 */
+	protected MathFunc canonical(MathFunc f) {
+		if(f.getClass() == FC.class)
+			return intern("C"+Double.doubleToLongBits(f.apply()), f);
+		if(f.getClass() == FX.class)
+			return intern("X"+f.getName(), f);
+		if(!isOperator(f))
+			return intern("@"+id(f), f);
+
+		if(f instanceof FBinaryOp) {
+			FBinaryOp op = (FBinaryOp)f;
+			MathFunc a = canonical(op.arg1);
+			MathFunc b = canonical(op.arg2);
+			if(isConst(a) && isConst(b))
+				return canonical(FC.c(copyOp(op, a, b).apply()));
+			if(f instanceof FAdd) {
+				if(isConst(a, 0.0)) return b;
+				if(isConst(b, 0.0)) return a;
+			} else if(f instanceof FSub) {
+				if(isConst(b, 0.0)) return a;
+			} else if(f instanceof FMul) {
+				if(isConst(a, 0.0) || isConst(b, 0.0)) return canonical(FMath.C0);
+				if(isConst(a, 1.0)) return b;
+				if(isConst(b, 1.0)) return a;
+			} else if(f instanceof FDiv) {
+				if(isConst(b, 1.0)) return a;
+			}
+			int ia = id(a), ib = id(b);
+			//a+b and b+a are the same value in floating point
+			if((f instanceof FAdd || f instanceof FMul || f instanceof FMax || f instanceof FMin) && ia > ib) {
+				int t = ia; ia = ib; ib = t;
+			}
+			String key = f.getClass().getName()+"("+ia+","+ib+")";
+			MathFunc old = table.get(key);
+			if(old != null)
+				return old;
+			return intern(key, copyOp(op, a, b));
+		} else {
+			FUniaryOp op = (FUniaryOp)f;
+			MathFunc a = canonical(op.arg);
+			if(isConst(a))
+				return canonical(FC.c(copyOp(op, a).apply()));
+			String key = f.getClass().getName()+"("+id(a)+")";
+			MathFunc old = table.get(key);
+			if(old != null)
+				return old;
+			return intern(key, copyOp(op, a));
+		}
+	}
+
+	protected MathFunc copyOp(FBinaryOp op, MathFunc a, MathFunc b) {
+		FBinaryOp ret = (FBinaryOp)op.copy();
+		ret.arg1 = a;
+		ret.arg2 = b;
+		return ret;
+	}
+
+	protected MathFunc copyOp(FUniaryOp op, MathFunc a) {
+		FUniaryOp ret = (FUniaryOp)op.copy();
+		ret.arg = a;
+		return ret;
+	}
+
+	/**
+	 * Count the references from distinct parents in the DAG
+	 */
+	protected void countRefs(MathFunc f, Map<MathFunc, Boolean> visited) {
+		if(visited.put(f, Boolean.TRUE) != null || !isOperator(f))
+			return;
+		for(MathFunc c : children(f)) {
+			Integer n = refCount.get(c);
+			refCount.put(c, n == null ? 1 : n+1);
+			countRefs(c, visited);
+		}
+	}
+
+	/**
+	 * Replace the children referenced more than once by their <tt>FShared</tt> wrapper,
+	 * only the operator copies made by <tt>canonical()</tt> are modified
+	 */
+	protected MathFunc insertShared(MathFunc f, Map<MathFunc, FShared> wrappers,
+			Map<MathFunc, Boolean> done) {
+		if(!isOperator(f) || done.containsKey(f))
+			return f;
+		done.put(f, Boolean.TRUE);
+		if(f instanceof FBinaryOp) {
+			FBinaryOp op = (FBinaryOp)f;
+			op.arg1 = wrap(insertShared(op.arg1, wrappers, done), wrappers);
+			op.arg2 = wrap(insertShared(op.arg2, wrappers, done), wrappers);
+		} else {
+			FUniaryOp op = (FUniaryOp)f;
+			op.arg = wrap(insertShared(op.arg, wrappers, done), wrappers);
+		}
+		return f;
+	}
+
+	protected MathFunc wrap(MathFunc c, Map<MathFunc, FShared> wrappers) {
+		Integer n = refCount.get(c);
+		if(n == null || n < 2 || isConst(c) || c.getClass() == FX.class)
+			return c;
+		FShared s = wrappers.get(c);
+		if(s == null) {
+			s = new FShared(c);
+			wrappers.put(c, s);
+			shared.add(s);
+		}
+		return s;
+	}
+
+	protected static MathFunc[] children(MathFunc f) {
+		if(f instanceof FBinaryOp)
+			return new MathFunc[] { ((FBinaryOp)f).arg1, ((FBinaryOp)f).arg2 };
+		else
+			return new MathFunc[] { ((FUniaryOp)f).arg };
+	}
+}
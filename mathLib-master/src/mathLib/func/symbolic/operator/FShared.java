@@ -0,0 +1,97 @@
+package mathLib.func.symbolic.operator;
+
+import java.util.Map;
+
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.DLOAD;
+import org.apache.bcel.generic.DSTORE;
+import org.apache.bcel.generic.InstructionConstants;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.LocalVariableGen;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Type;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import mathLib.func.symbolic.intf.MathFunc;
+
+/**
+ * A subexpression referenced more than once in an expression tree,
+ * inserted by <tt>MathFuncOptimizer</tt> before compilation.
+ * <p>
+ * The generated code evaluates the subexpression at its first occurrence and
+ * keeps the value in a local variable, the other occurrences load the local
+ * variable. The generated code contains no branches, so the first occurrence
+ * is always executed before the others.
+ *
+ */
+@SuppressWarnings("deprecation")
+public class FShared extends FUniaryOp {
+	/**
+	 * Local variable slot in the method being generated, <tt>-1</tt> to allocate
+	 * one from the <tt>MethodGen</tt> (BCEL)
+	 */
+	public int localIndex = -1;
+	/**
+	 * Whether the value has been stored in the method being generated
+	 */
+	public boolean stored = false;
+
+	public FShared(MathFunc g) {
+		super(g);
+		//No copy on change, all references must share the same subexpression
+		this.arg = g;
+	}
+
+	@Override
+	public double apply(double... args) {
+		return arg.apply(args);
+	}
+
+	@Override
+	public MathFunc diff(String varName) {
+		return arg.diff(varName);
+	}
+
+	@Override
+	public InstructionHandle bytecodeGen(String clsName, MethodGen mg,
+			ConstantPoolGen cp, InstructionFactory factory,
+			InstructionList il, Map<String, Integer> argsMap, int argsStartPos,
+			Map<MathFunc, Integer> funcRefsMap) {
+		if(stored)
+			return il.append(new DLOAD(localIndex));
+		arg.bytecodeGen(clsName, mg, cp, factory, il, argsMap, argsStartPos, funcRefsMap);
+		if(localIndex < 0) {
+			LocalVariableGen lg = mg.addLocalVariable("cse_"+funcRefsMap.get(this), Type.DOUBLE, null, null);
+			localIndex = lg.getIndex();
+		}
+		stored = true;
+		il.append(InstructionConstants.DUP2);
+		return il.append(new DSTORE(localIndex));
+	}
+
+	@Override
+	public void bytecodeGen(MethodVisitor mv, Map<String, Integer> argsMap,
+			int argsStartPos, Map<MathFunc, Integer> funcRefsMap, String clsName) {
+		if(stored) {
+			mv.visitVarInsn(Opcodes.DLOAD, localIndex);
+		} else {
+			arg.bytecodeGen(mv, argsMap, argsStartPos, funcRefsMap, clsName);
+			mv.visitInsn(Opcodes.DUP2);
+			mv.visitVarInsn(Opcodes.DSTORE, localIndex);
+			stored = true;
+		}
+	}
+
+	@Override
+	public String getExpr() {
+		return arg.getExpr();
+	}
+
+	@Override
+	public int getOpOrder() {
+		return arg.getOpOrder();
+	}
+}
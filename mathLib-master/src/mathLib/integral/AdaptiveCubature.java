@@ -0,0 +1,290 @@
+package mathLib.integral;
+
+/**
+ * Globally adaptive cubature on a hyper-rectangle (h-adaptive, as HCUBATURE).
+ *
+ * Each box is integrated by the degree 7 rule of Genz and Malik with an
+ * embedded degree 5 rule for the error estimate (2^d+2d^2+2d+1 points).
+ * The boxes are kept in a priority queue by error, the worst one is
+ * bisected along the axis with the largest fourth difference of the integrand,
+ * until the total error is below max(absolute error bound, relative error
+ * bound * |integral|) or the budget of evaluations is spent.
+ *
+ * With setParallel(true), several of the worst boxes are split at once and
+ * the new boxes are evaluated as a batch on the common ForkJoinPool, the
+ * integrand must then be thread safe.
+ */
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mathLib.integral.intf.IntegralFunction1D;
+import mathLib.integral.intf.IntegralFunctionND;
+import mathLib.integral.methods.GaussKronrodQuadrature;
+
+public class AdaptiveCubature {
+
+	// Genz-Malik points and weights
+	static final double L2 = Math.sqrt(9.0/70.0) ;
+	static final double L4 = Math.sqrt(9.0/10.0) ;
+	static final double L5 = Math.sqrt(9.0/19.0) ;
+	static final double RATIO = (L2*L2)/(L4*L4) ;
+
+	IntegralFunctionND func ;
+	int dim ;
+	double errorBound = 1e-10 ; // relative accuracy
+	double absErrorBound = 0 ; // absolute accuracy
+	int maxNumEvaluations = 1000000 ;
+	boolean parallel = false ;
+	int numEvaluations = 0 ;
+	double errorEstimate = 0 ;
+
+	// weights of the degree 7 (w) and degree 5 (v) rules for this dimension
+	final double w1, w2, w3, w4, w5, v1, v2, v3, v4 ;
+	final int pointsPerBox ;
+
+	public AdaptiveCubature(IntegralFunctionND func, int dim) {
+		if(dim < 1)
+			throw new IllegalArgumentException("dimension must be positive.") ;
+		this.func = func ;
+		this.dim = dim ;
+		double d = dim ;
+		w1 = (12824 - 9120*d + 400*d*d)/19683 ;
+		w2 = 980.0/6561 ;
+		w3 = (1820 - 400*d)/19683 ;
+		w4 = 200.0/19683 ;
+		w5 = 6859.0/19683/(1 << dim) ;
+		v1 = (729 - 950*d + 50*d*d)/729 ;
+		v2 = 245.0/486 ;
+		v3 = (265 - 100*d)/1458 ;
+		v4 = 25.0/729 ;
+		pointsPerBox = (dim == 1) ? 21 : (1 << dim) + 2*dim*dim + 2*dim + 1 ;
+	}
+
+	public void setErrorBound(double error){
+		errorBound = error ;
+	}
+
+	public void setAbsoluteErrorBound(double error){
+		absErrorBound = error ;
+	}
+
+	public void setMaximumNumberOfEvaluations(int maxNumEvaluations){
+		this.maxNumEvaluations = maxNumEvaluations ;
+	}
+
+	public void setParallel(boolean parallel){
+		this.parallel = parallel ;
+	}
+
+	private static class Box implements Comparable<Box> {
+		final double[] center, halfWidth ;
+		double result, error ;
+		int splitDim ;
+
+		Box(double[] center, double[] halfWidth) {
+			this.center = center ;
+			this.halfWidth = halfWidth ;
+		}
+
+		@Override
+		public int compareTo(Box o) {
+			return Double.compare(o.error, error) ;
+		}
+	}
+
+	/**
+	 * Integral over the box [a[0],b[0]] x ... x [a[d-1],b[d-1]]
+	 *
+	 * @param a lower bounds
+	 * @param b upper bounds
+	 * @return
+	 */
+	public double getIntegral(double[] a, double[] b){
+		if(a.length != dim || b.length != dim)
+			throw new IllegalArgumentException("bounds must have "+dim+" components.") ;
+		numEvaluations = 0 ;
+		double[] c = new double[dim], h = new double[dim] ;
+		for(int i=0; i<dim; i++){
+			c[i] = 0.5*(a[i]+b[i]) ;
+			h[i] = 0.5*(b[i]-a[i]) ;
+		}
+		Box root = new Box(c, h) ;
+		evaluate(root) ;
+		numEvaluations += pointsPerBox ;
+		PriorityQueue<Box> queue = new PriorityQueue<>() ;
+		queue.add(root) ;
+		double result = root.result, error = root.error ;
+
+		int batch = parallel ? Math.max(4, 2*ForkJoinPool.getCommonPoolParallelism()) : 1 ;
+		while(error > Math.max(absErrorBound, errorBound*Math.abs(result))){
+			int m = Math.min(batch, (maxNumEvaluations-numEvaluations)/(2*pointsPerBox)) ;
+			m = Math.min(m, queue.size()) ;
+			if(m <= 0)
+				break ;
+			Box[] children = new Box[2*m] ;
+			for(int k=0; k<m; k++){
+				Box parent = queue.poll() ;
+				result -= parent.result ;
+				error -= parent.error ;
+				int s = parent.splitDim ;
+				double[] hc = parent.halfWidth.clone() ;
+				hc[s] *= 0.5 ;
+				double[] cl = parent.center.clone(), cr = parent.center.clone() ;
+				cl[s] -= hc[s] ;
+				cr[s] += hc[s] ;
+				children[2*k] = new Box(cl, hc) ;
+				children[2*k+1] = new Box(cr, hc.clone()) ;
+			}
+			evaluate(children) ;
+			numEvaluations += children.length*pointsPerBox ;
+			for(Box box : children){
+				queue.add(box) ;
+				result += box.result ;
+				error += box.error ;
+			}
+		}
+
+		// sum again to remove the drift of the running sums
+		result = 0 ;
+		error = 0 ;
+		for(Box box : queue){
+			result += box.result ;
+			error += box.error ;
+		}
+		errorEstimate = error ;
+		return result ;
+	}
+
+	private void evaluate(Box[] boxes){
+		if(!parallel || boxes.length == 1){
+			for(Box box : boxes)
+				evaluate(box) ;
+			return ;
+		}
+		RecursiveAction[] tasks = new RecursiveAction[boxes.length] ;
+		for(int k=0; k<boxes.length; k++){
+			Box box = boxes[k] ;
+			tasks[k] = new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					evaluate(box) ;
+				}
+			} ;
+		}
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void compute() {
+				invokeAll(tasks) ;
+			}
+		}) ;
+	}
+
+	// Genz-Malik rule on one box, sets the result, the error and the axis to split
+	private void evaluate(Box box){
+		double[] c = box.center, h = box.halfWidth ;
+		if(dim == 1){
+			double[] rule = GaussKronrodQuadrature.kronrod21(new IntegralFunction1D() {
+				@Override
+				public double function(double t) {
+					return func.function(new double[] {t}) ;
+				}
+				@Override
+				public void function(double[] t, double[] ft) {
+					double[][] x = new double[t.length][] ;
+					for(int k=0; k<t.length; k++)
+						x[k] = new double[] {t[k]} ;
+					func.function(x, ft) ;
+				}
+			}, c[0]-h[0], c[0]+h[0]) ;
+			box.result = rule[0] ;
+			box.error = rule[1] ;
+			box.splitDim = 0 ;
+			return ;
+		}
+		// all the points of the rule as one batch: center, axes, planes, corners
+		double[][] x = new double[pointsPerBox][] ;
+		int p = 0 ;
+		x[p++] = c.clone() ;
+		for(int i=0; i<dim; i++){
+			x[p++] = axisPoint(c, i, -L2*h[i]) ;
+			x[p++] = axisPoint(c, i, L2*h[i]) ;
+			x[p++] = axisPoint(c, i, -L4*h[i]) ;
+			x[p++] = axisPoint(c, i, L4*h[i]) ;
+		}
+		for(int i=0; i<dim; i++){
+			for(int j=i+1; j<dim; j++){
+				for(int si=-1; si<=1; si+=2){
+					for(int sj=-1; sj<=1; sj+=2){
+						double[] xp = c.clone() ;
+						xp[i] = c[i] + si*L4*h[i] ;
+						xp[j] = c[j] + sj*L4*h[j] ;
+						x[p++] = xp ;
+					}
+				}
+			}
+		}
+		for(int corner=0; corner<(1 << dim); corner++){
+			double[] xp = new double[dim] ;
+			for(int i=0; i<dim; i++)
+				xp[i] = c[i] + (((corner >> i) & 1) == 0 ? -L5 : L5)*h[i] ;
+			x[p++] = xp ;
+		}
+		double[] f = new double[pointsPerBox] ;
+		func.function(x, f) ;
+
+		double f0 = f[0] ;
+		double sum2 = 0, sum3 = 0, sum4 = 0, sum5 = 0 ;
+		double maxDiff = -1 ;
+		int split = 0 ;
+		p = 1 ;
+		for(int i=0; i<dim; i++){
+			double f2a = f[p++], f2b = f[p++], f3a = f[p++], f3b = f[p++] ;
+			sum2 += f2a + f2b ;
+			sum3 += f3a + f3b ;
+			// fourth difference, ties go to the widest axis
+			double diff = Math.abs(f2a + f2b - 2*f0 - RATIO*(f3a + f3b - 2*f0)) ;
+			if(diff > maxDiff*(1+1e-10) || (diff >= maxDiff*(1-1e-10) && h[i] > h[split])){
+				if(diff > maxDiff)
+					maxDiff = diff ;
+				split = i ;
+			}
+		}
+		for(int k=0; k<2*dim*(dim-1); k++)
+			sum4 += f[p++] ;
+		for(int corner=0; corner<(1 << dim); corner++)
+			sum5 += f[p++] ;
+		double vol = 1 ;
+		for(int i=0; i<dim; i++)
+			vol *= 2*h[i] ;
+		double r7 = vol*(w1*f0 + w2*sum2 + w3*sum3 + w4*sum4 + w5*sum5) ;
+		double r5 = vol*(v1*f0 + v2*sum2 + v3*sum3 + v4*sum4) ;
+		box.result = r7 ;
+		box.error = Math.abs(r7 - r5) ;
+		box.splitDim = split ;
+	}
+
+	private static double[] axisPoint(double[] c, int i, double dx){
+		double[] x = c.clone() ;
+		x[i] += dx ;
+		return x ;
+	}
+
+	/**
+	 * Number of function evaluations of the last call of getIntegral()
+	 */
+	public int getNumberOfEvaluations(){
+		return numEvaluations ;
+	}
+
+	/**
+	 * Estimate of the absolute error of the last call of getIntegral()
+	 */
+	public double getErrorEstimate(){
+		return errorEstimate ;
+	}
+
+}
@@ -5,28 +5,49 @@ package mathLib.integral;
  * integration of a function (called integral function)
  * with adaptive accuracy.
  *
- * The default error bound is 1% of the convergence, but
+ * The integral is computed by a globally adaptive Gauss-Kronrod
+ * scheme (as QAG of QUADPACK): the sub-interval with the largest error
+ * estimate is bisected until the total estimated error is below
+ * max(absolute error bound, relative error bound * |integral|), or the
+ * number of function evaluations exceeds the budget. Infinite limits are
+ * mapped to a finite interval by x = a + (1-t)/t.
+ *
+ * The default relative error bound is 1e-12, but
  * can be set in the constructor as well.
  */
 
+import java.util.PriorityQueue;
+
 import flanagan.integration.IntegralFunction;
-import flanagan.integration.Integration;
-import mathLib.util.MathUtils;
+import mathLib.integral.intf.IntegralFunction1D;
+import mathLib.integral.methods.GaussKronrodQuadrature;
 
 public class Integral1D {
 
-	int numIntervals = 10 ; // the entire integral region is divided into this number of subintervals
-	int numPoints = 5 ; // each sub interval is divided into this number of pieces
+	int numIntervals = 1 ; // the entire integral region is divided into this number of subintervals at the start
+	int numPoints = 21 ; // points of the Gauss-Kronrod rule on each sub interval
 	double x_start, x_end ;
-	double errorBound = 1e-12 ; // accuracy to the number of digits
+	double errorBound = 1e-12 ; // relative accuracy
+	double absErrorBound = 0 ; // absolute accuracy
 	IntegralFunction func ;
 	int numIterations = 0 ;
-	int maxNumIterations = 50 ; // maximum number of iterations
+	int maxNumIterations = 1000 ; // maximum number of bisections
+	int maxNumEvaluations = 100000 ; // budget of function evaluations
+	int numEvaluations = 0 ;
+	double errorEstimate = 0 ;
+	boolean parallel = false ;
 
 	public void setNumIntervals(int M){
-		numIntervals = M ;
+		numIntervals = Math.max(1, M) ;
 	}
 
+	/**
+	 * The 21-point Gauss-Kronrod rule is used on each sub interval, this has no effect.
+	 *
+	 * @deprecated the number of points is fixed, use <tt>setErrorBound()</tt> or
+	 *             <tt>setNumIntervals()</tt> to control the accuracy
+	 */
+	@Deprecated
 	public void setNumPoints(int N){
 		numPoints = N ;
 	}
@@ -35,10 +56,32 @@ public class Integral1D {
 		errorBound = error ;
 	}
 
+	public void setAbsoluteErrorBound(double error){
+		absErrorBound = error ;
+	}
+
+	/**
+	 * Maximum number of bisections of a sub interval (default 1000). Before the adaptive
+	 * Gauss-Kronrod scheme this was the number of times the whole interval was refined
+	 * and integrated again.
+	 *
+	 * @param maxNumIterations
+	 */
 	public void setMaximumNumberOfIterations(int maxNumIterations){
 		this.maxNumIterations = maxNumIterations ;
 	}
 
+	public void setMaximumNumberOfEvaluations(int maxNumEvaluations){
+		this.maxNumEvaluations = maxNumEvaluations ;
+	}
+
+	/**
+	 * Evaluate the nodes of each rule in parallel batches, the function must be thread safe
+	 */
+	public void setParallel(boolean parallel){
+		this.parallel = parallel ;
+	}
+
 	public Integral1D(
 			IntegralFunction func,
 			double x_start,
@@ -49,45 +92,177 @@ public class Integral1D {
 		this.x_end = x_end ;
 	}
 
+	// sub-interval with its Gauss-Kronrod estimate, the largest error first in the queue
+	private static class Interval implements Comparable<Interval> {
+		final double a, b, result, error, resabs ;
+
+		Interval(double a, double b, double[] rule) {
+			this.a = a ;
+			this.b = b ;
+			this.result = rule[0] ;
+			this.error = rule[1] ;
+			this.resabs = rule[2] ;
+		}
+
+		@Override
+		public int compareTo(Interval o) {
+			return Double.compare(o.error, error) ;
+		}
+	}
+
 	public double getIntegral(){
-		double result_final = 0 ;
-		double result_temp = getFirstGuess() ;
-		double[] X ;
-		while(Math.abs(result_final-result_temp) >= Math.abs(errorBound*result_final) && numIntervals < 10*maxNumIterations+1){
-			result_final = result_temp ;
-			result_temp = 0 ;
-			X = MathUtils.linspace(x_start, x_end, numIntervals+1) ;
-			for(int i=0; i<numIntervals; i++){
-				result_temp += getInvervalIntegral(X[i], X[i+1]) ;
+		numIterations = 0 ;
+		numEvaluations = 0 ;
+		errorEstimate = 0 ;
+		if(x_start == x_end)
+			return 0 ;
+		if(x_start > x_end)
+			return -integrate(transform(func, x_end, x_start)) ;
+		return integrate(transform(func, x_start, x_end)) ;
+	}
+
+	private double integrate(Mapped f){
+		PriorityQueue<Interval> queue = new PriorityQueue<>() ;
+		double result = 0, error = 0, resabs = 0 ;
+		int evalsPerRule = (f.type == 2) ? 42 : 21 ;
+		double h = (f.b-f.a)/numIntervals ;
+		for(int i=0; i<numIntervals; i++){
+			double a = f.a + i*h ;
+			double b = (i == numIntervals-1) ? f.b : a + h ;
+			Interval in = new Interval(a, b, GaussKronrodQuadrature.kronrod21(f, a, b, parallel)) ;
+			numEvaluations += evalsPerRule ;
+			queue.add(in) ;
+			result += in.result ;
+			error += in.error ;
+			resabs += in.resabs ;
+		}
+
+		double epmach = Math.ulp(1.0) ;
+		// stop at the requested accuracy, or when the error is at the level of roundoff
+		while(error > Math.max(absErrorBound, errorBound*Math.abs(result))
+				&& error > 100*epmach*resabs
+				&& numIterations < maxNumIterations
+				&& numEvaluations + 2*evalsPerRule <= maxNumEvaluations){
+			Interval worst = queue.poll() ;
+			double mid = 0.5*(worst.a+worst.b) ;
+			// the interval cannot be split any further
+			if(!(worst.a < mid && mid < worst.b) ||
+					Math.abs(worst.b-worst.a) <= 100*epmach*Math.max(Math.abs(worst.a), Math.abs(worst.b))){
+				queue.add(worst) ;
+				break ;
 			}
-			numIntervals += 10 ;
+			Interval left = new Interval(worst.a, mid, GaussKronrodQuadrature.kronrod21(f, worst.a, mid, parallel)) ;
+			Interval right = new Interval(mid, worst.b, GaussKronrodQuadrature.kronrod21(f, mid, worst.b, parallel)) ;
+			numEvaluations += 2*evalsPerRule ;
 			numIterations++ ;
+			queue.add(left) ;
+			queue.add(right) ;
+			result += left.result + right.result - worst.result ;
+			error += left.error + right.error - worst.error ;
+			resabs += left.resabs + right.resabs - worst.resabs ;
 		}
 
-		return result_final ;
-	}
-
-	private double getFirstGuess(){
-		double firstGuess = 0 ;
-		int numIntervalsCoarse = 5 ;
-		double[] X = MathUtils.linspace(x_start, x_end, numIntervalsCoarse+1) ;
-		for(int i=0; i<numIntervalsCoarse; i++){
-			firstGuess += getInvervalIntegral(X[i], X[i+1]) ;
+		// sum again to remove the drift of the running sums
+		result = 0 ;
+		error = 0 ;
+		for(Interval in : queue){
+			result += in.result ;
+			error += in.error ;
 		}
-		return firstGuess ;
+		errorEstimate = error ;
+		return result ;
 	}
 
-	private double getInvervalIntegral(double x_start, double x_end){
+	// integrand on a finite interval, infinite limits are mapped by x = a + (1-t)/t
+	private static class Mapped implements IntegralFunction1D {
+		IntegralFunction1D func ;
+		double a, b ;
+		int type ; // 0: finite, 1: [x0, inf), -1: (-inf, x0], 2: (-inf, inf)
+		double x0 ;
 
-		Integration intervalIntegral = new Integration() ;
-		intervalIntegral.setIntegrationFunction(func);
-		intervalIntegral.setLimits(x_start, x_end);
+		@Override
+		public double function(double t) {
+			switch(type){
+			case 1:
+				return func.function(x0+(1-t)/t)/(t*t) ;
+			case -1:
+				return func.function(x0-(1-t)/t)/(t*t) ;
+			case 2:
+				return (func.function((1-t)/t)+func.function(-(1-t)/t))/(t*t) ;
+			default:
+				return func.function(t) ;
+			}
+		}
 
-		return intervalIntegral.gaussQuad(numPoints) ;
+		// the mapped nodes go to the integrand as one batch
+		@Override
+		public void function(double[] t, double[] ft) {
+			int n = t.length ;
+			if(type == 0){
+				func.function(t, ft) ;
+				return ;
+			}
+			double[] x = new double[(type == 2) ? 2*n : n] ;
+			double[] fx = new double[x.length] ;
+			for(int i=0; i<n; i++){
+				double s = (1-t[i])/t[i] ;
+				if(type == 2){
+					x[i] = s ;
+					x[n+i] = -s ;
+				}
+				else
+					x[i] = (type == 1) ? x0+s : x0-s ;
+			}
+			func.function(x, fx) ;
+			for(int i=0; i<n; i++)
+				ft[i] = ((type == 2) ? fx[i]+fx[n+i] : fx[i])/(t[i]*t[i]) ;
+		}
 	}
 
+	private static Mapped transform(IntegralFunction func, double a, double b){
+		Mapped f = new Mapped() ;
+		f.func = IntegralFunction1D.of(func) ;
+		boolean infA = Double.isInfinite(a), infB = Double.isInfinite(b) ;
+		if(!infA && !infB){
+			f.a = a ;
+			f.b = b ;
+			return f ;
+		}
+		// the Kronrod nodes are interior, t = 0 is never evaluated
+		f.a = 0 ;
+		f.b = 1 ;
+		if(infA && infB)
+			f.type = 2 ;
+		else if(infB){
+			f.type = 1 ;
+			f.x0 = a ;
+		}
+		else{
+			f.type = -1 ;
+			f.x0 = b ;
+		}
+		return f ;
+	}
+
+	/**
+	 * Number of bisections of the last call of getIntegral()
+	 */
 	public int getNumberOfIterations(){
 		return numIterations ;
 	}
 
+	/**
+	 * Number of function evaluations of the last call of getIntegral()
+	 */
+	public int getNumberOfEvaluations(){
+		return numEvaluations ;
+	}
+
+	/**
+	 * Estimate of the absolute error of the last call of getIntegral()
+	 */
+	public double getErrorEstimate(){
+		return errorEstimate ;
+	}
+
 }
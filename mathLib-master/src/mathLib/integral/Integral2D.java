@@ -3,11 +3,17 @@ package mathLib.integral;
 import mathLib.integral.intf.IntegralDomain2D;
 import mathLib.integral.intf.IntegralFunction1D;
 import mathLib.integral.intf.IntegralFunction2D;
+import mathLib.integral.intf.IntegralFunctionND;
 
 public class Integral2D {
 	
 	IntegralFunction2D func2d ;
 	IntegralDomain2D domain ;
+	double errorBound = 1e-10 ; // relative accuracy
+	int maxNumEvaluations = 1000000 ;
+	boolean parallel = false ;
+	double errorEstimate = 0 ;
+	int numEvaluations = 0 ;
 	
 	public Integral2D(IntegralFunction2D func, IntegralDomain2D domain) {
 		this.func2d = func ;
@@ -22,7 +28,53 @@ public class Integral2D {
 		this.domain = domain ;
 	}
 	
+	public void setErrorBound(double error) {
+		this.errorBound = error ;
+	}
+
+	public void setMaximumNumberOfEvaluations(int maxNumEvaluations) {
+		this.maxNumEvaluations = maxNumEvaluations ;
+	}
+
+	/**
+	 * Evaluate the integrand in parallel batches, it must be thread safe
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel ;
+	}
+
+	/**
+	 * Adaptive cubature (Genz-Malik) on the domain mapped to the unit square
+	 */
 	public double getIntegral() {
+		AdaptiveCubature cubature = new AdaptiveCubature(getMappedFunction(), 2) ;
+		cubature.setErrorBound(errorBound);
+		cubature.setMaximumNumberOfEvaluations(maxNumEvaluations);
+		cubature.setParallel(parallel);
+		double result = cubature.getIntegral(new double[] {0, 0}, new double[] {1, 1}) ;
+		errorEstimate = cubature.getErrorEstimate() ;
+		numEvaluations = cubature.getNumberOfEvaluations() ;
+		return result ;
+	}
+
+	/**
+	 * Sparse grid (Smolyak) cubature, for smooth integrands and smooth bounds
+	 */
+	public double getIntegralSparseGrid() {
+		SparseGridCubature cubature = new SparseGridCubature(getMappedFunction(), 2) ;
+		cubature.setErrorBound(errorBound);
+		cubature.setMaximumNumberOfEvaluations(maxNumEvaluations);
+		cubature.setParallel(parallel);
+		double result = cubature.getIntegral(new double[] {0, 0}, new double[] {1, 1}) ;
+		errorEstimate = cubature.getErrorEstimate() ;
+		numEvaluations = cubature.getNumberOfEvaluations() ;
+		return result ;
+	}
+
+	/**
+	 * Nested adaptive 1D integrals (the previous method)
+	 */
+	public double getIntegralNested() {
 		IntegralFunction1D func1d = new IntegralFunction1D() {
 			@Override
 			public double function(double var1) {
@@ -38,9 +90,47 @@ public class Integral2D {
 				return integral.getIntegral();
 			}
 		};
-		
+
 		Integral1D integral = new Integral1D(func1d, domain.getVar1Min(), domain.getVar1Max()) ;
 		return integral.getIntegral() ;
 	}
-	
+
+	// (u1, u2) in the unit square --> (var1, var2) in the domain, times the Jacobian
+	private IntegralFunctionND getMappedFunction() {
+		double a1 = domain.getVar1Min(), b1 = domain.getVar1Max() ;
+		return new IntegralFunctionND() {
+			@Override
+			public double function(double[] u) {
+				double var1 = a1 + (b1-a1)*u[0] ;
+				double a2 = domain.getVar2Min(var1), b2 = domain.getVar2Max(var1) ;
+				double var2 = a2 + (b2-a2)*u[1] ;
+				return func2d.function(var1, var2) * (b1-a1) * (b2-a2) ;
+			}
+
+			// the mapped points go to the integrand as one batch
+			@Override
+			public void function(double[][] u, double[] f) {
+				int n = f.length ;
+				double[] var1 = new double[n], var2 = new double[n], jac = new double[n] ;
+				for(int i=0; i<n; i++) {
+					var1[i] = a1 + (b1-a1)*u[i][0] ;
+					double a2 = domain.getVar2Min(var1[i]), b2 = domain.getVar2Max(var1[i]) ;
+					var2[i] = a2 + (b2-a2)*u[i][1] ;
+					jac[i] = (b1-a1) * (b2-a2) ;
+				}
+				func2d.function(var1, var2, f) ;
+				for(int i=0; i<n; i++)
+					f[i] *= jac[i] ;
+			}
+		} ;
+	}
+
+	public double getErrorEstimate() {
+		return errorEstimate ;
+	}
+
+	public int getNumberOfEvaluations() {
+		return numEvaluations ;
+	}
+
 }
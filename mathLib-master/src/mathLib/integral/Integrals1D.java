@@ -10,6 +10,7 @@ import mathLib.sequence.Sequence;
 public class Integrals1D {
 
 	IntegralFunction1D func ;
+	boolean parallel = false ;
 
 	public Integrals1D(IntegralFunction1D func) {
 		this.func = func ; // avoid shadowing of class variable
@@ -20,12 +21,30 @@ public class Integrals1D {
 		this.func = t -> func1d.apply(t) ;
 	}
 
+	/**
+	 * Evaluate the nodes of the fixed rules in parallel batches, the function must be thread safe
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel ;
+	}
+
+	// all the nodes of a rule as one batch
+	private double[] values(double[] x) {
+		double[] fx = new double[x.length] ;
+		IntegralFunction1D.evaluate(func, x, fx, parallel) ;
+		return fx ;
+	}
+
 	// method1: Rectangle + uniform partitioning + forward summation
 	public double forwardRectangle(double start, double end, int terms) {
 		double delta = (end-start)/terms ;
 		double sum = 0.0 ;
+		double[] x = new double[terms] ;
+		for(int i=0; i<terms; i++)
+			x[i] = start + i*delta ; // evaluation at the beginning of the interval
+		double[] funcVals = values(x) ;
 		for(int i=0; i<terms; i++) {
-			sum += delta * func.function(start + i*delta) ; // evaluation at the beginning of the interval
+			sum += delta * funcVals[i] ;
 		}
 		return sum ;
 	}
@@ -33,8 +52,12 @@ public class Integrals1D {
 	public double backwardRectangle(double start, double end, int terms) {
 		double delta = (end-start)/terms ;
 		double sum = 0.0 ;
+		double[] x = new double[terms] ;
+		for(int i=0; i<terms; i++)
+			x[i] = start + (i+1)*delta ; // evaluation at the end of interval
+		double[] funcVals = values(x) ;
 		for(int i=0; i<terms; i++) {
-			sum += delta * func.function(start + (i+1)*delta) ; // evaluation at the end of interval
+			sum += delta * funcVals[i] ;
 		}
 		return sum ;
 	}
@@ -42,8 +65,12 @@ public class Integrals1D {
 	public double centerRectangle(double start, double end, int terms) {
 		double delta = (end-start)/terms ;
 		double sum = 0.0 ;
+		double[] x = new double[terms] ;
+		for(int i=0; i<terms; i++)
+			x[i] = start + (i+0.5)*delta ; // evaluation at the center of interval
+		double[] funcVals = values(x) ;
 		for(int i=0; i<terms; i++) {
-			sum += delta * func.function(start + (i+0.5)*delta) ; // evaluation at the end of interval
+			sum += delta * funcVals[i] ;
 		}
 		return sum ;
 	}
@@ -51,10 +78,11 @@ public class Integrals1D {
 	public double trapezoid(double start, double end, int terms) {
 		double delta = (end-start)/terms ; // uniform partitioning
 		double sum = 0.0 ;
-		double[] funcVals = new double[terms+1] ;
+		double[] x = new double[terms+1] ;
 		for(int i=0; i<terms+1; i++) {
-			funcVals[i] = func.function(start+i*delta) ;
+			x[i] = start+i*delta ;
 		}
+		double[] funcVals = values(x) ;
 		for(int i=0; i<terms; i++) {
 			sum += delta * (funcVals[i]+funcVals[i+1])/2.0 ;
 		}
@@ -64,15 +92,16 @@ public class Integrals1D {
 	public double simpson(double start, double end, int terms) {
 		double delta = (end-start)/terms ; // uniform partitioning
 		double sum = 0.0 ;
-		double[] funcVals = new double[terms+1] ;
-		double[] funcValsMidPoint = new double[terms] ;
+		// end points at 2i, mid points at 2i+1
+		double[] x = new double[2*terms+1] ;
 		for(int i=0; i<terms+1; i++) {
-			funcVals[i] = func.function(start+i*delta) ;
+			x[2*i] = start+i*delta ;
 			if(i<terms)
-				funcValsMidPoint[i] = func.function(start+(i+0.5)*delta) ;
+				x[2*i+1] = start+(i+0.5)*delta ;
 		}
+		double[] funcVals = values(x) ;
 		for(int i=0; i<terms; i++) {
-			sum += delta/6.0 * (funcVals[i]+4*funcValsMidPoint[i]+funcVals[i+1]) ;
+			sum += delta/6.0 * (funcVals[2*i]+4*funcVals[2*i+1]+funcVals[2*i+2]) ;
 		}
 		return sum ;
 	}
@@ -137,31 +166,36 @@ public class Integrals1D {
 	}
 
 	public double gaussLegendreThreePoints(double start, double end) {
-		IntegralFunction1D mappedFunc = gaussLegendreFunctionMapping(start, end) ; // t is in [-1,1]
 		// three point Gauss-Legendre quadrature rule
 		double[] weights = {8.0/9.0, 5.0/9.0, 5.0/9.0} ;
 		double[] points = {0.0, Math.sqrt(3.0/5.0), -Math.sqrt(3.0/5.0)} ;
+		double[] x = new double[points.length] ;
+		for(int i=0; i<points.length; i++)
+			x[i] = gaussLegendreIntervalMapping(start, end, points[i]) ;
+		double[] funcVals = values(x) ;
 		double sum = 0.0 ;
 		for(int i=0; i<points.length; i++)
-			sum += weights[i] * mappedFunc.function(points[i]) ; // integral over [-1,1]
+			sum += weights[i] * funcVals[i] ; // integral over [-1,1]
 		return sum * (end-start)/2.0 ;
 	}
 
 	public double gaussLegendreFivePoints(double start, double end) {
-		IntegralFunction1D mappedFunc = gaussLegendreFunctionMapping(start, end) ; // t is in [-1,1]
 		// five point Gauss-Legendre quadrature rule
 		double[] weights = {128.0/225.0, (322.0+13.0*Math.sqrt(70.0))/900.0, (322.0+13.0*Math.sqrt(70.0))/900.0,
 							(322.0-13.0*Math.sqrt(70.0))/900.0, (322.0-13.0*Math.sqrt(70.0))/900.0} ;
 		double[] points = {0.0, 1.0/3.0*Math.sqrt(5.0-2.0*Math.sqrt(10.0/7.0)), -1.0/3.0*Math.sqrt(5.0-2.0*Math.sqrt(10.0/7.0)),
 							1.0/3.0*Math.sqrt(5.0+2.0*Math.sqrt(10.0/7.0)), -1.0/3.0*Math.sqrt(5.0+2.0*Math.sqrt(10.0/7.0))} ;
+		double[] x = new double[points.length] ;
+		for(int i=0; i<points.length; i++)
+			x[i] = gaussLegendreIntervalMapping(start, end, points[i]) ;
+		double[] funcVals = values(x) ;
 		double sum = 0.0 ;
 		for(int i=0; i<points.length; i++)
-			sum += weights[i] * mappedFunc.function(points[i]) ; // integral over [-1,1]
+			sum += weights[i] * funcVals[i] ; // integral over [-1,1]
 		return sum * (end-start)/2.0 ;
 	}
 
 	public double gaussLegendre(double start, double end, int quadraturePoints) {
-		IntegralFunction1D mappedFunc = gaussLegendreFunctionMapping(start, end) ; // t is in [-1,1]
 		// create weights and points
 		int n = quadraturePoints ;
 		double[] weights = new double[n] ;
@@ -183,9 +217,13 @@ public class Integrals1D {
 //		System.out.println("points = " + Arrays.toString(points));
 //		System.out.println("weights = " + Arrays.toString(weights));
 		// integrate over [-1,1]
+		double[] x = new double[points.length] ;
+		for(int i=0; i<points.length; i++)
+			x[i] = gaussLegendreIntervalMapping(start, end, points[i]) ;
+		double[] funcVals = values(x) ;
 		double sum = 0.0 ;
 		for(int i=0; i<points.length; i++)
-			sum += weights[i] * mappedFunc.function(points[i]) ; // integral over [-1,1]
+			sum += weights[i] * funcVals[i] ; // integral over [-1,1]
 		// scale to [start,end]
 		return sum * (end-start)/2.0 ;
 	}
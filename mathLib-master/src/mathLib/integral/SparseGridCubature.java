@@ -0,0 +1,297 @@
+package mathLib.integral;
+
+/**
+ * Smolyak sparse grid cubature on a hyper-rectangle, for smooth integrands.
+ *
+ * The rule of level q is the combination of tensor products of nested
+ * Clenshaw-Curtis rules (1, 3, 5, 9, 17, ... points)
+ *
+ *   Q_q = sum_{q-d+1 <= |l| <= q} (-1)^(q-|l|) C(d-1, q-|l|) U_l1 x ... x U_ld
+ *
+ * The level is increased until three successive levels agree to the error
+ * bound. Because the rules are nested, the points of a level are points of the
+ * next one: the function values are kept and only the new points are
+ * evaluated, as a batch that can be split across threads with setParallel(true).
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mathLib.integral.intf.IntegralFunctionND;
+import mathLib.integral.methods.ClenshawCurtisQuadrature;
+
+public class SparseGridCubature {
+
+	// finest level, the points are numbered on the grid of this level
+	static final int MAX_LEVEL = 20 ;
+
+	IntegralFunctionND func ;
+	int dim ;
+	double errorBound = 1e-10 ; // relative accuracy
+	double absErrorBound = 0 ; // absolute accuracy
+	int maxNumEvaluations = 1000000 ;
+	boolean parallel = false ;
+	int numEvaluations = 0 ;
+	double errorEstimate = 0 ;
+	int level = 0 ;
+
+	public SparseGridCubature(IntegralFunctionND func, int dim) {
+		if(dim < 1)
+			throw new IllegalArgumentException("dimension must be positive.") ;
+		this.func = func ;
+		this.dim = dim ;
+	}
+
+	public void setErrorBound(double error){
+		errorBound = error ;
+	}
+
+	public void setAbsoluteErrorBound(double error){
+		absErrorBound = error ;
+	}
+
+	public void setMaximumNumberOfEvaluations(int maxNumEvaluations){
+		this.maxNumEvaluations = maxNumEvaluations ;
+	}
+
+	public void setParallel(boolean parallel){
+		this.parallel = parallel ;
+	}
+
+	// point of the finest grid, coordinates are indices of the finest 1D rule
+	private static class Key {
+		final int[] index ;
+		final int hash ;
+
+		Key(int[] index) {
+			this.index = index ;
+			this.hash = Arrays.hashCode(index) ;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash ;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Key) && Arrays.equals(index, ((Key) o).index) ;
+		}
+	}
+
+	/**
+	 * Integral over the box [a[0],b[0]] x ... x [a[d-1],b[d-1]]
+	 *
+	 * @param a lower bounds
+	 * @param b upper bounds
+	 * @return
+	 */
+	public double getIntegral(double[] a, double[] b){
+		if(a.length != dim || b.length != dim)
+			throw new IllegalArgumentException("bounds must have "+dim+" components.") ;
+		Map<Key, Double> values = new HashMap<>() ;
+		numEvaluations = 0 ;
+		double previous = Double.NaN ;
+		double lastDiff = Double.POSITIVE_INFINITY ;
+		double result = 0 ;
+		errorEstimate = Double.POSITIVE_INFINITY ;
+		for(int q=dim; q-dim+1<=MAX_LEVEL; q++){
+			List<int[]> levels = new ArrayList<>() ;
+			multiIndices(q, levels) ;
+			if(!evaluateNewPoints(levels, values, a, b, q == dim))
+				break ;
+			result = combine(q, levels, values, a, b) ;
+			level = q - dim + 1 ;
+			if(q > dim){
+				// two successive differences, a single one can vanish by symmetry
+				double diff = Math.abs(result - previous) ;
+				errorEstimate = Math.max(diff, lastDiff) ;
+				if(errorEstimate <= Math.max(absErrorBound, errorBound*Math.abs(result)))
+					break ;
+				lastDiff = diff ;
+			}
+			previous = result ;
+		}
+		return result ;
+	}
+
+	// all l with l_i >= 1 and q-d+1 <= |l| <= q
+	private void multiIndices(int q, List<int[]> levels){
+		int[] l = new int[dim] ;
+		collect(0, 0, q, l, levels) ;
+	}
+
+	private void collect(int i, int sum, int q, int[] l, List<int[]> levels){
+		if(i == dim){
+			if(sum >= q-dim+1)
+				levels.add(l.clone()) ;
+			return ;
+		}
+		for(int li=1; sum+li+(dim-i-1)<=q && li<=MAX_LEVEL; li++){
+			l[i] = li ;
+			collect(i+1, sum+li, q, l, levels) ;
+		}
+	}
+
+	private static int numPoints(int level){
+		return (level == 1) ? 1 : (1 << (level-1)) + 1 ;
+	}
+
+	// index of point j of the rule of this level on the finest grid
+	private static int fineIndex(int level, int j){
+		if(level == 1)
+			return 1 << (MAX_LEVEL-2) ;
+		return j << (MAX_LEVEL-level) ;
+	}
+
+	private static double coordinate(int fine, double a, double b){
+		double u = 0.5*(1.0 - Math.cos(Math.PI*fine/(1 << (MAX_LEVEL-1)))) ;
+		return a + (b-a)*u ;
+	}
+
+	private interface TensorVisitor {
+		void visit(int[] fine, int[] j) ;
+	}
+
+	// visits all points of the tensor rule U_l1 x ... x U_ld
+	private void forTensor(int[] l, TensorVisitor visitor){
+		int[] j = new int[dim] ;
+		int[] fine = new int[dim] ;
+		for(int i=0; i<dim; i++)
+			fine[i] = fineIndex(l[i], 0) ;
+		while(true){
+			visitor.visit(fine, j) ;
+			int i = 0 ;
+			while(i < dim){
+				if(++j[i] < numPoints(l[i])){
+					fine[i] = fineIndex(l[i], j[i]) ;
+					break ;
+				}
+				j[i] = 0 ;
+				fine[i] = fineIndex(l[i], 0) ;
+				i++ ;
+			}
+			if(i == dim)
+				return ;
+		}
+	}
+
+	// evaluates the points not in values, false if this exceeds the budget
+	private boolean evaluateNewPoints(List<int[]> levels, Map<Key, Double> values, double[] a, double[] b, boolean force){
+		Set<Key> seen = new HashSet<>() ;
+		List<Key> keys = new ArrayList<>() ;
+		for(int[] l : levels)
+			forTensor(l, (fine, j) -> {
+				Key key = new Key(fine.clone()) ;
+				if(!values.containsKey(key) && seen.add(key))
+					keys.add(key) ;
+			}) ;
+		if(!force && numEvaluations + keys.size() > maxNumEvaluations)
+			return false ;
+		double[] f = new double[keys.size()] ;
+		int grain = 64 ;
+		if(!parallel || keys.size() <= grain){
+			evaluate(keys, f, 0, keys.size(), a, b) ;
+		}
+		else{
+			List<RecursiveAction> tasks = new ArrayList<>() ;
+			for(int k0=0; k0<keys.size(); k0+=grain){
+				int begin = k0, end = Math.min(keys.size(), k0+grain) ;
+				tasks.add(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+					@Override
+					protected void compute() {
+						evaluate(keys, f, begin, end, a, b) ;
+					}
+				}) ;
+			}
+			ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					invokeAll(tasks) ;
+				}
+			}) ;
+		}
+		for(int k=0; k<keys.size(); k++)
+			values.put(keys.get(k), f[k]) ;
+		numEvaluations += keys.size() ;
+		return true ;
+	}
+
+	// the points [begin, end) go to the integrand as one batch
+	private void evaluate(List<Key> keys, double[] f, int begin, int end, double[] a, double[] b){
+		double[][] x = new double[end-begin][dim] ;
+		for(int k=begin; k<end; k++){
+			int[] fine = keys.get(k).index ;
+			for(int i=0; i<dim; i++)
+				x[k-begin][i] = coordinate(fine[i], a[i], b[i]) ;
+		}
+		double[] fk = new double[end-begin] ;
+		func.function(x, fk) ;
+		System.arraycopy(fk, 0, f, begin, end-begin) ;
+	}
+
+	private double combine(int q, List<int[]> levels, Map<Key, Double> values, double[] a, double[] b){
+		double[][] weights = new double[MAX_LEVEL+1][] ;
+		double vol = 1 ;
+		for(int i=0; i<dim; i++)
+			vol *= (b[i]-a[i]) ;
+		double total = 0 ;
+		for(int[] l : levels){
+			int norm = 0 ;
+			for(int li : l)
+				norm += li ;
+			int m = q - norm ;
+			double coef = ((m % 2 == 0) ? 1 : -1)*binomial(dim-1, m) ;
+			for(int li : l)
+				if(weights[li] == null)
+					weights[li] = ClenshawCurtisQuadrature.getWeights(numPoints(li)) ;
+			double[] sum = {0} ;
+			forTensor(l, (fine, j) -> {
+				double w = 1 ;
+				for(int i=0; i<dim; i++)
+					w *= 0.5*weights[l[i]][j[i]] ;
+				sum[0] += w*values.get(new Key(fine.clone())) ;
+			}) ;
+			total += coef*sum[0] ;
+		}
+		return vol*total ;
+	}
+
+	private static double binomial(int n, int k){
+		double r = 1 ;
+		for(int i=1; i<=k; i++)
+			r = r*(n-k+i)/i ;
+		return r ;
+	}
+
+	/**
+	 * Number of function evaluations of the last call of getIntegral()
+	 */
+	public int getNumberOfEvaluations(){
+		return numEvaluations ;
+	}
+
+	/**
+	 * Difference of the last two levels of the last call of getIntegral()
+	 */
+	public double getErrorEstimate(){
+		return errorEstimate ;
+	}
+
+	/**
+	 * Level of the rule of the last call of getIntegral(), 1 is the one-point rule
+	 */
+	public int getLevel(){
+		return level ;
+	}
+
+}
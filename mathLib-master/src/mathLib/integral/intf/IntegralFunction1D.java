@@ -1,5 +1,65 @@
 package mathLib.integral.intf;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import flanagan.integration.IntegralFunction;
+
 public interface IntegralFunction1D extends flanagan.integration.IntegralFunction {
 
+	/**
+	 * Values at all the abscissae <tt>x</tt> into <tt>fx</tt>. The quadrature rules
+	 * call this with all the nodes of a rule at once, override it when the cost of
+	 * the integrand can be shared between the points.
+	 */
+	default void function(double[] x, double[] fx) {
+		for(int i=0; i<x.length; i++)
+			fx[i] = function(x[i]) ;
+	}
+
+	/**
+	 * Batch view of any integral function, the scalar one is called point by point
+	 */
+	static IntegralFunction1D of(IntegralFunction func) {
+		if(func instanceof IntegralFunction1D)
+			return (IntegralFunction1D) func ;
+		return x -> func.function(x) ;
+	}
+
+	/**
+	 * Values at all the abscissae <tt>x</tt> into <tt>fx</tt>, with <tt>parallel</tt> the
+	 * points are split in one batch per thread of the common ForkJoinPool, the function
+	 * must then be thread safe.
+	 */
+	static void evaluate(IntegralFunction func, double[] x, double[] fx, boolean parallel) {
+		IntegralFunction1D f = of(func) ;
+		int n = x.length ;
+		int numBatches = parallel ? Math.min(n, ForkJoinPool.getCommonPoolParallelism()) : 1 ;
+		if(numBatches <= 1) {
+			f.function(x, fx) ;
+			return ;
+		}
+		RecursiveAction[] tasks = new RecursiveAction[numBatches] ;
+		for(int k=0; k<numBatches; k++) {
+			int begin = (int) ((long) n*k/numBatches), end = (int) ((long) n*(k+1)/numBatches) ;
+			tasks[k] = new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					double[] fxk = new double[end-begin] ;
+					f.function(Arrays.copyOfRange(x, begin, end), fxk) ;
+					System.arraycopy(fxk, 0, fx, begin, end-begin) ;
+				}
+			} ;
+		}
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void compute() {
+				invokeAll(tasks) ;
+			}
+		}) ;
+	}
+
 }
@@ -2,4 +2,13 @@ package mathLib.integral.intf;
 
 public interface IntegralFunction3D {
 	double function(double var1, double var2, double var3) ;
+
+	/**
+	 * Values at the points <tt>(var1[i], var2[i], var3[i])</tt> into <tt>f</tt>, override it
+	 * when the cost of the integrand can be shared between the points
+	 */
+	default void function(double[] var1, double[] var2, double[] var3, double[] f) {
+		for(int i=0; i<f.length; i++)
+			f[i] = function(var1[i], var2[i], var3[i]) ;
+	}
 }
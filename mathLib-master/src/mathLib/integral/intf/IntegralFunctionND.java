@@ -0,0 +1,14 @@
+package mathLib.integral.intf;
+
+public interface IntegralFunctionND {
+	double function(double[] vars) ;
+
+	/**
+	 * Values at the points <tt>vars[i]</tt> into <tt>f</tt>, override it
+	 * when the cost of the integrand can be shared between the points
+	 */
+	default void function(double[][] vars, double[] f) {
+		for(int i=0; i<f.length; i++)
+			f[i] = function(vars[i]) ;
+	}
+}
@@ -1,5 +1,92 @@
 package mathLib.integral.methods;
 
+import flanagan.integration.IntegralFunction;
+import mathLib.integral.intf.IntegralFunction1D;
+
 public class ClenshawCurtisQuadrature {
 
+	// n = 2^k+1 points are nested: the points of n are points of 2n-1
+
+	double[] points;
+	double[] weights;
+
+	IntegralFunction func;
+	double start, end;
+	boolean parallel = false;
+
+	public ClenshawCurtisQuadrature(IntegralFunction func, double xStart, double xEnd, int numPoints) {
+		this.func = func;
+		this.start = xStart;
+		this.end = xEnd;
+		this.points = getPoints(numPoints);
+		this.weights = getWeights(numPoints);
+	}
+
+	/**
+	 * Evaluate the nodes in parallel batches, the function must be thread safe
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public double getIntegral() {
+		// all the nodes of the rule in one batch
+		double[] x = new double[points.length];
+		for (int k = 0; k < points.length; k++)
+			x[k] = getTransform(points[k]);
+		double[] fx = new double[points.length];
+		IntegralFunction1D.evaluate(func, x, fx, parallel);
+		double sum = 0.0;
+		for (int k = 0; k < points.length; k++)
+			sum += weights[k] * fx[k];
+		return sum * (end - start) / 2.0;
+	}
+
+	private double getTransform(double u) {
+		return (end - start) / 2.0 * u + (end + start) / 2.0;
+	}
+
+	/**
+	 * Points <tt>-cos(pi*j/(n-1))</tt> on [-1,1], in increasing order
+	 *
+	 * @param n number of points
+	 * @return
+	 */
+	public static double[] getPoints(int n) {
+		if (n == 1)
+			return new double[] { 0.0 };
+		double[] x = new double[n];
+		for (int j = 0; j < n; j++)
+			x[j] = -Math.cos(Math.PI * j / (n - 1));
+		// exact symmetry and center
+		for (int j = 0; j < n / 2; j++)
+			x[n - 1 - j] = -x[j];
+		if (n % 2 == 1)
+			x[n / 2] = 0.0;
+		return x;
+	}
+
+	/**
+	 * Weights on [-1,1], they sum to 2
+	 *
+	 * @param n number of points, odd
+	 * @return
+	 */
+	public static double[] getWeights(int n) {
+		if (n == 1)
+			return new double[] { 2.0 };
+		int N = n - 1;
+		double[] w = new double[n];
+		for (int j = 0; j <= N; j++) {
+			double s = 1.0;
+			for (int k = 1; k <= N / 2; k++) {
+				double b = (2 * k == N) ? 1.0 : 2.0;
+				s -= b / (4.0 * k * k - 1.0) * Math.cos(2.0 * Math.PI * k * j / N);
+			}
+			double c = (j == 0 || j == N) ? 1.0 : 2.0;
+			w[j] = c * s / N;
+		}
+		return w;
+	}
+
 }
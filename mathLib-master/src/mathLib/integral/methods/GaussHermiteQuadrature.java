@@ -3,8 +3,6 @@ package mathLib.integral.methods;
 import flanagan.integration.IntegralFunction;
 import mathLib.integral.Integral1D;
 import mathLib.integral.intf.IntegralFunction1D;
-import mathLib.sequence.Sequence;
-import mathLib.sequence.Series;
 
 
 public class GaussHermiteQuadrature {
@@ -44,16 +42,30 @@ public class GaussHermiteQuadrature {
 
 	IntegralFunction func;
 	double start, end;
+	boolean parallel = false;
 
 	public GaussHermiteQuadrature(IntegralFunction func) {
 		this.func = func;
 	}
 
+	/**
+	 * Evaluate the nodes in parallel batches, the function must be thread safe
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
 	public double getIntegral() {
-		Sequence sFunc = k -> weights[(int) k] * func.function(getTransform(points[(int) k])) *
-								Math.exp(getTransform(points[(int) k])*getTransform(points[(int) k]));
-		Series integral = new Series(sFunc);
-		return integral.sum(0, points.length - 1);
+		// all the nodes of the rule in one batch
+		double[] x = new double[points.length];
+		for (int k = 0; k < points.length; k++)
+			x[k] = getTransform(points[k]);
+		double[] fx = new double[points.length];
+		IntegralFunction1D.evaluate(func, x, fx, parallel);
+		double sum = 0.0;
+		for (int k = 0; k < points.length; k++)
+			sum += weights[k] * fx[k] * Math.exp(x[k] * x[k]);
+		return sum;
 	}
 
 	private double getTransform(double u) {
@@ -3,8 +3,6 @@ package mathLib.integral.methods;
 import flanagan.integration.IntegralFunction;
 import mathLib.integral.Integral1D;
 import mathLib.integral.intf.IntegralFunction1D;
-import mathLib.sequence.Sequence;
-import mathLib.sequence.Series;
 
 public class GaussKronrodQuadrature {
 
@@ -24,8 +22,31 @@ public class GaussKronrodQuadrature {
 			0.101930119817240435037, 0.083276741576704748725, 0.0626720483341090635695, 0.040601429800386941331,
 			0.0176140071391521183119 };
 
+	/**
+	 * Non-negative nodes of the 21-point Kronrod rule on [-1,1], the rule is symmetric and
+	 * uses <tt>center +- halfLength*XGK[j]</tt>. The odd ones <tt>XGK[1], XGK[3], ..., XGK[9]</tt>
+	 * are the positive nodes of the 10-point Gauss rule
+	 */
+	static final double[] XGK = { 0.995657163025808080735527280689003, 0.973906528517171720077964012084452,
+			0.930157491355708226001207180059508, 0.865063366688984510732096688423493,
+			0.780817726586416897063717578345042, 0.679409568299024406234327365114874,
+			0.562757134668604683339000099272694, 0.433395394129247190799265943165784,
+			0.294392862701460198131126603103866, 0.148874338981631210884826001129720, 0.0 };
+
+	static final double[] WGK = { 0.011694638867371874278064396062192, 0.032558162307964727478818972459390,
+			0.054755896574351996031381300244580, 0.075039674810919952767043140916190,
+			0.093125454583697605535065465083366, 0.109387158802297641899210590325805,
+			0.123491976262065851077208272970150, 0.134709217311473325928054001771707,
+			0.142775938577060080797094273138717, 0.147739104901338491374841515972068,
+			0.149445554002916905664936468389821 };
+
+	static final double[] WG = { 0.066671344308688137593568809893332, 0.149451349150580593145776339657697,
+			0.219086362515982043995534934228163, 0.269266719309996355091226921569469,
+			0.295524224714752870173892994651338 };
+
 	IntegralFunction func;
 	double start, end;
+	boolean parallel = false;
 
 	public GaussKronrodQuadrature(IntegralFunction func, double xStart, double xEnd) {
 		this.func = func;
@@ -33,10 +54,88 @@ public class GaussKronrodQuadrature {
 		this.end = xEnd;
 	}
 
+	/**
+	 * Evaluate the nodes in parallel batches, the function must be thread safe
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
 	public double getIntegral() {
-		Sequence sFunc = k -> weights[(int) k] * func.function(getTransform(points[(int) k]));
-		Series integral = new Series(sFunc);
-		return integral.sum(0, points.length - 1) * (end - start) / 2.0;
+		// all the nodes of the rule in one batch
+		double[] x = new double[points.length];
+		for (int k = 0; k < points.length; k++)
+			x[k] = getTransform(points[k]);
+		double[] fx = new double[points.length];
+		IntegralFunction1D.evaluate(func, x, fx, parallel);
+		double sum = 0.0;
+		for (int k = 0; k < points.length; k++)
+			sum += weights[k] * fx[k];
+		return sum * (end - start) / 2.0;
+	}
+
+	/**
+	 * 21-point Gauss-Kronrod rule on <tt>[a,b]</tt> with the error estimate of QUADPACK (QK21):
+	 * the difference to the embedded 10-point Gauss rule, scaled by the variation of
+	 * the integrand on the interval.
+	 *
+	 * @param func
+	 * @param a
+	 * @param b
+	 * @return <tt>{integral, error estimate, integral of |f|}</tt>
+	 */
+	public static double[] kronrod21(IntegralFunction func, double a, double b) {
+		return kronrod21(func, a, b, false);
+	}
+
+	/**
+	 * 21-point Gauss-Kronrod rule on <tt>[a,b]</tt>, the nodes are evaluated as one batch,
+	 * split across threads with <tt>parallel</tt>
+	 */
+	public static double[] kronrod21(IntegralFunction func, double a, double b, boolean parallel) {
+		double center = 0.5*(a+b);
+		double halfLength = 0.5*(b-a);
+		double[] fv1 = new double[10], fv2 = new double[10];
+
+		// nodes: center, then center-dx_j and center+dx_j
+		double[] x = new double[21], fx = new double[21];
+		x[0] = center;
+		for(int j=0; j<10; j++) {
+			double dx = halfLength*XGK[j];
+			x[2*j+1] = center-dx;
+			x[2*j+2] = center+dx;
+		}
+		IntegralFunction1D.evaluate(func, x, fx, parallel);
+
+		double fc = fx[0];
+		double resk = WGK[10]*fc;
+		double resg = 0.0;
+		double resabs = Math.abs(resk);
+		for(int j=0; j<10; j++) {
+			double f1 = fx[2*j+1];
+			double f2 = fx[2*j+2];
+			fv1[j] = f1;
+			fv2[j] = f2;
+			resk += WGK[j]*(f1+f2);
+			resabs += WGK[j]*(Math.abs(f1)+Math.abs(f2));
+			if(j%2 == 1)
+				resg += WG[j/2]*(f1+f2);
+		}
+		double reskh = 0.5*resk;
+		double resasc = WGK[10]*Math.abs(fc-reskh);
+		for(int j=0; j<10; j++)
+			resasc += WGK[j]*(Math.abs(fv1[j]-reskh)+Math.abs(fv2[j]-reskh));
+
+		double result = resk*halfLength;
+		resabs *= Math.abs(halfLength);
+		resasc *= Math.abs(halfLength);
+		double error = Math.abs((resk-resg)*halfLength);
+		if(resasc != 0.0 && error != 0.0)
+			error = resasc*Math.min(1.0, Math.pow(200.0*error/resasc, 1.5));
+		double epmach = Math.ulp(1.0);
+		if(resabs > Double.MIN_NORMAL/(50.0*epmach))
+			error = Math.max(50.0*epmach*resabs, error);
+		return new double[] {result, error, resabs};
 	}
 
 	private double getTransform(double u) {
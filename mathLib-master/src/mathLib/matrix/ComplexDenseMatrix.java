@@ -0,0 +1,616 @@
+package mathLib.matrix;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mathLib.matrix.powerIter.PowerIterationMatrix;
+import mathLib.numbers.Complex;
+
+/**
+ * Dense complex matrix with split storage: the real and imaginary parts are
+ * kept in two row-major <tt>double[]</tt> arrays, entry <tt>(i,j)</tt> is
+ * <tt>re[i*n+j] + j*im[i*n+j]</tt>.
+ * <p>
+ * Unlike <tt>ComplexMatrix</tt> and <tt>PowerIterationMatrix</tt>, which keep
+ * one <tt>Complex</tt> object per entry, the kernels of this class (add, multiply,
+ * LU, solve, power iteration) work in place on primitive arrays and do not
+ * allocate per entry. Use <tt>valueOf()</tt>/<tt>toComplexMatrix()</tt> to convert
+ * from/to the object based matrices.
+ * <p>
+ * Row and column indices are all from 0.
+ *
+ */
+public class ComplexDenseMatrix {
+
+	/**
+	 * Row and column dimensions.
+	 */
+	protected int m, n;
+
+	/**
+	 * Real and imaginary parts, row-major
+	 */
+	protected double[] re, im;
+
+	/**
+	 * Products with less multiply-adds are not split into parallel tasks
+	 */
+	protected static final long SERIAL = 64*64*64;
+	protected static final int KC = 64;
+	protected static final int NC = 256;
+
+	/**
+	 * Construct an m-by-n matrix of zeros.
+	 *
+	 * @param m
+	 *            Number of rows.
+	 * @param n
+	 *            Number of colums.
+	 */
+	public ComplexDenseMatrix(int m, int n) {
+		this.m = m;
+		this.n = n;
+		this.re = new double[m*n];
+		this.im = new double[m*n];
+	}
+
+	/**
+	 * Construct a matrix from the real and imaginary parts, the arrays are used
+	 * without copying
+	 *
+	 * @param m
+	 * @param n
+	 * @param re
+	 *            Real parts, row-major, length <tt>m*n</tt>.
+	 * @param im
+	 *            Imaginary parts, row-major, length <tt>m*n</tt>.
+	 */
+	public ComplexDenseMatrix(int m, int n, double[] re, double[] im) {
+		if(re.length != m*n || im.length != m*n)
+			throw new IllegalArgumentException("Array length must be m*n.");
+		this.m = m;
+		this.n = n;
+		this.re = re;
+		this.im = im;
+	}
+
+	/**
+	 * Construct a matrix from a 2-D array.
+	 *
+	 * @param A
+	 *            Two-dimensional array of complex numbers.
+	 */
+	public ComplexDenseMatrix(Complex[][] A) {
+		this(A.length, A[0].length);
+		for(int i=0; i<m; i++) {
+			if(A[i].length != n)
+				throw new IllegalArgumentException("All rows must have the same length.");
+			for(int j=0; j<n; j++) {
+				re[i*n+j] = A[i][j].re();
+				im[i*n+j] = A[i][j].im();
+			}
+		}
+	}
+
+	/**
+	 * Construct a real matrix from a 2-D array.
+	 *
+	 * @param A
+	 *            Two-dimensional array of doubles.
+	 */
+	public ComplexDenseMatrix(double[][] A) {
+		this(A.length, A[0].length);
+		for(int i=0; i<m; i++)
+			System.arraycopy(A[i], 0, re, i*n, n);
+	}
+
+	public static ComplexDenseMatrix valueOf(ComplexMatrix A) {
+		return new ComplexDenseMatrix(A.data);
+	}
+
+	public static ComplexDenseMatrix valueOf(PowerIterationMatrix A) {
+		return new ComplexDenseMatrix(A.getArray());
+	}
+
+	public static ComplexDenseMatrix valueOf(Matrix A) {
+		return new ComplexDenseMatrix(A.data);
+	}
+
+	public static ComplexDenseMatrix identity(int n) {
+		ComplexDenseMatrix I = new ComplexDenseMatrix(n, n);
+		for(int i=0; i<n; i++)
+			I.re[i*n+i] = 1.0;
+		return I;
+	}
+
+	public Complex[][] toComplexArray() {
+		Complex[][] A = new Complex[m][n];
+		for(int i=0; i<m; i++)
+			for(int j=0; j<n; j++)
+				A[i][j] = new Complex(re[i*n+j], im[i*n+j]);
+		return A;
+	}
+
+	public ComplexMatrix toComplexMatrix() {
+		return new ComplexMatrix(toComplexArray());
+	}
+
+	public PowerIterationMatrix toPowerIterationMatrix() {
+		return new PowerIterationMatrix(toComplexArray());
+	}
+
+	public ComplexDenseMatrix copy() {
+		return new ComplexDenseMatrix(m, n, re.clone(), im.clone());
+	}
+
+	public int getRowDimension() {
+		return m;
+	}
+
+	public int getColumnDimension() {
+		return n;
+	}
+
+	/**
+	 * @return the real parts, row-major (not copied)
+	 */
+	public double[] getRe() {
+		return re;
+	}
+
+	/**
+	 * @return the imaginary parts, row-major (not copied)
+	 */
+	public double[] getIm() {
+		return im;
+	}
+
+	public Complex get(int i, int j) {
+		return new Complex(re[i*n+j], im[i*n+j]);
+	}
+
+	public double getRe(int i, int j) {
+		return re[i*n+j];
+	}
+
+	public double getIm(int i, int j) {
+		return im[i*n+j];
+	}
+
+	public void set(int i, int j, double re, double im) {
+		this.re[i*n+j] = re;
+		this.im[i*n+j] = im;
+	}
+
+	public void set(int i, int j, Complex s) {
+		set(i, j, s.re(), s.im());
+	}
+
+	/////////////////////////////Element-wise/////////////////////////////
+
+	/**
+	 * A = A + B
+	 */
+	public ComplexDenseMatrix plusEquals(ComplexDenseMatrix B) {
+		checkMatrixDimensions(B);
+		for(int k=0; k<re.length; k++) {
+			re[k] += B.re[k];
+			im[k] += B.im[k];
+		}
+		return this;
+	}
+
+	/**
+	 * A = A - B
+	 */
+	public ComplexDenseMatrix minusEquals(ComplexDenseMatrix B) {
+		checkMatrixDimensions(B);
+		for(int k=0; k<re.length; k++) {
+			re[k] -= B.re[k];
+			im[k] -= B.im[k];
+		}
+		return this;
+	}
+
+	/**
+	 * A = A + s*B
+	 */
+	public ComplexDenseMatrix plusEquals(double sRe, double sIm, ComplexDenseMatrix B) {
+		checkMatrixDimensions(B);
+		for(int k=0; k<re.length; k++) {
+			double bRe = B.re[k], bIm = B.im[k];
+			re[k] += sRe*bRe - sIm*bIm;
+			im[k] += sRe*bIm + sIm*bRe;
+		}
+		return this;
+	}
+
+	/**
+	 * A = s*A
+	 */
+	public ComplexDenseMatrix timesEquals(double sRe, double sIm) {
+		for(int k=0; k<re.length; k++) {
+			double aRe = re[k], aIm = im[k];
+			re[k] = sRe*aRe - sIm*aIm;
+			im[k] = sRe*aIm + sIm*aRe;
+		}
+		return this;
+	}
+
+	public ComplexDenseMatrix timesEquals(double s) {
+		for(int k=0; k<re.length; k++) {
+			re[k] *= s;
+			im[k] *= s;
+		}
+		return this;
+	}
+
+	/**
+	 * A = A + s*I
+	 */
+	public ComplexDenseMatrix shiftEquals(double sRe, double sIm) {
+		for(int i=0; i<Math.min(m, n); i++) {
+			re[i*n+i] += sRe;
+			im[i*n+i] += sIm;
+		}
+		return this;
+	}
+
+	public ComplexDenseMatrix plus(ComplexDenseMatrix B) {
+		return copy().plusEquals(B);
+	}
+
+	public ComplexDenseMatrix minus(ComplexDenseMatrix B) {
+		return copy().minusEquals(B);
+	}
+
+	/////////////////////////////Products/////////////////////////////
+
+	/**
+	 * Linear algebraic matrix multiplication, A * B
+	 *
+	 * @param B
+	 *            another matrix
+	 * @return Matrix product, A * B
+	 */
+	public ComplexDenseMatrix times(ComplexDenseMatrix B) {
+		ComplexDenseMatrix C = new ComplexDenseMatrix(m, B.n);
+		mult(B, C);
+		return C;
+	}
+
+	/**
+	 * C = A * B, <tt>C</tt> is overwritten and must not be <tt>A</tt> or <tt>B</tt>
+	 *
+	 * @param B
+	 * @param C
+	 */
+	public void mult(ComplexDenseMatrix B, ComplexDenseMatrix C) {
+		if(B.m != n)
+			throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+		if(C.m != m || C.n != B.n)
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		if(C == this || C == B)
+			throw new IllegalArgumentException("C must not be A or B.");
+		Arrays.fill(C.re, 0.0);
+		Arrays.fill(C.im, 0.0);
+		if(Gemm.parallel && (long)m*n*B.n >= SERIAL && m > 1)
+			ForkJoinPool.commonPool().invoke(new MultTask(this, B, C, 0, m));
+		else
+			multRows(this, B, C, 0, m);
+	}
+
+	/**
+	 * Rows <tt>i0...i1-1</tt> of C += A*B, blocked so that a <tt>KC*NC</tt> block
+	 * of B stays in cache while it is used by all the rows
+	 */
+	protected static void multRows(ComplexDenseMatrix A, ComplexDenseMatrix B,
+			ComplexDenseMatrix C, int i0, int i1) {
+		int n = A.n, nb = B.n;
+		double[] aRe = A.re, aIm = A.im, bRe = B.re, bIm = B.im, cRe = C.re, cIm = C.im;
+		for(int p0=0; p0<n; p0+=KC) {
+			int p1 = Math.min(n, p0+KC);
+			for(int j0=0; j0<nb; j0+=NC) {
+				int j1 = Math.min(nb, j0+NC);
+				for(int i=i0; i<i1; i++) {
+					int ci = i*nb;
+					for(int p=p0; p<p1; p++) {
+						double ar = aRe[i*n+p], ai = aIm[i*n+p];
+						int bp = p*nb;
+						for(int j=j0; j<j1; j++) {
+							double br = bRe[bp+j], bi = bIm[bp+j];
+							cRe[ci+j] += ar*br - ai*bi;
+							cIm[ci+j] += ar*bi + ai*br;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	protected static class MultTask extends RecursiveAction {
+		final ComplexDenseMatrix A, B, C;
+		final int i0, i1;
+
+		MultTask(ComplexDenseMatrix A, ComplexDenseMatrix B, ComplexDenseMatrix C, int i0, int i1) {
+			this.A = A;
+			this.B = B;
+			this.C = C;
+			this.i0 = i0;
+			this.i1 = i1;
+		}
+
+		@Override
+		protected void compute() {
+			if((long)(i1-i0)*A.n*B.n < SERIAL || i1-i0 < 8) {
+				multRows(A, B, C, i0, i1);
+			} else {
+				int mid = (i0+i1) >>> 1;
+				invokeAll(new MultTask(A, B, C, i0, mid), new MultTask(A, B, C, mid, i1));
+			}
+		}
+	}
+
+	/**
+	 * y = A * x, <tt>y</tt> must not be <tt>x</tt>
+	 *
+	 * @param xRe
+	 * @param xIm
+	 * @param yRe
+	 * @param yIm
+	 */
+	public void mult(double[] xRe, double[] xIm, double[] yRe, double[] yIm) {
+		for(int i=0; i<m; i++) {
+			double sRe = 0.0, sIm = 0.0;
+			int ai = i*n;
+			for(int j=0; j<n; j++) {
+				double ar = re[ai+j], aim = im[ai+j];
+				sRe += ar*xRe[j] - aim*xIm[j];
+				sIm += ar*xIm[j] + aim*xRe[j];
+			}
+			yRe[i] = sRe;
+			yIm[i] = sIm;
+		}
+	}
+
+	/////////////////////////////LU/////////////////////////////
+
+	/**
+	 * LU decomposition with partial pivoting in place: the strict lower part
+	 * of A is overwritten by the unit lower triangular L, the upper part by U,
+	 * so that A(piv,:) = L*U.
+	 *
+	 * @param piv
+	 *            output, row permutation of length <tt>m</tt>
+	 * @exception RuntimeException
+	 *                Matrix is singular.
+	 */
+	public void luDecompose(int[] piv) {
+		if(m != n)
+			throw new IllegalArgumentException("Matrix must be square.");
+		for(int i=0; i<n; i++)
+			piv[i] = i;
+		for(int k=0; k<n; k++) {
+			int p = k;
+			double max = re[k*n+k]*re[k*n+k] + im[k*n+k]*im[k*n+k];
+			for(int i=k+1; i<n; i++) {
+				double a = re[i*n+k]*re[i*n+k] + im[i*n+k]*im[i*n+k];
+				if(a > max) {
+					max = a;
+					p = i;
+				}
+			}
+			if(max == 0.0)
+				throw new RuntimeException("Matrix is singular.");
+			if(p != k) {
+				swapRows(p, k);
+				int t = piv[p]; piv[p] = piv[k]; piv[k] = t;
+			}
+			//1/pivot
+			double dRe = re[k*n+k]/max, dIm = -im[k*n+k]/max;
+			for(int i=k+1; i<n; i++) {
+				int ik = i*n+k;
+				double lRe = re[ik]*dRe - im[ik]*dIm;
+				double lIm = re[ik]*dIm + im[ik]*dRe;
+				re[ik] = lRe;
+				im[ik] = lIm;
+				if(lRe == 0.0 && lIm == 0.0)
+					continue;
+				for(int j=k+1; j<n; j++) {
+					double uRe = re[k*n+j], uIm = im[k*n+j];
+					re[i*n+j] -= lRe*uRe - lIm*uIm;
+					im[i*n+j] -= lRe*uIm + lIm*uRe;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solve A*x = b in place with the factors computed by <tt>luDecompose()</tt>
+	 *
+	 * @param piv
+	 *            row permutation returned by <tt>luDecompose()</tt>
+	 * @param bRe
+	 *            right hand side, overwritten by the solution
+	 * @param bIm
+	 * @param work
+	 *            work array of length <tt>2*n</tt>
+	 */
+	public void luSolve(int[] piv, double[] bRe, double[] bIm, double[] work) {
+		for(int i=0; i<n; i++) {
+			work[i] = bRe[piv[i]];
+			work[n+i] = bIm[piv[i]];
+		}
+		//L*y = Pb
+		for(int i=0; i<n; i++) {
+			double sRe = work[i], sIm = work[n+i];
+			for(int j=0; j<i; j++) {
+				double lRe = re[i*n+j], lIm = im[i*n+j];
+				sRe -= lRe*work[j] - lIm*work[n+j];
+				sIm -= lRe*work[n+j] + lIm*work[j];
+			}
+			work[i] = sRe;
+			work[n+i] = sIm;
+		}
+		//U*x = y
+		for(int i=n-1; i>=0; i--) {
+			double sRe = work[i], sIm = work[n+i];
+			for(int j=i+1; j<n; j++) {
+				double uRe = re[i*n+j], uIm = im[i*n+j];
+				sRe -= uRe*work[j] - uIm*work[n+j];
+				sIm -= uRe*work[n+j] + uIm*work[j];
+			}
+			double dRe = re[i*n+i], dIm = im[i*n+i];
+			double d = dRe*dRe + dIm*dIm;
+			work[i] = (sRe*dRe + sIm*dIm)/d;
+			work[n+i] = (sIm*dRe - sRe*dIm)/d;
+		}
+		System.arraycopy(work, 0, bRe, 0, n);
+		System.arraycopy(work, n, bIm, 0, n);
+	}
+
+	/**
+	 * Solve A*X = B, A is not changed
+	 *
+	 * @param B
+	 * @return X
+	 */
+	public ComplexDenseMatrix solve(ComplexDenseMatrix B) {
+		if(B.m != n)
+			throw new IllegalArgumentException("Matrix row dimensions must agree.");
+		ComplexDenseMatrix LU = copy();
+		int[] piv = new int[n];
+		LU.luDecompose(piv);
+		ComplexDenseMatrix X = new ComplexDenseMatrix(n, B.n);
+		double[] bRe = new double[n], bIm = new double[n], work = new double[2*n];
+		for(int j=0; j<B.n; j++) {
+			for(int i=0; i<n; i++) {
+				bRe[i] = B.re[i*B.n+j];
+				bIm[i] = B.im[i*B.n+j];
+			}
+			LU.luSolve(piv, bRe, bIm, work);
+			for(int i=0; i<n; i++) {
+				X.re[i*B.n+j] = bRe[i];
+				X.im[i*B.n+j] = bIm[i];
+			}
+		}
+		return X;
+	}
+
+	protected void swapRows(int p, int k) {
+		for(int j=0; j<n; j++) {
+			double t = re[p*n+j]; re[p*n+j] = re[k*n+j]; re[k*n+j] = t;
+			t = im[p*n+j]; im[p*n+j] = im[k*n+j]; im[k*n+j] = t;
+		}
+	}
+
+	/////////////////////////////Eigenvalues/////////////////////////////
+
+	/**
+	 * Power iteration for the eigenvalue of largest modulus.
+	 * Iterates <tt>x = A*x/|A*x|</tt> until the modulus of the Rayleigh quotient
+	 * <tt>(x^H*A*x)/(x^H*x)</tt> changes by at most <tt>error</tt>.
+	 *
+	 * @param error
+	 * @param maxIter
+	 * @param xRe
+	 *            initial vector, overwritten by the normalized eigenvector
+	 * @param xIm
+	 * @return the eigenvalue
+	 */
+	public Complex powerIteration(double error, int maxIter, double[] xRe, double[] xIm) {
+		double[] yRe = new double[n], yIm = new double[n];
+		normalize(xRe, xIm);
+		double lRe = 0.0, lIm = 0.0, last;
+		int iter = 0;
+		do {
+			last = Math.hypot(lRe, lIm);
+			mult(xRe, xIm, yRe, yIm);
+			//Rayleigh quotient x^H*A*x, |x| = 1
+			lRe = 0.0;
+			lIm = 0.0;
+			for(int i=0; i<n; i++) {
+				lRe += xRe[i]*yRe[i] + xIm[i]*yIm[i];
+				lIm += xRe[i]*yIm[i] - xIm[i]*yRe[i];
+			}
+			System.arraycopy(yRe, 0, xRe, 0, n);
+			System.arraycopy(yIm, 0, xIm, 0, n);
+			normalize(xRe, xIm);
+			iter++;
+		} while(iter < maxIter && (iter == 1 || Math.abs(Math.hypot(lRe, lIm) - last) > error));
+		return new Complex(lRe, lIm);
+	}
+
+	/**
+	 * Inverse iteration for the eigenvalue closest to <tt>shift</tt>. The matrix
+	 * <tt>A-shift*I</tt> is factorized once and the factors are reused in
+	 * every iteration, A is not changed.
+	 *
+	 * @param shift
+	 * @param error
+	 * @param maxIter
+	 * @param xRe
+	 *            initial vector, overwritten by the normalized eigenvector
+	 * @param xIm
+	 * @return the eigenvalue
+	 */
+	public Complex inverseIteration(Complex shift, double error, int maxIter, double[] xRe, double[] xIm) {
+		ComplexDenseMatrix LU = copy().shiftEquals(-shift.re(), -shift.im());
+		int[] piv = new int[n];
+		LU.luDecompose(piv);
+		double[] yRe = new double[n], yIm = new double[n], work = new double[2*n];
+		normalize(xRe, xIm);
+		double lRe = 0.0, lIm = 0.0, last;
+		int iter = 0;
+		do {
+			last = Math.hypot(lRe, lIm);
+			System.arraycopy(xRe, 0, yRe, 0, n);
+			System.arraycopy(xIm, 0, yIm, 0, n);
+			LU.luSolve(piv, yRe, yIm, work);
+			//Rayleigh quotient of (A-shift*I)^-1
+			lRe = 0.0;
+			lIm = 0.0;
+			for(int i=0; i<n; i++) {
+				lRe += xRe[i]*yRe[i] + xIm[i]*yIm[i];
+				lIm += xRe[i]*yIm[i] - xIm[i]*yRe[i];
+			}
+			System.arraycopy(yRe, 0, xRe, 0, n);
+			System.arraycopy(yIm, 0, xIm, 0, n);
+			normalize(xRe, xIm);
+			iter++;
+		} while(iter < maxIter && (iter == 1 || Math.abs(Math.hypot(lRe, lIm) - last) > error));
+		//eigenvalue = shift + 1/l
+		double d = lRe*lRe + lIm*lIm;
+		return new Complex(shift.re() + lRe/d, shift.im() - lIm/d);
+	}
+
+	protected static void normalize(double[] xRe, double[] xIm) {
+		double s = 0.0;
+		for(int i=0; i<xRe.length; i++)
+			s += xRe[i]*xRe[i] + xIm[i]*xIm[i];
+		s = 1.0/Math.sqrt(s);
+		for(int i=0; i<xRe.length; i++) {
+			xRe[i] *= s;
+			xIm[i] *= s;
+		}
+	}
+
+	private void checkMatrixDimensions(ComplexDenseMatrix B) {
+		if (B.m != m || B.n != n) {
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<m; i++) {
+			for(int j=0; j<n; j++)
+				sb.append(get(i, j)).append("   ");
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+}
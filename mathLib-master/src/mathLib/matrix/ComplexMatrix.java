@@ -169,23 +169,14 @@ public class ComplexMatrix {
     public ComplexMatrix times(ComplexMatrix B) {
         ComplexMatrix A = this;
         if (A.N != B.M) throw new RuntimeException("Illegal matrix dimensions.");
-        ComplexMatrix C = new ComplexMatrix(A.M, B.N);
-        for (int i = 0; i < C.M; i++)
-            for (int j = 0; j < C.N; j++)
-                for (int k = 0; k < A.N; k++)
-                    C.data[i][j] = C.data[i][j].plus(A.data[i][k].times(B.data[k][j]));
-        return C;
+        // multiply on flat arrays, no Complex objects in the inner loop
+        return ComplexDenseMatrix.valueOf(A).times(ComplexDenseMatrix.valueOf(B)).toComplexMatrix();
     }
 
     public ComplexMatrix times(Matrix B) {
         ComplexMatrix A = this;
         if (A.N != B.M) throw new RuntimeException("Illegal matrix dimensions.");
-        ComplexMatrix C = new ComplexMatrix(A.M, B.N);
-        for (int i = 0; i < C.M; i++)
-            for (int j = 0; j < C.N; j++)
-                for (int k = 0; k < A.N; k++)
-                    C.data[i][j] = C.data[i][j].plus(A.data[i][k].times(B.data[k][j]));
-        return C;
+        return ComplexDenseMatrix.valueOf(A).times(ComplexDenseMatrix.valueOf(B)).toComplexMatrix();
     }
 
     // returns multiplication by a complex scalar
@@ -403,6 +394,10 @@ public class ComplexMatrix {
     	return new PowerIterationMatrix(A.data) ;
     }
 
+    public ComplexDenseMatrix toComplexDenseMatrix() {
+    	return ComplexDenseMatrix.valueOf(this) ;
+    }
+
     // ************ operator overloading **********************
 
     public static ComplexMatrix valueOf(double[][] v) {
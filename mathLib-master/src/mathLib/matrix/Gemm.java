@@ -0,0 +1,242 @@
+package mathLib.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Dense matrix-matrix product <tt>C = alpha*A*B + beta*C</tt> on row-major
+ * <tt>double[][]</tt> arrays
+ * <p>
+ * The product is computed in tiles of <tt>MC*NC</tt> entries of <tt>C</tt>.
+ * For each tile, blocks of <tt>A</tt> and <tt>B</tt> of depth <tt>KC</tt> are
+ * packed into contiguous arrays (so that the block of <tt>A</tt> stays in L2 and
+ * one <tt>KC*NR</tt> panel of <tt>B</tt> stays in L1 cache) and multiplied by a
+ * <tt>MR*NR</tt> register-blocked micro kernel. The tiles are independent and are
+ * computed in parallel on the common <tt>ForkJoinPool</tt>.
+ * <p>
+ * Small products use a plain i-k-j loop.
+ *
+ */
+public class Gemm {
+	protected static final int MR = 4;
+	protected static final int NR = 4;
+	protected static final int MC = 128;
+	protected static final int KC = 256;
+	protected static final int NC = 512;
+
+	/**
+	 * Products with less multiply-adds are not packed
+	 */
+	protected static final long SMALL = 32*32*32;
+	/**
+	 * Products with less multiply-adds are not split into parallel tasks
+	 */
+	protected static final long SERIAL = 128*128*128;
+
+	/**
+	 * Use more than one thread for large products
+	 */
+	public static boolean parallel = true;
+
+	private static final ThreadLocal<double[][]> buffers = ThreadLocal.withInitial(
+			() -> new double[][] { new double[MC*KC], new double[KC*NC] });
+
+	/**
+	 * C = A*B
+	 *
+	 * @param A <tt>m*k</tt>
+	 * @param B <tt>k*n</tt>
+	 * @param C <tt>m*n</tt>, overwritten
+	 * @param m
+	 * @param n
+	 * @param k
+	 */
+	public static void mult(double[][] A, double[][] B, double[][] C, int m, int n, int k) {
+		mult(1.0, A, B, 0.0, C, m, n, k);
+	}
+
+	/**
+	 * C = alpha*A*B + beta*C
+	 * <p>
+	 * <tt>C</tt> must not share rows with <tt>A</tt> or <tt>B</tt>. If <tt>beta</tt>
+	 * is zero, <tt>C</tt> is not read.
+	 *
+	 * @param alpha
+	 * @param A <tt>m*k</tt>
+	 * @param B <tt>k*n</tt>
+	 * @param beta
+	 * @param C <tt>m*n</tt>
+	 * @param m
+	 * @param n
+	 * @param k
+	 */
+	public static void mult(double alpha, double[][] A, double[][] B, double beta, double[][] C,
+			int m, int n, int k) {
+		if(m == 0 || n == 0)
+			return;
+		scale(beta, C, 0, m, 0, n);
+		if(k == 0 || alpha == 0.0)
+			return;
+		long flops = (long)m*n*k;
+		if(flops < SMALL) {
+			multSmall(alpha, A, B, C, m, n, k);
+			return;
+		}
+
+		List<Tile> tiles = new ArrayList<Tile>();
+		for(int i=0; i<m; i+=MC)
+			for(int j=0; j<n; j+=NC)
+				tiles.add(new Tile(alpha, A, B, C, i, Math.min(MC, m-i), j, Math.min(NC, n-j), k));
+		if(!parallel || flops < SERIAL || tiles.size() == 1) {
+			for(Tile t : tiles)
+				t.compute();
+		} else {
+			ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					invokeAll(tiles);
+				}
+			});
+		}
+	}
+
+	protected static void scale(double beta, double[][] C, int i0, int m, int j0, int n) {
+		if(beta == 1.0)
+			return;
+		for(int i=i0; i<i0+m; i++) {
+			double[] Ci = C[i];
+			for(int j=j0; j<j0+n; j++)
+				Ci[j] = beta == 0.0 ? 0.0 : beta*Ci[j];
+		}
+	}
+
+	/**
+	 * i-k-j loop, the inner loop runs along rows of <tt>B</tt> and <tt>C</tt>
+	 */
+	protected static void multSmall(double alpha, double[][] A, double[][] B, double[][] C,
+			int m, int n, int k) {
+		for(int i=0; i<m; i++) {
+			double[] Ai = A[i];
+			double[] Ci = C[i];
+			for(int p=0; p<k; p++) {
+				double a = alpha*Ai[p];
+				double[] Bp = B[p];
+				for(int j=0; j<n; j++)
+					Ci[j] += a*Bp[j];
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	protected static class Tile extends RecursiveAction {
+		final double alpha;
+		final double[][] A, B, C;
+		final int i0, mc, j0, nc, k;
+
+		Tile(double alpha, double[][] A, double[][] B, double[][] C,
+				int i0, int mc, int j0, int nc, int k) {
+			this.alpha = alpha;
+			this.A = A;
+			this.B = B;
+			this.C = C;
+			this.i0 = i0;
+			this.mc = mc;
+			this.j0 = j0;
+			this.nc = nc;
+			this.k = k;
+		}
+
+		@Override
+		public void compute() {
+			double[][] buf = buffers.get();
+			double[] Ap = buf[0], Bp = buf[1];
+			double[] acc = new double[MR*NR];
+			for(int p0=0; p0<k; p0+=KC) {
+				int kc = Math.min(KC, k-p0);
+				packA(A, i0, mc, p0, kc, alpha, Ap);
+				packB(B, p0, kc, j0, nc, Bp);
+				for(int jr=0; jr<nc; jr+=NR) {
+					int nr = Math.min(NR, nc-jr);
+					int pb = jr*kc;
+					for(int ir=0; ir<mc; ir+=MR) {
+						int mr = Math.min(MR, mc-ir);
+						kernel(kc, Ap, ir*kc, Bp, pb, acc);
+						for(int i=0; i<mr; i++) {
+							double[] Ci = C[i0+ir+i];
+							int c = j0+jr;
+							for(int j=0; j<nr; j++)
+								Ci[c+j] += acc[i*NR+j];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pack <tt>alpha*A[i0:i0+mc, p0:p0+kc]</tt> into row panels of height <tt>MR</tt>:
+	 * the panel starting at row <tt>ir</tt> is stored column by column from
+	 * <tt>Ap[ir*kc]</tt>, rows beyond <tt>mc</tt> are padded with zeros
+	 */
+	protected static void packA(double[][] A, int i0, int mc, int p0, int kc,
+			double alpha, double[] Ap) {
+		for(int ir=0; ir<mc; ir+=MR) {
+			int pos = ir*kc;
+			int mr = Math.min(MR, mc-ir);
+			for(int i=0; i<MR; i++) {
+				if(i < mr) {
+					double[] Ai = A[i0+ir+i];
+					for(int p=0; p<kc; p++)
+						Ap[pos+p*MR+i] = alpha*Ai[p0+p];
+				} else {
+					for(int p=0; p<kc; p++)
+						Ap[pos+p*MR+i] = 0.0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pack <tt>B[p0:p0+kc, j0:j0+nc]</tt> into column panels of width <tt>NR</tt>:
+	 * the panel starting at column <tt>jr</tt> is stored row by row from
+	 * <tt>Bp[jr*kc]</tt>, columns beyond <tt>nc</tt> are padded with zeros
+	 */
+	protected static void packB(double[][] B, int p0, int kc, int j0, int nc, double[] Bp) {
+		for(int p=0; p<kc; p++) {
+			double[] Bi = B[p0+p];
+			for(int jr=0; jr<nc; jr+=NR) {
+				int pos = jr*kc + p*NR;
+				int nr = Math.min(NR, nc-jr);
+				for(int j=0; j<NR; j++)
+					Bp[pos+j] = j < nr ? Bi[j0+jr+j] : 0.0;
+			}
+		}
+	}
+
+	/**
+	 * <tt>acc = Ap(MR*kc) * Bp(kc*NR)</tt> with the 16 sums in local variables
+	 */
+	protected static void kernel(int kc, double[] Ap, int pa, double[] Bp, int pb, double[] acc) {
+		double c00=0, c01=0, c02=0, c03=0;
+		double c10=0, c11=0, c12=0, c13=0;
+		double c20=0, c21=0, c22=0, c23=0;
+		double c30=0, c31=0, c32=0, c33=0;
+		for(int p=0; p<kc; p++) {
+			double a0 = Ap[pa], a1 = Ap[pa+1], a2 = Ap[pa+2], a3 = Ap[pa+3];
+			double b0 = Bp[pb], b1 = Bp[pb+1], b2 = Bp[pb+2], b3 = Bp[pb+3];
+			c00 += a0*b0; c01 += a0*b1; c02 += a0*b2; c03 += a0*b3;
+			c10 += a1*b0; c11 += a1*b1; c12 += a1*b2; c13 += a1*b3;
+			c20 += a2*b0; c21 += a2*b1; c22 += a2*b2; c23 += a2*b3;
+			c30 += a3*b0; c31 += a3*b1; c32 += a3*b2; c33 += a3*b3;
+			pa += MR;
+			pb += NR;
+		}
+		acc[0] = c00; acc[1] = c01; acc[2] = c02; acc[3] = c03;
+		acc[4] = c10; acc[5] = c11; acc[6] = c12; acc[7] = c13;
+		acc[8] = c20; acc[9] = c21; acc[10] = c22; acc[11] = c23;
+		acc[12] = c30; acc[13] = c31; acc[14] = c32; acc[15] = c33;
+	}
+}
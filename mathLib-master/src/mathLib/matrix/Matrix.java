@@ -4,6 +4,7 @@ import flanagan.roots.RealRoot;
 import flanagan.roots.RealRootFunction;
 import mathLib.geometry.algebra.Vector;
 import mathLib.matrix.powerIter.PowerIterationMatrix;
+import mathLib.matrix.sys.DenseLU;
 
 public class Matrix {
 
@@ -213,15 +214,7 @@ public class Matrix {
         Matrix A = this;
         if (A.N != B.M) throw new RuntimeException("Illegal matrix dimensions.");
         Matrix C = new Matrix(A.M, B.N);
-        for(int i=0; i<C.M; i++){
-        	for(int j=0; j<C.N; j++){
-        		C.data[i][j] = 0 ;
-        	}
-        }
-        for (int i = 0; i < C.M; i++)
-            for (int j = 0; j < C.N; j++)
-                for (int k = 0; k < A.N; k++)
-                    C.data[i][j] = C.data[i][j] + (A.data[i][k] * B.data[k][j]) ;
+        Gemm.mult(A.data, B.data, C.data, A.M, B.N, A.N);
         return C;
     }
 
@@ -340,7 +333,9 @@ public class Matrix {
     }
 
     public double det() {
-    	return toJamaMatrix(this).det() ;
+    	if(M != N)
+    		throw new IllegalArgumentException("Matrix must be square.");
+    	return new DenseLU(data).det() ;
     }
 
     public static PowerIterationMatrix toPowerIterationMatrix(Matrix A){
@@ -434,12 +429,16 @@ public class Matrix {
     }
 
     /**
-     * inverse of the matrix
+     * inverse of the matrix, computed from a blocked LU decomposition.
+     * To solve linear systems with this matrix, use <tt>DenseLU</tt> directly.
      *
      * @return Matrix
      */
 
     public Matrix inv() {
+    	if(M == N)
+    		return new Matrix(new DenseLU(data).inverse()) ;
+    	// pseudo-inverse of a rectangular matrix
     	Jama.Matrix B = toJamaMatrix(this) ;
     	Jama.Matrix invB = B.inverse() ;
     	return new Matrix(invB.getArray()) ;
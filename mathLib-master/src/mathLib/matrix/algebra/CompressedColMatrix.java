@@ -169,6 +169,11 @@ public class CompressedColMatrix implements AlgebraMatrix {
 		throw new UnsupportedOperationException("Use CompressedRowMatrix instead for fast mult!");
 	}
 
+	@Override
+	public void multAdd(double alpha, AlgebraVector x, double beta, AlgebraVector y) {
+		throw new UnsupportedOperationException("Use CompressedRowMatrix instead for fast mult!");
+	}
+
 	@Override
 	public void print() {
 		for(int col=0; col<this.colDim; col++) {
@@ -175,6 +175,20 @@ public class CompressedRowMatrix implements AlgebraMatrix {
 		}
 	}
 
+	@Override
+	public void multAdd(double alpha, AlgebraVector x, double beta, AlgebraVector y) {
+		double[] xData = x.getData();
+		double[] yData = y.getData();
+		for(int row=0; row<this.rowDim; row++) {
+			int nCol = colIndex[row].length;
+			double v = 0.0;
+			for(int c=0; c<nCol; c++) {
+				v += data[row][c] * xData[colIndex[row][c]];
+			}
+			yData[row] = alpha*v + (beta == 0.0 ? 0.0 : beta*yData[row]);
+		}
+	}
+
 	@Override
 	public void print() {
 		for(int row=0; row<this.rowDim; row++) {
@@ -0,0 +1,460 @@
+package mathLib.matrix.algebra;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.intf.AlgebraMatrix;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+import mathLib.matrix.algebra.intf.MatrixEntry;
+import mathLib.matrix.algebra.intf.SparseMatrix;
+
+/**
+ * Compressed row matrix stored in three flat arrays (CSR format)
+ * <p>
+ * Non-zero values of row <tt>r</tt> (0-based) are
+ * <code>values[rowPtr[r] .. rowPtr[r+1]-1]</code> with column indices
+ * <code>colIdx[rowPtr[r] .. rowPtr[r+1]-1]</code>, kept sorted within each row.
+ * Compared with the jagged arrays of {@link CompressedRowMatrix} the whole matrix
+ * is streamed from memory sequentially during <tt>mult()</tt>.
+ * <p>
+ * Matrix vector products are computed in parallel on the common <tt>ForkJoinPool</tt>
+ * once the matrix has more than <tt>parallelThreshold</tt> non-zeros. Rows are split into
+ * blocks with (nearly) equal number of non-zeros rather than equal number of rows,
+ * so rows of different length do not unbalance the threads.
+ *
+ */
+public class FlatCompressedRowMatrix implements AlgebraMatrix {
+	/**
+	 * Default number of non-zeros below which <tt>mult()</tt> runs serially
+	 */
+	public static int defaultParallelThreshold = 20000;
+
+	protected int rowDim;
+	protected int colDim;
+
+	protected int[] rowPtr;
+	protected int[] colIdx;
+	protected double[] values;
+
+	protected int parallelThreshold = defaultParallelThreshold;
+
+	/**
+	 * Row block boundaries balanced by non-zero count, built on first parallel use
+	 */
+	protected int[] partition = null;
+
+	/**
+	 * Construct from raw CSR arrays, the arrays are not copied
+	 *
+	 * @param nRow
+	 * @param nCol
+	 * @param rowPtr length <tt>nRow+1</tt>
+	 * @param colIdx 0-based column indices, sorted within each row
+	 * @param values
+	 */
+	public FlatCompressedRowMatrix(int nRow, int nCol, int[] rowPtr, int[] colIdx, double[] values) {
+		if(rowPtr.length != nRow+1)
+			throw new FutureyeException("rowPtr.length="+rowPtr.length+" != nRow+1="+(nRow+1));
+		this.rowDim = nRow;
+		this.colDim = nCol;
+		this.rowPtr = rowPtr;
+		this.colIdx = colIdx;
+		this.values = values;
+	}
+
+	/**
+	 * Copy a jagged <tt>CompressedRowMatrix</tt> into flat storage
+	 *
+	 * @param A
+	 */
+	public FlatCompressedRowMatrix(CompressedRowMatrix A) {
+		this.rowDim = A.getRowDim();
+		this.colDim = A.getColDim();
+		int[][] idx = A.getColIndex();
+		double[][] dat = A.getData();
+		this.rowPtr = new int[rowDim+1];
+		for(int r=0; r<rowDim; r++)
+			rowPtr[r+1] = rowPtr[r] + idx[r].length;
+		int nnz = rowPtr[rowDim];
+		this.colIdx = new int[nnz];
+		this.values = new double[nnz];
+		for(int r=0; r<rowDim; r++) {
+			System.arraycopy(idx[r], 0, colIdx, rowPtr[r], idx[r].length);
+			System.arraycopy(dat[r], 0, values, rowPtr[r], idx[r].length);
+			sortRow(r);
+		}
+	}
+
+	/**
+	 * Compress a sparse matrix. Entries are bucketed by row in two passes
+	 * without creating any temporary object per entry.
+	 *
+	 * @param sMat
+	 * @param clearSparseMatrix
+	 */
+	public FlatCompressedRowMatrix(SparseMatrix sMat, boolean clearSparseMatrix) {
+		this.rowDim = sMat.getRowDim();
+		this.colDim = sMat.getColDim();
+		this.rowPtr = new int[rowDim+1];
+		if(sMat instanceof SparseMatrixRowMajorPrimitive) {
+			SparseMatrixRowMajorPrimitive pMat = (SparseMatrixRowMajorPrimitive)sMat;
+			for(int r=1; r<=rowDim; r++) {
+				IntDoubleHashMap row = pMat.getRow(r);
+				rowPtr[r] = rowPtr[r-1] + (row == null ? 0 : row.size());
+			}
+			this.colIdx = new int[rowPtr[rowDim]];
+			this.values = new double[rowPtr[rowDim]];
+			for(int r=1; r<=rowDim; r++) {
+				IntDoubleHashMap row = pMat.getRow(r);
+				if(row != null)
+					row.copyTo(colIdx, values, rowPtr[r-1], -1);
+			}
+		} else {
+			for(MatrixEntry e : sMat)
+				rowPtr[e.getRow()]++;
+			for(int r=0; r<rowDim; r++)
+				rowPtr[r+1] += rowPtr[r];
+			this.colIdx = new int[rowPtr[rowDim]];
+			this.values = new double[rowPtr[rowDim]];
+			int[] next = new int[rowDim];
+			System.arraycopy(rowPtr, 0, next, 0, rowDim);
+			for(MatrixEntry e : sMat) {
+				int k = next[e.getRow()-1]++;
+				colIdx[k] = e.getCol()-1;
+				values[k] = e.getValue();
+			}
+		}
+		if(clearSparseMatrix) sMat.clearAll();
+		for(int r=0; r<rowDim; r++)
+			sortRow(r);
+	}
+
+	/**
+	 * Insertion sort of row <tt>r</tt> by column index, rows are short
+	 */
+	private void sortRow(int r) {
+		int begin = rowPtr[r], end = rowPtr[r+1];
+		for(int i=begin+1; i<end; i++) {
+			int c = colIdx[i];
+			double v = values[i];
+			int j = i - 1;
+			while(j >= begin && colIdx[j] > c) {
+				colIdx[j+1] = colIdx[j];
+				values[j+1] = values[j];
+				j--;
+			}
+			colIdx[j+1] = c;
+			values[j+1] = v;
+		}
+	}
+
+	@Override
+	public int getRowDim() {
+		return this.rowDim;
+	}
+
+	@Override
+	public int getColDim() {
+		return this.colDim;
+	}
+
+	public int getNonZeroNumber() {
+		return rowPtr[rowDim];
+	}
+
+	public int[] getRowPtr() {
+		return rowPtr;
+	}
+
+	public int[] getColIdx() {
+		return colIdx;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Set the number of non-zeros below which <tt>mult()</tt> runs serially.
+	 * Use <tt>Integer.MAX_VALUE</tt> to disable multithreading.
+	 *
+	 * @param nnz
+	 * @return <tt>this</tt> for convenience only
+	 */
+	public FlatCompressedRowMatrix setParallelThreshold(int nnz) {
+		this.parallelThreshold = nnz;
+		return this;
+	}
+
+	/**
+	 * Value at 0-based <tt>(row,col)</tt> by binary search in the row
+	 */
+	public double get(int row, int col) {
+		int k = indexOf(row, col);
+		return k < 0 ? 0.0 : values[k];
+	}
+
+	/**
+	 * Position of 0-based <tt>(row,col)</tt> in <tt>values</tt>, or <tt>-1</tt> if it is not stored
+	 */
+	public int indexOf(int row, int col) {
+		int lo = rowPtr[row], hi = rowPtr[row+1]-1;
+		while(lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = colIdx[mid];
+			if(c < col) lo = mid + 1;
+			else if(c > col) hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Copy the diagonal into <tt>diag</tt>, missing diagonal entries are <tt>0.0</tt>
+	 */
+	public double[] getDiagonal(double[] diag) {
+		int n = Math.min(rowDim, colDim);
+		for(int r=0; r<n; r++)
+			diag[r] = get(r, r);
+		return diag;
+	}
+
+	/**
+	 * Set all values to zero, keep the sparsity pattern
+	 */
+	public void clearValues() {
+		java.util.Arrays.fill(values, 0.0);
+	}
+
+	/**
+	 * y = A*x
+	 */
+	@Override
+	public void mult(AlgebraVector x, AlgebraVector y) {
+		multAdd(1.0, x, 0.0, y);
+	}
+
+	/**
+	 * y = alpha*A*x + beta*y
+	 * <p>
+	 * Fused, no temporary vector is allocated. When <tt>beta==0</tt> the old
+	 * content of <tt>y</tt> is never read (so <tt>NaN</tt>s in it are not propagated).
+	 */
+	@Override
+	public void multAdd(double alpha, AlgebraVector x, double beta, AlgebraVector y) {
+		double[] xData = x.getData();
+		double[] yData = y.getData();
+		if(rowPtr[rowDim] < parallelThreshold || ForkJoinPool.getCommonPoolParallelism() < 2) {
+			multAddRows(0, rowDim, alpha, xData, beta, yData);
+		} else {
+			int[] part = getPartition();
+			ForkJoinPool.commonPool().invoke(
+					new SpMVTask(part, 0, part.length-1, alpha, xData, beta, yData));
+		}
+	}
+
+	protected void multAddRows(int rowBegin, int rowEnd,
+			double alpha, double[] xData, double beta, double[] yData) {
+		final int[] rowPtr = this.rowPtr;
+		final int[] colIdx = this.colIdx;
+		final double[] values = this.values;
+		for(int r=rowBegin; r<rowEnd; r++) {
+			double v = 0.0;
+			for(int k=rowPtr[r], end=rowPtr[r+1]; k<end; k++)
+				v += values[k] * xData[colIdx[k]];
+			if(beta == 0.0)
+				yData[r] = alpha*v;
+			else
+				yData[r] = alpha*v + beta*yData[r];
+		}
+	}
+
+	/**
+	 * Split rows into about <tt>4*parallelism</tt> blocks of equal non-zero count
+	 */
+	protected int[] getPartition() {
+		if(partition != null)
+			return partition;
+		int nnz = rowPtr[rowDim];
+		int nBlocks = Math.max(1, Math.min(rowDim, 4*ForkJoinPool.getCommonPoolParallelism()));
+		int[] part = new int[nBlocks+1];
+		part[nBlocks] = rowDim;
+		for(int b=1; b<nBlocks; b++) {
+			long target = (long)nnz * b / nBlocks;
+			//first row whose start offset reaches the target
+			int lo = part[b-1], hi = rowDim;
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if(rowPtr[mid] < target) lo = mid + 1;
+				else hi = mid;
+			}
+			part[b] = lo;
+		}
+		partition = part;
+		return part;
+	}
+
+	@SuppressWarnings("serial")
+	private class SpMVTask extends RecursiveAction {
+		final int[] part;
+		final int blockBegin, blockEnd;
+		final double alpha, beta;
+		final double[] xData, yData;
+
+		SpMVTask(int[] part, int blockBegin, int blockEnd,
+				double alpha, double[] xData, double beta, double[] yData) {
+			this.part = part;
+			this.blockBegin = blockBegin;
+			this.blockEnd = blockEnd;
+			this.alpha = alpha;
+			this.xData = xData;
+			this.beta = beta;
+			this.yData = yData;
+		}
+
+		@Override
+		protected void compute() {
+			if(blockEnd - blockBegin == 1) {
+				multAddRows(part[blockBegin], part[blockEnd], alpha, xData, beta, yData);
+			} else {
+				int mid = (blockBegin + blockEnd) >>> 1;
+				invokeAll(new SpMVTask(part, blockBegin, mid, alpha, xData, beta, yData),
+						new SpMVTask(part, mid, blockEnd, alpha, xData, beta, yData));
+			}
+		}
+	}
+
+	@Override
+	public void mult(AlgebraMatrix B, AlgebraMatrix C) {
+		toCompressedRowMatrix().mult(B, C);
+	}
+
+	/**
+	 * Sparse matrix-matrix product <code>C = this*B</code> (Gustavson's algorithm)
+	 * <p>
+	 * A symbolic pass counts the non-zeros of each row of <tt>C</tt> so that the
+	 * result is allocated once with its final size.
+	 *
+	 * @param B
+	 * @return C
+	 */
+	public FlatCompressedRowMatrix mult(FlatCompressedRowMatrix B) {
+		if(this.colDim != B.rowDim)
+			throw new FutureyeException("Dimension mismatch: "+this+" * "+B);
+		int n = this.rowDim, m = B.colDim;
+		int[] marker = new int[m];
+		java.util.Arrays.fill(marker, -1);
+		int[] cPtr = new int[n+1];
+		for(int r=0; r<n; r++) {
+			int cnt = 0;
+			for(int k=rowPtr[r]; k<rowPtr[r+1]; k++) {
+				int br = colIdx[k];
+				for(int j=B.rowPtr[br]; j<B.rowPtr[br+1]; j++) {
+					int c = B.colIdx[j];
+					if(marker[c] != r) {
+						marker[c] = r;
+						cnt++;
+					}
+				}
+			}
+			cPtr[r+1] = cPtr[r] + cnt;
+		}
+		int[] cIdx = new int[cPtr[n]];
+		double[] cVal = new double[cPtr[n]];
+		//marker now holds the position of column c in the current row
+		java.util.Arrays.fill(marker, -1);
+		for(int r=0; r<n; r++) {
+			int begin = cPtr[r], end = begin;
+			for(int k=rowPtr[r]; k<rowPtr[r+1]; k++) {
+				int br = colIdx[k];
+				double a = values[k];
+				for(int j=B.rowPtr[br]; j<B.rowPtr[br+1]; j++) {
+					int c = B.colIdx[j];
+					int pos = marker[c];
+					if(pos < begin) {
+						marker[c] = end;
+						cIdx[end] = c;
+						cVal[end] = a*B.values[j];
+						end++;
+					} else {
+						cVal[pos] += a*B.values[j];
+					}
+				}
+			}
+		}
+		FlatCompressedRowMatrix C = new FlatCompressedRowMatrix(n, m, cPtr, cIdx, cVal);
+		for(int r=0; r<n; r++)
+			C.sortRow(r);
+		return C;
+	}
+
+	/**
+	 * Return A' in flat storage, built by a counting sort over column indices
+	 */
+	@Override
+	public FlatCompressedRowMatrix getTrans() {
+		int nnz = rowPtr[rowDim];
+		int[] tPtr = new int[colDim+1];
+		for(int k=0; k<nnz; k++)
+			tPtr[colIdx[k]+1]++;
+		for(int c=0; c<colDim; c++)
+			tPtr[c+1] += tPtr[c];
+		int[] tIdx = new int[nnz];
+		double[] tVal = new double[nnz];
+		int[] next = new int[colDim];
+		System.arraycopy(tPtr, 0, next, 0, colDim);
+		//rows are visited in order, so the transpose comes out sorted
+		for(int r=0; r<rowDim; r++) {
+			for(int k=rowPtr[r]; k<rowPtr[r+1]; k++) {
+				int pos = next[colIdx[k]]++;
+				tIdx[pos] = r;
+				tVal[pos] = values[k];
+			}
+		}
+		return new FlatCompressedRowMatrix(colDim, rowDim, tPtr, tIdx, tVal);
+	}
+
+	/**
+	 * Copy into a jagged <tt>CompressedRowMatrix</tt>
+	 */
+	public CompressedRowMatrix toCompressedRowMatrix() {
+		CompressedRowMatrix A = new CompressedRowMatrix(rowDim, colDim);
+		for(int r=0; r<rowDim; r++) {
+			int len = rowPtr[r+1]-rowPtr[r];
+			int[] idx = new int[len];
+			double[] dat = new double[len];
+			System.arraycopy(colIdx, rowPtr[r], idx, 0, len);
+			System.arraycopy(values, rowPtr[r], dat, 0, len);
+			A.colIndex[r] = idx;
+			A.data[r] = dat;
+		}
+		return A;
+	}
+
+	/**
+	 * Deep copy, the pattern and values are copied
+	 */
+	public FlatCompressedRowMatrix copy() {
+		FlatCompressedRowMatrix rlt = new FlatCompressedRowMatrix(rowDim, colDim,
+				rowPtr.clone(), colIdx.clone(), values.clone());
+		rlt.parallelThreshold = this.parallelThreshold;
+		return rlt;
+	}
+
+	@Override
+	public void print() {
+		for(int row=0; row<this.rowDim; row++) {
+			for(int k=rowPtr[row]; k<rowPtr[row+1]; k++) {
+				System.out.print(String.format("%8.4f(%dc)    ",
+						this.values[k],this.colIdx[k]+1));
+			}
+			System.out.println();
+		}
+		System.out.println();
+	}
+
+	public String toString() {
+		return "FlatCompressedRowMatrix("+rowDim+","+colDim+"):NNZ="+rowPtr[rowDim];
+	}
+}
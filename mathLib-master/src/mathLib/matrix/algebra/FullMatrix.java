@@ -1,5 +1,6 @@
 package mathLib.matrix.algebra;
 
+import mathLib.matrix.Gemm;
 import mathLib.matrix.algebra.intf.AlgebraMatrix;
 import mathLib.matrix.algebra.intf.AlgebraVector;
 import mathLib.matrix.algebra.intf.MatrixEntry;
@@ -140,21 +141,25 @@ public class FullMatrix implements AlgebraMatrix {
 		}
 	}
 
+	@Override
+	public void multAdd(double alpha, AlgebraVector x, double beta, AlgebraVector y) {
+		double[] xData = x.getData();
+		double[] yData = y.getData();
+		double sum;
+		for(int i=this.rowDim; --i>=0;) {
+			sum = 0.0;
+			for(int j=this.colDim; --j>=0;)
+				sum += this.data[i][j]*xData[j];
+			yData[i] = alpha*sum + (beta == 0.0 ? 0.0 : beta*yData[i]);
+		}
+	}
+
 	@Override
 	public void mult(AlgebraMatrix B, AlgebraMatrix C) {
 		if(B instanceof FullMatrix && C instanceof FullMatrix) {
 			FullMatrix BB = (FullMatrix)B;
 			FullMatrix CC = (FullMatrix)C;
-			for(int i=0;i<this.rowDim;i++) {
-				double[] pRowAA = this.data[i];
-				double[] pRowCC = CC.data[i];
-				for(int j=0;j<BB.colDim;j++) {
-					pRowCC[j] = 0.0;
-					for(int k=0;k<this.rowDim;k++) {
-						pRowCC[j] += pRowAA[k]*BB.data[k][j];
-					}
-				}
-			}
+			Gemm.mult(this.data, BB.data, CC.data, this.rowDim, BB.colDim, this.colDim);
 		}
 	}
 
@@ -0,0 +1,217 @@
+package mathLib.matrix.algebra;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from positive <tt>int</tt> keys to <tt>double</tt> values
+ * <p>
+ * Keys and values are stored in two parallel primitive arrays and collisions are
+ * resolved by linear probing, so there is no boxing and no per-entry object.
+ * Key <tt>0</tt> marks an empty slot, which is why only keys <tt>&gt;=1</tt>
+ * (the 1-based indices used by the sparse matrices in this package) are allowed.
+ * <p>
+ * Removal uses backward-shift deletion, so no tombstones are left behind and
+ * lookups stay short after many set/remove cycles.
+ *
+ */
+public class IntDoubleHashMap {
+	private static final int EMPTY = 0;
+	private static final int MIN_CAPACITY = 4;
+
+	protected int[] keys;
+	protected double[] values;
+	protected int size = 0;
+	protected int mask;
+	protected int threshold;
+
+	public IntDoubleHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of entries that can be stored without rehashing
+	 */
+	public IntDoubleHashMap(int expectedSize) {
+		int cap = MIN_CAPACITY;
+		while(cap*3/4 < expectedSize)
+			cap <<= 1;
+		allocate(cap);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new double[capacity];
+		this.mask = capacity - 1;
+		this.threshold = capacity*3/4;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(int key) {
+		int i = hash(key) & mask;
+		int k;
+		while((k = keys[i]) != EMPTY) {
+			if(k == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(int key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Return the value of <tt>key</tt>, or <tt>0.0</tt> if there is no such key
+	 */
+	public double get(int key) {
+		int i = indexOf(key);
+		return i < 0 ? 0.0 : values[i];
+	}
+
+	public void put(int key, double value) {
+		if(key <= EMPTY)
+			throw new IllegalArgumentException("Key must be >= 1: "+key);
+		int i = hash(key) & mask;
+		int k;
+		while((k = keys[i]) != EMPTY) {
+			if(k == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if(++size > threshold)
+			rehash(keys.length << 1);
+	}
+
+	/**
+	 * <code>map[key] += value</code>, inserting <tt>key</tt> if absent
+	 *
+	 * @return the new value of <tt>key</tt>
+	 */
+	public double add(int key, double value) {
+		int i = indexOf(key);
+		if(i < 0) {
+			put(key, value);
+			return value;
+		}
+		return values[i] += value;
+	}
+
+	/**
+	 * Remove <tt>key</tt>
+	 *
+	 * @return <tt>true</tt> if the key was present
+	 */
+	public boolean remove(int key) {
+		int i = indexOf(key);
+		if(i < 0)
+			return false;
+		//backward-shift deletion: move following entries of the probe chain up
+		int gap = i;
+		int j = (i + 1) & mask;
+		int k;
+		while((k = keys[j]) != EMPTY) {
+			int home = hash(k) & mask;
+			//entry at j may be moved to gap if its home slot is not in (gap, j]
+			if(((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = k;
+				values[gap] = values[j];
+				gap = j;
+			}
+			j = (j + 1) & mask;
+		}
+		keys[gap] = EMPTY;
+		values[gap] = 0.0;
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		if(size == 0)
+			return;
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, 0.0);
+		size = 0;
+	}
+
+	private void rehash(int newCapacity) {
+		int[] oldKeys = keys;
+		double[] oldValues = values;
+		allocate(newCapacity);
+		for(int i=oldKeys.length; --i>=0;) {
+			int k = oldKeys[i];
+			if(k != EMPTY) {
+				int j = hash(k) & mask;
+				while(keys[j] != EMPTY)
+					j = (j + 1) & mask;
+				keys[j] = k;
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Number of slots of the backing arrays. Slot <tt>i</tt> is occupied
+	 * if <code>keyAt(i) != 0</code>. Use together with <tt>keyAt()</tt> and
+	 * <tt>valueAt()</tt> to iterate without allocating.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public double valueAt(int slot) {
+		return values[slot];
+	}
+
+	public void setValueAt(int slot, double value) {
+		values[slot] = value;
+	}
+
+	/**
+	 * Copy keys and values into <tt>keysOut</tt> and <tt>valuesOut</tt> starting at <tt>offset</tt>,
+	 * <tt>keyShift</tt> is added to every key (e.g. <tt>-1</tt> to get 0-based indices)
+	 *
+	 * @return number of entries copied
+	 */
+	public int copyTo(int[] keysOut, double[] valuesOut, int offset, int keyShift) {
+		int n = offset;
+		for(int i=0; i<keys.length; i++) {
+			if(keys[i] != EMPTY) {
+				keysOut[n] = keys[i] + keyShift;
+				valuesOut[n] = values[i];
+				n++;
+			}
+		}
+		return n - offset;
+	}
+
+	public IntDoubleHashMap copy() {
+		IntDoubleHashMap rlt = new IntDoubleHashMap();
+		rlt.keys = this.keys.clone();
+		rlt.values = this.values.clone();
+		rlt.size = this.size;
+		rlt.mask = this.mask;
+		rlt.threshold = this.threshold;
+		return rlt;
+	}
+}
@@ -0,0 +1,678 @@
+package mathLib.matrix.algebra;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.fem.util.SequenceFEM;
+import mathLib.matrix.algebra.intf.Matrix;
+import mathLib.matrix.algebra.intf.MatrixEntry;
+import mathLib.matrix.algebra.intf.SparseMatrix;
+import mathLib.matrix.algebra.intf.Vector;
+import mathLib.util.io.MatlabMatFileWriter;
+
+/**
+ * Row-major sparse matrix implementation backed by primitive arrays
+ * <p>
+ * Each row is an open-addressing <tt>int-&gt;double</tt> hash map ({@link IntDoubleHashMap}),
+ * rows are kept in an array indexed by row number. Compared with {@link SparseMatrixRowMajor}
+ * there is no <tt>Integer</tt>/<tt>Double</tt> boxing and no map entry object per non-zero,
+ * which takes the cost of a stored value from about 60-80 bytes down to about 16-24 bytes
+ * and leaves almost nothing for the garbage collector during assembly.
+ * <p>
+ * It is a drop-in replacement of <tt>SparseMatrixRowMajor</tt> wherever the
+ * <tt>SparseMatrix</tt> interface is used. <tt>getAll()</tt> returns a light-weight view
+ * backed by the primitive storage instead of a materialized map of maps.
+ *
+ */
+public class SparseMatrixRowMajorPrimitive implements SparseMatrix {
+	protected int rowDim = 0;
+	protected int colDim = 0;
+	protected double defaultValue = 0.0;
+
+	/**
+	 * <tt>rows[r]</tt> stores row <tt>r</tt> (1-based), <tt>null</tt> for empty rows
+	 */
+	protected IntDoubleHashMap[] rows;
+
+	/**
+	 * Expected number of non-zeros per row, used to size new rows
+	 */
+	protected int rowCapacityHint = 4;
+
+	protected String name = this.getClass().getSimpleName()+SequenceFEM.getInstance().nextSeq();
+
+	public SparseMatrixRowMajorPrimitive() {
+		this.rows = new IntDoubleHashMap[16];
+	}
+
+	public SparseMatrixRowMajorPrimitive(String name) {
+		this();
+		this.name = name;
+	}
+
+	public SparseMatrixRowMajorPrimitive(int rowDim, int colDim) {
+		this.rowDim = rowDim;
+		this.colDim = colDim;
+		this.rows = new IntDoubleHashMap[rowDim+1];
+	}
+
+	/**
+	 * @param rowDim
+	 * @param colDim
+	 * @param nonZerosPerRow expected number of non-zeros per row (e.g. number of neighbor DOFs in a mesh)
+	 */
+	public SparseMatrixRowMajorPrimitive(int rowDim, int colDim, int nonZerosPerRow) {
+		this(rowDim, colDim);
+		this.rowCapacityHint = nonZerosPerRow;
+	}
+
+	public SparseMatrixRowMajorPrimitive(String name, int rowDim, int colDim) {
+		this(rowDim, colDim);
+		this.name = name;
+	}
+
+	public SparseMatrixRowMajorPrimitive(int rowDim, int colDim,double defaultValue) {
+		this(rowDim, colDim);
+		this.defaultValue = defaultValue;
+	}
+
+	public SparseMatrixRowMajorPrimitive(String name,int rowDim, int colDim,double defaultValue) {
+		this(rowDim, colDim);
+		this.name = name;
+		this.defaultValue = defaultValue;
+	}
+
+	@Override
+	public void setColDim(int nColDim) {
+		this.colDim = nColDim;
+	}
+
+	@Override
+	public void setRowDim(int nRowDim) {
+		this.rowDim = nRowDim;
+		ensureRows(nRowDim);
+	}
+
+	@Override
+	public int getRowDim() {
+		return rowDim;
+	}
+
+	@Override
+	public int getColDim() {
+		return colDim;
+	}
+
+	private void ensureRows(int row) {
+		if(row >= rows.length) {
+			int len = rows.length;
+			while(len <= row) len <<= 1;
+			IntDoubleHashMap[] tmp = new IntDoubleHashMap[len];
+			System.arraycopy(rows, 0, tmp, 0, rows.length);
+			rows = tmp;
+		}
+	}
+
+	private void checkIndex(int row, int col) {
+		if(rowDim != 0) {
+			if(row < 1 || row > rowDim)
+				throw new FutureyeException("Row number "+row+" exceeds dimenstion [1,"+rowDim+"]");
+		} else if(row < 1) {
+			throw new FutureyeException("Row number "+row+" must be >= 1");
+		}
+		if(colDim != 0) {
+			if(col < 1 || col > colDim)
+				throw new FutureyeException("Column number "+col+" exceeds dimenstion [1,"+colDim+"]");
+		} else if(col < 1) {
+			throw new FutureyeException("Column number "+col+" must be >= 1");
+		}
+	}
+
+	/**
+	 * Return row <tt>row</tt>, or <tt>null</tt> if there is no non-zero value in it
+	 */
+	public IntDoubleHashMap getRow(int row) {
+		return row < rows.length ? rows[row] : null;
+	}
+
+	@Override
+	public void set(int row, int col,double value) {
+		checkIndex(row, col);
+		ensureRows(row);
+		IntDoubleHashMap aRow = rows[row];
+		if(Math.abs(value) < Matrix.zeroEps) {
+			if(aRow != null)
+				aRow.remove(col);
+		} else {
+			if(aRow == null) {
+				aRow = new IntDoubleHashMap(rowCapacityHint);
+				rows[row] = aRow;
+			}
+			aRow.put(col, value);
+		}
+	}
+
+	@Override
+	public double get(int row, int col) {
+		checkIndex(row, col);
+		IntDoubleHashMap aRow = getRow(row);
+		return aRow == null ? 0.0 : aRow.get(col);
+	}
+
+	/**
+	 * Single hash lookup instead of <tt>get</tt> followed by <tt>set</tt>
+	 */
+	@Override
+	public void add(int row, int col, double value) {
+		checkIndex(row, col);
+		ensureRows(row);
+		IntDoubleHashMap aRow = rows[row];
+		if(aRow == null) {
+			if(Math.abs(value) < Matrix.zeroEps)
+				return;
+			aRow = new IntDoubleHashMap(rowCapacityHint);
+			rows[row] = aRow;
+		}
+		if(Math.abs(aRow.add(col, value)) < Matrix.zeroEps)
+			aRow.remove(col);
+	}
+
+	/**
+	 * Return a view of all the non-zero values which is backed by this matrix.
+	 * Nothing is copied, entries are boxed only on access.
+	 * Changes made through <tt>put()</tt>, <tt>remove()</tt> and <tt>Entry.setValue()</tt>
+	 * are written through to this matrix.
+	 */
+	@Override
+	public Map<Integer, Map<Integer, Double>> getAll() {
+		return new AllView();
+	}
+
+	@Override
+	public void setAll(int nRowBase, int nColBase,
+			Map<Integer, Map<Integer, Double>> map) {
+		for(Entry<Integer, Map<Integer, Double>> rowEentry : map.entrySet()) {
+			int nRow = rowEentry.getKey();
+			Map<Integer, Double> row = rowEentry.getValue();
+			for(Entry<Integer, Double> entry : row.entrySet()) {
+				int nCol = entry.getKey();
+				set(nRowBase+nRow,nColBase+nCol,entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Same as <tt>setAll()</tt> without boxing when <tt>other</tt> is also primitive backed
+	 */
+	public void setAll(int nRowBase, int nColBase, SparseMatrixRowMajorPrimitive other) {
+		for(int r=1; r<other.rows.length; r++) {
+			IntDoubleHashMap row = other.rows[r];
+			if(row == null) continue;
+			for(int s=row.capacity(); --s>=0;) {
+				int c = row.keyAt(s);
+				if(c != 0)
+					set(nRowBase+r, nColBase+c, row.valueAt(s));
+			}
+		}
+	}
+
+	@Override
+	public void clearAll() {
+		this.rowDim = 0;
+		this.colDim = 0;
+		this.defaultValue = 0.0;
+		this.rows = new IntDoubleHashMap[16];
+	}
+
+	/**
+	 * Clear values but keep the allocated rows, so that assembling
+	 * the same pattern again does not need to allocate
+	 */
+	@Override
+	public void clearData() {
+		for(int r=rows.length; --r>=0;) {
+			if(rows[r] != null)
+				rows[r].clear();
+		}
+	}
+
+	@Override
+	public void mult(Vector x, Vector y) {
+		for(int r=1; r<rows.length; r++) {
+			IntDoubleHashMap row = rows[r];
+			if(row == null || row.isEmpty()) continue;
+			double v = 0.0;
+			for(int s=row.capacity(); --s>=0;) {
+				int c = row.keyAt(s);
+				if(c != 0)
+					v += x.get(c)*row.valueAt(s);
+			}
+			y.set(r, v);
+		}
+	}
+
+	/**
+	 * A=A'
+	 *
+	 */
+	@Override
+	public SparseMatrixRowMajorPrimitive trans() {
+		IntDoubleHashMap[] old = rows;
+		int dim = this.colDim;
+		this.colDim = this.rowDim;
+		this.rowDim = dim;
+		this.rows = new IntDoubleHashMap[Math.max(this.rowDim+1, 16)];
+		for(int r=1; r<old.length; r++) {
+			IntDoubleHashMap row = old[r];
+			if(row == null) continue;
+			for(int s=row.capacity(); --s>=0;) {
+				int c = row.keyAt(s);
+				if(c != 0)
+					set(c, r, row.valueAt(s));
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public SparseMatrixRowMajorPrimitive copy() {
+		SparseMatrixRowMajorPrimitive newM = new SparseMatrixRowMajorPrimitive(this.rowDim,this.colDim);
+		newM.rowCapacityHint = this.rowCapacityHint;
+		newM.rows = new IntDoubleHashMap[this.rows.length];
+		for(int r=rows.length; --r>=0;) {
+			if(rows[r] != null && !rows[r].isEmpty())
+				newM.rows[r] = rows[r].copy();
+		}
+		return newM;
+	}
+
+	@Override
+	public void print() {
+		for(int i=1;i<=rowDim;i++) {
+			for(int j=1;j<=colDim;j++) {
+				System.out.print(String.format("%8.6f   ", get(i,j)));
+			}
+			System.out.println();
+		}
+		System.out.println();
+	}
+
+	public String toString() {
+		return "SparseMatrix:"+name+"("+
+			this.rowDim+","+this.colDim+
+			"):N0R="+getNonZeroRowNumber();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public SparseMatrix setName(String name) {
+		this.name = name;
+		return this;
+	}
+
+	/**
+	 * Get number of non zero values
+	 *
+	 */
+	@Override
+	public int getNonZeroNumber() {
+		int rlt = 0;
+		for(int r=rows.length; --r>=0;) {
+			if(rows[r] != null)
+				rlt += rows[r].size();
+		}
+		return rlt;
+	}
+
+	protected int getNonZeroRowNumber() {
+		int rlt = 0;
+		for(int r=rows.length; --r>=0;) {
+			if(rows[r] != null && !rows[r].isEmpty())
+				rlt++;
+		}
+		return rlt;
+	}
+
+	/**
+	 * Swap <tt>row1</tt> and <tt>row2</tt>
+	 *
+	 * @param row1
+	 * @param row2
+	 */
+	public void swapRow(int row1, int row2) {
+		ensureRows(Math.max(row1, row2));
+		IntDoubleHashMap tmp = rows[row1];
+		rows[row1] = rows[row2];
+		rows[row2] = tmp;
+	}
+
+	/**
+	 * Write this matrix to a file with Matlab mat file format.
+	 * The variable name in matlab workspace is specified by <tt>setName()</tt>.
+	 * <p>
+	 * If more than one matrix need to be written in a single mat file use <tt>MatlabMatFileWriter</tt> instead.
+	 *
+	 * @param fileName
+	 */
+	@Override
+	public void writeMatFile(String fileName) {
+		MatlabMatFileWriter w = new MatlabMatFileWriter();
+		w.addSparseMatrix(this);
+		w.writeFile(fileName);
+	}
+
+	@Override
+	public void writeSimpleFile(String fileName) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Return a row-major iterator. The returned entry object is reused between calls of <tt>next()</tt>.
+	 */
+	@Override
+	public Iterator<MatrixEntry> iterator() {
+		return new SMIterator();
+	}
+
+	@Override
+	public double apply(int row, int col) {
+		return this.get(row, col);
+	}
+
+	@Override
+	public void update(int row, int col, double value) {
+		this.set(row, col, value);
+	}
+
+	/**
+	 * Cursor over the occupied slots of all the rows
+	 */
+	class SMIterator implements Iterator<MatrixEntry>, MatrixEntry {
+		int row = 0;
+		int slot = -1;
+		int nextRow = 0;
+		int nextSlot = -1;
+
+		SMIterator() {
+			advance();
+		}
+
+		private void advance() {
+			int r = nextRow;
+			int s = nextSlot + 1;
+			while(r < rows.length) {
+				IntDoubleHashMap aRow = rows[r];
+				if(aRow != null) {
+					int cap = aRow.capacity();
+					for(; s<cap; s++) {
+						if(aRow.keyAt(s) != 0) {
+							nextRow = r;
+							nextSlot = s;
+							return;
+						}
+					}
+				}
+				r++;
+				s = 0;
+			}
+			nextRow = rows.length;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextRow < rows.length;
+		}
+
+		@Override
+		public MatrixEntry next() {
+			if(!hasNext())
+				throw new NoSuchElementException();
+			row = nextRow;
+			slot = nextSlot;
+			advance();
+			return this;
+		}
+
+		@Override
+		public int getRow() {
+			return row;
+		}
+
+		@Override
+		public int getCol() {
+			return rows[row].keyAt(slot);
+		}
+
+		@Override
+		public double getValue() {
+			return rows[row].valueAt(slot);
+		}
+
+		@Override
+		public void setValue(double value) {
+			rows[row].setValueAt(slot, value);
+		}
+	}
+
+	/**
+	 * Map-of-maps view of the whole matrix
+	 */
+	class AllView extends AbstractMap<Integer, Map<Integer, Double>> {
+		@Override
+		public Map<Integer, Double> get(Object key) {
+			if(!(key instanceof Integer)) return null;
+			int r = (Integer)key;
+			if(r < 1 || r >= rows.length || rows[r] == null || rows[r].isEmpty())
+				return null;
+			return new RowView(r);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Map<Integer, Double> put(Integer key, Map<Integer, Double> value) {
+			int r = key;
+			checkIndex(r, 1);
+			ensureRows(r);
+			IntDoubleHashMap old = rows[r];
+			IntDoubleHashMap newRow = null;
+			if(value != null && !value.isEmpty()) {
+				newRow = new IntDoubleHashMap(value.size());
+				for(Entry<Integer, Double> e : value.entrySet()) {
+					if(Math.abs(e.getValue()) >= Matrix.zeroEps)
+						newRow.put(e.getKey(), e.getValue());
+				}
+			}
+			rows[r] = newRow;
+			if(old == null || old.isEmpty())
+				return null;
+			//detached copy of the replaced row
+			SparseMatrixRowMajorPrimitive tmp = new SparseMatrixRowMajorPrimitive(r, 0);
+			tmp.rows[r] = old;
+			return tmp.new RowView(r);
+		}
+
+		@Override
+		public Map<Integer, Double> remove(Object key) {
+			Map<Integer, Double> old = get(key);
+			if(old != null)
+				rows[(Integer)key] = null;
+			return old;
+		}
+
+		@Override
+		public int size() {
+			return getNonZeroRowNumber();
+		}
+
+		@Override
+		public void clear() {
+			clearData();
+		}
+
+		@Override
+		public Set<Entry<Integer, Map<Integer, Double>>> entrySet() {
+			return new AbstractSet<Entry<Integer, Map<Integer, Double>>>() {
+				@Override
+				public Iterator<Entry<Integer, Map<Integer, Double>>> iterator() {
+					return new Iterator<Entry<Integer, Map<Integer, Double>>>() {
+						int next = findRow(1);
+
+						private int findRow(int from) {
+							int r = from;
+							while(r < rows.length && (rows[r] == null || rows[r].isEmpty()))
+								r++;
+							return r;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next < rows.length;
+						}
+
+						@Override
+						public Entry<Integer, Map<Integer, Double>> next() {
+							if(!hasNext())
+								throw new NoSuchElementException();
+							int r = next;
+							next = findRow(r + 1);
+							return new SimpleImmutableEntry<Integer, Map<Integer, Double>>(r, new RowView(r));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return getNonZeroRowNumber();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Map view of a single row
+	 */
+	class RowView extends AbstractMap<Integer, Double> {
+		final int row;
+
+		RowView(int row) {
+			this.row = row;
+		}
+
+		IntDoubleHashMap data() {
+			return row < rows.length ? rows[row] : null;
+		}
+
+		@Override
+		public Double get(Object key) {
+			if(!(key instanceof Integer)) return null;
+			IntDoubleHashMap d = data();
+			int c = (Integer)key;
+			if(d == null || c < 1 || !d.containsKey(c))
+				return null;
+			return d.get(c);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Double put(Integer key, Double value) {
+			Double old = get(key);
+			set(row, key, value);
+			return old;
+		}
+
+		@Override
+		public Double remove(Object key) {
+			Double old = get(key);
+			if(old != null)
+				data().remove((Integer)key);
+			return old;
+		}
+
+		@Override
+		public int size() {
+			IntDoubleHashMap d = data();
+			return d == null ? 0 : d.size();
+		}
+
+		@Override
+		public void clear() {
+			IntDoubleHashMap d = data();
+			if(d != null) d.clear();
+		}
+
+		@Override
+		public Set<Entry<Integer, Double>> entrySet() {
+			return new AbstractSet<Entry<Integer, Double>>() {
+				@Override
+				public Iterator<Entry<Integer, Double>> iterator() {
+					final IntDoubleHashMap d = data();
+					return new Iterator<Entry<Integer, Double>>() {
+						int next = findSlot(0);
+
+						private int findSlot(int from) {
+							if(d == null) return 0;
+							int s = from;
+							while(s < d.capacity() && d.keyAt(s) == 0)
+								s++;
+							return s;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return d != null && next < d.capacity();
+						}
+
+						@Override
+						public Entry<Integer, Double> next() {
+							if(!hasNext())
+								throw new NoSuchElementException();
+							final int s = next;
+							next = findSlot(s + 1);
+							return new Entry<Integer, Double>() {
+								@Override
+								public Integer getKey() {
+									return d.keyAt(s);
+								}
+
+								@Override
+								public Double getValue() {
+									return d.valueAt(s);
+								}
+
+								@Override
+								public Double setValue(Double value) {
+									double old = d.valueAt(s);
+									d.setValueAt(s, value);
+									return old;
+								}
+							};
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return RowView.this.size();
+				}
+			};
+		}
+	}
+}
@@ -25,6 +25,19 @@ public interface AlgebraMatrix {
 	 */
 	public void mult(AlgebraVector x, AlgebraVector y);
 
+	/**
+	 * Fused matrix vector multiplication and update
+	 * y=alpha*this*x+beta*y (y=alpha*A*x+beta*y)
+	 * <p>
+	 * No temporary vector should be allocated by implementations
+	 * 
+	 * @param alpha
+	 * @param x
+	 * @param beta
+	 * @param y
+	 */
+	public void multAdd(double alpha, AlgebraVector x, double beta, AlgebraVector y);
+
 	/**
 	 * Matrix matrix multiplication
 	 * C = this*B (C=A*B)
@@ -0,0 +1,21 @@
+package mathLib.matrix.algebra.intf;
+
+/**
+ * Preconditioner interface for iterative solvers
+ * <p>
+ * A preconditioner <tt>M</tt> approximates the system matrix <tt>A</tt>
+ * and is cheap to invert. Krylov methods in <tt>Solver</tt> call
+ * <tt>apply()</tt> once or twice per iteration.
+ *
+ */
+public interface Preconditioner {
+	/**
+	 * Solve <code>M*z = r</code>
+	 * <p>
+	 * <tt>r</tt> must not be modified, <tt>z</tt> and <tt>r</tt> are different objects.
+	 *
+	 * @param r
+	 * @param z
+	 */
+	public void apply(AlgebraVector r, AlgebraVector z);
+}
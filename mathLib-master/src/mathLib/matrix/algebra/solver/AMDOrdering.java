@@ -0,0 +1,269 @@
+package mathLib.matrix.algebra.solver;
+
+import java.util.Arrays;
+
+import mathLib.matrix.algebra.CompressedColMatrix;
+
+/**
+ * Approximate minimum degree (AMD) fill-reducing ordering of a sparse matrix
+ * <p>
+ * The ordering is computed on the pattern of <tt>A+A'</tt> (the diagonal is ignored)
+ * with a quotient graph: an eliminated variable becomes an element holding the list
+ * of its neighbours, adjacent elements are absorbed into it, and the degrees of the
+ * neighbours are updated with the approximate external degree of Amestoy, Davis and
+ * Duff, which needs no explicit fill graph.
+ * <p>
+ * Factorizing <tt>A(perm,perm)</tt> instead of <tt>A</tt> usually produces much less
+ * fill-in, see <tt>SparseLU</tt> and <tt>SparseCholesky</tt>.
+ *
+ */
+public class AMDOrdering {
+
+	/**
+	 * @param A square matrix
+	 * @return the permutation <tt>perm</tt>, row and column <tt>perm[k]</tt> of
+	 *         <tt>A</tt> (0-based) is eliminated at step <tt>k</tt>
+	 */
+	public static int[] order(CompressedColMatrix A) {
+		if(A.getRowDim() != A.getColDim())
+			throw new IllegalArgumentException("Matrix must be square.");
+		int n = A.getColDim();
+		int[][] rowIndex = A.getRowIndex();
+		int[] Ap = new int[n+1];
+		for(int j=0; j<n; j++)
+			Ap[j+1] = Ap[j] + rowIndex[j].length;
+		int[] Ai = new int[Ap[n]];
+		for(int j=0; j<n; j++)
+			System.arraycopy(rowIndex[j], 0, Ai, Ap[j], rowIndex[j].length);
+		return order(n, Ap, Ai);
+	}
+
+	/**
+	 * @param n
+	 * @param Ap column pointers of the pattern of <tt>A</tt>, length <tt>n+1</tt>
+	 * @param Ai row indices (0-based)
+	 * @return the permutation <tt>perm</tt>
+	 */
+	public static int[] order(int n, int[] Ap, int[] Ai) {
+		return new AMDOrdering(n, Ap, Ai).run();
+	}
+
+	private static final int VARIABLE = 0;
+	private static final int ELEMENT = 1;
+	private static final int ABSORBED = 2;
+
+	private final int n;
+	private final int[] status;
+	/**
+	 * Adjacent variables of a variable (may contain eliminated ones, they are
+	 * skipped and dropped lazily), or the variables of an element
+	 */
+	private final int[][] vars;
+	private final int[] nVars;
+	/**
+	 * Adjacent elements of a variable
+	 */
+	private final int[][] elems;
+	private final int[] nElems;
+	private final int[] degree;
+
+	//Degree lists
+	private final int[] head, next, prev;
+	private int minDegree = 0;
+
+	//Work arrays
+	private final int[] mark;
+	private int stamp = 0;
+	private final int[] w;
+	private final int[] wStamp;
+
+	private AMDOrdering(int n, int[] Ap, int[] Ai) {
+		this.n = n;
+		status = new int[n];
+		vars = new int[n][];
+		nVars = new int[n];
+		elems = new int[n][];
+		nElems = new int[n];
+		degree = new int[n];
+		head = new int[n];
+		next = new int[n];
+		prev = new int[n];
+		mark = new int[n];
+		w = new int[n];
+		wStamp = new int[n];
+
+		//Pattern of A+A' without diagonal
+		int[] count = new int[n];
+		for(int j=0; j<n; j++) {
+			for(int p=Ap[j]; p<Ap[j+1]; p++) {
+				int i = Ai[p];
+				if(i != j) {
+					count[i]++;
+					count[j]++;
+				}
+			}
+		}
+		for(int i=0; i<n; i++) {
+			vars[i] = new int[count[i]];
+			elems[i] = new int[4];
+		}
+		for(int j=0; j<n; j++) {
+			for(int p=Ap[j]; p<Ap[j+1]; p++) {
+				int i = Ai[p];
+				if(i != j) {
+					vars[i][nVars[i]++] = j;
+					vars[j][nVars[j]++] = i;
+				}
+			}
+		}
+		//Remove duplicates
+		for(int i=0; i<n; i++) {
+			stamp++;
+			mark[i] = stamp;
+			int cnt = 0;
+			int[] vi = vars[i];
+			for(int p=0; p<nVars[i]; p++) {
+				int j = vi[p];
+				if(mark[j] != stamp) {
+					mark[j] = stamp;
+					vi[cnt++] = j;
+				}
+			}
+			nVars[i] = cnt;
+			degree[i] = cnt;
+		}
+		Arrays.fill(head, -1);
+		for(int i=0; i<n; i++)
+			insert(i);
+	}
+
+	private void insert(int i) {
+		int d = degree[i];
+		prev[i] = -1;
+		next[i] = head[d];
+		if(head[d] >= 0)
+			prev[head[d]] = i;
+		head[d] = i;
+		if(d < minDegree)
+			minDegree = d;
+	}
+
+	private void remove(int i) {
+		if(prev[i] >= 0)
+			next[prev[i]] = next[i];
+		else
+			head[degree[i]] = next[i];
+		if(next[i] >= 0)
+			prev[next[i]] = prev[i];
+	}
+
+	private int[] run() {
+		int[] perm = new int[n];
+		int[] Lp = new int[n];
+		for(int k=0; k<n; k++) {
+			while(head[minDegree] < 0)
+				minDegree++;
+			int p = head[minDegree];
+			remove(p);
+			perm[k] = p;
+
+			//Variables of the new element p
+			stamp++;
+			mark[p] = stamp;
+			int nLp = 0;
+			int[] vp = vars[p];
+			for(int q=0; q<nVars[p]; q++) {
+				int i = vp[q];
+				if(status[i] == VARIABLE && mark[i] != stamp) {
+					mark[i] = stamp;
+					Lp[nLp++] = i;
+				}
+			}
+			int[] ep = elems[p];
+			for(int q=0; q<nElems[p]; q++) {
+				int e = ep[q];
+				if(status[e] != ELEMENT)
+					continue;
+				int[] ve = vars[e];
+				for(int r=0; r<nVars[e]; r++) {
+					int i = ve[r];
+					if(status[i] == VARIABLE && mark[i] != stamp) {
+						mark[i] = stamp;
+						Lp[nLp++] = i;
+					}
+				}
+				absorb(e);
+			}
+			status[p] = ELEMENT;
+			vars[p] = Arrays.copyOf(Lp, nLp);
+			nVars[p] = nLp;
+			elems[p] = null;
+			nElems[p] = 0;
+
+			//|Le \ Lp| of the elements adjacent to the variables of Lp
+			for(int q=0; q<nLp; q++) {
+				int i = Lp[q];
+				remove(i);
+				int[] ei = elems[i];
+				for(int r=0; r<nElems[i]; r++) {
+					int e = ei[r];
+					if(status[e] != ELEMENT)
+						continue;
+					if(wStamp[e] != k+1) {
+						wStamp[e] = k+1;
+						w[e] = nVars[e];
+					}
+					w[e]--;
+				}
+			}
+
+			int remaining = n - k - 1;
+			for(int q=0; q<nLp; q++) {
+				int i = Lp[q];
+				//Elements of i: drop absorbed ones, absorb the ones contained in Lp, add p
+				int[] ei = elems[i];
+				int cnt = 0;
+				int ext = 0;
+				for(int r=0; r<nElems[i]; r++) {
+					int e = ei[r];
+					if(status[e] != ELEMENT)
+						continue;
+					if(w[e] == 0) {
+						absorb(e);
+						continue;
+					}
+					ei[cnt++] = e;
+					ext += w[e];
+				}
+				if(cnt == ei.length)
+					ei = elems[i] = Arrays.copyOf(ei, 2*cnt+1);
+				ei[cnt++] = p;
+				nElems[i] = cnt;
+
+				//Variables of i: drop eliminated ones and the ones in Lp, they are reached through p
+				int[] vi = vars[i];
+				cnt = 0;
+				for(int r=0; r<nVars[i]; r++) {
+					int j = vi[r];
+					if(status[j] == VARIABLE && mark[j] != stamp)
+						vi[cnt++] = j;
+				}
+				nVars[i] = cnt;
+
+				int d = cnt + nLp - 1 + ext;
+				d = Math.min(d, degree[i] + nLp - 1);
+				d = Math.min(d, remaining - 1);
+				degree[i] = Math.max(d, 0);
+			}
+			for(int q=0; q<nLp; q++)
+				insert(Lp[q]);
+		}
+		return perm;
+	}
+
+	private void absorb(int e) {
+		status[e] = ABSORBED;
+		vars[e] = null;
+		nVars[e] = 0;
+	}
+}
@@ -0,0 +1,403 @@
+package mathLib.matrix.algebra.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.FullVector;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+import mathLib.matrix.algebra.intf.Preconditioner;
+
+/**
+ * Smoothed aggregation algebraic multigrid (SA-AMG)
+ * <p>
+ * The hierarchy is built from the matrix only:
+ * <ul>
+ * <li>strong connections <code>|a_ij| &gt;= theta*sqrt(|a_ii*a_jj|)</code>
+ * <li>greedy aggregation of strongly connected nodes
+ * <li>piecewise constant tentative prolongator smoothed by one damped Jacobi step,
+ *     <code>P = (I - 4/(3*rho) * D^-1*A) * P0</code>
+ * <li>Galerkin coarse operator <code>A_c = P'*A*P</code>
+ * </ul>
+ * Symmetric Gauss-Seidel is used as smoother (forward before, backward after
+ * the coarse grid correction) so one V-cycle is a symmetric operator and can be
+ * used as preconditioner of CG. The coarsest system is solved by dense LU.
+ * <p>
+ * For FEM stiffness matrices of Poisson/Laplace type the number of V-cycles,
+ * or preconditioned CG iterations, is (nearly) independent of the mesh size.
+ * <p>
+ * Usage as preconditioner:
+ * <pre>
+ * AlgebraicMultigrid amg = new AlgebraicMultigrid(A);
+ * solver.solveCG(A, b, x, amg);
+ * </pre>
+ * or as standalone solver via <tt>Solver.solveAMG()</tt>.
+ *
+ */
+public class AlgebraicMultigrid implements Preconditioner {
+	/**
+	 * Strength of connection threshold
+	 */
+	protected double theta = 0.08;
+
+	/**
+	 * Systems with at most so many unknowns are solved directly
+	 */
+	protected int maxCoarseSize = 300;
+
+	protected int maxLevels = 20;
+
+	protected int preSmooth = 1;
+	protected int postSmooth = 1;
+
+	protected List<Level> levels = new ArrayList<Level>();
+
+	/**
+	 * Dense LU of the coarsest matrix, stored row by row, with pivots
+	 */
+	protected double[][] coarseLU;
+	protected int[] coarsePiv;
+
+	public AlgebraicMultigrid(FlatCompressedRowMatrix A) {
+		this(A, 0.08, 300);
+	}
+
+	public AlgebraicMultigrid(CompressedRowMatrix A) {
+		this(new FlatCompressedRowMatrix(A));
+	}
+
+	/**
+	 * @param A symmetric (positive definite) system matrix
+	 * @param theta strength of connection threshold, typically 0.0 to 0.25
+	 * @param maxCoarseSize size of the coarsest level which is solved directly
+	 */
+	public AlgebraicMultigrid(FlatCompressedRowMatrix A, double theta, int maxCoarseSize) {
+		if(A.getRowDim() != A.getColDim())
+			throw new FutureyeException("AMG: matrix must be square, "+A);
+		this.theta = theta;
+		this.maxCoarseSize = maxCoarseSize;
+		setup(A);
+	}
+
+	public AlgebraicMultigrid setSmoothingSteps(int preSmooth, int postSmooth) {
+		this.preSmooth = preSmooth;
+		this.postSmooth = postSmooth;
+		return this;
+	}
+
+	public int getNumberOfLevels() {
+		return levels.size();
+	}
+
+	/**
+	 * Sum of the non-zeros of all levels divided by the non-zeros of the finest level
+	 */
+	public double getOperatorComplexity() {
+		double total = 0;
+		for(Level l : levels)
+			total += l.A.getNonZeroNumber();
+		return total/levels.get(0).A.getNonZeroNumber();
+	}
+
+	protected static class Level {
+		FlatCompressedRowMatrix A;
+		//prolongation to this level from the next coarser one, and its transpose
+		FlatCompressedRowMatrix P;
+		FlatCompressedRowMatrix R;
+		int[] diagPtr;
+		double[] x, b, r;
+
+		Level(FlatCompressedRowMatrix A) {
+			this.A = A;
+			int n = A.getRowDim();
+			this.diagPtr = new int[n];
+			for(int i=0; i<n; i++) {
+				diagPtr[i] = A.indexOf(i, i);
+				if(diagPtr[i] < 0 || A.getValues()[diagPtr[i]] == 0.0)
+					throw new FutureyeException("AMG: zero diagonal at row "+(i+1));
+			}
+			this.x = new double[n];
+			this.b = new double[n];
+			this.r = new double[n];
+		}
+	}
+
+	protected void setup(FlatCompressedRowMatrix A) {
+		levels.clear();
+		FlatCompressedRowMatrix Ak = A;
+		while(true) {
+			Level lv = new Level(Ak);
+			levels.add(lv);
+			int n = Ak.getRowDim();
+			if(n <= maxCoarseSize || levels.size() >= maxLevels)
+				break;
+			int[] agg = new int[n];
+			int nAgg = aggregate(Ak, lv.diagPtr, agg);
+			if(nAgg == 0 || nAgg >= n)
+				break;
+			FlatCompressedRowMatrix P = smoothProlongator(Ak, lv.diagPtr, agg, nAgg);
+			FlatCompressedRowMatrix R = P.getTrans();
+			lv.P = P;
+			lv.R = R;
+			Ak = R.mult(Ak.mult(P));
+		}
+		factorCoarse(levels.get(levels.size()-1).A);
+	}
+
+	/**
+	 * Greedy aggregation on the graph of strong connections
+	 *
+	 * @return number of aggregates, <tt>agg[i]</tt> is the aggregate of node <tt>i</tt>
+	 */
+	protected int aggregate(FlatCompressedRowMatrix A, int[] diagPtr, int[] agg) {
+		int n = A.getRowDim();
+		int[] rowPtr = A.getRowPtr();
+		int[] colIdx = A.getColIdx();
+		double[] val = A.getValues();
+		//strong[k] for each stored entry k
+		boolean[] strong = new boolean[val.length];
+		for(int i=0; i<n; i++) {
+			double aii = Math.abs(val[diagPtr[i]]);
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++) {
+				int j = colIdx[k];
+				if(j != i) {
+					double ajj = Math.abs(val[diagPtr[j]]);
+					strong[k] = Math.abs(val[k]) >= theta*Math.sqrt(aii*ajj);
+				}
+			}
+		}
+		Arrays.fill(agg, -1);
+		int nAgg = 0;
+		//phase 1: a node and all its strong neighbors if none of them is aggregated
+		for(int i=0; i<n; i++) {
+			if(agg[i] >= 0) continue;
+			boolean free = true;
+			boolean hasNeighbor = false;
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++) {
+				if(strong[k]) {
+					hasNeighbor = true;
+					if(agg[colIdx[k]] >= 0) {
+						free = false;
+						break;
+					}
+				}
+			}
+			if(free && hasNeighbor) {
+				agg[i] = nAgg;
+				for(int k=rowPtr[i]; k<rowPtr[i+1]; k++)
+					if(strong[k]) agg[colIdx[k]] = nAgg;
+				nAgg++;
+			}
+		}
+		//phase 2: attach remaining nodes to an aggregate of a strong neighbor
+		int[] agg1 = agg.clone();
+		for(int i=0; i<n; i++) {
+			if(agg1[i] >= 0) continue;
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++) {
+				if(strong[k] && agg1[colIdx[k]] >= 0) {
+					agg[i] = agg1[colIdx[k]];
+					break;
+				}
+			}
+		}
+		//phase 3: remaining nodes and their free strong neighbors form new aggregates
+		for(int i=0; i<n; i++) {
+			if(agg[i] >= 0) continue;
+			agg[i] = nAgg;
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++)
+				if(strong[k] && agg[colIdx[k]] < 0) agg[colIdx[k]] = nAgg;
+			nAgg++;
+		}
+		return nAgg;
+	}
+
+	/**
+	 * <code>P = (I - w*D^-1*A) * P0</code> with <code>w = 4/(3*rho(D^-1*A))</code>
+	 */
+	protected FlatCompressedRowMatrix smoothProlongator(FlatCompressedRowMatrix A,
+			int[] diagPtr, int[] agg, int nAgg) {
+		int n = A.getRowDim();
+		double[] val = A.getValues();
+		//tentative prolongator, one non-zero per row
+		int[] p0Ptr = new int[n+1];
+		int[] p0Idx = new int[n];
+		double[] p0Val = new double[n];
+		for(int i=0; i<n; i++) {
+			p0Ptr[i+1] = i+1;
+			p0Idx[i] = agg[i];
+			p0Val[i] = 1.0;
+		}
+		FlatCompressedRowMatrix P0 = new FlatCompressedRowMatrix(n, nAgg, p0Ptr, p0Idx, p0Val);
+
+		double w = 4.0/(3.0*estimateSpectralRadius(A, diagPtr));
+		//S = I - w*D^-1*A, same pattern as A
+		double[] sVal = new double[val.length];
+		for(int i=0; i<n; i++) {
+			double s = -w/val[diagPtr[i]];
+			for(int k=A.getRowPtr()[i]; k<A.getRowPtr()[i+1]; k++)
+				sVal[k] = s*val[k];
+			sVal[diagPtr[i]] += 1.0;
+		}
+		FlatCompressedRowMatrix S = new FlatCompressedRowMatrix(n, n,
+				A.getRowPtr(), A.getColIdx(), sVal);
+		return S.mult(P0);
+	}
+
+	/**
+	 * A few power iterations on <code>D^-1*A</code>
+	 */
+	protected double estimateSpectralRadius(FlatCompressedRowMatrix A, int[] diagPtr) {
+		int n = A.getRowDim();
+		double[] val = A.getValues();
+		FullVector x = new FullVector(n);
+		FullVector y = new FullVector(n);
+		java.util.Random rnd = new java.util.Random(n);
+		double[] xd = x.getData();
+		for(int i=0; i<n; i++)
+			xd[i] = rnd.nextDouble();
+		double rho = 1.0;
+		for(int it=0; it<15; it++) {
+			double nx = x.norm2();
+			x.scale(1.0/nx);
+			A.mult(x, y);
+			double[] yd = y.getData();
+			for(int i=0; i<n; i++)
+				yd[i] /= val[diagPtr[i]];
+			rho = y.norm2();
+			FullVector tmp = x; x = y; y = tmp;
+		}
+		return rho;
+	}
+
+	protected void factorCoarse(FlatCompressedRowMatrix A) {
+		int n = A.getRowDim();
+		coarseLU = new double[n][n];
+		coarsePiv = new int[n];
+		int[] rowPtr = A.getRowPtr();
+		int[] colIdx = A.getColIdx();
+		double[] val = A.getValues();
+		for(int i=0; i<n; i++)
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++)
+				coarseLU[i][colIdx[k]] = val[k];
+		for(int k=0; k<n; k++) {
+			int p = k;
+			for(int i=k+1; i<n; i++)
+				if(Math.abs(coarseLU[i][k]) > Math.abs(coarseLU[p][k])) p = i;
+			if(coarseLU[p][k] == 0.0)
+				throw new FutureyeException("AMG: coarsest matrix is singular");
+			double[] tmp = coarseLU[k]; coarseLU[k] = coarseLU[p]; coarseLU[p] = tmp;
+			coarsePiv[k] = p;
+			double[] rk = coarseLU[k];
+			for(int i=k+1; i<n; i++) {
+				double[] ri = coarseLU[i];
+				double l = ri[k] /= rk[k];
+				if(l != 0.0)
+					for(int j=k+1; j<n; j++)
+						ri[j] -= l*rk[j];
+			}
+		}
+	}
+
+	protected void solveCoarse(double[] b, double[] x) {
+		int n = coarsePiv.length;
+		System.arraycopy(b, 0, x, 0, n);
+		for(int k=0; k<n; k++) {
+			int p = coarsePiv[k];
+			double t = x[k]; x[k] = x[p]; x[p] = t;
+		}
+		for(int i=0; i<n; i++) {
+			double s = x[i];
+			double[] ri = coarseLU[i];
+			for(int j=0; j<i; j++) s -= ri[j]*x[j];
+			x[i] = s;
+		}
+		for(int i=n; --i>=0;) {
+			double s = x[i];
+			double[] ri = coarseLU[i];
+			for(int j=i+1; j<n; j++) s -= ri[j]*x[j];
+			x[i] = s/ri[i];
+		}
+	}
+
+	/**
+	 * Gauss-Seidel sweep for <code>A*x=b</code>, forward or backward
+	 */
+	protected static void gaussSeidel(Level lv, double[] b, double[] x, boolean forward) {
+		int[] rowPtr = lv.A.getRowPtr();
+		int[] colIdx = lv.A.getColIdx();
+		double[] val = lv.A.getValues();
+		int n = x.length;
+		int begin = forward ? 0 : n-1, end = forward ? n : -1, step = forward ? 1 : -1;
+		for(int i=begin; i!=end; i+=step) {
+			double s = b[i];
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++)
+				s -= val[k]*x[colIdx[k]];
+			x[i] += s/val[lv.diagPtr[i]];
+		}
+	}
+
+	/**
+	 * y = A*x on raw arrays
+	 */
+	protected static void mult(FlatCompressedRowMatrix A, double[] x, double[] y) {
+		A.mult(new FullVector(x, false), new FullVector(y, false));
+	}
+
+	/**
+	 * One V-cycle on level <tt>l</tt> for <code>A_l*x=b</code>, <tt>x</tt> is the initial guess
+	 */
+	protected void vcycle(int l, double[] b, double[] x) {
+		Level lv = levels.get(l);
+		if(l == levels.size()-1) {
+			solveCoarse(b, x);
+			return;
+		}
+		for(int s=0; s<preSmooth; s++)
+			gaussSeidel(lv, b, x, true);
+		//r = b - A*x
+		mult(lv.A, x, lv.r);
+		for(int i=lv.r.length; --i>=0;)
+			lv.r[i] = b[i] - lv.r[i];
+		Level coarse = levels.get(l+1);
+		mult(lv.R, lv.r, coarse.b);
+		Arrays.fill(coarse.x, 0.0);
+		vcycle(l+1, coarse.b, coarse.x);
+		//x = x + P*xc
+		mult(lv.P, coarse.x, lv.r);
+		for(int i=x.length; --i>=0;)
+			x[i] += lv.r[i];
+		for(int s=0; s<postSmooth; s++)
+			gaussSeidel(lv, b, x, false);
+	}
+
+	/**
+	 * One V-cycle for <code>A*x=b</code> starting from the current <tt>x</tt>
+	 *
+	 * @param b
+	 * @param x
+	 */
+	public void vcycle(AlgebraVector b, AlgebraVector x) {
+		vcycle(0, b.getData(), x.getData());
+	}
+
+	/**
+	 * One V-cycle with zero initial guess, approximates <code>z = A^-1*r</code>
+	 */
+	@Override
+	public void apply(AlgebraVector r, AlgebraVector z) {
+		Arrays.fill(z.getData(), 0.0);
+		vcycle(0, r.getData(), z.getData());
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("AlgebraicMultigrid: levels=");
+		sb.append(levels.size()).append(", rows=");
+		for(Level l : levels)
+			sb.append(l.A.getRowDim()).append(' ');
+		sb.append(String.format(", complexity=%.2f", getOperatorComplexity()));
+		return sb.toString();
+	}
+}
@@ -153,7 +153,7 @@ public class LUDecomposition {
 
 	/**
 	 * A=P*L*U
-	 * Sparse LU decomposition (dev version)
+	 * Sparse LU decomposition (dev version), see <tt>SparseLU</tt> for large matrices
 	 *
 	 * @param A (Input) Sparse coefficient matrix
 	 * @param L (Output) Lower triangular matrix with ones on its diagonal
@@ -261,6 +261,9 @@ public class LUDecomposition {
 	/**
 	 * A=P*L*U
 	 * Sparse LU decomposition
+	 * <p>
+	 * No fill-reducing ordering, only for small matrices. To solve large sparse
+	 * systems, use <tt>SparseLU</tt> or <tt>SparseCholesky</tt> on a <tt>CompressedColMatrix</tt>.
 	 *
 	 * @param A (Input) Sparse coefficient matrix
 	 * @param L (Output) Lower triangular matrix with ones on its diagonal
@@ -1,12 +1,15 @@
 package mathLib.matrix.algebra.solver;
 
+import java.util.Arrays;
+
 import mathLib.fem.util.FutureyeException;
-import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
 import mathLib.matrix.algebra.FullVector;
 import mathLib.matrix.algebra.SparseVectorHashMap;
 import mathLib.matrix.algebra.intf.AlgebraMatrix;
 import mathLib.matrix.algebra.intf.AlgebraVector;
 import mathLib.matrix.algebra.intf.Matrix;
+import mathLib.matrix.algebra.intf.Preconditioner;
 import mathLib.matrix.algebra.intf.SparseMatrix;
 import mathLib.matrix.algebra.intf.SparseVector;
 import mathLib.matrix.algebra.intf.Vector;
@@ -28,6 +31,69 @@ public class Solver {
 
 	public boolean debug = false;
 
+	/**
+	 * 2-norm of the residual at the beginning of each iteration of the last solve,
+	 * the first entry is the initial residual
+	 */
+	protected double[] residualHistory = new double[64];
+	protected int nResidualHistory = 0;
+
+	/**
+	 * Return a copy of the residual 2-norms recorded by the last call of an
+	 * iterative method, one entry per iteration (first entry is the initial residual)
+	 */
+	public double[] getResidualHistory() {
+		return Arrays.copyOf(residualHistory, nResidualHistory);
+	}
+
+	/**
+	 * Number of iterations performed by the last call of an iterative method
+	 */
+	public int getIterationNumber() {
+		return Math.max(0, nResidualHistory-1);
+	}
+
+	/**
+	 * Return <tt>true</tt> if the last call of an iterative method converged
+	 */
+	public boolean isConverged() {
+		return nResidualHistory > 0 &&
+				converged(residualHistory[nResidualHistory-1], residualHistory[0]);
+	}
+
+	protected void clearHistory() {
+		nResidualHistory = 0;
+	}
+
+	protected void record(double norm2) {
+		if(nResidualHistory == residualHistory.length)
+			residualHistory = Arrays.copyOf(residualHistory, 2*residualHistory.length);
+		residualHistory[nResidualHistory++] = norm2;
+	}
+
+	protected boolean converged(double norm2, double firstNorm2) {
+		return (norm2<=this.epsRelIter*firstNorm2 && norm2<=this.epsAbsIterMax) ||
+				norm2<=this.epsAbsIterMin;
+	}
+
+	protected void printResult(String method, long begin) {
+		if(!debug) return;
+		int i = getIterationNumber();
+		double norm2 = nResidualHistory > 0 ? residualHistory[nResidualHistory-1] : 0.0;
+		double firstNorm2 = nResidualHistory > 0 ? residualHistory[0] : 0.0;
+		System.out.println(
+			String.format("%s%s----->i=%05d, RError=%8.3e, AError=%8.3e, Time=%dms",
+					method, isConverged()?"":" NotConverge",
+					i,norm2/firstNorm2,norm2,System.currentTimeMillis()-begin));
+	}
+
+	private static void precond(Preconditioner M, AlgebraVector r, AlgebraVector z) {
+		if(M == null)
+			z.set(r);
+		else
+			M.apply(r, z);
+	}
+
 	/**
 	 * Conjugate Gradients iterative method, solves
 	 * symmetric positive definite linear system:
@@ -40,6 +106,25 @@ public class Solver {
 	 */
 	public AlgebraVector solveCG(AlgebraMatrix A, AlgebraVector b,
 			AlgebraVector x) {
+		return solveCG(A, b, x, null);
+	}
+
+	/**
+	 * Preconditioned Conjugate Gradients iterative method, solves
+	 * symmetric positive definite linear system:
+	 * <tt>Ax = b</tt>
+	 * <p>
+	 * The preconditioner must be symmetric positive definite as well,
+	 * e.g. <tt>JacobiPreconditioner</tt>, <tt>SSORPreconditioner</tt> or <tt>IC0Preconditioner</tt>
+	 *
+	 * @param A
+	 * @param b
+	 * @param x
+	 * @param M preconditioner, <tt>null</tt> for none
+	 * @return
+	 */
+	public AlgebraVector solveCG(AlgebraMatrix A, AlgebraVector b,
+			AlgebraVector x, Preconditioner M) {
 
 		double alpha = 0, beta = 0, rho = 0, rho_1 = 0;
 
@@ -50,28 +135,22 @@ public class Solver {
 		AlgebraVector q = new FullVector(dim);
 
 		// r = b - Ax
-		//A.multAdd(-1, x, r.set(b));
-		A.mult(x, r);
-		r.axpy(-1.0, b);
+		A.multAdd(-1.0, x, 1.0, r.set(b));
 
+		clearHistory();
+		long begin = System.currentTimeMillis();
 		double firstNorm2 = r.norm2();
 		double norm2 = 0;
-		//for (iter.setFirst(); !iter.converged(r, x); iter.next()) {
 		for(int i=0;i<maxIter;i++) {
 			norm2 = r.norm2();
-			if((norm2<=this.epsRelIter*firstNorm2 && norm2<=this.epsAbsIterMax) ||
-					norm2<=this.epsAbsIterMin) {
-				if(debug)
-					System.out.println(
-						String.format("Iter----->i=%05d, RError=%8.3e, AError=%8.3e",
-								i,norm2/firstNorm2,norm2));
+			record(norm2);
+			if(converged(norm2, firstNorm2)) {
+				printResult("CG", begin);
 				return x;
 			}
 
-		    //M.apply(r, z);
 			//Mz=r
-			//M：预�?�件矩阵，�?�为I,z==r
-			z=r;
+			precond(M, r, z);
 
 		    rho = r.dot(z);
 
@@ -91,10 +170,264 @@ public class Solver {
 
 		    rho_1 = rho;
 		}
-		System.out.println("Iter Max----->maxIter="+maxIter+"  norm2="+norm2);
+		record(r.norm2());
+		printResult("CG", begin);
 		return x;
     }
 
+	/**
+	 * Stabilized Bi-Conjugate Gradients iterative method (BiCGStab),
+	 * solves the unsymmetric linear system
+	 * <tt>Ax = b</tt>
+	 *
+	 * @param A
+	 * @param b
+	 * @param x
+	 * @return
+	 */
+	public AlgebraVector solveBiCGStab(AlgebraMatrix A, AlgebraVector b,
+			AlgebraVector x) {
+		return solveBiCGStab(A, b, x, null);
+	}
+
+	/**
+	 * Right preconditioned BiCGStab iterative method,
+	 * solves the unsymmetric linear system
+	 * <tt>Ax = b</tt>
+	 *
+	 * @param A
+	 * @param b
+	 * @param x
+	 * @param M preconditioner, <tt>null</tt> for none
+	 * @return
+	 */
+	public AlgebraVector solveBiCGStab(AlgebraMatrix A, AlgebraVector b,
+			AlgebraVector x, Preconditioner M) {
+		double rho = 1, rho_1 = 1, alpha = 1, omega = 1, beta = 0;
+
+		int dim = b.getDim();
+		AlgebraVector r = new FullVector(dim);
+		AlgebraVector rtilde = new FullVector(dim);
+		AlgebraVector p = new FullVector(dim);
+		AlgebraVector v = new FullVector(dim);
+		AlgebraVector phat = new FullVector(dim);
+		AlgebraVector s = new FullVector(dim);
+		AlgebraVector shat = new FullVector(dim);
+		AlgebraVector t = new FullVector(dim);
+
+		// r = b - Ax
+		A.multAdd(-1.0, x, 1.0, r.set(b));
+		rtilde.set(r);
+
+		clearHistory();
+		long begin = System.currentTimeMillis();
+		double firstNorm2 = r.norm2();
+		double norm2 = 0;
+		for(int i=0;i<maxIter;i++) {
+			norm2 = r.norm2();
+			record(norm2);
+			if(converged(norm2, firstNorm2)) {
+				printResult("BiCGStab", begin);
+				return x;
+			}
+
+			rho = rtilde.dot(r);
+			if (rho == 0)
+				throw new FutureyeException("NotConverge, rho==0, iter="+i);
+
+			if (i==0) {
+				p.set(r);
+			} else {
+				beta = (rho / rho_1) * (alpha / omega);
+				//p = r + beta*(p - omega*v)
+				p.add(-omega, v).axpy(beta, r);
+			}
+
+			precond(M, p, phat);
+			A.mult(phat, v);
+			alpha = rho / rtilde.dot(v);
+			s.set(r).add(-alpha, v);
+
+			if(converged(s.norm2(), firstNorm2)) {
+				x.add(alpha, phat);
+				record(s.norm2());
+				printResult("BiCGStab", begin);
+				return x;
+			}
+
+			precond(M, s, shat);
+			A.mult(shat, t);
+			double tt = t.dot(t);
+			omega = tt == 0 ? 0 : t.dot(s) / tt;
+			if (omega == 0)
+				throw new FutureyeException("NotConverge, omega==0, iter="+i);
+
+			x.add(alpha, phat).add(omega, shat);
+			r.set(s).add(-omega, t);
+
+			rho_1 = rho;
+		}
+		record(r.norm2());
+		printResult("BiCGStab", begin);
+		return x;
+	}
+
+	/**
+	 * Restarted Generalized Minimal Residual method GMRES(m),
+	 * solves the unsymmetric linear system
+	 * <tt>Ax = b</tt>
+	 *
+	 * @param A
+	 * @param b
+	 * @param x
+	 * @param m restart, dimension of the Krylov subspace
+	 * @return
+	 */
+	public AlgebraVector solveGMRES(AlgebraMatrix A, AlgebraVector b,
+			AlgebraVector x, int m) {
+		return solveGMRES(A, b, x, m, null);
+	}
+
+	/**
+	 * Right preconditioned restarted GMRES(m) iterative method,
+	 * solves the unsymmetric linear system
+	 * <tt>Ax = b</tt>
+	 * <p>
+	 * The Arnoldi basis is orthogonalized by modified Gram-Schmidt
+	 * and the least squares problem is updated by Givens rotations,
+	 * so the residual norm is known in every iteration without forming <tt>x</tt>.
+	 * Memory: <tt>m+2</tt> vectors of length <tt>dim</tt>.
+	 *
+	 * @param A
+	 * @param b
+	 * @param x
+	 * @param m restart, dimension of the Krylov subspace
+	 * @param M preconditioner, <tt>null</tt> for none
+	 * @return
+	 */
+	public AlgebraVector solveGMRES(AlgebraMatrix A, AlgebraVector b,
+			AlgebraVector x, int m, Preconditioner M) {
+		if(m < 1)
+			throw new FutureyeException("GMRES restart m="+m+" must be >= 1");
+		int dim = b.getDim();
+		AlgebraVector r = new FullVector(dim);
+		AlgebraVector w = new FullVector(dim);
+		AlgebraVector[] V = new AlgebraVector[m+1];
+		for(int j=0; j<=m; j++)
+			V[j] = new FullVector(dim);
+		double[][] H = new double[m+1][m];
+		double[] cs = new double[m];
+		double[] sn = new double[m];
+		double[] g = new double[m+1];
+		double[] y = new double[m];
+
+		// r = b - Ax
+		A.multAdd(-1.0, x, 1.0, r.set(b));
+
+		clearHistory();
+		long begin = System.currentTimeMillis();
+		double firstNorm2 = r.norm2();
+		double norm2 = firstNorm2;
+		record(norm2);
+		int iter = 0;
+		while(iter < maxIter && !converged(norm2, firstNorm2)) {
+			Arrays.fill(g, 0.0);
+			g[0] = norm2;
+			V[0].set(1.0/norm2, r);
+			int k = 0;
+			for(; k<m && iter<maxIter; k++, iter++) {
+				//w = A*M^-1*v_k
+				precond(M, V[k], r);
+				A.mult(r, w);
+				for(int j=0; j<=k; j++) {
+					H[j][k] = w.dot(V[j]);
+					w.add(-H[j][k], V[j]);
+				}
+				H[k+1][k] = w.norm2();
+				if(H[k+1][k] != 0)
+					V[k+1].set(1.0/H[k+1][k], w);
+				//apply previous rotations to the new column
+				for(int j=0; j<k; j++) {
+					double tmp = cs[j]*H[j][k] + sn[j]*H[j+1][k];
+					H[j+1][k] = -sn[j]*H[j][k] + cs[j]*H[j+1][k];
+					H[j][k] = tmp;
+				}
+				double h = Math.hypot(H[k][k], H[k+1][k]);
+				cs[k] = H[k][k]/h;
+				sn[k] = H[k+1][k]/h;
+				H[k][k] = h;
+				H[k+1][k] = 0.0;
+				g[k+1] = -sn[k]*g[k];
+				g[k] = cs[k]*g[k];
+				norm2 = Math.abs(g[k+1]);
+				record(norm2);
+				if(converged(norm2, firstNorm2)) {
+					k++;
+					iter++;
+					break;
+				}
+			}
+			//solve H(0:k,0:k)*y = g(0:k), x = x + M^-1*V*y
+			for(int i=k; --i>=0;) {
+				double sum = g[i];
+				for(int j=i+1; j<k; j++)
+					sum -= H[i][j]*y[j];
+				y[i] = sum/H[i][i];
+			}
+			w.set(0.0, w);
+			for(int j=0; j<k; j++)
+				w.add(y[j], V[j]);
+			precond(M, w, r);
+			x.add(r);
+			//true residual for the restart
+			A.multAdd(-1.0, x, 1.0, r.set(b));
+			norm2 = r.norm2();
+		}
+		residualHistory[nResidualHistory-1] = norm2;
+		printResult("GMRES", begin);
+		return x;
+	}
+
+	/**
+	 * Algebraic multigrid V-cycle iteration, solves the
+	 * symmetric positive definite linear system:
+	 * <tt>Ax = b</tt>
+	 * <p>
+	 * For better robustness use <tt>AlgebraicMultigrid</tt> as preconditioner of CG instead:
+	 * <code>solveCG(A, b, x, new AlgebraicMultigrid(A))</code>
+	 *
+	 * @param A
+	 * @param b
+	 * @param x
+	 * @param amg hierarchy built from <tt>A</tt>
+	 * @return
+	 */
+	public AlgebraVector solveAMG(AlgebraMatrix A, AlgebraVector b,
+			AlgebraVector x, AlgebraicMultigrid amg) {
+		int dim = b.getDim();
+		AlgebraVector r = new FullVector(dim);
+
+		clearHistory();
+		long begin = System.currentTimeMillis();
+		A.multAdd(-1.0, x, 1.0, r.set(b));
+		double firstNorm2 = r.norm2();
+		double norm2 = firstNorm2;
+		record(norm2);
+		for(int i=0;i<maxIter && !converged(norm2, firstNorm2);i++) {
+			amg.vcycle(b, x);
+			A.multAdd(-1.0, x, 1.0, r.set(b));
+			norm2 = r.norm2();
+			record(norm2);
+		}
+		printResult("AMG", begin);
+		return x;
+	}
+
+	public AlgebraVector solveAMG(FlatCompressedRowMatrix A, AlgebraVector b,
+			AlgebraVector x) {
+		return solveAMG(A, b, x, new AlgebraicMultigrid(A));
+	}
+
 	/**
 	 * Conjugate Gradients squared iterative method,
 	 * solves the unsymmetric linear system
@@ -107,6 +440,22 @@ public class Solver {
 	 */
 	public AlgebraVector solveCGS(AlgebraMatrix A, AlgebraVector b,
 			AlgebraVector x) {
+		return solveCGS(A, b, x, null);
+	}
+
+	/**
+	 * Preconditioned Conjugate Gradients squared iterative method,
+	 * solves the unsymmetric linear system
+	 * <tt>Ax = b</tt>
+	 *
+	 * @param A
+	 * @param b
+	 * @param x
+	 * @param M preconditioner, <tt>null</tt> for none
+	 * @return
+	 */
+	public AlgebraVector solveCGS(AlgebraMatrix A, AlgebraVector b,
+			AlgebraVector x, Preconditioner M) {
 
         double rho_1 = 0, rho_2 = 0, alpha = 0, beta = 0;
 
@@ -123,25 +472,18 @@ public class Solver {
 		AlgebraVector rtilde = new FullVector(dim);
 
 		// r = b - Ax
-		//A.multAdd(-1, x, r.set(b));
-		A.mult(x, r);
-		r.axpy(-1.0, b);
+		A.multAdd(-1.0, x, 1.0, r.set(b));
 	    rtilde.set(r);
 
+		clearHistory();
 		double firstNorm2 = r.norm2();
 		double norm2 = 0;
-		long begin = System.currentTimeMillis(),end=0;
-		//for (iter.setFirst(); !iter.converged(r, x); iter.next()) {
+		long begin = System.currentTimeMillis();
 		for(int i=0;i<maxIter;i++) {
 			norm2 = r.norm2();
-			if((norm2<=this.epsRelIter*firstNorm2 && norm2<=this.epsAbsIterMax) ||
-					norm2<=this.epsAbsIterMin) {
-				if(debug) {
-					end = System.currentTimeMillis();
-					System.out.println(
-						String.format("Iter----->i=%05d, RError=%8.3e, AError=%8.3e, Time=%dms",
-								i,norm2/firstNorm2,norm2,(end-begin)));
-				}
+			record(norm2);
+			if(converged(norm2, firstNorm2)) {
+				printResult("CGS", begin);
 				return x;
 			}
 
@@ -162,23 +504,21 @@ public class Solver {
                 p.set(u).add(beta, sum);
             }
 
-            //M.apply(p, phat);
-            phat.set(p);
+            precond(M, p, phat);
 
             A.mult(phat, vhat);
             alpha = rho_1 / rtilde.dot(vhat);
             q.set(-alpha, vhat).add(u);
 
-            //M.apply(sum.set(u).add(q), uhat);
-            uhat.set(sum.set(u).add(q));
+            precond(M, sum.set(u).add(q), uhat);
             x.add(alpha, uhat);
             A.mult(uhat, qhat);
             r.add(-alpha, qhat);
 
             rho_2 = rho_1;
         }
-		end = System.currentTimeMillis();
-		System.out.println("Iter Max----->maxIter="+maxIter+", Norm2="+norm2+", Time="+(end-begin));
+		record(r.norm2());
+		printResult("CGS", begin);
 		return x;
     }
 
@@ -190,7 +530,7 @@ public class Solver {
 			throw new FutureyeException(
 					"ERROR: Solver.solver() m.dim!=v.dim ");
 		}
-		AlgebraMatrix algStiff = new CompressedRowMatrix(A,false);
+		AlgebraMatrix algStiff = new FlatCompressedRowMatrix(A,false);
 		FullVector algLoad = new FullVector(b);
 		FullVector algU = new FullVector(x);
 		solveCG(algStiff, algLoad, algU);
@@ -226,7 +566,7 @@ public class Solver {
 					"ERROR: Solver.solver() m.dim!=v.dim ");
 		}
 		//CGS
-		AlgebraMatrix algStiff = new CompressedRowMatrix(A,false);
+		AlgebraMatrix algStiff = new FlatCompressedRowMatrix(A,false);
 		FullVector algLoad = new FullVector(b);
 		FullVector algU = new FullVector(x);
 		solveCGS(algStiff, algLoad, algU);
@@ -0,0 +1,293 @@
+package mathLib.matrix.algebra.solver;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.CompressedColMatrix;
+import mathLib.matrix.algebra.FullVector;
+
+/**
+ * Sparse Cholesky decomposition <tt>A(p,p) = L*L'</tt> of a symmetric positive
+ * definite matrix in compressed column storage
+ * <p>
+ * Only the lower triangle of <tt>A</tt> is read. The symbolic analysis (the ordering
+ * <tt>p</tt> of <tt>AMDOrdering</tt>, the elimination tree and the column counts of
+ * <tt>L</tt>) is done once in the constructor; <tt>factor(A)</tt> computes new values
+ * for a matrix with the same pattern without any symbolic work. The numeric
+ * factorization is up-looking: row <tt>k</tt> of <tt>L</tt> is a sparse triangular
+ * solve whose pattern is the reach of row <tt>k</tt> of <tt>A</tt> in the elimination tree.
+ *
+ */
+public class SparseCholesky {
+	protected int n;
+	/**
+	 * Ordering, row and column <tt>perm[k]</tt> of <tt>A</tt> is row and column <tt>k</tt>
+	 * of the factorized matrix
+	 */
+	protected int[] perm;
+	protected int[] pinv;
+	/**
+	 * Elimination tree
+	 */
+	protected int[] parent;
+
+	//Upper triangle of A(p,p) by columns, Cp[j]...Cp[j+1]-1, and the position
+	//in A of each entry so that the values can be refreshed by factor()
+	protected int[] Cp, Ci;
+	protected double[] Cx;
+	protected int[] Csrc;
+
+	//L by columns, diagonal first
+	protected int[] Lp, Li;
+	protected double[] Lx;
+
+	protected double[] work;
+
+	/**
+	 * Symbolic analysis with the fill-reducing ordering of <tt>AMDOrdering</tt>
+	 * and numeric factorization of <tt>A</tt>
+	 *
+	 * @param A
+	 */
+	public SparseCholesky(CompressedColMatrix A) {
+		this(A, AMDOrdering.order(A));
+	}
+
+	/**
+	 * @param A
+	 * @param perm ordering, <tt>null</tt> for the natural ordering
+	 */
+	public SparseCholesky(CompressedColMatrix A, int[] perm) {
+		if(A.getRowDim() != A.getColDim())
+			throw new FutureyeException("SparseCholesky: matrix must be square.");
+		n = A.getColDim();
+		if(perm == null) {
+			perm = new int[n];
+			for(int i=0; i<n; i++)
+				perm[i] = i;
+		}
+		this.perm = perm;
+		pinv = new int[n];
+		for(int k=0; k<n; k++)
+			pinv[perm[k]] = k;
+		work = new double[n];
+		analyze(A);
+		factor(A);
+	}
+
+	public int getDimension() {
+		return n;
+	}
+
+	/**
+	 * @return number of nonzeros of <tt>L</tt>
+	 */
+	public long getNonzeros() {
+		return Lp[n];
+	}
+
+	public int[] getOrdering() {
+		return perm.clone();
+	}
+
+	/**
+	 * Permuted upper triangle, elimination tree and the pattern sizes of <tt>L</tt>
+	 */
+	protected void analyze(CompressedColMatrix A) {
+		int[][] rowIndex = A.getRowIndex();
+		//C = upper triangle of A(p,p), built from the lower triangle of A
+		int[] count = new int[n+1];
+		for(int j=0; j<n; j++) {
+			for(int i : rowIndex[j]) {
+				if(i < j)
+					continue;
+				count[Math.max(pinv[i], pinv[j])]++;
+			}
+		}
+		Cp = new int[n+1];
+		for(int j=0; j<n; j++)
+			Cp[j+1] = Cp[j] + count[j];
+		Ci = new int[Cp[n]];
+		Cx = new double[Cp[n]];
+		Csrc = new int[Cp[n]];
+		int[] next = new int[n];
+		System.arraycopy(Cp, 0, next, 0, n);
+		int pos = 0;
+		for(int j=0; j<n; j++) {
+			int[] rj = rowIndex[j];
+			for(int r=0; r<rj.length; r++, pos++) {
+				int i = rj[r];
+				if(i < j)
+					continue;
+				int pi = pinv[i], pj = pinv[j];
+				int c = Math.max(pi, pj);
+				int p = next[c]++;
+				Ci[p] = Math.min(pi, pj);
+				Csrc[p] = pos;
+			}
+		}
+
+		//Elimination tree of C
+		parent = new int[n];
+		int[] ancestor = new int[n];
+		for(int k=0; k<n; k++) {
+			parent[k] = -1;
+			ancestor[k] = -1;
+			for(int p=Cp[k]; p<Cp[k+1]; p++) {
+				int i = Ci[p];
+				while(i != -1 && i < k) {
+					int inext = ancestor[i];
+					ancestor[i] = k;
+					if(inext == -1)
+						parent[i] = k;
+					i = inext;
+				}
+			}
+		}
+
+		//Column counts of L: row k of L is the reach of column k of C in the tree
+		int[] colCount = new int[n];
+		int[] s = new int[n];
+		int[] mark = new int[n];
+		for(int k=0; k<n; k++) {
+			int top = ereach(k, s, mark, k+1);
+			for(int p=top; p<n; p++)
+				colCount[s[p]]++;
+			colCount[k]++;
+		}
+		Lp = new int[n+1];
+		for(int j=0; j<n; j++)
+			Lp[j+1] = Lp[j] + colCount[j];
+		Li = new int[Lp[n]];
+		Lx = new double[Lp[n]];
+	}
+
+	/**
+	 * Pattern of row <tt>k</tt> of <tt>L</tt> (without the diagonal),
+	 * returned in <tt>s[top...n-1]</tt> in topological order
+	 */
+	protected int ereach(int k, int[] s, int[] mark, int stamp) {
+		int top = n;
+		mark[k] = stamp;
+		for(int p=Cp[k]; p<Cp[k+1]; p++) {
+			int i = Ci[p];
+			if(i > k)
+				continue;
+			int len = 0;
+			for(; mark[i] != stamp; i=parent[i]) {
+				s[len++] = i;
+				mark[i] = stamp;
+			}
+			while(len > 0)
+				s[--top] = s[--len];
+		}
+		return top;
+	}
+
+	/**
+	 * Numeric factorization of a matrix with the same nonzero pattern as the
+	 * matrix given to the constructor
+	 *
+	 * @param A
+	 */
+	public void factor(CompressedColMatrix A) {
+		if(A.getRowDim() != n || A.getColDim() != n)
+			throw new FutureyeException("SparseCholesky: matrix dimensions changed.");
+		double[][] data = A.getData();
+		int nnz = 0;
+		for(int j=0; j<n; j++)
+			nnz += data[j].length;
+		double[] flat = new double[nnz];
+		int pos = 0;
+		for(int j=0; j<n; j++) {
+			System.arraycopy(data[j], 0, flat, pos, data[j].length);
+			pos += data[j].length;
+		}
+		for(int p=0; p<Cx.length; p++)
+			Cx[p] = flat[Csrc[p]];
+
+		double[] x = work;
+		int[] c = new int[n];
+		int[] s = new int[n];
+		int[] mark = new int[n];
+		for(int k=0; k<n; k++)
+			c[k] = Lp[k];
+		for(int k=0; k<n; k++) {
+			int top = ereach(k, s, mark, k+1);
+			x[k] = 0.0;
+			for(int p=Cp[k]; p<Cp[k+1]; p++)
+				x[Ci[p]] += Cx[p];
+			double d = x[k];
+			x[k] = 0.0;
+			for(; top<n; top++) {
+				int i = s[top];
+				double lki = x[i]/Lx[Lp[i]];
+				x[i] = 0.0;
+				for(int p=Lp[i]+1; p<c[i]; p++)
+					x[Li[p]] -= Lx[p]*lki;
+				d -= lki*lki;
+				int p = c[i]++;
+				Li[p] = k;
+				Lx[p] = lki;
+			}
+			if(!(d > 0.0))
+				throw new FutureyeException("SparseCholesky: matrix is not symmetric positive definite.");
+			int p = c[k]++;
+			Li[p] = k;
+			Lx[p] = Math.sqrt(d);
+		}
+	}
+
+	/**
+	 * Solve A*x = b
+	 *
+	 * @param b
+	 * @param x
+	 */
+	public void solve(FullVector b, FullVector x) {
+		solve(b.getData(), x.getData());
+	}
+
+	/**
+	 * Solve A*x = b, <tt>x</tt> may be <tt>b</tt>
+	 *
+	 * @param b
+	 * @param x
+	 */
+	public void solve(double[] b, double[] x) {
+		if(b.length != n || x.length != n)
+			throw new FutureyeException("SparseCholesky: vector length must be "+n+".");
+		double[] y = work;
+		for(int k=0; k<n; k++)
+			y[k] = b[perm[k]];
+		//L*z = P*b
+		for(int j=0; j<n; j++) {
+			double yj = y[j] /= Lx[Lp[j]];
+			if(yj == 0.0)
+				continue;
+			for(int p=Lp[j]+1; p<Lp[j+1]; p++)
+				y[Li[p]] -= Lx[p]*yj;
+		}
+		//L'*w = z
+		for(int j=n-1; j>=0; j--) {
+			double yj = y[j];
+			for(int p=Lp[j]+1; p<Lp[j+1]; p++)
+				yj -= Lx[p]*y[Li[p]];
+			y[j] = yj/Lx[Lp[j]];
+		}
+		for(int k=0; k<n; k++) {
+			x[perm[k]] = y[k];
+			y[k] = 0.0;
+		}
+	}
+
+	/**
+	 * Solve A*x = b
+	 *
+	 * @param b
+	 * @return x
+	 */
+	public FullVector solve(FullVector b) {
+		FullVector x = new FullVector(n);
+		solve(b, x);
+		return x;
+	}
+}
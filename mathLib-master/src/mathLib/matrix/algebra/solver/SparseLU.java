@@ -0,0 +1,395 @@
+package mathLib.matrix.algebra.solver;
+
+import java.util.Arrays;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.CompressedColMatrix;
+import mathLib.matrix.algebra.FullVector;
+
+/**
+ * Sparse direct solver <tt>A(p,q) = L*U</tt> for a general square matrix in
+ * compressed column storage
+ * <p>
+ * Left-looking (Gilbert-Peierls) LU: column <tt>k</tt> of <tt>L</tt> and <tt>U</tt> is
+ * computed by a sparse triangular solve with the first <tt>k</tt> columns of <tt>L</tt>,
+ * whose nonzero pattern is found by a depth-first search, so the work is proportional
+ * to the number of floating point operations. The columns are taken in the fill-reducing
+ * order <tt>q</tt> of <tt>AMDOrdering</tt> on <tt>A+A'</tt>. Threshold partial pivoting
+ * prefers the diagonal entry, which keeps the ordering for matrices with a
+ * nearly symmetric pattern like the FEM ones.
+ * <p>
+ * The ordering and the pivot sequence are kept: <tt>factor(A)</tt> refactorizes a matrix
+ * with the same nonzero pattern and new values without any symbolic work, and falls
+ * back to a full factorization if a pivot becomes too small.
+ * <pre>
+ * SparseLU lu = new SparseLU(A);
+ * lu.solve(f, u);
+ * lu.factor(A2); //same pattern, new values
+ * lu.solve(f2, u2);
+ * </pre>
+ *
+ */
+public class SparseLU {
+	/**
+	 * A diagonal pivot is accepted if <tt>|a_kk| >= pivotTol*max_i|a_ik|</tt>,
+	 * <tt>1.0</tt> is partial pivoting
+	 */
+	public double pivotTol = 0.1;
+
+	protected int n;
+	protected CompressedColMatrix A;
+	/**
+	 * Column ordering
+	 */
+	protected int[] q;
+	/**
+	 * Row permutation, row <tt>i</tt> of <tt>A</tt> is pivot row <tt>pinv[i]</tt>
+	 */
+	protected int[] pinv;
+
+	//L: unit lower triangular, diagonal first in each column, row indices in pivot order
+	protected int[] Lp, Li;
+	protected double[] Lx;
+	//U: upper triangular, row indices (pivot order) sorted, diagonal last in each column
+	protected int[] Up, Ui;
+	protected double[] Ux;
+
+	protected double[] work;
+
+	/**
+	 * Compute the fill-reducing ordering and factorize <tt>A</tt>
+	 *
+	 * @param A
+	 */
+	public SparseLU(CompressedColMatrix A) {
+		this(A, AMDOrdering.order(A));
+	}
+
+	/**
+	 * Factorize <tt>A</tt> with the given column ordering
+	 *
+	 * @param A
+	 * @param q column ordering, <tt>null</tt> for the natural ordering
+	 */
+	public SparseLU(CompressedColMatrix A, int[] q) {
+		if(A.getRowDim() != A.getColDim())
+			throw new FutureyeException("SparseLU: matrix must be square.");
+		this.n = A.getColDim();
+		if(q == null) {
+			q = new int[n];
+			for(int i=0; i<n; i++)
+				q[i] = i;
+		}
+		this.q = q;
+		this.work = new double[n];
+		factorize(A);
+	}
+
+	public int getDimension() {
+		return n;
+	}
+
+	/**
+	 * @return number of nonzeros of <tt>L</tt> and <tt>U</tt>
+	 */
+	public long getNonzeros() {
+		return (long)Lp[n] + Up[n];
+	}
+
+	/**
+	 * @return the column ordering
+	 */
+	public int[] getOrdering() {
+		return q.clone();
+	}
+
+	/**
+	 * Numeric refactorization of a matrix with the same nonzero pattern as the
+	 * matrix of the last factorization
+	 *
+	 * @param A
+	 */
+	public void factor(CompressedColMatrix A) {
+		if(A.getRowDim() != n || A.getColDim() != n)
+			throw new FutureyeException("SparseLU: matrix dimensions changed.");
+		if(!refactorize(A))
+			factorize(A);
+	}
+
+	/**
+	 * Full factorization with pivoting, keeps the ordering <tt>q</tt>
+	 */
+	protected void factorize(CompressedColMatrix A) {
+		this.A = A;
+		int[][] rowIndex = A.getRowIndex();
+		double[][] data = A.getData();
+		int nnzA = 0;
+		for(int j=0; j<n; j++)
+			nnzA += rowIndex[j].length;
+		int lnzMax = 4*nnzA + n, unzMax = 4*nnzA + n;
+		Lp = new int[n+1]; Li = new int[lnzMax]; Lx = new double[lnzMax];
+		Up = new int[n+1]; Ui = new int[unzMax]; Ux = new double[unzMax];
+		pinv = new int[n];
+		Arrays.fill(pinv, -1);
+		double[] x = work;
+		int[] xi = new int[2*n];
+		int[] mark = new int[n];
+		int lnz = 0, unz = 0;
+		for(int k=0; k<n; k++) {
+			Lp[k] = lnz;
+			Up[k] = unz;
+			if(lnz + n > Li.length) {
+				int len = 2*Li.length + n;
+				Li = Arrays.copyOf(Li, len);
+				Lx = Arrays.copyOf(Lx, len);
+			}
+			if(unz + n > Ui.length) {
+				int len = 2*Ui.length + n;
+				Ui = Arrays.copyOf(Ui, len);
+				Ux = Arrays.copyOf(Ux, len);
+			}
+			int col = q[k];
+			int top = spsolve(rowIndex[col], data[col], xi, x, mark, k+1);
+
+			//Largest entry in the rows not yet pivotal
+			int ipiv = -1;
+			double a = -1;
+			for(int p=top; p<n; p++) {
+				int i = xi[p];
+				if(pinv[i] < 0) {
+					double t = Math.abs(x[i]);
+					if(t > a) {
+						a = t;
+						ipiv = i;
+					}
+				} else {
+					Ui[unz] = pinv[i];
+					Ux[unz++] = x[i];
+				}
+			}
+			if(ipiv == -1 || a <= 0.0)
+				throw new FutureyeException("SparseLU: matrix is singular.");
+			if(pinv[col] < 0 && Math.abs(x[col]) >= a*pivotTol)
+				ipiv = col;
+
+			double pivot = x[ipiv];
+			Ui[unz] = k;
+			Ux[unz++] = pivot;
+			pinv[ipiv] = k;
+			Li[lnz] = ipiv;
+			Lx[lnz++] = 1.0;
+			for(int p=top; p<n; p++) {
+				int i = xi[p];
+				if(pinv[i] < 0) {
+					Li[lnz] = i;
+					Lx[lnz++] = x[i]/pivot;
+				}
+				x[i] = 0.0;
+			}
+		}
+		Lp[n] = lnz;
+		Up[n] = unz;
+		for(int p=0; p<lnz; p++)
+			Li[p] = pinv[Li[p]];
+		Li = Arrays.copyOf(Li, lnz);
+		Lx = Arrays.copyOf(Lx, lnz);
+		Ui = Arrays.copyOf(Ui, unz);
+		Ux = Arrays.copyOf(Ux, unz);
+		sortU();
+	}
+
+	/**
+	 * <tt>x = L\A(:,col)</tt> with <tt>L</tt> the first columns of the factor being
+	 * computed (row indices of <tt>A</tt> numbering)
+	 *
+	 * @return <tt>top</tt>, the pattern of <tt>x</tt> is <tt>xi[top...n-1]</tt>
+	 *         in topological order
+	 */
+	protected int spsolve(int[] bi, double[] bx, int[] xi, double[] x, int[] mark, int stamp) {
+		int top = n;
+		for(int p=0; p<bi.length; p++)
+			if(mark[bi[p]] != stamp)
+				top = dfs(bi[p], top, xi, mark, stamp);
+		for(int p=0; p<bi.length; p++)
+			x[bi[p]] = bx[p];
+		for(int px=top; px<n; px++) {
+			int j = xi[px];
+			int J = pinv[j];
+			if(J < 0)
+				continue;
+			double xj = x[j];
+			if(xj == 0.0)
+				continue;
+			for(int p=Lp[J]+1; p<Lp[J+1]; p++)
+				x[Li[p]] -= Lx[p]*xj;
+		}
+		return top;
+	}
+
+	/**
+	 * Non-recursive depth-first search in the graph of <tt>L</tt> from node <tt>j</tt>,
+	 * <tt>xi[n...2n-1]</tt> is the stack of positions
+	 */
+	protected int dfs(int j, int top, int[] xi, int[] mark, int stamp) {
+		int head = 0;
+		xi[0] = j;
+		while(head >= 0) {
+			j = xi[head];
+			int jnew = pinv[j];
+			if(mark[j] != stamp) {
+				mark[j] = stamp;
+				xi[n+head] = jnew < 0 ? 0 : Lp[jnew]+1;
+			}
+			boolean done = true;
+			int p2 = jnew < 0 ? 0 : Lp[jnew+1];
+			for(int p=xi[n+head]; p<p2; p++) {
+				int i = Li[p];
+				if(mark[i] == stamp)
+					continue;
+				xi[n+head] = p+1;
+				xi[++head] = i;
+				done = false;
+				break;
+			}
+			if(done) {
+				head--;
+				xi[--top] = j;
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Sort the row indices of each column of <tt>U</tt> in pivot order, diagonal last
+	 */
+	protected void sortU() {
+		double[] val = new double[n];
+		for(int k=0; k<n; k++) {
+			int p0 = Up[k], p1 = Up[k+1]-1; //p1: diagonal
+			if(p1 - p0 < 32) {
+				for(int p=p0+1; p<p1; p++) {
+					int ui = Ui[p];
+					double ux = Ux[p];
+					int r = p - 1;
+					while(r >= p0 && Ui[r] > ui) {
+						Ui[r+1] = Ui[r];
+						Ux[r+1] = Ux[r];
+						r--;
+					}
+					Ui[r+1] = ui;
+					Ux[r+1] = ux;
+				}
+			} else {
+				for(int p=p0; p<p1; p++)
+					val[Ui[p]] = Ux[p];
+				Arrays.sort(Ui, p0, p1);
+				for(int p=p0; p<p1; p++)
+					Ux[p] = val[Ui[p]];
+			}
+		}
+	}
+
+	/**
+	 * Refactorization with the pivot sequence and the patterns of <tt>L</tt> and <tt>U</tt>
+	 * of the last factorization
+	 *
+	 * @return <tt>false</tt> if a pivot is rejected
+	 */
+	protected boolean refactorize(CompressedColMatrix A) {
+		int[][] rowIndex = A.getRowIndex();
+		double[][] data = A.getData();
+		double[] x = work;
+		for(int k=0; k<n; k++) {
+			int col = q[k];
+			int[] bi = rowIndex[col];
+			double[] bx = data[col];
+			for(int p=0; p<bi.length; p++)
+				x[pinv[bi[p]]] = bx[p];
+			int p1 = Up[k+1]-1;
+			for(int p=Up[k]; p<p1; p++) {
+				int j = Ui[p];
+				double xj = x[j];
+				Ux[p] = xj;
+				x[j] = 0.0;
+				if(xj == 0.0)
+					continue;
+				for(int r=Lp[j]+1; r<Lp[j+1]; r++)
+					x[Li[r]] -= Lx[r]*xj;
+			}
+			double pivot = x[k];
+			x[k] = 0.0;
+			double max = 0.0;
+			for(int r=Lp[k]+1; r<Lp[k+1]; r++)
+				max = Math.max(max, Math.abs(x[Li[r]]));
+			if(pivot == 0.0 || Math.abs(pivot) < pivotTol*max) {
+				Arrays.fill(x, 0.0);
+				return false;
+			}
+			Ux[p1] = pivot;
+			for(int r=Lp[k]+1; r<Lp[k+1]; r++) {
+				int i = Li[r];
+				Lx[r] = x[i]/pivot;
+				x[i] = 0.0;
+			}
+		}
+		this.A = A;
+		return true;
+	}
+
+	/**
+	 * Solve A*x = b
+	 *
+	 * @param b
+	 * @param x
+	 */
+	public void solve(FullVector b, FullVector x) {
+		solve(b.getData(), x.getData());
+	}
+
+	/**
+	 * Solve A*x = b, <tt>x</tt> may be <tt>b</tt>
+	 *
+	 * @param b
+	 * @param x
+	 */
+	public void solve(double[] b, double[] x) {
+		if(b.length != n || x.length != n)
+			throw new FutureyeException("SparseLU: vector length must be "+n+".");
+		double[] y = work;
+		for(int i=0; i<n; i++)
+			y[pinv[i]] = b[i];
+		//L*z = P*b
+		for(int j=0; j<n; j++) {
+			double yj = y[j];
+			if(yj == 0.0)
+				continue;
+			for(int p=Lp[j]+1; p<Lp[j+1]; p++)
+				y[Li[p]] -= Lx[p]*yj;
+		}
+		//U*w = z
+		for(int j=n-1; j>=0; j--) {
+			int pd = Up[j+1]-1;
+			double yj = y[j] /= Ux[pd];
+			if(yj == 0.0)
+				continue;
+			for(int p=Up[j]; p<pd; p++)
+				y[Ui[p]] -= Ux[p]*yj;
+		}
+		for(int k=0; k<n; k++) {
+			x[q[k]] = y[k];
+			y[k] = 0.0;
+		}
+	}
+
+	/**
+	 * Solve A*x = b
+	 *
+	 * @param b
+	 * @return x
+	 */
+	public FullVector solve(FullVector b) {
+		FullVector x = new FullVector(n);
+		solve(b, x);
+		return x;
+	}
+}
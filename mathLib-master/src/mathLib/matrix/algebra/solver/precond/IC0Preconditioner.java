@@ -0,0 +1,119 @@
+package mathLib.matrix.algebra.solver.precond;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+import mathLib.matrix.algebra.intf.Preconditioner;
+
+/**
+ * Incomplete Cholesky factorization with zero fill-in, IC(0)
+ * <p>
+ * <code>A = L*L' + R</code> for symmetric positive definite <tt>A</tt>,
+ * where <tt>L</tt> has the sparsity pattern of the lower triangle of <tt>A</tt>.
+ * Only the lower triangle of <tt>A</tt> is read.
+ * <p>
+ * IC(0) may break down (non-positive pivot) for SPD matrices which are not
+ * M-matrices, use a positive <tt>shift</tt> to factor <code>A+shift*diag(A)</code> instead.
+ *
+ */
+public class IC0Preconditioner implements Preconditioner {
+	protected int n;
+	/**
+	 * Lower triangle of L in CSR format, the diagonal is the last entry of each row
+	 */
+	protected int[] lPtr;
+	protected int[] lIdx;
+	protected double[] lVal;
+
+	public IC0Preconditioner(FlatCompressedRowMatrix A) {
+		this(A, 0.0);
+	}
+
+	public IC0Preconditioner(CompressedRowMatrix A) {
+		this(new FlatCompressedRowMatrix(A), 0.0);
+	}
+
+	public IC0Preconditioner(FlatCompressedRowMatrix A, double shift) {
+		this.n = A.getRowDim();
+		int[] rowPtr = A.getRowPtr();
+		int[] colIdx = A.getColIdx();
+		double[] val = A.getValues();
+
+		this.lPtr = new int[n+1];
+		for(int i=0; i<n; i++) {
+			int cnt = 0;
+			for(int k=rowPtr[i]; k<rowPtr[i+1] && colIdx[k]<=i; k++)
+				cnt++;
+			lPtr[i+1] = lPtr[i] + cnt;
+		}
+		this.lIdx = new int[lPtr[n]];
+		this.lVal = new double[lPtr[n]];
+		for(int i=0; i<n; i++) {
+			int len = lPtr[i+1]-lPtr[i];
+			System.arraycopy(colIdx, rowPtr[i], lIdx, lPtr[i], len);
+			System.arraycopy(val, rowPtr[i], lVal, lPtr[i], len);
+			if(len == 0 || lIdx[lPtr[i+1]-1] != i)
+				throw new FutureyeException("IC(0): missing diagonal at row "+(i+1));
+			lVal[lPtr[i+1]-1] *= 1.0 + shift;
+		}
+		factor();
+	}
+
+	/**
+	 * Row-oriented (up-looking) factorization:
+	 * <code>l_ij = (a_ij - sum_k l_ik*l_jk) / l_jj</code>,
+	 * <code>l_ii = sqrt(a_ii - sum_k l_ik^2)</code>
+	 */
+	protected void factor() {
+		for(int i=0; i<n; i++) {
+			int diag = lPtr[i+1]-1;
+			for(int k=lPtr[i]; k<diag; k++) {
+				int j = lIdx[k];
+				//sparse dot of row i and row j over columns < j, both rows are sorted
+				double s = lVal[k];
+				int p = lPtr[i], q = lPtr[j], qEnd = lPtr[j+1]-1;
+				while(p < k && q < qEnd) {
+					int cp = lIdx[p], cq = lIdx[q];
+					if(cp == cq) {
+						s -= lVal[p]*lVal[q];
+						p++; q++;
+					} else if(cp < cq) {
+						p++;
+					} else {
+						q++;
+					}
+				}
+				lVal[k] = s/lVal[qEnd];
+			}
+			double d = lVal[diag];
+			for(int k=lPtr[i]; k<diag; k++)
+				d -= lVal[k]*lVal[k];
+			if(d <= 0.0)
+				throw new FutureyeException("IC(0): non-positive pivot "+d+" at row "+(i+1)+
+						", try a positive shift");
+			lVal[diag] = Math.sqrt(d);
+		}
+	}
+
+	@Override
+	public void apply(AlgebraVector r, AlgebraVector z) {
+		double[] rData = r.getData();
+		double[] zData = z.getData();
+		//L y = r
+		for(int i=0; i<n; i++) {
+			int diag = lPtr[i+1]-1;
+			double s = rData[i];
+			for(int k=lPtr[i]; k<diag; k++)
+				s -= lVal[k]*zData[lIdx[k]];
+			zData[i] = s/lVal[diag];
+		}
+		//L' z = y, column oriented on the rows of L
+		for(int i=n; --i>=0;) {
+			int diag = lPtr[i+1]-1;
+			double zi = zData[i] /= lVal[diag];
+			for(int k=lPtr[i]; k<diag; k++)
+				zData[lIdx[k]] -= lVal[k]*zi;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package mathLib.matrix.algebra.solver.precond;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+import mathLib.matrix.algebra.intf.Preconditioner;
+
+/**
+ * Incomplete LU factorization with zero fill-in, ILU(0)
+ * <p>
+ * <code>A = LU + R</code> where <tt>L</tt> (unit lower) and <tt>U</tt> have the
+ * same sparsity pattern as the lower and upper part of <tt>A</tt>.
+ * Both factors are stored in one array sharing the pattern of <tt>A</tt>.
+ * Suitable for unsymmetric systems (BiCGStab, GMRES, CGS).
+ *
+ */
+public class ILU0Preconditioner implements Preconditioner {
+	protected int n;
+	protected int[] rowPtr;
+	protected int[] colIdx;
+	protected double[] lu;
+	protected int[] diagPtr;
+
+	public ILU0Preconditioner(FlatCompressedRowMatrix A) {
+		this.n = A.getRowDim();
+		this.rowPtr = A.getRowPtr();
+		this.colIdx = A.getColIdx();
+		this.lu = A.getValues().clone();
+		this.diagPtr = new int[n];
+		for(int i=0; i<n; i++) {
+			diagPtr[i] = A.indexOf(i, i);
+			if(diagPtr[i] < 0)
+				throw new FutureyeException("ILU(0): missing diagonal at row "+(i+1));
+		}
+		factor();
+	}
+
+	public ILU0Preconditioner(CompressedRowMatrix A) {
+		this(new FlatCompressedRowMatrix(A));
+	}
+
+	/**
+	 * IKJ variant of Gaussian elimination restricted to the pattern of A
+	 */
+	protected void factor() {
+		int[] iw = new int[n];
+		java.util.Arrays.fill(iw, -1);
+		for(int i=0; i<n; i++) {
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++)
+				iw[colIdx[k]] = k;
+			for(int k=rowPtr[i]; k<diagPtr[i]; k++) {
+				int c = colIdx[k];
+				double piv = lu[diagPtr[c]];
+				if(piv == 0.0)
+					throw new FutureyeException("ILU(0): zero pivot at row "+(c+1));
+				double lik = lu[k] /= piv;
+				for(int j=diagPtr[c]+1; j<rowPtr[c+1]; j++) {
+					int pos = iw[colIdx[j]];
+					if(pos >= 0)
+						lu[pos] -= lik*lu[j];
+				}
+			}
+			for(int k=rowPtr[i]; k<rowPtr[i+1]; k++)
+				iw[colIdx[k]] = -1;
+		}
+		for(int i=0; i<n; i++) {
+			if(lu[diagPtr[i]] == 0.0)
+				throw new FutureyeException("ILU(0): zero pivot at row "+(i+1));
+		}
+	}
+
+	@Override
+	public void apply(AlgebraVector r, AlgebraVector z) {
+		double[] rData = r.getData();
+		double[] zData = z.getData();
+		//L y = r
+		for(int i=0; i<n; i++) {
+			double s = rData[i];
+			for(int k=rowPtr[i]; k<diagPtr[i]; k++)
+				s -= lu[k]*zData[colIdx[k]];
+			zData[i] = s;
+		}
+		//U z = y
+		for(int i=n; --i>=0;) {
+			double s = zData[i];
+			for(int k=diagPtr[i]+1; k<rowPtr[i+1]; k++)
+				s -= lu[k]*zData[colIdx[k]];
+			zData[i] = s/lu[diagPtr[i]];
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package mathLib.matrix.algebra.solver.precond;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+import mathLib.matrix.algebra.intf.Preconditioner;
+
+/**
+ * Jacobi (diagonal) preconditioner <code>M = diag(A)</code>
+ *
+ */
+public class JacobiPreconditioner implements Preconditioner {
+	protected double[] invDiag;
+
+	public JacobiPreconditioner(FlatCompressedRowMatrix A) {
+		int n = A.getRowDim();
+		this.invDiag = A.getDiagonal(new double[n]);
+		for(int i=0; i<n; i++) {
+			if(invDiag[i] == 0.0)
+				throw new FutureyeException("Jacobi: zero diagonal at row "+(i+1));
+			invDiag[i] = 1.0/invDiag[i];
+		}
+	}
+
+	public JacobiPreconditioner(CompressedRowMatrix A) {
+		this(new FlatCompressedRowMatrix(A));
+	}
+
+	/**
+	 * From the diagonal of an operator without stored matrix,
+	 * e.g. <tt>MatrixFreeOperator.getDiagonal()</tt>
+	 *
+	 * @param diag
+	 */
+	public JacobiPreconditioner(double[] diag) {
+		int n = diag.length;
+		this.invDiag = new double[n];
+		for(int i=0; i<n; i++) {
+			if(diag[i] == 0.0)
+				throw new FutureyeException("Jacobi: zero diagonal at row "+(i+1));
+			invDiag[i] = 1.0/diag[i];
+		}
+	}
+
+	@Override
+	public void apply(AlgebraVector r, AlgebraVector z) {
+		double[] rData = r.getData();
+		double[] zData = z.getData();
+		for(int i=invDiag.length; --i>=0;)
+			zData[i] = invDiag[i]*rData[i];
+	}
+}
@@ -0,0 +1,79 @@
+package mathLib.matrix.algebra.solver.precond;
+
+import mathLib.fem.util.FutureyeException;
+import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.intf.AlgebraVector;
+import mathLib.matrix.algebra.intf.Preconditioner;
+
+/**
+ * Symmetric successive over-relaxation preconditioner
+ * <p>
+ * <code>M = w/(2-w) * (D/w+L) * (D/w)^-1 * (D/w+U)</code>
+ * where <tt>A=L+D+U</tt>. <tt>M</tt> is symmetric if <tt>A</tt> is, so it can be used with CG.
+ * <tt>w=1</tt> gives symmetric Gauss-Seidel.
+ * <p>
+ * The matrix is referenced, not copied.
+ *
+ */
+public class SSORPreconditioner implements Preconditioner {
+	protected FlatCompressedRowMatrix A;
+	protected double omega;
+	/**
+	 * Position of the diagonal entry of each row in <tt>A.getValues()</tt>
+	 */
+	protected int[] diagPtr;
+
+	public SSORPreconditioner(FlatCompressedRowMatrix A, double omega) {
+		if(omega <= 0.0 || omega >= 2.0)
+			throw new FutureyeException("SSOR: omega="+omega+" must be in (0,2)");
+		this.A = A;
+		this.omega = omega;
+		int n = A.getRowDim();
+		this.diagPtr = new int[n];
+		for(int i=0; i<n; i++) {
+			diagPtr[i] = A.indexOf(i, i);
+			if(diagPtr[i] < 0 || A.getValues()[diagPtr[i]] == 0.0)
+				throw new FutureyeException("SSOR: zero diagonal at row "+(i+1));
+		}
+	}
+
+	public SSORPreconditioner(FlatCompressedRowMatrix A) {
+		this(A, 1.0);
+	}
+
+	public SSORPreconditioner(CompressedRowMatrix A, double omega) {
+		this(new FlatCompressedRowMatrix(A), omega);
+	}
+
+	@Override
+	public void apply(AlgebraVector r, AlgebraVector z) {
+		int[] rowPtr = A.getRowPtr();
+		int[] colIdx = A.getColIdx();
+		double[] val = A.getValues();
+		double[] rData = r.getData();
+		double[] zData = z.getData();
+		int n = diagPtr.length;
+
+		//(D/w+L) y = r
+		for(int i=0; i<n; i++) {
+			double s = rData[i];
+			for(int k=rowPtr[i]; k<diagPtr[i]; k++)
+				s -= val[k]*zData[colIdx[k]];
+			zData[i] = s*omega/val[diagPtr[i]];
+		}
+		//y = (D/w) y
+		for(int i=0; i<n; i++)
+			zData[i] *= val[diagPtr[i]]/omega;
+		//(D/w+U) z = y
+		for(int i=n; --i>=0;) {
+			double s = zData[i];
+			for(int k=diagPtr[i]+1; k<rowPtr[i+1]; k++)
+				s -= val[k]*zData[colIdx[k]];
+			zData[i] = s*omega/val[diagPtr[i]];
+		}
+		double scale = (2.0-omega)/omega;
+		for(int i=0; i<n; i++)
+			zData[i] *= scale;
+	}
+}
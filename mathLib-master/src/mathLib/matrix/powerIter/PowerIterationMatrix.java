@@ -8,6 +8,7 @@ import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.util.Locale;
 
+import mathLib.matrix.ComplexDenseMatrix;
 import mathLib.numbers.Complex;
 import mathLib.numbers.ComplexMath;
 
@@ -918,23 +919,7 @@ public class PowerIterationMatrix {
 			throw new IllegalArgumentException(
 					"Matrix inner dimensions must agree.");
 		}
-		PowerIterationMatrix X = new PowerIterationMatrix(m, B.n);
-		Complex[][] C = X.getArray();
-		Complex[] Bcolj = new Complex[n];
-		for (int j = 0; j < B.n; j++) {
-			for (int k = 0; k < n; k++) {
-				Bcolj[k] = B.A[k][j];
-			}
-			for (int i = 0; i < m; i++) {
-				Complex[] Arowi = A[i];
-				Complex s = 0;
-				for (int k = 0; k < n; k++) {
-					s = s + Arowi[k] * Bcolj[k];
-				}
-				C[i][j] = s;
-			}
-		}
-		return X;
+		return ComplexDenseMatrix.valueOf(this).times(ComplexDenseMatrix.valueOf(B)).toPowerIterationMatrix();
 	}
 
 	/**
@@ -1,9 +1,9 @@
 package mathLib.matrix.powerIter.methods;
 
+import mathLib.matrix.ComplexDenseMatrix;
 import mathLib.matrix.powerIter.EigenValueVector;
 import mathLib.matrix.powerIter.PowerIterationMatrix;
 import mathLib.numbers.Complex;
-import mathLib.numbers.ComplexMath;
 
 /**
  * Regular Iteration find the largest EigenValue.
@@ -12,44 +12,29 @@ import mathLib.numbers.ComplexMath;
  * 1) Normalize x0 = V/|V| 
  * 2) Yi = M*Xi-1 
  * 3) Xi = Yi/|Yi| 
- * 4) li = * (T(Xi) * M * Xi) / (T(Xi) * Xi Repeat 2 and 4 while li - li-1 < E 
+ * 4) li = (H(Xi) * M * Xi) / (H(Xi) * Xi) Repeat 2 and 4 while li - li-1 < E 
+ * H(Xi) is the conjugate transpose of Xi
  */
 public class RegularIteration implements PowerIteration {
 
 	@Override
 	public EigenValueVector solve(PowerIterationMatrix matrix, double error) {
 
-		Complex[] initialEigenVector = new Complex[matrix.getColumnDimension()] ;
-		for(int i=0; i<initialEigenVector.length; i++) {
-			initialEigenVector[i] = new Complex(1.0, 0.0) ;
+		// Iterate on flat arrays, see ComplexDenseMatrix.powerIteration()
+		ComplexDenseMatrix A = ComplexDenseMatrix.valueOf(matrix);
+		int n = matrix.getColumnDimension();
+		double[] xRe = new double[n], xIm = new double[n];
+		for(int i=0; i<n; i++) {
+			xRe[i] = 1.0;
 		}
-		Complex lastEigenValue;
-		Complex newEigenValue = 0;
-		int i = 0;
-
-		// Step 1:
-		
-		PowerIterationMatrix initialMatrixVector = PowerIterationMatrix.vectorToMatrix(initialEigenVector);
-		PowerIterationMatrix eigenVector = PowerIterationMatrix.normalize(initialMatrixVector);
-		do {
-			lastEigenValue = newEigenValue;
-			// Step 2:
-			PowerIterationMatrix vetorY = matrix.times(eigenVector);
-			// Step 3:
-			eigenVector = PowerIterationMatrix.normalize(vetorY);
-			// Step 4:
-			PowerIterationMatrix matrixTranspostaAvetor = eigenVector.transpose();
-			Complex avalorNumerador = matrixTranspostaAvetor.times(matrix)
-					.times(eigenVector).get(0, 0);
-			Complex avalorDenominador = matrixTranspostaAvetor.times(eigenVector)
-					.get(0, 0);
-			newEigenValue = avalorNumerador / avalorDenominador;
-			i++;
-		} while (i == 1 || Math.abs(ComplexMath.abs(newEigenValue) - ComplexMath.abs(lastEigenValue)) > error);
+		Complex eigenValue = A.powerIteration(error, Integer.MAX_VALUE, xRe, xIm);
 
 		EigenValueVector eigenValueVector = new EigenValueVector();
-		eigenValueVector.eigenValue = newEigenValue;
-		eigenValueVector.eigenVector = PowerIterationMatrix.matrixToVector(eigenVector);
+		eigenValueVector.eigenValue = eigenValue;
+		eigenValueVector.eigenVector = new Complex[n];
+		for(int i=0; i<n; i++) {
+			eigenValueVector.eigenVector[i] = new Complex(xRe[i], xIm[i]);
+		}
 		return eigenValueVector;
 	}
 
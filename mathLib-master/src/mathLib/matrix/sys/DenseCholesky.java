@@ -0,0 +1,182 @@
+package mathLib.matrix.sys;
+
+/**
+ * Cholesky decomposition <tt>A = L*L'</tt> of a dense symmetric positive definite matrix
+ * <p>
+ * Only the lower triangle of <tt>A</tt> is read. Right-looking blocked algorithm,
+ * the update of the trailing matrix after each panel of <tt>NB</tt> columns is
+ * split into row blocks processed in parallel. About half the work of <tt>DenseLU</tt>.
+ *
+ */
+public class DenseCholesky extends DenseFactorization {
+	protected boolean isspd = true;
+
+	/**
+	 * Factorize a copy of the lower triangle of <tt>A</tt>
+	 *
+	 * @param A
+	 */
+	public DenseCholesky(double[][] A) {
+		super(A);
+		factorize();
+	}
+
+	/**
+	 * Factorize the lower triangle of the row-major <tt>n*n</tt> array <tt>A</tt>
+	 *
+	 * @param n
+	 * @param A
+	 * @param copy <tt>false</tt> to factorize in place, the lower triangle of <tt>A</tt>
+	 *        is overwritten by <tt>L</tt>
+	 */
+	public DenseCholesky(int n, double[] A, boolean copy) {
+		super(n, A, copy);
+		factorize();
+	}
+
+	protected void factorize() {
+		norm1 = symmetricNorm1();
+		for(int k0=0; k0<n; k0+=NB) {
+			int k1 = Math.min(n, k0+NB);
+			if(!factorizePanel(k0, k1)) {
+				isspd = false;
+				return;
+			}
+			if(k1 == n)
+				break;
+
+			//A22 = A22 - L21*L21', lower triangle
+			final int p0 = k0, p1 = k1;
+			forRows(k1, n, (long)(k1-k0)*(n-k1)/2, (i0, i1) -> {
+				for(int i=i0; i<i1; i++) {
+					int ri = i*n;
+					for(int j=p1; j<=i; j++) {
+						int rj = j*n;
+						double s = 0.0;
+						for(int p=p0; p<p1; p++)
+							s += a[ri+p]*a[rj+p];
+						a[ri+j] -= s;
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Unblocked Cholesky of the columns <tt>k0...k1-1</tt>, rows <tt>k0...n-1</tt>
+	 *
+	 * @return <tt>false</tt> if a pivot is not positive
+	 */
+	protected boolean factorizePanel(int k0, int k1) {
+		for(int k=k0; k<k1; k++) {
+			int rk = k*n;
+			double d = a[rk+k];
+			if(!(d > 0.0))
+				return false;
+			d = Math.sqrt(d);
+			a[rk+k] = d;
+			for(int i=k+1; i<n; i++) {
+				int ri = i*n;
+				double l = a[ri+k] /= d;
+				if(l == 0.0)
+					continue;
+				int jEnd = Math.min(i, k1-1);
+				for(int j=k+1; j<=jEnd; j++)
+					a[ri+j] -= l*a[j*n+k];
+			}
+		}
+		return true;
+	}
+
+	protected double symmetricNorm1() {
+		double[] colSum = new double[n];
+		for(int i=0; i<n; i++) {
+			for(int j=0; j<=i; j++) {
+				double v = Math.abs(a[i*n+j]);
+				colSum[j] += v;
+				if(i != j)
+					colSum[i] += v;
+			}
+		}
+		double max = 0.0;
+		for(int j=0; j<n; j++)
+			max = Math.max(max, colSum[j]);
+		return max;
+	}
+
+	@Override
+	public boolean isSuccessful() {
+		return isspd;
+	}
+
+	public boolean isSPD() {
+		return isspd;
+	}
+
+	@Override
+	protected void checkSuccessful() {
+		if(!isspd)
+			throw new RuntimeException("Matrix is not symmetric positive definite.");
+	}
+
+	/**
+	 * @return the lower triangular factor <tt>L</tt>
+	 */
+	public double[][] getL() {
+		double[][] L = new double[n][n];
+		for(int i=0; i<n; i++)
+			System.arraycopy(a, i*n, L[i], 0, i+1);
+		return L;
+	}
+
+	@Override
+	public double det() {
+		if(!isspd)
+			return 0.0;
+		double d = 1.0;
+		for(int i=0; i<n; i++)
+			d *= a[i*n+i]*a[i*n+i];
+		return d;
+	}
+
+	/**
+	 * <tt>A</tt> is symmetric, <tt>trans</tt> is ignored
+	 */
+	@Override
+	protected void solve(double[] X, int k, int j0, int j1, boolean trans) {
+		int w = j1 - j0;
+		double[] t = new double[n*w];
+		for(int i=0; i<n; i++)
+			System.arraycopy(X, i*k+j0, t, i*w, w);
+		//L*Y = B
+		for(int i=0; i<n; i++) {
+			int ri = i*n;
+			for(int p=0; p<i; p++) {
+				double l = a[ri+p];
+				if(l == 0.0)
+					continue;
+				for(int j=0; j<w; j++)
+					t[i*w+j] -= l*t[p*w+j];
+			}
+			double d = a[ri+i];
+			for(int j=0; j<w; j++)
+				t[i*w+j] /= d;
+		}
+		//L'*X = Y, by rows of L
+		for(int p=n-1; p>=0; p--) {
+			int rp = p*n;
+			double d = a[rp+p];
+			for(int j=0; j<w; j++)
+				t[p*w+j] /= d;
+			for(int i=0; i<p; i++) {
+				double l = a[rp+i];
+				if(l == 0.0)
+					continue;
+				for(int j=0; j<w; j++)
+					t[i*w+j] -= l*t[p*w+j];
+			}
+		}
+		for(int i=0; i<n; i++)
+			System.arraycopy(t, i*w, X, i*k+j0, w);
+	}
+}
@@ -0,0 +1,296 @@
+package mathLib.matrix.sys;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mathLib.matrix.Gemm;
+
+/**
+ * Base class of the dense factorizations <tt>DenseLU</tt> and <tt>DenseCholesky</tt>
+ * <p>
+ * The matrix is factorized once in place on a flat row-major <tt>double[]</tt>.
+ * The factors are then reused for any number of right-hand sides, the determinant
+ * and the condition number estimate without factorizing again. Many right-hand
+ * sides are solved together, the columns are split into groups solved in parallel.
+ *
+ */
+public abstract class DenseFactorization {
+	/**
+	 * Size of the column panels of the blocked factorizations
+	 */
+	protected static final int NB = 64;
+	/**
+	 * Minimum number of right-hand sides per parallel task
+	 */
+	protected static final int RHS_GRAIN = 16;
+
+	protected int n;
+	/**
+	 * Factors, row-major, entry <tt>(i,j)</tt> is <tt>a[i*n+j]</tt>
+	 */
+	protected double[] a;
+	/**
+	 * 1-norm of the matrix before factorization
+	 */
+	protected double norm1;
+
+	protected DenseFactorization(double[][] A) {
+		n = A.length;
+		if(n == 0 || A[0].length != n)
+			throw new IllegalArgumentException("Matrix must be square.");
+		a = new double[n*n];
+		for(int i=0; i<n; i++)
+			System.arraycopy(A[i], 0, a, i*n, n);
+	}
+
+	protected DenseFactorization(int n, double[] A, boolean copy) {
+		if(A.length != n*n)
+			throw new IllegalArgumentException("Array length must be n*n.");
+		this.n = n;
+		this.a = copy ? A.clone() : A;
+	}
+
+	public int getDimension() {
+		return n;
+	}
+
+	/**
+	 * @return <tt>false</tt> if the factorization failed
+	 */
+	public abstract boolean isSuccessful();
+
+	public abstract double det();
+
+	/**
+	 * Solve <tt>A*X = B</tt> (or <tt>A'*X = B</tt>) in place for the columns
+	 * <tt>j0...j1-1</tt> of <tt>X</tt>, a row-major <tt>n*k</tt> array
+	 */
+	protected abstract void solve(double[] X, int k, int j0, int j1, boolean trans);
+
+	protected void checkSuccessful() {
+		if(!isSuccessful())
+			throw new RuntimeException("Matrix is singular.");
+	}
+
+	/**
+	 * Solve A*x = b
+	 *
+	 * @param b
+	 * @return x
+	 */
+	public double[] solve(double[] b) {
+		double[] x = new double[n];
+		solve(b, x);
+		return x;
+	}
+
+	/**
+	 * Solve A*x = b, <tt>x</tt> may be <tt>b</tt>
+	 *
+	 * @param b
+	 * @param x
+	 */
+	public void solve(double[] b, double[] x) {
+		if(b.length != n || x.length != n)
+			throw new IllegalArgumentException("Vector length must be "+n+".");
+		checkSuccessful();
+		if(x != b)
+			System.arraycopy(b, 0, x, 0, n);
+		solve(x, 1, 0, 1, false);
+	}
+
+	/**
+	 * Solve A'*x = b
+	 *
+	 * @param b
+	 * @return x
+	 */
+	public double[] solveTranspose(double[] b) {
+		if(b.length != n)
+			throw new IllegalArgumentException("Vector length must be "+n+".");
+		checkSuccessful();
+		double[] x = b.clone();
+		solve(x, 1, 0, 1, true);
+		return x;
+	}
+
+	/**
+	 * Solve A*X = B for all columns of <tt>B</tt>
+	 *
+	 * @param B <tt>n*k</tt>
+	 * @return X
+	 */
+	public double[][] solve(double[][] B) {
+		if(B.length != n)
+			throw new IllegalArgumentException("Matrix row dimensions must agree.");
+		int k = B[0].length;
+		double[] X = new double[n*k];
+		for(int i=0; i<n; i++)
+			System.arraycopy(B[i], 0, X, i*k, k);
+		solve(X, k);
+		double[][] rlt = new double[n][k];
+		for(int i=0; i<n; i++)
+			System.arraycopy(X, i*k, rlt[i], 0, k);
+		return rlt;
+	}
+
+	/**
+	 * Solve A*X = B in place, <tt>X</tt> is a row-major <tt>n*k</tt> array holding <tt>B</tt>
+	 *
+	 * @param X
+	 * @param k number of right-hand sides
+	 */
+	public void solve(double[] X, int k) {
+		if(X.length != n*k)
+			throw new IllegalArgumentException("Array length must be n*k.");
+		checkSuccessful();
+		if(Gemm.parallel && k >= 2*RHS_GRAIN && (long)n*n*k >= 64*64*64)
+			ForkJoinPool.commonPool().invoke(new SolveTask(X, k, 0, k));
+		else
+			solve(X, k, 0, k, false);
+	}
+
+	@SuppressWarnings("serial")
+	private class SolveTask extends RecursiveAction {
+		final double[] X;
+		final int k, j0, j1;
+
+		SolveTask(double[] X, int k, int j0, int j1) {
+			this.X = X;
+			this.k = k;
+			this.j0 = j0;
+			this.j1 = j1;
+		}
+
+		@Override
+		protected void compute() {
+			if(j1 - j0 < 2*RHS_GRAIN) {
+				solve(X, k, j0, j1, false);
+			} else {
+				int mid = (j0 + j1) >>> 1;
+				invokeAll(new SolveTask(X, k, j0, mid), new SolveTask(X, k, mid, j1));
+			}
+		}
+	}
+
+	/**
+	 * @return A^-1
+	 */
+	public double[][] inverse() {
+		double[][] I = new double[n][n];
+		for(int i=0; i<n; i++)
+			I[i][i] = 1.0;
+		return solve(I);
+	}
+
+	/**
+	 * @return 1-norm of the matrix before factorization
+	 */
+	public double norm1() {
+		return norm1;
+	}
+
+	/**
+	 * Estimate of the reciprocal condition number in 1-norm,
+	 * <tt>1/(|A|_1*|A^-1|_1)</tt>. <tt>|A^-1|_1</tt> is estimated by Hager's
+	 * method with a few solves with the factors, <tt>0</tt> if the factorization failed.
+	 *
+	 * @return
+	 */
+	public double rcond() {
+		if(!isSuccessful())
+			return 0.0;
+		if(norm1 == 0.0)
+			return 0.0;
+		return 1.0/(norm1*normInv1());
+	}
+
+	/**
+	 * Lower bound of <tt>|A^-1|_1</tt> (Hager, Higham)
+	 */
+	protected double normInv1() {
+		double[] x = new double[n];
+		Arrays.fill(x, 1.0/n);
+		double est = 0.0;
+		int last = -1;
+		for(int iter=0; iter<5; iter++) {
+			solve(x, 1, 0, 1, false);
+			double y1 = 0.0;
+			for(int i=0; i<n; i++)
+				y1 += Math.abs(x[i]);
+			if(iter > 0 && y1 <= est)
+				break;
+			est = y1;
+			for(int i=0; i<n; i++)
+				x[i] = x[i] >= 0.0 ? 1.0 : -1.0;
+			solve(x, 1, 0, 1, true);
+			int jmax = 0;
+			for(int i=1; i<n; i++)
+				if(Math.abs(x[i]) > Math.abs(x[jmax]))
+					jmax = i;
+			if(jmax == last)
+				break;
+			last = jmax;
+			Arrays.fill(x, 0.0);
+			x[jmax] = 1.0;
+		}
+		//Alternative estimate guarding against the cases Hager's method misses
+		for(int i=0; i<n; i++)
+			x[i] = (i%2 == 0 ? 1.0 : -1.0)*(1.0 + (n > 1 ? (double)i/(n-1) : 0.0));
+		solve(x, 1, 0, 1, false);
+		double alt = 0.0;
+		for(int i=0; i<n; i++)
+			alt += Math.abs(x[i]);
+		return Math.max(est, 2.0*alt/(3.0*n));
+	}
+
+	protected static double norm1(int n, double[] a) {
+		double[] colSum = new double[n];
+		for(int i=0; i<n; i++)
+			for(int j=0; j<n; j++)
+				colSum[j] += Math.abs(a[i*n+j]);
+		double max = 0.0;
+		for(int j=0; j<n; j++)
+			max = Math.max(max, colSum[j]);
+		return max;
+	}
+
+	/**
+	 * Run <tt>body.run(i0,i1)</tt> on row ranges of <tt>[begin,end)</tt>, in parallel
+	 * if the work <tt>(end-begin)*cost</tt> is large enough
+	 */
+	protected static void forRows(int begin, int end, long cost, RowBody body) {
+		if(!Gemm.parallel || (long)(end-begin)*cost < 64*64*64 || end-begin < 16)
+			body.run(begin, end);
+		else
+			ForkJoinPool.commonPool().invoke(new RowTask(begin, end, Math.max(8, (int)(64*64*64/Math.max(1, cost))), body));
+	}
+
+	protected interface RowBody {
+		void run(int i0, int i1);
+	}
+
+	@SuppressWarnings("serial")
+	private static class RowTask extends RecursiveAction {
+		final int i0, i1, grain;
+		final RowBody body;
+
+		RowTask(int i0, int i1, int grain, RowBody body) {
+			this.i0 = i0;
+			this.i1 = i1;
+			this.grain = grain;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if(i1 - i0 <= grain) {
+				body.run(i0, i1);
+			} else {
+				int mid = (i0 + i1) >>> 1;
+				invokeAll(new RowTask(i0, mid, grain, body), new RowTask(mid, i1, grain, body));
+			}
+		}
+	}
+}
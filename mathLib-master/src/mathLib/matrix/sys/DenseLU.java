@@ -0,0 +1,227 @@
+package mathLib.matrix.sys;
+
+/**
+ * LU decomposition with partial pivoting <tt>A(piv,:) = L*U</tt> of a dense square matrix
+ * <p>
+ * Right-looking blocked algorithm: each panel of <tt>NB</tt> columns is factorized,
+ * then the block row of <tt>U</tt> is computed and the trailing matrix is updated by
+ * a rank-<tt>NB</tt> product, which is split into row blocks processed in parallel.
+ * <p>
+ * Factorize once and reuse the object to solve any number of right-hand sides:
+ * <pre>
+ * DenseLU lu = new DenseLU(A);
+ * double[][] X = lu.solve(B); //all columns of B at once
+ * double[] x = lu.solve(b);
+ * double det = lu.det(), rcond = lu.rcond();
+ * </pre>
+ *
+ */
+public class DenseLU extends DenseFactorization {
+	protected int[] piv;
+	protected int pivSign = 1;
+	protected boolean singular = false;
+
+	/**
+	 * Factorize a copy of <tt>A</tt>
+	 *
+	 * @param A
+	 */
+	public DenseLU(double[][] A) {
+		super(A);
+		factorize();
+	}
+
+	/**
+	 * Factorize the row-major <tt>n*n</tt> array <tt>A</tt>
+	 *
+	 * @param n
+	 * @param A
+	 * @param copy <tt>false</tt> to factorize in place, <tt>A</tt> is overwritten by the factors
+	 */
+	public DenseLU(int n, double[] A, boolean copy) {
+		super(n, A, copy);
+		factorize();
+	}
+
+	protected void factorize() {
+		norm1 = norm1(n, a);
+		piv = new int[n];
+		for(int i=0; i<n; i++)
+			piv[i] = i;
+		for(int k0=0; k0<n; k0+=NB) {
+			int k1 = Math.min(n, k0+NB);
+			factorizePanel(k0, k1);
+			if(k1 == n)
+				break;
+
+			//U12 = L11^-1 * A12
+			for(int k=k0; k<k1; k++) {
+				for(int i=k+1; i<k1; i++) {
+					double l = a[i*n+k];
+					if(l == 0.0)
+						continue;
+					for(int j=k1; j<n; j++)
+						a[i*n+j] -= l*a[k*n+j];
+				}
+			}
+
+			//A22 = A22 - L21*U12
+			final int p0 = k0, p1 = k1;
+			forRows(k1, n, (long)(k1-k0)*(n-k1), (i0, i1) -> {
+				for(int i=i0; i<i1; i++) {
+					int ri = i*n;
+					for(int p=p0; p<p1; p++) {
+						double l = a[ri+p];
+						if(l == 0.0)
+							continue;
+						int rp = p*n;
+						for(int j=p1; j<n; j++)
+							a[ri+j] -= l*a[rp+j];
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Unblocked LU of the columns <tt>k0...k1-1</tt>, rows <tt>k0...n-1</tt>.
+	 * Row interchanges are applied to the whole rows.
+	 */
+	protected void factorizePanel(int k0, int k1) {
+		for(int k=k0; k<k1; k++) {
+			int p = k;
+			double max = Math.abs(a[k*n+k]);
+			for(int i=k+1; i<n; i++) {
+				double v = Math.abs(a[i*n+k]);
+				if(v > max) {
+					max = v;
+					p = i;
+				}
+			}
+			if(p != k) {
+				for(int j=0; j<n; j++) {
+					double t = a[p*n+j];
+					a[p*n+j] = a[k*n+j];
+					a[k*n+j] = t;
+				}
+				int t = piv[p]; piv[p] = piv[k]; piv[k] = t;
+				pivSign = -pivSign;
+			}
+			double d = a[k*n+k];
+			if(d == 0.0) {
+				singular = true;
+				continue;
+			}
+			for(int i=k+1; i<n; i++) {
+				double l = a[i*n+k] /= d;
+				if(l == 0.0)
+					continue;
+				for(int j=k+1; j<k1; j++)
+					a[i*n+j] -= l*a[k*n+j];
+			}
+		}
+	}
+
+	@Override
+	public boolean isSuccessful() {
+		return !singular;
+	}
+
+	public boolean isNonsingular() {
+		return !singular;
+	}
+
+	/**
+	 * @return min |U(k,k)|, the smallest pivot in absolute value
+	 */
+	public double minPivot() {
+		double min = Double.POSITIVE_INFINITY;
+		for(int k=0; k<n; k++)
+			min = Math.min(min, Math.abs(a[k*n+k]));
+		return min;
+	}
+
+	/**
+	 * @return the row permutation <tt>piv</tt>, row <tt>i</tt> of <tt>L*U</tt>
+	 *         is row <tt>piv[i]</tt> of <tt>A</tt>
+	 */
+	public int[] getPivot() {
+		return piv.clone();
+	}
+
+	@Override
+	public double det() {
+		double d = pivSign;
+		for(int i=0; i<n; i++)
+			d *= a[i*n+i];
+		return d;
+	}
+
+	@Override
+	protected void solve(double[] X, int k, int j0, int j1, boolean trans) {
+		int w = j1 - j0;
+		double[] t = new double[n*w];
+		if(!trans) {
+			for(int i=0; i<n; i++)
+				System.arraycopy(X, piv[i]*k+j0, t, i*w, w);
+			//L*Y = P*B
+			for(int i=0; i<n; i++) {
+				int ri = i*n;
+				for(int p=0; p<i; p++) {
+					double l = a[ri+p];
+					if(l == 0.0)
+						continue;
+					for(int j=0; j<w; j++)
+						t[i*w+j] -= l*t[p*w+j];
+				}
+			}
+			//U*X = Y
+			for(int i=n-1; i>=0; i--) {
+				int ri = i*n;
+				for(int p=i+1; p<n; p++) {
+					double u = a[ri+p];
+					if(u == 0.0)
+						continue;
+					for(int j=0; j<w; j++)
+						t[i*w+j] -= u*t[p*w+j];
+				}
+				double d = a[ri+i];
+				for(int j=0; j<w; j++)
+					t[i*w+j] /= d;
+			}
+			for(int i=0; i<n; i++)
+				System.arraycopy(t, i*w, X, i*k+j0, w);
+		} else {
+			for(int i=0; i<n; i++)
+				System.arraycopy(X, i*k+j0, t, i*w, w);
+			//U'*Y = B, by rows of U
+			for(int p=0; p<n; p++) {
+				int rp = p*n;
+				double d = a[rp+p];
+				for(int j=0; j<w; j++)
+					t[p*w+j] /= d;
+				for(int i=p+1; i<n; i++) {
+					double u = a[rp+i];
+					if(u == 0.0)
+						continue;
+					for(int j=0; j<w; j++)
+						t[i*w+j] -= u*t[p*w+j];
+				}
+			}
+			//L'*Z = Y, by rows of L
+			for(int p=n-1; p>=0; p--) {
+				int rp = p*n;
+				for(int i=0; i<p; i++) {
+					double l = a[rp+i];
+					if(l == 0.0)
+						continue;
+					for(int j=0; j<w; j++)
+						t[i*w+j] -= l*t[p*w+j];
+				}
+			}
+			//X = P'*Z
+			for(int i=0; i<n; i++)
+				System.arraycopy(t, i*w, X, piv[i]*k+j0, w);
+		}
+	}
+}
@@ -2,6 +2,10 @@ package mathLib.matrix.sys;
 
 /**
  * Solving A*x = y ;
+ * <p>
+ * Each construction factorizes <tt>A</tt> again. To solve the same matrix with
+ * many right-hand sides, use <tt>DenseLU</tt> (or <tt>DenseCholesky</tt>) once and
+ * call its <tt>solve</tt> methods.
  *
  */
 
@@ -13,6 +17,12 @@ public class LinearSystem {
 		if (A[0].length != n || Y.length != n || X.length != n) {
 			System.out.println("Error in LinearSystem, inconsistent array sizes.");
 		}
+		DenseLU lu = new DenseLU(A);
+		if (lu.isNonsingular() && lu.minPivot() >= 1.0E-20) {
+			lu.solve(Y, X);
+			return;
+		}
+		// singular or near singular (same test as solve()), eliminate redundant rows
 		// build working data structure
 		for (int i = 0; i < n; i++) {
 			for (int j = 0; j < n; j++)
@@ -22,6 +32,19 @@ public class LinearSystem {
 		solve(n, B, X);
 	}
 
+	/**
+	 * Solve A*X = Y for all columns of <tt>Y</tt> with one factorization of <tt>A</tt>
+	 *
+	 * @param A
+	 * @param Y <tt>n*k</tt>
+	 * @param X <tt>n*k</tt>, solution
+	 */
+	public LinearSystem(final double A[][], final double Y[][], double X[][]) {
+		double[][] rlt = new DenseLU(A).solve(Y);
+		for (int i = 0; i < rlt.length; i++)
+			System.arraycopy(rlt[i], 0, X[i], 0, rlt[i].length);
+	}
+
 	LinearSystem(int n, final double A[][], final double Y[], double X[]) {
 		double B[][] = new double[n][n + 1]; // working matrix
 		// build working data structure
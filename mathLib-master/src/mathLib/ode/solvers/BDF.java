@@ -0,0 +1,463 @@
+package mathLib.ode.solvers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mathLib.matrix.sys.DenseLU;
+
+/**
+ * Variable order (1 to 5), variable step backward differentiation formulas for the
+ * stiff system y' = f(x, y), in the quasi-constant step form of Shampine and Reichelt.
+ *
+ * The solution is kept as the backward differences D[0..order+2] for the current
+ * step, which are rescaled when the step changes. The formula of order k
+ *
+ *   sum_{j=1..k} gamma_j D^j y_{n+1} = h f(x_{n+1}, y_{n+1}),  gamma_j = 1 + 1/2 + ... + 1/j
+ *
+ * is solved by a simplified Newton iteration with the matrix I - h/gamma_k J. The
+ * Jacobian is computed again only when the iteration does not converge, and the LU
+ * factorization when the step or the order change. The order is chosen after k+1
+ * steps of the same size from the error estimates of the orders k-1, k and k+1.
+ */
+public class BDF {
+
+	static final int MAX_ORDER = 5 ;
+	static final int NEWTON_MAXITER = 4 ;
+	static final double MIN_FACTOR = 0.2, MAX_FACTOR = 10.0 ;
+
+	// gamma_k = sum_{j=1..k} 1/j, the error constant of the order k is 1/(k+1)
+	static final double[] GAMMA = new double[MAX_ORDER+1] ;
+	static {
+		for(int k=1; k<=MAX_ORDER; k++)
+			GAMMA[k] = GAMMA[k-1] + 1.0/k ;
+	}
+
+	DerivnFunction func ;
+	JacobianFunction jacobian ; // null: forward differences
+	double x0 ;
+	double[] y0 ;
+	int numEquation ;
+
+	double relTol = 1e-6 ;
+	double absTol = 1e-10 ;
+	double initialStep = 0.0 ; // 0: chosen from the derivatives at x0
+	double maxStep = Double.POSITIVE_INFINITY ;
+	int maxNumSteps = 100000 ;
+
+	int numSteps = 0 ;
+	int numRejected = 0 ;
+	int numEvaluations = 0 ;
+	int numJacobians = 0 ;
+	int numDecompositions = 0 ;
+
+	// state of the current integration
+	double[][] dfdy ;
+	DenseLU lu ;
+	double[] yPredict, psi, scale, yNew, fNew, d, dy, rhs ;
+	int numIterations ;
+
+	public BDF(DerivnFunction func, double x0, double... y0) {
+		this.func = func ;
+		setX0(x0) ;
+		setY0(y0) ;
+	}
+
+	public void setX0(double x0) {
+		this.x0 = x0 ;
+	}
+
+	public void setY0(double... y0) {
+		this.y0 = y0 ;
+		this.numEquation = y0.length ;
+	}
+
+	/**
+	 * exact Jacobian, by default it is approximated by forward differences
+	 */
+	public void setJacobian(JacobianFunction jacobian) {
+		this.jacobian = jacobian ;
+	}
+
+	/**
+	 * @param relTol relative tolerance of the local error
+	 * @param absTol absolute tolerance of the local error
+	 */
+	public void setTolerances(double relTol, double absTol) {
+		this.relTol = relTol ;
+		this.absTol = absTol ;
+	}
+
+	/**
+	 * First step size, by default it is chosen from the derivatives at x0
+	 */
+	public void setInitialStepSize(double h) {
+		this.initialStep = Math.abs(h) ;
+	}
+
+	public void setMaximumStepSize(double h) {
+		this.maxStep = Math.abs(h) ;
+	}
+
+	public void setMaximumNumberOfSteps(int maxNumSteps) {
+		this.maxNumSteps = maxNumSteps ;
+	}
+
+	/**
+	 * solution at x1
+	 * @param x1
+	 * @return y(x1)
+	 */
+	public double[] integrate(double x1) {
+		double[][] y = integrate(new double[] {x1}) ;
+		double[] y1 = new double[numEquation] ;
+		for(int k=0; k<numEquation; k++)
+			y1[k] = y[k][0] ;
+		return y1 ;
+	}
+
+	/**
+	 * solution at all the points x1, with one integration on each side of x0
+	 * @param x1 output points, in any order
+	 * @return y[k][i] = y_k(x1[i])
+	 */
+	public double[][] integrate(double[] x1) {
+		numSteps = 0 ;
+		numRejected = 0 ;
+		numEvaluations = 0 ;
+		numJacobians = 0 ;
+		numDecompositions = 0 ;
+		double[][] y = new double[numEquation][x1.length] ;
+		List<Integer> forward = new ArrayList<>(), backward = new ArrayList<>() ;
+		for(int i=0; i<x1.length; i++) {
+			if(x1[i] > x0)
+				forward.add(i) ;
+			else if(x1[i] < x0)
+				backward.add(i) ;
+			else
+				for(int k=0; k<numEquation; k++)
+					y[k][i] = y0[k] ;
+		}
+		forward.sort((i, j) -> Double.compare(x1[i], x1[j])) ;
+		backward.sort((i, j) -> Double.compare(x1[j], x1[i])) ;
+		solve(x1, forward, 1.0, y) ;
+		solve(x1, backward, -1.0, y) ;
+		return y ;
+	}
+
+	private void evaluate(double x, double[] y, double[] f) {
+		func.values(x, y, f) ;
+		numEvaluations++ ;
+	}
+
+	private void updateJacobian(double x, double[] y, double[] f) {
+		if(jacobian != null)
+			jacobian.jacobian(x, y, dfdy) ;
+		else {
+			JacobianFunction.finiteDifference(func, x, y, f, dfdy) ;
+			numEvaluations += numEquation ;
+		}
+		numJacobians++ ;
+	}
+
+	// LU of I - c*J, null if it is singular
+	private void decompose(double c) {
+		int n = numEquation ;
+		double[] a = new double[n*n] ;
+		for(int i=0; i<n; i++) {
+			for(int j=0; j<n; j++)
+				a[i*n+j] = -c*dfdy[i][j] ;
+			a[i*n+i] += 1.0 ;
+		}
+		lu = new DenseLU(n, a, false) ;
+		numDecompositions++ ;
+		if(!lu.isNonsingular())
+			lu = null ;
+	}
+
+	// root mean square norm of v/scale
+	private double norm(double[] v, double[] scale) {
+		double sum = 0.0 ;
+		for(int i=0; i<numEquation; i++) {
+			double r = v[i]/scale[i] ;
+			sum += r*r ;
+		}
+		return Math.sqrt(sum/numEquation) ;
+	}
+
+	// integrates from x0 in the direction dir, through the sorted output points
+	private void solve(double[] xs, List<Integer> points, double dir, double[][] out) {
+		if(points.isEmpty())
+			return ;
+		int n = numEquation ;
+		double xEnd = xs[points.get(points.size()-1)] ;
+		double x = x0 ;
+		double[] f = new double[n], yOut = new double[n], error = new double[n] ;
+		yPredict = new double[n] ; psi = new double[n] ; scale = new double[n] ;
+		yNew = new double[n] ; fNew = new double[n] ;
+		d = new double[n] ; dy = new double[n] ; rhs = new double[n] ;
+		double[][] D = new double[MAX_ORDER+3][] ;
+		D[0] = Arrays.copyOf(y0, n) ;
+		for(int j=1; j<D.length; j++)
+			D[j] = new double[n] ;
+		evaluate(x, D[0], f) ;
+		double hAbs = (initialStep > 0) ? Math.min(initialStep, maxStep) : initialStepSize(x, D[0], f, dir, xEnd) ;
+		hAbs = Math.min(hAbs, Math.abs(xEnd-x)) ;
+		for(int i=0; i<n; i++)
+			D[1][i] = dir*hAbs*f[i] ;
+		dfdy = new double[n][n] ;
+		updateJacobian(x, D[0], f) ;
+		lu = null ;
+		double newtonTol = Math.max(10*Math.ulp(1.0)/relTol, Math.min(0.03, Math.sqrt(relTol))) ;
+		int order = 1 ;
+		int equalSteps = 0 ;
+		int next = 0 ;
+		int steps = 0 ;
+		while(next < points.size()) {
+			if(steps++ >= maxNumSteps)
+				throw new IllegalStateException("Maximum number of steps reached at x = " + x) ;
+			double minStep = 10*Math.ulp(Math.abs(x)) ;
+			if(hAbs > maxStep) {
+				changeDifferences(D, order, maxStep/hAbs) ;
+				hAbs = maxStep ;
+				equalSteps = 0 ;
+				lu = null ;
+			}
+			boolean currentJacobian = false ;
+			double xNew, step, errorNorm, safety ;
+			while(true) {
+				if(hAbs < minStep)
+					throw new IllegalStateException("Step size too small at x = " + x) ;
+				xNew = x + dir*hAbs ;
+				if(dir*(xNew - xEnd) > 0) {
+					xNew = xEnd ;
+					changeDifferences(D, order, Math.abs(xNew - x)/hAbs) ;
+					equalSteps = 0 ;
+					lu = null ;
+				}
+				step = xNew - x ;
+				hAbs = Math.abs(step) ;
+				for(int i=0; i<n; i++) {
+					double yp = 0.0, ps = 0.0 ;
+					for(int j=0; j<=order; j++)
+						yp += D[j][i] ;
+					for(int j=1; j<=order; j++)
+						ps += GAMMA[j]*D[j][i] ;
+					yPredict[i] = yp ;
+					psi[i] = ps/GAMMA[order] ;
+					scale[i] = absTol + relTol*Math.abs(yp) ;
+				}
+				double c = step/GAMMA[order] ;
+				boolean converged = false ;
+				while(!converged) {
+					if(lu == null)
+						decompose(c) ;
+					converged = (lu != null) && newton(xNew, c, newtonTol) ;
+					if(!converged) {
+						if(currentJacobian)
+							break ;
+						evaluate(xNew, yPredict, fNew) ;
+						updateJacobian(xNew, yPredict, fNew) ;
+						lu = null ;
+						currentJacobian = true ;
+					}
+				}
+				if(!converged) {
+					numRejected++ ;
+					hAbs *= 0.5 ;
+					changeDifferences(D, order, 0.5) ;
+					equalSteps = 0 ;
+					lu = null ;
+					continue ;
+				}
+				safety = 0.9*(2*NEWTON_MAXITER + 1)/(2*NEWTON_MAXITER + numIterations) ;
+				for(int i=0; i<n; i++) {
+					scale[i] = absTol + relTol*Math.abs(yNew[i]) ;
+					error[i] = d[i]/(order+1) ;
+				}
+				errorNorm = norm(error, scale) ;
+				if(errorNorm > 1.0) {
+					// the iteration converged, the factorization is kept for the smaller step
+					numRejected++ ;
+					double factor = Math.max(MIN_FACTOR, safety*Math.pow(errorNorm, -1.0/(order+1))) ;
+					hAbs *= factor ;
+					changeDifferences(D, order, factor) ;
+					equalSteps = 0 ;
+					continue ;
+				}
+				break ;
+			}
+			numSteps++ ;
+			equalSteps++ ;
+			// differences of the new point
+			for(int i=0; i<n; i++) {
+				D[order+2][i] = d[i] - D[order+1][i] ;
+				D[order+1][i] = d[i] ;
+			}
+			for(int j=order; j>=0; j--)
+				for(int i=0; i<n; i++)
+					D[j][i] += D[j+1][i] ;
+			x = xNew ;
+			while(next < points.size() && dir*(xs[points.get(next)] - x) <= 0) {
+				int i = points.get(next++) ;
+				interpolate(D, order, x, step, xs[i], yOut) ;
+				for(int k=0; k<n; k++)
+					out[k][i] = (xs[i] == x) ? D[0][k] : yOut[k] ;
+			}
+			if(equalSteps < order+1)
+				continue ;
+			// order of the next step
+			double errorLower = Double.POSITIVE_INFINITY, errorHigher = Double.POSITIVE_INFINITY ;
+			if(order > 1) {
+				for(int i=0; i<n; i++)
+					error[i] = D[order][i]/order ;
+				errorLower = norm(error, scale) ;
+			}
+			if(order < MAX_ORDER) {
+				for(int i=0; i<n; i++)
+					error[i] = D[order+2][i]/(order+2) ;
+				errorHigher = norm(error, scale) ;
+			}
+			double[] factors = { Math.pow(errorLower, -1.0/order), Math.pow(errorNorm, -1.0/(order+1)),
+					Math.pow(errorHigher, -1.0/(order+2)) } ;
+			int best = 0 ;
+			for(int m=1; m<3; m++)
+				if(factors[m] > factors[best])
+					best = m ;
+			order += best - 1 ;
+			double factor = Math.min(MAX_FACTOR, safety*factors[best]) ;
+			hAbs *= factor ;
+			changeDifferences(D, order, factor) ;
+			equalSteps = 0 ;
+			lu = null ;
+		}
+	}
+
+	// simplified Newton iteration for yNew = yPredict + d, false if it does not converge
+	private boolean newton(double xNew, double c, double tol) {
+		int n = numEquation ;
+		System.arraycopy(yPredict, 0, yNew, 0, n) ;
+		Arrays.fill(d, 0.0) ;
+		double dyNormOld = -1.0 ;
+		for(int k=0; k<NEWTON_MAXITER; k++) {
+			evaluate(xNew, yNew, fNew) ;
+			for(int i=0; i<n; i++) {
+				if(!Double.isFinite(fNew[i]))
+					return false ;
+				rhs[i] = c*fNew[i] - psi[i] - d[i] ;
+			}
+			lu.solve(rhs, dy) ;
+			double dyNorm = norm(dy, scale) ;
+			double rate = (dyNormOld < 0) ? 0.0 : dyNorm/dyNormOld ;
+			if(dyNormOld >= 0 && (rate >= 1.0 || Math.pow(rate, NEWTON_MAXITER-k)/(1.0-rate)*dyNorm > tol))
+				return false ;
+			for(int i=0; i<n; i++) {
+				yNew[i] += dy[i] ;
+				d[i] += dy[i] ;
+			}
+			if(dyNorm == 0.0 || (dyNormOld >= 0 && rate/(1.0-rate)*dyNorm < tol)) {
+				numIterations = k+1 ;
+				return true ;
+			}
+			dyNormOld = dyNorm ;
+		}
+		return false ;
+	}
+
+	// interpolating polynomial of the differences at xOut, the last step ends at x
+	private void interpolate(double[][] D, int order, double x, double step, double xOut, double[] y) {
+		System.arraycopy(D[0], 0, y, 0, numEquation) ;
+		double p = 1.0 ;
+		for(int j=1; j<=order; j++) {
+			p *= (xOut - (x - (j-1)*step))/(j*step) ;
+			for(int i=0; i<numEquation; i++)
+				y[i] += p*D[j][i] ;
+		}
+	}
+
+	// R[i][j] = prod_{m=1..i} (m - 1 - factor*j)/m
+	private static double[][] computeR(int order, double factor) {
+		double[][] R = new double[order+1][order+1] ;
+		Arrays.fill(R[0], 1.0) ;
+		for(int i=1; i<=order; i++)
+			for(int j=1; j<=order; j++)
+				R[i][j] = R[i-1][j]*(i - 1 - factor*j)/i ;
+		return R ;
+	}
+
+	// differences of the same polynomial for the step multiplied by factor
+	private static void changeDifferences(double[][] D, int order, double factor) {
+		double[][] R = computeR(order, factor), U = computeR(order, 1.0) ;
+		int n = D[0].length ;
+		double[][] RU = new double[order+1][order+1] ;
+		for(int i=0; i<=order; i++)
+			for(int j=0; j<=order; j++)
+				for(int m=0; m<=order; m++)
+					RU[i][j] += R[i][m]*U[m][j] ;
+		double[][] newD = new double[order+1][n] ;
+		for(int j=0; j<=order; j++)
+			for(int i=0; i<=order; i++)
+				if(RU[i][j] != 0.0)
+					for(int k=0; k<n; k++)
+						newD[j][k] += RU[i][j]*D[i][k] ;
+		for(int j=0; j<=order; j++)
+			D[j] = newD[j] ;
+	}
+
+	// starting step size of Hairer, Norsett and Wanner for a method of order 1
+	private double initialStepSize(double x, double[] y, double[] f, double dir, double xEnd) {
+		int n = numEquation ;
+		double[] sk = new double[n] ;
+		for(int i=0; i<n; i++)
+			sk[i] = absTol + relTol*Math.abs(y[i]) ;
+		double d0 = norm(y, sk), d1 = norm(f, sk) ;
+		double h0 = (d0 < 1e-5 || d1 < 1e-5) ? 1e-6 : 0.01*d0/d1 ;
+		h0 = Math.min(Math.min(h0, maxStep), Math.abs(xEnd-x)) ;
+		double[] y1 = new double[n], f1 = new double[n] ;
+		for(int i=0; i<n; i++)
+			y1[i] = y[i] + dir*h0*f[i] ;
+		evaluate(x + dir*h0, y1, f1) ;
+		for(int i=0; i<n; i++)
+			f1[i] -= f[i] ;
+		double d2 = norm(f1, sk)/h0 ;
+		double dmax = Math.max(d1, d2) ;
+		double h1 = (dmax <= 1e-15) ? Math.max(1e-6, h0*1e-3) : Math.sqrt(0.01/dmax) ;
+		return Math.min(Math.min(100*h0, h1), maxStep) ;
+	}
+
+	/**
+	 * Number of accepted steps of the last integration
+	 */
+	public int getNumberOfSteps() {
+		return numSteps ;
+	}
+
+	/**
+	 * Number of rejected steps of the last integration
+	 */
+	public int getNumberOfRejectedSteps() {
+		return numRejected ;
+	}
+
+	/**
+	 * Number of evaluations of the derivative in the last integration
+	 */
+	public int getNumberOfEvaluations() {
+		return numEvaluations ;
+	}
+
+	/**
+	 * Number of Jacobians of the last integration
+	 */
+	public int getNumberOfJacobians() {
+		return numJacobians ;
+	}
+
+	/**
+	 * Number of LU factorizations of the last integration
+	 */
+	public int getNumberOfDecompositions() {
+		return numDecompositions ;
+	}
+
+}
@@ -3,4 +3,13 @@ package mathLib.ode.solvers;
 @FunctionalInterface
 public interface DerivFunction {
 	double value(double x, double y) ; // y' = f(x,y) --> use as lambda expression
+
+	/**
+	 * Values at the points <tt>(x[i], y[i])</tt> into <tt>f</tt>, override it
+	 * when the cost of the derivative can be shared between the points
+	 */
+	default void value(double[] x, double[] y, double[] f) {
+		for(int i=0; i<f.length; i++)
+			f[i] = value(x[i], y[i]) ;
+	}
 }
@@ -3,4 +3,21 @@ package mathLib.ode.solvers;
 @FunctionalInterface
 public interface DerivnFunction {
 	double[] values(double x, double... y) ; // represents n-dimensional array f_1, f_2, ..., f_n
+
+	/**
+	 * Derivative at <tt>(x, y)</tt> written into <tt>dydx</tt>, override it to avoid
+	 * the allocation of the returned array
+	 */
+	default void values(double x, double[] y, double[] dydx) {
+		System.arraycopy(values(x, y), 0, dydx, 0, dydx.length) ;
+	}
+
+	/**
+	 * Derivatives at the states <tt>(x[i], y[i])</tt> into <tt>dydx[i]</tt>, override it
+	 * when the cost of the derivative can be shared between the states
+	 */
+	default void values(double[] x, double[][] y, double[][] dydx) {
+		for(int i=0; i<x.length; i++)
+			values(x[i], y[i], dydx[i]) ;
+	}
 }
@@ -0,0 +1,94 @@
+package mathLib.ode.solvers;
+
+/**
+ * Dormand-Prince 5(4) pair (DOPRI5): 7 stages, the last one is the first of the
+ * next step (FSAL), with the continuous extension of order 4 of Shampine.
+ */
+public class DormandPrince54 extends EmbeddedRungeKutta {
+
+	static final double C2 = 1.0/5.0, C3 = 3.0/10.0, C4 = 4.0/5.0, C5 = 8.0/9.0 ;
+
+	static final double A21 = 1.0/5.0 ;
+	static final double A31 = 3.0/40.0, A32 = 9.0/40.0 ;
+	static final double A41 = 44.0/45.0, A42 = -56.0/15.0, A43 = 32.0/9.0 ;
+	static final double A51 = 19372.0/6561.0, A52 = -25360.0/2187.0, A53 = 64448.0/6561.0, A54 = -212.0/729.0 ;
+	static final double A61 = 9017.0/3168.0, A62 = -355.0/33.0, A63 = 46732.0/5247.0, A64 = 49.0/176.0,
+			A65 = -5103.0/18656.0 ;
+	static final double A71 = 35.0/384.0, A73 = 500.0/1113.0, A74 = 125.0/192.0, A75 = -2187.0/6784.0,
+			A76 = 11.0/84.0 ;
+
+	// difference of the 5th and 4th order weights
+	static final double E1 = 71.0/57600.0, E3 = -71.0/16695.0, E4 = 71.0/1920.0, E5 = -17253.0/339200.0,
+			E6 = 22.0/525.0, E7 = -1.0/40.0 ;
+
+	// continuous extension
+	static final double D1 = -12715105075.0/11282082432.0, D3 = 87487479700.0/32700410799.0,
+			D4 = -10690763975.0/1880347072.0, D5 = 701980252875.0/199316789632.0,
+			D6 = -1453857185.0/822651844.0, D7 = 69997945.0/29380423.0 ;
+
+	double[] k2, k3, k4, k5, k6, yTemp, err ;
+	double[] r1, r2, r3, r4, r5 ;
+
+	public DormandPrince54(DerivnFunction func, double x0, double... y0) {
+		super(func, x0, y0, 0.2, 10.0) ;
+	}
+
+	@Override
+	int getOrder() {
+		return 5 ;
+	}
+
+	@Override
+	void allocate(int n) {
+		k2 = new double[n] ; k3 = new double[n] ; k4 = new double[n] ;
+		k5 = new double[n] ; k6 = new double[n] ;
+		yTemp = new double[n] ; err = new double[n] ;
+		r1 = new double[n] ; r2 = new double[n] ; r3 = new double[n] ;
+		r4 = new double[n] ; r5 = new double[n] ;
+	}
+
+	@Override
+	double attemptStep(double x, double[] y, double[] k1, double h, double[] yNew, double[] k7) {
+		int n = numEquation ;
+		for(int i=0; i<n; i++)
+			yTemp[i] = y[i] + h*A21*k1[i] ;
+		evaluate(x+C2*h, yTemp, k2) ;
+		for(int i=0; i<n; i++)
+			yTemp[i] = y[i] + h*(A31*k1[i] + A32*k2[i]) ;
+		evaluate(x+C3*h, yTemp, k3) ;
+		for(int i=0; i<n; i++)
+			yTemp[i] = y[i] + h*(A41*k1[i] + A42*k2[i] + A43*k3[i]) ;
+		evaluate(x+C4*h, yTemp, k4) ;
+		for(int i=0; i<n; i++)
+			yTemp[i] = y[i] + h*(A51*k1[i] + A52*k2[i] + A53*k3[i] + A54*k4[i]) ;
+		evaluate(x+C5*h, yTemp, k5) ;
+		for(int i=0; i<n; i++)
+			yTemp[i] = y[i] + h*(A61*k1[i] + A62*k2[i] + A63*k3[i] + A64*k4[i] + A65*k5[i]) ;
+		evaluate(x+h, yTemp, k6) ;
+		for(int i=0; i<n; i++)
+			yNew[i] = y[i] + h*(A71*k1[i] + A73*k3[i] + A74*k4[i] + A75*k5[i] + A76*k6[i]) ;
+		evaluate(x+h, yNew, k7) ;
+		for(int i=0; i<n; i++)
+			err[i] = h*(E1*k1[i] + E3*k3[i] + E4*k4[i] + E5*k5[i] + E6*k6[i] + E7*k7[i]) ;
+		return errorNorm(err, y, yNew) ;
+	}
+
+	@Override
+	void prepareDenseOutput() {
+		for(int i=0; i<numEquation; i++) {
+			r1[i] = yOld[i] ;
+			r2[i] = yNew[i] - yOld[i] ;
+			r3[i] = h*fOld[i] - r2[i] ;
+			r4[i] = r2[i] - h*fNew[i] - r3[i] ;
+			r5[i] = h*(D1*fOld[i] + D3*k3[i] + D4*k4[i] + D5*k5[i] + D6*k6[i] + D7*fNew[i]) ;
+		}
+	}
+
+	@Override
+	void interpolate(double theta, double[] y) {
+		double s1 = 1.0 - theta ;
+		for(int i=0; i<numEquation; i++)
+			y[i] = r1[i] + theta*(r2[i] + s1*(r3[i] + theta*(r4[i] + s1*r5[i]))) ;
+	}
+
+}
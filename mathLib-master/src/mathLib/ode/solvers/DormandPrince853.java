@@ -0,0 +1,174 @@
+package mathLib.ode.solvers;
+
+/**
+ * Dormand-Prince 8th order method (DOP853 of Hairer and Wanner): 12 stages and a
+ * 13th one that is the first of the next step, the error is estimated with the
+ * embedded 5th and 3rd order solutions. The continuous extension of order 7 takes
+ * 3 more stages, only on the steps with output points.
+ */
+public class DormandPrince853 extends EmbeddedRungeKutta {
+
+	// nodes of the stages 2 to 16
+	static final double[] C = { 0.0, 0.05260015195876774, 0.0789002279381516, 0.1183503419072274,
+			0.28164965809277265, 0.3333333333333333, 0.25, 0.3076923076923077, 0.6512820512820513, 0.6,
+			0.8571428571428571, 1.0, 1.0, 0.1, 0.2, 0.7777777777777778 } ;
+
+	// A[s][j]: weight of stage j in stage s (0-based), stage 12 is the solution
+	static final double[][] A = {
+		{},
+		{ 0.05260015195876774 },
+		{ 0.0197250569845379, 0.0591751709536137 },
+		{ 0.02958758547680685, 0.0, 0.08876275643042056 },
+		{ 0.24136513415926666, 0.0, -0.884549479328286, 0.9248340032617919 },
+		{ 0.037037037037037035, 0.0, 0.0, 0.1708286087294739, 0.12546768756682242 },
+		{ 0.037109375, 0.0, 0.0, 0.17025221101954402, 0.060216538980455966, -0.017578125 },
+		{ 0.03709200011850479, 0.0, 0.0, 0.17038392571223998, 0.1072620304463733, -0.015319437748624402,
+			0.008273789163814023 },
+		{ 0.6241109587160757, 0.0, 0.0, -3.360892629446941, -0.8682193468417261, 27.59209969944671,
+			20.154067550477894, -43.48988418106996 },
+		{ 0.47766253643826434, 0.0, 0.0, -2.4881146199716677, -0.5902908268368431, 21.230051448181193,
+			15.279233632882423, -33.28821096898486, -0.020331201708508627 },
+		{ -0.9371424300859873, 0.0, 0.0, 5.186372428844064, 1.09143734899673, -8.149787010746927,
+			-18.52006565999696, 22.739487099350505, 2.4936055526796523, -3.0467644718982196 },
+		{ 2.273310147516538, 0.0, 0.0, -10.53449546673725, -2.000872058224863, -17.9589318631188,
+			27.94888452941996, -2.8589982771350235, -8.87285693353063, 12.360567175794303, 0.6433927460157636 },
+		{ 0.054293734116568765, 0.0, 0.0, 0.0, 0.0, 4.450312892752409, 1.8915178993145003, -5.801203960010585,
+			0.3111643669578199, -0.1521609496625161, 0.20136540080403034, 0.04471061572777259 },
+		// stages of the continuous extension
+		{ 0.056167502283047954, 0.0, 0.0, 0.0, 0.0, 0.0, 0.25350021021662483, -0.24623903747080256,
+			-0.12419142326381638, 0.15329179827876566, 0.008201052295634698, 0.0075678976605456985, -0.008298 },
+		{ 0.03183464816350214, 0.0, 0.0, 0.0, 0.0, 0.028300909672366537, 0.053541988307438615,
+			-0.05492374857139115, 0.0, 0.0, -0.00010834732869724473, 0.00038257109083565666,
+			-0.00034046500868740456, 0.1413124436746325 },
+		{ -0.4288963015837919, 0.0, 0.0, 0.0, 0.0, -4.697621415361164, 7.683421196062599, 4.068989818397111,
+			0.3567271874552811, 0.0, 0.0, 0.0, -0.0013990241651590145, 2.9475147891527724, -9.15095847217987 } } ;
+
+	// 8th order solution minus the 5th and the 3rd order ones
+	static final double[] E5 = { 0.01312004499419488, 0.0, 0.0, 0.0, 0.0, -1.2251564463762044,
+			-0.4957589496572502, 1.6643771824549864, -0.35032884874997366, 0.3341791187130175,
+			0.08192320648511571, -0.022355307863886294 } ;
+
+	static final double[] E3 = { -0.18980075407240762, 0.0, 0.0, 0.0, 0.0, 4.450312892752409,
+			1.8915178993145003, -5.801203960010585, -0.42268232132379197, -0.1521609496625161,
+			0.20136540080403034, 0.022651792198360825 } ;
+
+	// continuous extension, weights of the 16 stages
+	static final double[][] D = {
+		{ -8.428938276109013, 0.0, 0.0, 0.0, 0.0, 0.5667149535193777, -3.0689499459498917, 2.38466765651207,
+			2.1170345824450285, -0.871391583777973, 2.2404374302607883, 0.6315787787694688,
+			-0.08899033645133331, 18.148505520854727, -9.194632392478356, -4.436036387594894 },
+		{ 10.427508642579134, 0.0, 0.0, 0.0, 0.0, 242.28349177525817, 165.20045171727028, -374.5467547226902,
+			-22.113666853125302, 7.733432668472264, -30.674084731089398, -9.332130526430229,
+			15.697238121770845, -31.139403219565178, -9.35292435884448, 35.81684148639408 },
+		{ 19.985053242002433, 0.0, 0.0, 0.0, 0.0, -387.0373087493518, -189.17813819516758, 527.8081592054236,
+			-11.573902539959631, 6.8812326946963, -1.0006050966910838, 0.7777137798053443,
+			-2.778205752353508, -60.19669523126412, 84.32040550667716, 11.99229113618279 },
+		{ -25.69393346270375, 0.0, 0.0, 0.0, 0.0, -154.18974869023643, -231.5293791760455, 357.6391179106141,
+			93.4053241836243, -37.45832313645163, 104.0996495089623, 29.8402934266605, -43.53345659001114,
+			96.32455395918828, -39.17726167561544, -149.72683625798564 } } ;
+
+	double[][] k ;
+	double[] yTemp ;
+	double[][] r ;
+
+	public DormandPrince853(DerivnFunction func, double x0, double... y0) {
+		super(func, x0, y0, 1.0/3.0, 6.0) ;
+	}
+
+	@Override
+	int getOrder() {
+		return 8 ;
+	}
+
+	@Override
+	void allocate(int n) {
+		k = new double[16][] ;
+		for(int s=1; s<16; s++)
+			if(s != 12)
+				k[s] = new double[n] ;
+		yTemp = new double[n] ;
+		r = new double[8][n] ;
+	}
+
+	// stage s from the stages before it
+	private void stage(int s, double x, double[] y, double h) {
+		double[] a = A[s] ;
+		for(int i=0; i<numEquation; i++) {
+			double sum = 0.0 ;
+			for(int j=0; j<a.length; j++)
+				if(a[j] != 0.0)
+					sum += a[j]*k[j][i] ;
+			yTemp[i] = y[i] + h*sum ;
+		}
+		evaluate(x+C[s]*h, yTemp, k[s]) ;
+	}
+
+	@Override
+	double attemptStep(double x, double[] y, double[] f, double h, double[] yNew, double[] fNew) {
+		int n = numEquation ;
+		k[0] = f ;
+		for(int s=1; s<12; s++)
+			stage(s, x, y, h) ;
+		double[] b = A[12] ;
+		for(int i=0; i<n; i++) {
+			double sum = 0.0 ;
+			for(int j=0; j<b.length; j++)
+				if(b[j] != 0.0)
+					sum += b[j]*k[j][i] ;
+			yNew[i] = y[i] + h*sum ;
+		}
+		k[12] = fNew ;
+		evaluate(x+h, yNew, fNew) ;
+
+		// error of Hairer and Wanner: the 5th order estimate, damped by the 3rd order one
+		double err5 = 0.0, err3 = 0.0 ;
+		for(int i=0; i<n; i++) {
+			double e5 = 0.0, e3 = 0.0 ;
+			for(int j=0; j<12; j++) {
+				if(E5[j] != 0.0) {
+					e5 += E5[j]*k[j][i] ;
+					e3 += E3[j]*k[j][i] ;
+				}
+			}
+			double sk = absTol + relTol*Math.max(Math.abs(y[i]), Math.abs(yNew[i])) ;
+			err5 += (e5/sk)*(e5/sk) ;
+			err3 += (e3/sk)*(e3/sk) ;
+		}
+		double den = err5 + 0.01*err3 ;
+		if(den <= 0.0)
+			den = 1.0 ;
+		return Math.abs(h)*err5/Math.sqrt(n*den) ;
+	}
+
+	@Override
+	void prepareDenseOutput() {
+		int n = numEquation ;
+		k[0] = fOld ;
+		k[12] = fNew ;
+		for(int s=13; s<16; s++)
+			stage(s, xOld, yOld, h) ;
+		for(int i=0; i<n; i++) {
+			r[0][i] = yOld[i] ;
+			r[1][i] = yNew[i] - yOld[i] ;
+			r[2][i] = h*fOld[i] - r[1][i] ;
+			r[3][i] = r[1][i] - h*fNew[i] - r[2][i] ;
+			for(int m=0; m<4; m++) {
+				double sum = 0.0 ;
+				for(int j=0; j<16; j++)
+					if(D[m][j] != 0.0)
+						sum += D[m][j]*k[j][i] ;
+				r[4+m][i] = h*sum ;
+			}
+		}
+	}
+
+	@Override
+	void interpolate(double theta, double[] y) {
+		double s1 = 1.0 - theta ;
+		for(int i=0; i<numEquation; i++) {
+			double par = r[4][i] + theta*(r[5][i] + s1*(r[6][i] + theta*r[7][i])) ;
+			y[i] = r[0][i] + theta*(r[1][i] + s1*(r[2][i] + theta*(r[3][i] + s1*par))) ;
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+package mathLib.ode.solvers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Embedded Runge-Kutta pair with step size control and dense output, for the
+ * system y' = f(x, y).
+ *
+ * Each step is accepted when the scaled error norm
+ *
+ *   err = sqrt(1/n sum_i (e_i / (absTol + relTol*max(|y_i|, |ynew_i|)))^2)
+ *
+ * is at most 1, and the next step is h*min(maxScale, max(minScale, 0.9*err^(-1/order))).
+ * The output points are computed by the continuous extension of the method on the
+ * step that contains them, so a single integration gives all of them.
+ */
+public abstract class EmbeddedRungeKutta {
+
+	DerivnFunction func ;
+	double x0 ;
+	double[] y0 ;
+	int numEquation ;
+
+	double relTol = 1e-10 ;
+	double absTol = 1e-12 ;
+	double initialStep = 0.0 ; // 0: chosen from the derivatives at x0
+	double maxStep = Double.POSITIVE_INFINITY ;
+	int maxNumSteps = 100000 ;
+
+	// bounds of the step size factor
+	final double minScale, maxScale ;
+	static final double SAFETY = 0.9 ;
+
+	int numSteps = 0 ;
+	int numRejected = 0 ;
+	int numEvaluations = 0 ;
+
+	// last accepted step, for the dense output
+	double xOld, h ;
+	double[] yOld, yNew, fOld, fNew ;
+
+	EmbeddedRungeKutta(DerivnFunction func, double x0, double[] y0, double minScale, double maxScale) {
+		this.func = func ;
+		this.minScale = minScale ;
+		this.maxScale = maxScale ;
+		setX0(x0) ;
+		setY0(y0) ;
+	}
+
+	public void setX0(double x0) {
+		this.x0 = x0 ;
+	}
+
+	public void setY0(double... y0) {
+		this.y0 = y0 ;
+		this.numEquation = y0.length ;
+	}
+
+	/**
+	 * @param relTol relative tolerance of the local error
+	 * @param absTol absolute tolerance of the local error
+	 */
+	public void setTolerances(double relTol, double absTol) {
+		this.relTol = relTol ;
+		this.absTol = absTol ;
+	}
+
+	/**
+	 * First step size, by default it is chosen from the derivatives at x0
+	 */
+	public void setInitialStepSize(double h) {
+		this.initialStep = Math.abs(h) ;
+	}
+
+	public void setMaximumStepSize(double h) {
+		this.maxStep = Math.abs(h) ;
+	}
+
+	public void setMaximumNumberOfSteps(int maxNumSteps) {
+		this.maxNumSteps = maxNumSteps ;
+	}
+
+	/**
+	 * order of the solution, the error estimate is of one order less
+	 */
+	abstract int getOrder() ;
+
+	/**
+	 * allocates the stage vectors for n equations
+	 */
+	abstract void allocate(int n) ;
+
+	/**
+	 * one step from (x, y) with f = f(x, y), writes the solution at x+h into yNew
+	 * and f(x+h, yNew) into fNew
+	 * @return the scaled error norm
+	 */
+	abstract double attemptStep(double x, double[] y, double[] f, double h, double[] yNew, double[] fNew) ;
+
+	/**
+	 * coefficients of the continuous extension of the last accepted step
+	 */
+	abstract void prepareDenseOutput() ;
+
+	/**
+	 * solution at xOld + theta*h, 0 <= theta <= 1, on the last accepted step
+	 */
+	abstract void interpolate(double theta, double[] y) ;
+
+	/**
+	 * factor of the step after an accepted one, the methods that keep a factorization
+	 * over the steps can hold the step size when it would barely change
+	 */
+	double adjustScale(double scale) {
+		return scale ;
+	}
+
+	void evaluate(double x, double[] y, double[] f) {
+		func.values(x, y, f) ;
+		numEvaluations++ ;
+	}
+
+	// root mean square norm of e scaled by the tolerances
+	double errorNorm(double[] e, double[] y, double[] yNew) {
+		double sum = 0.0 ;
+		for(int i=0; i<numEquation; i++) {
+			double sk = absTol + relTol*Math.max(Math.abs(y[i]), Math.abs(yNew[i])) ;
+			double r = e[i]/sk ;
+			sum += r*r ;
+		}
+		return Math.sqrt(sum/numEquation) ;
+	}
+
+	/**
+	 * solution at x1
+	 * @param x1
+	 * @return y(x1)
+	 */
+	public double[] integrate(double x1) {
+		double[][] y = integrate(new double[] {x1}) ;
+		double[] y1 = new double[numEquation] ;
+		for(int k=0; k<numEquation; k++)
+			y1[k] = y[k][0] ;
+		return y1 ;
+	}
+
+	/**
+	 * solution at all the points x1, with one integration on each side of x0
+	 * @param x1 output points, in any order
+	 * @return y[k][i] = y_k(x1[i])
+	 */
+	public double[][] integrate(double[] x1) {
+		numSteps = 0 ;
+		numRejected = 0 ;
+		numEvaluations = 0 ;
+		double[][] y = new double[numEquation][x1.length] ;
+		List<Integer> forward = new ArrayList<>(), backward = new ArrayList<>() ;
+		for(int i=0; i<x1.length; i++) {
+			if(x1[i] > x0)
+				forward.add(i) ;
+			else if(x1[i] < x0)
+				backward.add(i) ;
+			else
+				for(int k=0; k<numEquation; k++)
+					y[k][i] = y0[k] ;
+		}
+		forward.sort((i, j) -> Double.compare(x1[i], x1[j])) ;
+		backward.sort((i, j) -> Double.compare(x1[j], x1[i])) ;
+		solve(x1, forward, 1.0, y) ;
+		solve(x1, backward, -1.0, y) ;
+		return y ;
+	}
+
+	// integrates from x0 in the direction dir, through the sorted output points
+	private void solve(double[] xs, List<Integer> points, double dir, double[][] out) {
+		if(points.isEmpty())
+			return ;
+		int n = numEquation ;
+		allocate(n) ;
+		double xEnd = xs[points.get(points.size()-1)] ;
+		double x = x0 ;
+		double[] y = Arrays.copyOf(y0, n), f = new double[n] ;
+		double[] y1 = new double[n], f1 = new double[n], yOut = new double[n] ;
+		evaluate(x, y, f) ;
+		double step = (initialStep > 0) ? Math.min(initialStep, maxStep) : initialStepSize(x, y, f, dir, xEnd) ;
+		step = dir*Math.min(step, Math.abs(xEnd-x)) ;
+		double exponent = 1.0/getOrder() ;
+		boolean rejected = false ;
+		int next = 0 ;
+		int steps = 0 ;
+		while(next < points.size()) {
+			if(steps++ >= maxNumSteps)
+				throw new IllegalStateException("Maximum number of steps reached at x = " + x) ;
+			boolean last = dir*(x + step - xEnd) >= 0 ;
+			if(last)
+				step = xEnd - x ;
+			double err = attemptStep(x, y, f, step, y1, f1) ;
+			if(!(err <= 1.0)) {
+				// rejected (or not a number): retry with a smaller step
+				numRejected++ ;
+				double scale = Double.isNaN(err) ? minScale : Math.max(minScale, SAFETY*Math.pow(err, -exponent)) ;
+				step *= scale ;
+				rejected = true ;
+				if(Math.abs(step) <= 10*Math.ulp(Math.abs(x)))
+					throw new IllegalStateException("Step size too small at x = " + x) ;
+				continue ;
+			}
+			numSteps++ ;
+			xOld = x ;
+			h = step ;
+			yOld = y ;
+			fOld = f ;
+			yNew = y1 ;
+			fNew = f1 ;
+			double xNew = last ? xEnd : x + step ;
+			boolean dense = false ;
+			while(next < points.size() && dir*(xs[points.get(next)] - xNew) <= 0) {
+				int i = points.get(next++) ;
+				if(xs[i] == xNew) {
+					for(int k=0; k<n; k++)
+						out[k][i] = y1[k] ;
+					continue ;
+				}
+				if(!dense) {
+					prepareDenseOutput() ;
+					dense = true ;
+				}
+				interpolate((xs[i] - xOld)/h, yOut) ;
+				for(int k=0; k<n; k++)
+					out[k][i] = yOut[k] ;
+			}
+			// the new point becomes the start of the next step
+			double[] temp = y ; y = y1 ; y1 = temp ;
+			temp = f ; f = f1 ; f1 = temp ;
+			x = xNew ;
+			double scale = (err == 0.0) ? maxScale : Math.min(maxScale, Math.max(minScale, SAFETY*Math.pow(err, -exponent))) ;
+			if(rejected)
+				scale = Math.min(scale, 1.0) ;
+			scale = adjustScale(scale) ;
+			rejected = false ;
+			step = dir*Math.min(Math.abs(step*scale), maxStep) ;
+		}
+	}
+
+	// starting step size of Hairer, Norsett and Wanner (HINIT)
+	private double initialStepSize(double x, double[] y, double[] f, double dir, double xEnd) {
+		int n = numEquation ;
+		double d0 = 0, d1 = 0 ;
+		for(int i=0; i<n; i++) {
+			double sk = absTol + relTol*Math.abs(y[i]) ;
+			d0 += (y[i]/sk)*(y[i]/sk) ;
+			d1 += (f[i]/sk)*(f[i]/sk) ;
+		}
+		d0 = Math.sqrt(d0/n) ;
+		d1 = Math.sqrt(d1/n) ;
+		double h0 = (d0 < 1e-5 || d1 < 1e-5) ? 1e-6 : 0.01*d0/d1 ;
+		h0 = Math.min(Math.min(h0, maxStep), Math.abs(xEnd-x)) ;
+		double[] y1 = new double[n], f1 = new double[n] ;
+		for(int i=0; i<n; i++)
+			y1[i] = y[i] + dir*h0*f[i] ;
+		evaluate(x + dir*h0, y1, f1) ;
+		double d2 = 0 ;
+		for(int i=0; i<n; i++) {
+			double sk = absTol + relTol*Math.abs(y[i]) ;
+			d2 += ((f1[i]-f[i])/sk)*((f1[i]-f[i])/sk) ;
+		}
+		d2 = Math.sqrt(d2/n)/h0 ;
+		double dmax = Math.max(d1, d2) ;
+		double h1 = (dmax <= 1e-15) ? Math.max(1e-6, h0*1e-3) : Math.pow(0.01/dmax, 1.0/getOrder()) ;
+		return Math.min(Math.min(100*h0, h1), maxStep) ;
+	}
+
+	/**
+	 * Number of accepted steps of the last integration
+	 */
+	public int getNumberOfSteps() {
+		return numSteps ;
+	}
+
+	/**
+	 * Number of rejected steps of the last integration
+	 */
+	public int getNumberOfRejectedSteps() {
+		return numRejected ;
+	}
+
+	/**
+	 * Number of evaluations of the derivative in the last integration
+	 */
+	public int getNumberOfEvaluations() {
+		return numEvaluations ;
+	}
+
+}
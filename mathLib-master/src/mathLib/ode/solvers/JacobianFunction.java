@@ -0,0 +1,34 @@
+package mathLib.ode.solvers;
+
+import java.util.Arrays;
+
+/**
+ * Jacobian matrix of the system y' = f(x, y), for the stiff solvers
+ */
+@FunctionalInterface
+public interface JacobianFunction {
+
+	/**
+	 * writes df_i/dy_j at <tt>(x, y)</tt> into <tt>dfdy[i][j]</tt>
+	 */
+	void jacobian(double x, double[] y, double[][] dfdy) ;
+
+	/**
+	 * Forward difference approximation of the Jacobian with one evaluation of the
+	 * derivative per column, <tt>f</tt> is f(x, y)
+	 */
+	static void finiteDifference(DerivnFunction func, double x, double[] y, double[] f, double[][] dfdy) {
+		int n = y.length ;
+		double[] yh = Arrays.copyOf(y, n), fh = new double[n] ;
+		double sqrtEps = Math.sqrt(Math.ulp(1.0)) ;
+		for(int j=0; j<n; j++) {
+			yh[j] = y[j] + sqrtEps*Math.max(Math.abs(y[j]), 1e-5) ;
+			double delta = yh[j] - y[j] ; // exactly representable increment
+			func.values(x, yh, fh) ;
+			for(int i=0; i<n; i++)
+				dfdy[i][j] = (fh[i] - f[i])/delta ;
+			yh[j] = y[j] ;
+		}
+	}
+
+}
@@ -12,6 +12,9 @@ public class OdeSystemSolver {
 	double x0 ;
 	double[] y0 ;
 	int numEquation ;
+	double relTol = 1e-10 ;
+	double absTol = 1e-12 ;
+	JacobianFunction jacobian = null ; // null: forward differences
 
 	public OdeSystemSolver(DerivnFunction func, double x0, double... y0) {
 		this.func = func ;
@@ -29,6 +32,23 @@ public class OdeSystemSolver {
 		this.numEquation = y0.length ;
 	}
 
+	/**
+	 * tolerances of the local error for the adaptive methods (dormandPrince, dormandPrince853,
+	 * bdf, rosenbrock)
+	 */
+	public void setTolerances(double relTol, double absTol) {
+		this.relTol = relTol ;
+		this.absTol = absTol ;
+	}
+
+	/**
+	 * Jacobian of the system for the stiff methods (bdf, rosenbrock), by default it is
+	 * approximated by forward differences
+	 */
+	public void setJacobian(JacobianFunction jacobian) {
+		this.jacobian = jacobian ;
+	}
+
 	public ArraySequence eulerSequence(double x1) {
 		return n -> {
 			if(n==0)
@@ -159,4 +179,78 @@ public class OdeSystemSolver {
 		return y ;
 	}
 
+	//********* adaptive methods with dense output ****************
+
+	public DormandPrince54 getDormandPrince() {
+		DormandPrince54 solver = new DormandPrince54(func, x0, y0) ;
+		solver.setTolerances(relTol, absTol) ;
+		return solver ;
+	}
+
+	public double[] dormandPrince(double x1) {
+		return getDormandPrince().integrate(x1) ;
+	}
+
+	/**
+	 * one integration through all the points, y[k][i] = y_k(x1[i])
+	 */
+	public double[][] dormandPrince(double[] x1) {
+		return getDormandPrince().integrate(x1) ;
+	}
+
+	public DormandPrince853 getDormandPrince853() {
+		DormandPrince853 solver = new DormandPrince853(func, x0, y0) ;
+		solver.setTolerances(relTol, absTol) ;
+		return solver ;
+	}
+
+	public double[] dormandPrince853(double x1) {
+		return getDormandPrince853().integrate(x1) ;
+	}
+
+	/**
+	 * one integration through all the points, y[k][i] = y_k(x1[i])
+	 */
+	public double[][] dormandPrince853(double[] x1) {
+		return getDormandPrince853().integrate(x1) ;
+	}
+
+	//********* stiff methods ****************
+
+	public BDF getBDF() {
+		BDF solver = new BDF(func, x0, y0) ;
+		solver.setTolerances(relTol, absTol) ;
+		solver.setJacobian(jacobian) ;
+		return solver ;
+	}
+
+	public double[] bdf(double x1) {
+		return getBDF().integrate(x1) ;
+	}
+
+	/**
+	 * one integration through all the points, y[k][i] = y_k(x1[i])
+	 */
+	public double[][] bdf(double[] x1) {
+		return getBDF().integrate(x1) ;
+	}
+
+	public RosenbrockW getRosenbrock() {
+		RosenbrockW solver = new RosenbrockW(func, x0, y0) ;
+		solver.setTolerances(relTol, absTol) ;
+		solver.setJacobian(jacobian) ;
+		return solver ;
+	}
+
+	public double[] rosenbrock(double x1) {
+		return getRosenbrock().integrate(x1) ;
+	}
+
+	/**
+	 * one integration through all the points, y[k][i] = y_k(x1[i])
+	 */
+	public double[][] rosenbrock(double[] x1) {
+		return getRosenbrock().integrate(x1) ;
+	}
+
 }
@@ -0,0 +1,254 @@
+package mathLib.ode.solvers;
+
+import mathLib.matrix.sys.DenseLU;
+
+/**
+ * Linearly implicit Rosenbrock-W method ROS34PW2 of Rang and Angermann for stiff
+ * systems: 4 stages, order 3 with an embedded solution of order 2. Each stage solves
+ *
+ *   (I - h*gamma*J) k_i = h f(x + a_i h, y + sum_j alpha_ij k_j) + h J sum_j gamma_ij k_j
+ *
+ * and the order holds for any matrix J, so the Jacobian is kept over the steps and is
+ * computed again only after a rejected step or every <tt>maxJacobianAge</tt> steps. The
+ * LU factorization of I - h*gamma*J is kept as long as the step and the Jacobian do
+ * not change, the step is held when it would grow by less than 20%. The dense output
+ * is the cubic through the last four solution points: the derivatives are not used
+ * because f amplifies the small errors of the stiff components.
+ */
+public class RosenbrockW extends EmbeddedRungeKutta {
+
+	static final double GAMMA = 4.3586652150845900e-01 ;
+
+	static final double[][] ALPHA = {
+		{},
+		{ 8.7173304301691801e-01 },
+		{ 8.4457060015369423e-01, -1.1299064236484185e-01 },
+		{ 0.0, 0.0, 1.0 } } ;
+
+	static final double[][] GAMMAS = {
+		{},
+		{ -8.7173304301691801e-01 },
+		{ -9.0338057013044082e-01, 5.4180672388095326e-02 },
+		{ 2.4212380706095346e-01, -1.2232505839045147, 5.4526025533510214e-01 } } ;
+
+	// nodes of the stages, sum_j alpha_ij
+	static final double[] A = { 0.0, 8.7173304301691801e-01, 7.3157995778885238e-01, 1.0 } ;
+
+	static final double[] B = { 2.4212380706095346e-01, -1.2232505839045147, 1.5452602553351020,
+			4.3586652150845900e-01 } ;
+
+	// weights of the 3rd order solution minus the 2nd order ones
+	static final double[] E = { B[0] - 3.7810903145819369e-01, B[1] + 9.6042292212423178e-02, B[2] - 0.5,
+			B[3] - 2.1793326075422950e-01 } ;
+
+	JacobianFunction jacobian ; // null: forward differences
+	int maxJacobianAge = 20 ;
+
+	double[][] dfdy ;
+	DenseLU lu ;
+	double xJacobian, hDecomposition, xLast ;
+	int jacobianAge ;
+	int numJacobians = 0 ;
+	int numDecompositions = 0 ;
+
+	double[][] k ;
+	double[] yTemp, fTemp, g, rhs, err ;
+
+	// last accepted points, oldest first, and the divided differences of the dense output
+	double[] xHistory = new double[3] ;
+	double[][] yHistory ;
+	int numHistory ;
+	double[] nodes = new double[4] ;
+	double[][] dd ;
+	int numNodes ;
+
+	public RosenbrockW(DerivnFunction func, double x0, double... y0) {
+		super(func, x0, y0, 0.2, 6.0) ;
+		setTolerances(1e-6, 1e-10) ;
+	}
+
+	/**
+	 * exact Jacobian, by default it is approximated by forward differences
+	 */
+	public void setJacobian(JacobianFunction jacobian) {
+		this.jacobian = jacobian ;
+	}
+
+	/**
+	 * number of steps after which the Jacobian is computed again even if no step
+	 * is rejected
+	 */
+	public void setMaximumJacobianAge(int maxJacobianAge) {
+		this.maxJacobianAge = maxJacobianAge ;
+	}
+
+	@Override
+	int getOrder() {
+		return 3 ;
+	}
+
+	@Override
+	void allocate(int n) {
+		k = new double[4][n] ;
+		yTemp = new double[n] ; fTemp = new double[n] ;
+		g = new double[n] ; rhs = new double[n] ; err = new double[n] ;
+		dfdy = null ;
+		lu = null ;
+		xLast = Double.NaN ;
+		yHistory = new double[3][n] ;
+		numHistory = 0 ;
+		dd = new double[4][n] ;
+	}
+
+	@Override
+	public double[][] integrate(double[] x1) {
+		numJacobians = 0 ;
+		numDecompositions = 0 ;
+		return super.integrate(x1) ;
+	}
+
+	@Override
+	double adjustScale(double scale) {
+		return (scale >= 1.0 && scale <= 1.2) ? 1.0 : scale ;
+	}
+
+	private void updateJacobian(double x, double[] y, double[] f) {
+		if(dfdy == null)
+			dfdy = new double[numEquation][numEquation] ;
+		if(jacobian != null)
+			jacobian.jacobian(x, y, dfdy) ;
+		else {
+			JacobianFunction.finiteDifference(func, x, y, f, dfdy) ;
+			numEvaluations += numEquation ;
+		}
+		numJacobians++ ;
+		xJacobian = x ;
+		jacobianAge = 0 ;
+		lu = null ;
+	}
+
+	// LU of I - h*gamma*J, null if it is singular
+	private void decompose(double h) {
+		int n = numEquation ;
+		double c = h*GAMMA ;
+		double[] a = new double[n*n] ;
+		for(int i=0; i<n; i++) {
+			for(int j=0; j<n; j++)
+				a[i*n+j] = -c*dfdy[i][j] ;
+			a[i*n+i] += 1.0 ;
+		}
+		lu = new DenseLU(n, a, false) ;
+		numDecompositions++ ;
+		hDecomposition = h ;
+		if(!lu.isNonsingular())
+			lu = null ;
+	}
+
+	@Override
+	double attemptStep(double x, double[] y, double[] f, double h, double[] yNew, double[] fNew) {
+		int n = numEquation ;
+		// a second attempt from x means that the step was rejected, otherwise the
+		// step that ends at x was accepted
+		boolean retry = (x == xLast) ;
+		xLast = x ;
+		if(!retry) {
+			if(numHistory == 3) {
+				double[] temp = yHistory[0] ;
+				yHistory[0] = yHistory[1] ; yHistory[1] = yHistory[2] ; yHistory[2] = temp ;
+				xHistory[0] = xHistory[1] ; xHistory[1] = xHistory[2] ;
+				numHistory-- ;
+			}
+			xHistory[numHistory] = x ;
+			System.arraycopy(y, 0, yHistory[numHistory], 0, n) ;
+			numHistory++ ;
+		}
+		if(dfdy == null || (retry && xJacobian != x) || jacobianAge >= maxJacobianAge)
+			updateJacobian(x, y, f) ;
+		jacobianAge++ ;
+		if(lu == null || h != hDecomposition)
+			decompose(h) ;
+		if(lu == null)
+			return Double.NaN ;
+		for(int s=0; s<4; s++) {
+			double[] alpha = ALPHA[s], gamma = GAMMAS[s] ;
+			for(int i=0; i<n; i++) {
+				double sa = 0.0, sg = 0.0 ;
+				for(int j=0; j<s; j++) {
+					sa += alpha[j]*k[j][i] ;
+					sg += gamma[j]*k[j][i] ;
+				}
+				yTemp[i] = y[i] + sa ;
+				g[i] = sg ;
+			}
+			double[] fs = f ;
+			if(s > 0) {
+				evaluate(x+A[s]*h, yTemp, fTemp) ;
+				fs = fTemp ;
+			}
+			for(int i=0; i<n; i++) {
+				double jg = 0.0 ;
+				if(s > 0)
+					for(int j=0; j<n; j++)
+						jg += dfdy[i][j]*g[j] ;
+				rhs[i] = h*(fs[i] + jg) ;
+			}
+			lu.solve(rhs, k[s]) ;
+		}
+		for(int i=0; i<n; i++) {
+			double sb = 0.0, se = 0.0 ;
+			for(int s=0; s<4; s++) {
+				sb += B[s]*k[s][i] ;
+				se += E[s]*k[s][i] ;
+			}
+			yNew[i] = y[i] + sb ;
+			err[i] = se ;
+		}
+		evaluate(x+h, yNew, fNew) ;
+		return errorNorm(err, y, yNew) ;
+	}
+
+	@Override
+	void prepareDenseOutput() {
+		int n = numEquation ;
+		// the last point of the history is the start of the step
+		numNodes = numHistory + 1 ;
+		for(int m=0; m<numHistory; m++) {
+			nodes[m] = xHistory[m] ;
+			System.arraycopy(yHistory[m], 0, dd[m], 0, n) ;
+		}
+		nodes[numHistory] = xOld + h ;
+		System.arraycopy(yNew, 0, dd[numHistory], 0, n) ;
+		for(int j=1; j<numNodes; j++)
+			for(int m=numNodes-1; m>=j; m--) {
+				double dx = nodes[m] - nodes[m-j] ;
+				for(int i=0; i<n; i++)
+					dd[m][i] = (dd[m][i] - dd[m-1][i])/dx ;
+			}
+	}
+
+	@Override
+	void interpolate(double theta, double[] y) {
+		double x = xOld + theta*h ;
+		for(int i=0; i<numEquation; i++) {
+			double p = dd[numNodes-1][i] ;
+			for(int m=numNodes-2; m>=0; m--)
+				p = dd[m][i] + (x - nodes[m])*p ;
+			y[i] = p ;
+		}
+	}
+
+	/**
+	 * Number of Jacobians of the last integration
+	 */
+	public int getNumberOfJacobians() {
+		return numJacobians ;
+	}
+
+	/**
+	 * Number of LU factorizations of the last integration
+	 */
+	public int getNumberOfDecompositions() {
+		return numDecompositions ;
+	}
+
+}
@@ -17,6 +17,24 @@ public interface ArraySequence {
 	 */
 	NdArray evaluate(long k) ; // defining the function of the sequence k --> a_k
 
+	/**
+	 * sequence that computes each term of this one only once, the transforms below
+	 * work on it so that a term of the base sequence is never evaluated twice
+	 * @return returns a {@code MemoizedArraySequence} object
+	 */
+	default ArraySequence memoize() {
+		return new MemoizedArraySequence(this) ;
+	}
+
+	/**
+	 * memoized sequence with a given number of cached terms
+	 * @param capacity number of cached terms
+	 * @return returns a {@code MemoizedArraySequence} object
+	 */
+	default ArraySequence memoize(int capacity) {
+		return new MemoizedArraySequence(this, capacity) ;
+	}
+
 	default Sequence at(int index) {
 		return n -> evaluate(n).at(index) ;
 	}
@@ -26,7 +44,8 @@ public interface ArraySequence {
 	 * @return returns a {@code Sequence} object
 	 */
 	default ArraySequence diff() {
-		return n -> evaluate(n+1)-evaluate(n) ;
+		ArraySequence s = memoize() ;
+		return n -> s.evaluate(n+1)-s.evaluate(n) ;
 	}
 
 	/**
@@ -34,8 +53,9 @@ public interface ArraySequence {
 	 * @return returns a {@code Sequence} object
 	 */
 	default ArraySequence aitken() {
-		return n -> evaluate(n+2) - (evaluate(n+2)-evaluate(n+1))*(evaluate(n+2)-evaluate(n+1))
-					/(evaluate(n+2)-2.0*evaluate(n+1)+evaluate(n)) ;
+		ArraySequence s = memoize() ;
+		return n -> s.evaluate(n+2) - (s.evaluate(n+2)-s.evaluate(n+1))*(s.evaluate(n+2)-s.evaluate(n+1))
+					/(s.evaluate(n+2)-2.0*s.evaluate(n+1)+s.evaluate(n)) ;
 	}
 
 	/**
@@ -43,8 +63,9 @@ public interface ArraySequence {
 	 * @return returns a {@code Sequence} object
 	 */
 	default ArraySequence shanks() {
-		return n -> evaluate(n+1) - (evaluate(n+1)-evaluate(n))*(evaluate(n+1)-evaluate(n))
-				/(evaluate(n+1)-2.0*evaluate(n)+evaluate(n-1)) ;
+		ArraySequence s = memoize() ;
+		return n -> s.evaluate(n+1) - (s.evaluate(n+1)-s.evaluate(n))*(s.evaluate(n+1)-s.evaluate(n))
+				/(s.evaluate(n+1)-2.0*s.evaluate(n)+s.evaluate(n-1)) ;
 	}
 
 	/**
@@ -53,10 +74,11 @@ public interface ArraySequence {
 	 * @return a {@code Sequence} object
 	 */
 	default ArraySequence richardson(double order) {
+		ArraySequence s = memoize() ;
 		return n -> {
 			double c1 = Math.pow(n+1, order) ;
 			double c2 = Math.pow(n, order) ;
-			return (c1*evaluate(n+1)-c2*evaluate(n))/(c1-c2) ;
+			return (c1*s.evaluate(n+1)-c2*s.evaluate(n))/(c1-c2) ;
 		} ;
 	}
 
@@ -65,7 +87,8 @@ public interface ArraySequence {
 	 * @return returns a {@code Sequence} object
 	 */
 	default ArraySequence richardson() {
-		return n -> (n+1)*evaluate(n+1)-n*evaluate(n) ;
+		ArraySequence s = memoize() ;
+		return n -> (n+1)*s.evaluate(n+1)-n*s.evaluate(n) ;
 	}
 
 	/**
@@ -73,9 +96,10 @@ public interface ArraySequence {
 	 * @return a {@code Sequence} object.
 	 */
 	default ArraySequence richardson2() {
-		ArraySequence seq1 = n -> 0.5*(n+2)*(n+2)*evaluate(n+2) ;
-		ArraySequence seq2 = n -> -(n+1)*(n+1)*evaluate(n+1) ;
-		ArraySequence seq3 = n -> 0.5*n*n*evaluate(n) ;
+		ArraySequence s = memoize() ;
+		ArraySequence seq1 = n -> 0.5*(n+2)*(n+2)*s.evaluate(n+2) ;
+		ArraySequence seq2 = n -> -(n+1)*(n+1)*s.evaluate(n+1) ;
+		ArraySequence seq3 = n -> 0.5*n*n*s.evaluate(n) ;
 		return seq1+seq2+seq3 ;
 	}
 
@@ -84,10 +108,11 @@ public interface ArraySequence {
 	 * @return a {@code Sequence} object.
 	 */
 	default ArraySequence richardson3() {
-		ArraySequence seq1 = n -> (n+3)*(n+3)*(n+3)*evaluate(n+3) ;
-		ArraySequence seq2 = n -> -3.0*(n+2)*(n+2)*(n+2)*evaluate(n+2) ;
-		ArraySequence seq3 = n -> 3.0*(n+1)*(n+1)*(n+1)*evaluate(n+1) ;
-		ArraySequence seq4 = n -> -n*n*n*evaluate(n) ;
+		ArraySequence s = memoize() ;
+		ArraySequence seq1 = n -> (n+3)*(n+3)*(n+3)*s.evaluate(n+3) ;
+		ArraySequence seq2 = n -> -3.0*(n+2)*(n+2)*(n+2)*s.evaluate(n+2) ;
+		ArraySequence seq3 = n -> 3.0*(n+1)*(n+1)*(n+1)*s.evaluate(n+1) ;
+		ArraySequence seq4 = n -> -n*n*n*s.evaluate(n) ;
 		return (seq1+seq2+seq3+seq4)/6.0 ;
 	}
 
@@ -96,11 +121,12 @@ public interface ArraySequence {
 	 * @return a {@code Sequence} object.
 	 */
 	default ArraySequence richardson4() {
-		ArraySequence seq1 = n -> (n+4)*(n+4)*(n+4)*(n+4)*evaluate(n+4) ;
-		ArraySequence seq2 = n -> -4.0*(n+3)*(n+3)*(n+3)*(n+3)*evaluate(n+3) ;
-		ArraySequence seq3 = n -> 6.0*(n+2)*(n+2)*(n+2)*(n+2)*evaluate(n+2) ;
-		ArraySequence seq4 = n -> -4.0*(n+1)*(n+1)*(n+1)*(n+1)*evaluate(n+1) ;
-		ArraySequence seq5 = n -> n*n*n*n*evaluate(n) ;
+		ArraySequence s = memoize() ;
+		ArraySequence seq1 = n -> (n+4)*(n+4)*(n+4)*(n+4)*s.evaluate(n+4) ;
+		ArraySequence seq2 = n -> -4.0*(n+3)*(n+3)*(n+3)*(n+3)*s.evaluate(n+3) ;
+		ArraySequence seq3 = n -> 6.0*(n+2)*(n+2)*(n+2)*(n+2)*s.evaluate(n+2) ;
+		ArraySequence seq4 = n -> -4.0*(n+1)*(n+1)*(n+1)*(n+1)*s.evaluate(n+1) ;
+		ArraySequence seq5 = n -> n*n*n*n*s.evaluate(n) ;
 		return (seq1+seq2+seq3+seq4+seq5)/24.0 ;
 	}
 
@@ -0,0 +1,73 @@
+package mathLib.sequence;
+
+import java.util.Arrays;
+
+/**
+ * Wynn epsilon algorithm, built one term at a time.
+ *
+ *   eps(-1,n) = 0, eps(0,n) = a_n
+ *   eps(k+1,n) = eps(k-1,n+1) + 1/(eps(k,n+1) - eps(k,n))
+ *
+ * Only the last ascending diagonal is kept. The even columns are the Shanks
+ * transformations of the sequence (eps(2,n) is the Aitken transformation), they
+ * accelerate alternating and linearly converging sequences.
+ * @author Meisam
+ *
+ */
+public class EpsilonTableau {
+
+	double[] diagonal = new double[16] ;
+	int numTerms = 0 ;
+	double estimate = Double.NaN ;
+	double errorEstimate = Double.POSITIVE_INFINITY ;
+
+	/**
+	 * adds the next term a_n of the sequence
+	 * @param term value of a_n
+	 * @return the estimate of the limit from the highest even column
+	 */
+	public double add(double term) {
+		int n = numTerms ;
+		if(n == diagonal.length)
+			diagonal = Arrays.copyOf(diagonal, 2*n) ;
+		double[] e = diagonal ;
+		// e holds the last ascending diagonal, it is updated in place from the new term
+		e[n] = term ;
+		double aux2 = 0.0 ;
+		for(int j=n; j>=1; j--) {
+			double aux1 = aux2 ;
+			aux2 = e[j-1] ;
+			double diff = e[j] - aux2 ;
+			// two equal entries: the column has converged, keep it from blowing up
+			e[j-1] = (diff == 0.0) ? Double.MAX_VALUE : aux1 + 1.0/diff ;
+		}
+		double last = estimate ;
+		double value = (n % 2 == 0) ? e[0] : e[1] ;
+		estimate = (Double.isFinite(value) && Math.abs(value) < Double.MAX_VALUE) ? value : (Double.isNaN(last) ? term : last) ;
+		errorEstimate = (n == 0) ? Double.POSITIVE_INFINITY : Math.abs(estimate - last) ;
+		numTerms++ ;
+		return estimate ;
+	}
+
+	public double getEstimate() {
+		return estimate ;
+	}
+
+	/**
+	 * difference of the last two estimates
+	 */
+	public double getErrorEstimate() {
+		return errorEstimate ;
+	}
+
+	public int getNumberOfTerms() {
+		return numTerms ;
+	}
+
+	public void reset() {
+		numTerms = 0 ;
+		estimate = Double.NaN ;
+		errorEstimate = Double.POSITIVE_INFINITY ;
+	}
+
+}
@@ -0,0 +1,64 @@
+package mathLib.sequence;
+
+import java.util.Arrays;
+
+import mathLib.arrays.NdArray;
+
+/**
+ * Array sequence that computes each term of another array sequence only once.
+ *
+ * The terms are kept as primitive arrays in a direct-mapped cache of bounded
+ * size: term k goes to slot <tt>k mod capacity</tt>. A copy is returned on each
+ * call, so the cached terms cannot be changed by the caller.
+ * @author Meisam
+ *
+ */
+public class MemoizedArraySequence implements ArraySequence {
+
+	public static final int DEFAULT_CAPACITY = 256 ;
+
+	final ArraySequence seq ;
+	final int mask ;
+	final long[] indices ;
+	final double[][] values ;
+
+	public MemoizedArraySequence(ArraySequence seq) {
+		this(seq, DEFAULT_CAPACITY) ;
+	}
+
+	/**
+	 * @param seq the underlying sequence
+	 * @param capacity number of cached terms, rounded up to a power of two
+	 */
+	public MemoizedArraySequence(ArraySequence seq, int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity-1)) << 1 ;
+		this.seq = seq ;
+		this.mask = size-1 ;
+		this.indices = new long[size] ;
+		this.values = new double[size][] ;
+	}
+
+	@Override
+	public synchronized NdArray evaluate(long k) {
+		int slot = (int) (k & mask) ;
+		if(values[slot] == null || indices[slot] != k) {
+			double[] value = seq.evaluate(k).array().clone() ;
+			indices[slot] = k ;
+			values[slot] = value ;
+		}
+		return new NdArray(values[slot].clone()) ;
+	}
+
+	@Override
+	public ArraySequence memoize() {
+		return this ;
+	}
+
+	/**
+	 * forgets all the cached terms
+	 */
+	public synchronized void clear() {
+		Arrays.fill(values, null) ;
+	}
+
+}
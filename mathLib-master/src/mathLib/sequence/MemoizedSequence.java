@@ -0,0 +1,65 @@
+package mathLib.sequence;
+
+import java.util.Arrays;
+
+/**
+ * Sequence that computes each term of another sequence only once.
+ *
+ * The terms are kept in a direct-mapped cache of bounded size: term k goes to
+ * slot <tt>k mod capacity</tt>, so the sliding windows of the acceleration
+ * transforms always hit, and a long run over the indices does not grow the memory.
+ * @author Meisam
+ *
+ */
+public class MemoizedSequence implements Sequence {
+
+	public static final int DEFAULT_CAPACITY = 1024 ;
+
+	final Sequence seq ;
+	final int mask ;
+	final long[] indices ;
+	final double[] values ;
+	final boolean[] filled ;
+
+	public MemoizedSequence(Sequence seq) {
+		this(seq, DEFAULT_CAPACITY) ;
+	}
+
+	/**
+	 * @param seq the underlying sequence
+	 * @param capacity number of cached terms, rounded up to a power of two
+	 */
+	public MemoizedSequence(Sequence seq, int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity-1)) << 1 ;
+		this.seq = seq ;
+		this.mask = size-1 ;
+		this.indices = new long[size] ;
+		this.values = new double[size] ;
+		this.filled = new boolean[size] ;
+	}
+
+	@Override
+	public synchronized double evaluate(long k) {
+		int slot = (int) (k & mask) ;
+		if(filled[slot] && indices[slot] == k)
+			return values[slot] ;
+		double value = seq.evaluate(k) ;
+		indices[slot] = k ;
+		values[slot] = value ;
+		filled[slot] = true ;
+		return value ;
+	}
+
+	@Override
+	public Sequence memoize() {
+		return this ;
+	}
+
+	/**
+	 * forgets all the cached terms
+	 */
+	public synchronized void clear() {
+		Arrays.fill(filled, false) ;
+	}
+
+}
@@ -0,0 +1,78 @@
+package mathLib.sequence;
+
+/**
+ * Richardson extrapolation tableau, built one term at a time.
+ *
+ * For a sequence with the error expansion <tt>a_n = L + c1/n + c2/n^2 + ...</tt>
+ * the columns are
+ *
+ *   T(n,0) = a_n
+ *   T(n,k) = (n T(n,k-1) - (n-k) T(n-1,k-1)) / k
+ *
+ * so that T(n+k,k) is the k-th order Richardson acceleration of {@link Sequence}.
+ * Only the last row is kept: adding a term costs O(order).
+ * @author Meisam
+ *
+ */
+public class RichardsonTableau {
+
+	final int order ;
+	double[] row, previousRow ;
+	long numTerms = 0 ;
+	double estimate = Double.NaN ;
+	double errorEstimate = Double.POSITIVE_INFINITY ;
+
+	/**
+	 * @param order highest column of the tableau
+	 */
+	public RichardsonTableau(int order) {
+		if(order < 0)
+			throw new IllegalArgumentException("order must be non-negative.") ;
+		this.order = order ;
+		this.row = new double[order+1] ;
+		this.previousRow = new double[order+1] ;
+	}
+
+	/**
+	 * adds the next term a_n of the sequence, n is the number of terms added before
+	 * @param term value of a_n
+	 * @return the estimate T(n, min(n, order)) of the limit
+	 */
+	public double add(double term) {
+		double[] temp = previousRow ;
+		previousRow = row ;
+		row = temp ;
+		long n = numTerms ;
+		int kmax = (int) Math.min(n, order) ;
+		row[0] = term ;
+		for(int k=1; k<=kmax; k++)
+			row[k] = (n*row[k-1] - (n-k)*previousRow[k-1])/k ;
+		double last = estimate ;
+		estimate = row[kmax] ;
+		errorEstimate = (numTerms == 0) ? Double.POSITIVE_INFINITY : Math.abs(estimate - last) ;
+		numTerms++ ;
+		return estimate ;
+	}
+
+	public double getEstimate() {
+		return estimate ;
+	}
+
+	/**
+	 * difference of the last two estimates
+	 */
+	public double getErrorEstimate() {
+		return errorEstimate ;
+	}
+
+	public long getNumberOfTerms() {
+		return numTerms ;
+	}
+
+	public void reset() {
+		numTerms = 0 ;
+		estimate = Double.NaN ;
+		errorEstimate = Double.POSITIVE_INFINITY ;
+	}
+
+}
@@ -15,12 +15,31 @@ public interface Sequence {
 	 */
 	double evaluate(long k) ; // defining the function of the sequence k --> a_k
 
+	/**
+	 * sequence that computes each term of this one only once, the transforms below
+	 * work on it so that a term of the base sequence is never evaluated twice
+	 * @return returns a {@code MemoizedSequence} object
+	 */
+	default Sequence memoize() {
+		return new MemoizedSequence(this) ;
+	}
+
+	/**
+	 * memoized sequence with a given number of cached terms
+	 * @param capacity number of cached terms
+	 * @return returns a {@code MemoizedSequence} object
+	 */
+	default Sequence memoize(int capacity) {
+		return new MemoizedSequence(this, capacity) ;
+	}
+
 	/**
 	 * forward difference of a sequence
 	 * @return returns a {@code Sequence} object
 	 */
 	default Sequence diff() {
-		return n -> evaluate(n+1)-evaluate(n) ;
+		Sequence s = memoize() ;
+		return n -> s.evaluate(n+1)-s.evaluate(n) ;
 	}
 
 	/**
@@ -28,8 +47,9 @@ public interface Sequence {
 	 * @return returns a {@code Sequence} object
 	 */
 	default Sequence aitken() {
-		return n -> evaluate(n+2) - (evaluate(n+2)-evaluate(n+1))*(evaluate(n+2)-evaluate(n+1))
-					/(evaluate(n+2)-2.0*evaluate(n+1)+evaluate(n)) ;
+		Sequence s = memoize() ;
+		return n -> s.evaluate(n+2) - (s.evaluate(n+2)-s.evaluate(n+1))*(s.evaluate(n+2)-s.evaluate(n+1))
+					/(s.evaluate(n+2)-2.0*s.evaluate(n+1)+s.evaluate(n)) ;
 	}
 
 	/**
@@ -37,8 +57,9 @@ public interface Sequence {
 	 * @return returns a {@code Sequence} object
 	 */
 	default Sequence shanks() {
-		return n -> evaluate(n+1) - (evaluate(n+1)-evaluate(n))*(evaluate(n+1)-evaluate(n))
-				/(evaluate(n+1)-2.0*evaluate(n)+evaluate(n-1)) ;
+		Sequence s = memoize() ;
+		return n -> s.evaluate(n+1) - (s.evaluate(n+1)-s.evaluate(n))*(s.evaluate(n+1)-s.evaluate(n))
+				/(s.evaluate(n+1)-2.0*s.evaluate(n)+s.evaluate(n-1)) ;
 	}
 
 	/**
@@ -46,7 +67,8 @@ public interface Sequence {
 	 * @return returns a {@code Sequence} object
 	 */
 	default Sequence richardson() {
-		return n -> (n+1)*evaluate(n+1)-n*evaluate(n) ;
+		Sequence s = memoize() ;
+		return n -> (n+1)*s.evaluate(n+1)-n*s.evaluate(n) ;
 	}
 
 	/**
@@ -54,9 +76,10 @@ public interface Sequence {
 	 * @return a {@code Sequence} object.
 	 */
 	default Sequence richardson2() {
-		Sequence seq1 = n -> 0.5*(n+2)*(n+2)*evaluate(n+2) ;
-		Sequence seq2 = n -> -(n+1)*(n+1)*evaluate(n+1) ;
-		Sequence seq3 = n -> 0.5*n*n*evaluate(n) ;
+		Sequence s = memoize() ;
+		Sequence seq1 = n -> 0.5*(n+2)*(n+2)*s.evaluate(n+2) ;
+		Sequence seq2 = n -> -(n+1)*(n+1)*s.evaluate(n+1) ;
+		Sequence seq3 = n -> 0.5*n*n*s.evaluate(n) ;
 		return seq1+seq2+seq3 ;
 	}
 
@@ -65,10 +88,11 @@ public interface Sequence {
 	 * @return a {@code Sequence} object.
 	 */
 	default Sequence richardson3() {
-		Sequence seq1 = n -> (n+3)*(n+3)*(n+3)*evaluate(n+3) ;
-		Sequence seq2 = n -> -3.0*(n+2)*(n+2)*(n+2)*evaluate(n+2) ;
-		Sequence seq3 = n -> 3.0*(n+1)*(n+1)*(n+1)*evaluate(n+1) ;
-		Sequence seq4 = n -> -n*n*n*evaluate(n) ;
+		Sequence s = memoize() ;
+		Sequence seq1 = n -> (n+3)*(n+3)*(n+3)*s.evaluate(n+3) ;
+		Sequence seq2 = n -> -3.0*(n+2)*(n+2)*(n+2)*s.evaluate(n+2) ;
+		Sequence seq3 = n -> 3.0*(n+1)*(n+1)*(n+1)*s.evaluate(n+1) ;
+		Sequence seq4 = n -> -n*n*n*s.evaluate(n) ;
 		return (seq1+seq2+seq3+seq4)/6.0 ;
 	}
 
@@ -77,14 +101,56 @@ public interface Sequence {
 	 * @return a {@code Sequence} object.
 	 */
 	default Sequence richardson4() {
-		Sequence seq1 = n -> (n+4)*(n+4)*(n+4)*(n+4)*evaluate(n+4) ;
-		Sequence seq2 = n -> -4.0*(n+3)*(n+3)*(n+3)*(n+3)*evaluate(n+3) ;
-		Sequence seq3 = n -> 6.0*(n+2)*(n+2)*(n+2)*(n+2)*evaluate(n+2) ;
-		Sequence seq4 = n -> -4.0*(n+1)*(n+1)*(n+1)*(n+1)*evaluate(n+1) ;
-		Sequence seq5 = n -> n*n*n*n*evaluate(n) ;
+		Sequence s = memoize() ;
+		Sequence seq1 = n -> (n+4)*(n+4)*(n+4)*(n+4)*s.evaluate(n+4) ;
+		Sequence seq2 = n -> -4.0*(n+3)*(n+3)*(n+3)*(n+3)*s.evaluate(n+3) ;
+		Sequence seq3 = n -> 6.0*(n+2)*(n+2)*(n+2)*(n+2)*s.evaluate(n+2) ;
+		Sequence seq4 = n -> -4.0*(n+1)*(n+1)*(n+1)*(n+1)*s.evaluate(n+1) ;
+		Sequence seq5 = n -> n*n*n*n*s.evaluate(n) ;
 		return (seq1+seq2+seq3+seq4+seq5)/24.0 ;
 	}
 
+	/**
+	 * Richardson extrapolation tableau of a given order, built incrementally:
+	 * the n-th term is the estimate from the terms 0..n. The tableau is extended
+	 * when the terms are requested in increasing order, and rebuilt otherwise.
+	 * richardsonTableau(k).evaluate(n+k) equals the k-th order acceleration at n.
+	 * @param order highest column of the tableau
+	 * @return a {@code Sequence} object.
+	 */
+	default Sequence richardsonTableau(int order) {
+		Sequence s = memoize() ;
+		RichardsonTableau tableau = new RichardsonTableau(order) ;
+		return n -> {
+			synchronized (tableau) {
+				if(tableau.getNumberOfTerms() > n+1)
+					tableau.reset() ;
+				while(tableau.getNumberOfTerms() <= n)
+					tableau.add(s.evaluate(tableau.getNumberOfTerms())) ;
+				return tableau.getEstimate() ;
+			}
+		} ;
+	}
+
+	/**
+	 * Wynn epsilon acceleration, built incrementally: the n-th term is the estimate
+	 * from the terms 0..n. Mostly used for oscillating sequences (-1)^n.
+	 * @return a {@code Sequence} object.
+	 */
+	default Sequence wynn() {
+		Sequence s = memoize() ;
+		EpsilonTableau tableau = new EpsilonTableau() ;
+		return n -> {
+			synchronized (tableau) {
+				if(tableau.getNumberOfTerms() > n+1)
+					tableau.reset() ;
+				while(tableau.getNumberOfTerms() <= n)
+					tableau.add(s.evaluate(tableau.getNumberOfTerms())) ;
+				return tableau.getEstimate() ;
+			}
+		} ;
+	}
+
 	//*************** operations *******************
 
 	/**
@@ -131,7 +197,7 @@ public interface Sequence {
 	 * @return a {@code Sequence} object.
 	 */
 	default Sequence convolve(Sequence b) {
-		Sequence a = this ;
+		Sequence a = memoize() ;
 		// returns conv(a,b)
 		return n -> Series.sum(m -> a.evaluate(m)*b.evaluate(n-m), 0, n) ;
 	}
@@ -155,11 +221,12 @@ public interface Sequence {
 	}
 
 	static Sequence runningAverage(Sequence seq, int order) {
-		return n -> 1.0/order * Series.sum(seq, n, n+order-1) ;
+		return seq.runningAverage(order) ;
 	}
 
 	default Sequence runningAverage(int order) {
-		return n -> 1.0/order * Series.sum(this, n, n+order-1) ;
+		Sequence s = memoize() ;
+		return n -> 1.0/order * Series.sum(s, n, n+order-1) ;
 	}
 
 	//*************** operator overloading ****************
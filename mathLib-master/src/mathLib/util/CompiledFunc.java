@@ -37,6 +37,45 @@ public abstract class CompiledFunc {
 		return apply(null, args);
 	}
 
+	/**
+	 * Batch evaluation over struct-of-arrays arguments:
+	 * <code>out[i] = f(args[0][i], args[1][i], ...)</code> for <tt>i=0...n-1</tt>
+	 * <p>
+	 * The generated classes override <tt>applyBatch(...)</tt> with a single loop
+	 * containing the inlined expression, so no call or varargs allocation
+	 * happens per point.
+	 *
+	 * @param ap - passed to every evaluation, can be <tt>null</tt>
+	 * @param args - <tt>args[k]</tt> holds the values of the k-th variable at all points
+	 * @param out - (Output) values of the function
+	 * @param n - number of points
+	 */
+	public void apply(AssembleParam ap, double[][] args, double[] out, int n) {
+		applyBatch(ap, new double[args.length], args, out, n);
+	}
+
+	public void apply(double[][] args, double[] out, int n) {
+		apply(null, args, out, n);
+	}
+
+	/**
+	 * Default batch implementation calling <tt>apply(ap, row)</tt> for each point,
+	 * used when the expression could not be compiled into a batch loop
+	 *
+	 * @param ap
+	 * @param row - buffer for the arguments of one point, <tt>row.length==args.length</tt>
+	 * @param args
+	 * @param out
+	 * @param n
+	 */
+	protected void applyBatch(AssembleParam ap, double[] row, double[][] args, double[] out, int n) {
+		for(int i=0; i<n; i++) {
+			for(int k=0; k<row.length; k++)
+				row[k] = args[k][i];
+			out[i] = apply(ap, row);
+		}
+	}
+
 	/**
 	 * Set the references to functions before compilation for
 	 * further calling from apply(...)
@@ -0,0 +1,62 @@
+package tests;
+
+import mathLib.fem.core.CompactMesh;
+import mathLib.fem.core.Element;
+import mathLib.fem.core.Mesh;
+import mathLib.util.Timer;
+
+public class TestCompactMesh {
+
+	public static void main(String[] args) {
+		// n^3 hexahedra of the unit cube
+		int n = 50, m = n+1;
+		double[] coords = new double[3*m*m*m];
+		int p = 0;
+		for(int k=0; k<=n; k++)
+			for(int j=0; j<=n; j++)
+				for(int i=0; i<=n; i++) {
+					coords[p++] = (double)i/n;
+					coords[p++] = (double)j/n;
+					coords[p++] = (double)k/n;
+				}
+		int[] elemPtr = new int[n*n*n+1];
+		int[] elemNode = new int[8*n*n*n];
+		p = 0;
+		for(int k=0; k<n; k++)
+			for(int j=0; j<n; j++)
+				for(int i=0; i<n; i++) {
+					int b = (k*m+j)*m+i, up = m*m;
+					// vertex order of HexahedronTp: top face, then bottom face
+					int[] v = {b+up+m+1, b+up+1, b+up, b+up+m, b+m+1, b+1, b, b+m};
+					for(int vi : v)
+						elemNode[p++] = vi;
+					elemPtr[(k*n+j)*n+i+1] = p;
+				}
+
+		Timer timer = new Timer();
+		timer.start();
+		CompactMesh mesh = new CompactMesh(3, coords, elemPtr, elemNode);
+		mesh.computeNodeBelongsToElements();
+		mesh.computeNeighborNodes();
+		mesh.computeGlobalEdge();
+		mesh.computeGlobalFace();
+		mesh.computeNeighborElements();
+		timer.stop();
+		timer.show();
+		System.out.println("edges = " + mesh.getNumberOfEdges() + ", expected " + 3*n*m*m);
+		System.out.println("faces = " + mesh.getNumberOfFaces() + ", expected " + 3*n*n*m);
+
+		// objects are created only for the elements that are used
+		Element e = mesh.getElement(1);
+		System.out.println("element 1: " + e + ", neighbors " +
+				(mesh.getElemElemPtr()[1]-mesh.getElemElemPtr()[0]));
+
+		CompactMesh tets = new CompactMesh(3, new double[] {0,0,0, 1,0,0, 0,1,0, 0,0,1, 1,1,1},
+				new int[] {0, 4, 8}, new int[] {0,1,2,3, 1,2,3,4});
+		tets.computeNodeBelongsToElements();
+		Mesh objects = tets.toMesh();
+		System.out.println("tetrahedra: " + objects.getElementList().size() +
+				", elements of node 2: " + objects.getNodeList().at(2).belongToElements);
+	}
+
+}
@@ -0,0 +1,69 @@
+package tests;
+
+import mathLib.fem.assembler.Constraints;
+import mathLib.matrix.algebra.CompressedRowMatrix;
+import mathLib.matrix.algebra.FullVector;
+import mathLib.matrix.algebra.SparseMatrixRowMajor;
+import mathLib.matrix.algebra.SparseVectorHashMap;
+import mathLib.matrix.sys.DenseLU;
+
+public class TestConstraints {
+
+	public static void main(String[] args) {
+		// 1D -u''=2 with linear elements, u(0)=1, u(1)=2 and u_5 = (u_4+u_6)/2
+		int n = 11;
+		double h = 1.0/(n-1);
+		SparseMatrixRowMajor A = new SparseMatrixRowMajor(n, n);
+		SparseVectorHashMap b = new SparseVectorHashMap(n);
+		for(int i=1; i<n; i++) {
+			A.add(i, i, 1.0/h);
+			A.add(i+1, i+1, 1.0/h);
+			A.add(i, i+1, -1.0/h);
+			A.add(i+1, i, -1.0/h);
+			b.add(i, h);
+			b.add(i+1, h);
+		}
+		CompressedRowMatrix C = new CompressedRowMatrix(A, false);
+		FullVector bc = new FullVector(b);
+
+		Constraints constraints = new Constraints(n);
+		constraints.addDirichlet(1, 1.0).addDirichlet(n, 2.0);
+		constraints.addLinear(5, new int[] {4, 6}, new double[] {0.5, 0.5});
+		constraints.apply(A, b);
+		constraints.apply(C, bc);
+
+		double diff = 0;
+		for(int i=1; i<=n; i++) {
+			diff = Math.max(diff, Math.abs(b.get(i)-bc.getData()[i-1]));
+			FullVector ei = new FullVector(n), y = new FullVector(n);
+			ei.getData()[i-1] = 1.0;
+			C.mult(ei, y);
+			for(int j=1; j<=n; j++)
+				diff = Math.max(diff, Math.abs(A.get(j, i)-y.getData()[j-1]));
+		}
+		System.out.println("constraints="+constraints.getNumberOfConstraints());
+		System.out.println("max difference between the two formats = "+diff);
+
+		// u = 1+2x-x^2: the condensed system is the Galerkin system of the linear elements
+		// without node 5, which is exact at the other nodes in 1D; row 5 is u_5 = (u_4+u_6)/2
+		double[][] dense = new double[n][n];
+		double[] rhs = new double[n];
+		for(int i=1; i<=n; i++) {
+			for(int j=1; j<=n; j++)
+				dense[i-1][j-1] = A.get(i, j);
+			rhs[i-1] = b.get(i);
+		}
+		double[] u = new DenseLU(dense).solve(rhs);
+		double err = 0;
+		for(int i=1; i<=n; i++) {
+			double x = (i-1)*h;
+			if(i != 5)
+				err = Math.max(err, Math.abs(u[i-1]-(1+2*x-x*x)));
+		}
+		System.out.println("max error of the solution at the free nodes = "+err+
+				", u_5-(u_4+u_6)/2 = "+(u[4]-(u[3]+u[5])/2));
+		A.print();
+		b.print();
+	}
+
+}
@@ -0,0 +1,99 @@
+package tests;
+
+import flanagan.integration.IntegralFunction;
+import mathLib.integral.AdaptiveCubature;
+import mathLib.integral.SparseGridCubature;
+import mathLib.integral.intf.IntegralFunctionND;
+import mathLib.integral.methods.ClenshawCurtisQuadrature;
+
+public class TestCubature {
+	public static void main(String[] args) {
+		// Clenshaw-Curtis with n points is exact for polynomials of degree n-1 (n for odd n)
+		IntegralFunction x8 = new IntegralFunction() {
+			@Override
+			public double function(double x) {
+				return Math.pow(x, 8) - 3*x*x*x + 1 ;
+			}
+		};
+		double exact = (Math.pow(2, 9) + 1)/9.0 - 3*(16 - 1)/4.0 + 3 ; // on [-1,2]
+		for(int n : new int[] {5, 9, 17}) {
+			ClenshawCurtisQuadrature cc = new ClenshawCurtisQuadrature(x8, -1, 2, n) ;
+			System.out.println("Clenshaw-Curtis x^8-3x^3+1, n = " + n + ", error = " + Math.abs(cc.getIntegral() - exact)) ;
+		}
+		IntegralFunction exp = new IntegralFunction() {
+			@Override
+			public double function(double x) {
+				return Math.exp(x) ;
+			}
+		};
+		ClenshawCurtisQuadrature cc = new ClenshawCurtisQuadrature(exp, 0, 1, 9) ;
+		System.out.println("Clenshaw-Curtis exp(x), n = 9, error = " + Math.abs(cc.getIntegral() - (Math.E - 1))) ;
+
+		// degree 7 in 3D: x^2 y^4 z + x^3 on [0,1]^3 = 1/30 + 1/4
+		IntegralFunctionND poly = new IntegralFunctionND() {
+			@Override
+			public double function(double[] x) {
+				return x[0]*x[0]*Math.pow(x[1], 4)*x[2] + x[0]*x[0]*x[0] ;
+			}
+		};
+		double[] a3 = {0, 0, 0}, b3 = {1, 1, 1} ;
+		check("polynomial of degree 7, d = 3", poly, 3, a3, b3, 1.0/30 + 1.0/4) ;
+
+		// smooth: exp(x_1+...+x_d) on [0,1]^d = (e-1)^d
+		for(int d=2; d<=5; d++) {
+			IntegralFunctionND f = new IntegralFunctionND() {
+				@Override
+				public double function(double[] x) {
+					double s = 0 ;
+					for(double xi : x)
+						s += xi ;
+					return Math.exp(s) ;
+				}
+			};
+			double[] a = new double[d], b = new double[d] ;
+			for(int i=0; i<d; i++)
+				b[i] = 1 ;
+			check("exp(sum x), d = " + d, f, d, a, b, Math.pow(Math.E - 1, d)) ;
+		}
+
+		// smooth with a peak: 1/(1+25|x|^2) on [-1,1]^2, exact value from a fine tensor rule
+		IntegralFunctionND runge = new IntegralFunctionND() {
+			@Override
+			public double function(double[] x) {
+				return 1.0/(1 + 25*(x[0]*x[0] + x[1]*x[1])) ;
+			}
+		};
+		double[] a2 = {-1, -1}, b2 = {1, 1} ;
+		check("1/(1+25|x|^2), d = 2", runge, 2, a2, b2, tensorClenshawCurtis(runge, a2, b2, 1025)) ;
+	}
+
+	static void check(String name, IntegralFunctionND f, int d, double[] a, double[] b, double exact) {
+		AdaptiveCubature gm = new AdaptiveCubature(f, d) ;
+		gm.setErrorBound(1e-8) ;
+		gm.setMaximumNumberOfEvaluations(500000) ;
+		double v = gm.getIntegral(a, b) ;
+		System.out.println(name + ", Genz-Malik: error = " + Math.abs(v - exact) + ", estimate = " +
+				gm.getErrorEstimate() + ", evaluations = " + gm.getNumberOfEvaluations()) ;
+
+		SparseGridCubature sg = new SparseGridCubature(f, d) ;
+		sg.setErrorBound(1e-8) ;
+		sg.setMaximumNumberOfEvaluations(500000) ;
+		v = sg.getIntegral(a, b) ;
+		System.out.println(name + ", Smolyak: error = " + Math.abs(v - exact) + ", estimate = " +
+				sg.getErrorEstimate() + ", evaluations = " + sg.getNumberOfEvaluations() + ", level = " + sg.getLevel()) ;
+	}
+
+	// tensor product of two Clenshaw-Curtis rules with n points
+	static double tensorClenshawCurtis(IntegralFunctionND f, double[] a, double[] b, int n) {
+		double[] x = ClenshawCurtisQuadrature.getPoints(n), w = ClenshawCurtisQuadrature.getWeights(n) ;
+		double sum = 0 ;
+		double[] p = new double[2] ;
+		for(int i=0; i<n; i++)
+			for(int j=0; j<n; j++) {
+				p[0] = (b[0] - a[0])/2*x[i] + (b[0] + a[0])/2 ;
+				p[1] = (b[1] - a[1])/2*x[j] + (b[1] + a[1])/2 ;
+				sum += w[i]*w[j]*f.function(p) ;
+			}
+		return sum*(b[0] - a[0])*(b[1] - a[1])/4 ;
+	}
+}
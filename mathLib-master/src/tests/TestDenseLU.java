@@ -0,0 +1,83 @@
+package tests;
+
+import java.util.Random;
+
+import mathLib.matrix.sys.DenseCholesky;
+import mathLib.matrix.sys.DenseLU;
+import mathLib.matrix.sys.LinearSystem;
+
+/**
+ * Dense LU and Cholesky against Jama: solution, inverse, determinant, condition
+ * number, and the time to solve many right-hand sides with one factorization
+ *
+ */
+public class TestDenseLU {
+
+	static double[][] random(int m, int n, Random r) {
+		double[][] a = new double[m][n];
+		for(int i=0; i<m; i++)
+			for(int j=0; j<n; j++)
+				a[i][j] = r.nextDouble()-0.5;
+		return a;
+	}
+
+	static double maxDiff(double[][] A, double[][] B) {
+		double d = 0.0;
+		for(int i=0; i<A.length; i++)
+			for(int j=0; j<A[0].length; j++)
+				d = Math.max(d, Math.abs(A[i][j]-B[i][j]));
+		return d;
+	}
+
+	public static void main(String[] args) {
+		Random r = new Random(1);
+		for(int n : new int[] {1, 5, 63, 64, 65, 200, 301}) {
+			double[][] A = random(n, n, r), B = random(n, 7, r);
+			Jama.Matrix JA = new Jama.Matrix(A);
+			DenseLU lu = new DenseLU(A);
+			System.out.println("n = "+n);
+			System.out.println("  LU solve     diff = "+maxDiff(lu.solve(B), JA.solve(new Jama.Matrix(B)).getArray()));
+			System.out.println("  LU inverse   diff = "+maxDiff(lu.inverse(), JA.inverse().getArray()));
+			System.out.println("  det = "+lu.det()+", Jama = "+JA.det());
+			System.out.println("  rcond = "+lu.rcond()+", Jama 1/cond2 = "+1.0/JA.cond());
+
+			//A'*A + n*I is SPD
+			double[][] S = JA.transpose().times(JA).plus(Jama.Matrix.identity(n, n).times(n)).getArray();
+			Jama.Matrix JS = new Jama.Matrix(S);
+			DenseCholesky chol = new DenseCholesky(S);
+			System.out.println("  Cholesky solve diff = "+maxDiff(chol.solve(B), JS.chol().solve(new Jama.Matrix(B)).getArray()));
+			System.out.println("  Cholesky det = "+chol.det()+", Jama = "+JS.det());
+		}
+
+		double[][] singular = {{1, 2}, {2, 4}};
+		System.out.println("singular: "+new DenseLU(singular).isNonsingular()+", rcond = "+new DenseLU(singular).rcond());
+		// second pivot of about 1e-21 < 1e-20: LinearSystem drops the second row as redundant
+		double[][] near = {{1e-5, 1e-5}, {1e-5, Math.nextUp(1e-5)}};
+		double[] y = {2e-5, Math.nextUp(2e-5)}, x = new double[2];
+		new LinearSystem(near, y, x);
+		DenseLU nearLU = new DenseLU(near);
+		double[] xLU = nearLU.solve(y);
+		System.out.println("near singular: "+nearLU.isNonsingular()+", min pivot = "+nearLU.minPivot()+
+				", x = "+x[0]+" "+x[1]+", LU x = "+xLU[0]+" "+xLU[1]);
+		System.out.println("not SPD: "+new DenseCholesky(new double[][] {{1, 2}, {2, 1}}).isSPD());
+
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 500, k = 200;
+		double[][] A = random(n, n, r), B = random(n, k, r);
+		long t = System.nanoTime();
+		Jama.Matrix JA = new Jama.Matrix(A);
+		for(int j=0; j<k; j++) {
+			double[][] b = new double[n][1];
+			for(int i=0; i<n; i++)
+				b[i][0] = B[i][j];
+			JA.solve(new Jama.Matrix(b));
+		}
+		print("Jama, "+k+" solves", t);
+		t = System.nanoTime();
+		new DenseLU(A).solve(B);
+		print("DenseLU, factorize once", t);
+	}
+
+	static void print(String name, long t) {
+		System.out.println(String.format("  %-28s %8.3f s", name, (System.nanoTime()-t)/1e9));
+	}
+}
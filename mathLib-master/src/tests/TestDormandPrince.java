@@ -0,0 +1,41 @@
+package tests;
+
+import mathLib.ode.solvers.DerivnFunction;
+import mathLib.ode.solvers.DormandPrince54;
+import mathLib.ode.solvers.DormandPrince853;
+import mathLib.util.Timer;
+
+public class TestDormandPrince {
+
+	public static void main(String[] args) {
+		double w = Math.PI ;
+
+		// y'' = -w^2 y, y(0) = 0, y'(0) = w --> y = sin(wx)
+		DerivnFunction func = (x, y) -> new double[] {y[1], -w*w*y[0]} ;
+
+		double[] x = new double[1001] ;
+		for(int i=0; i<x.length; i++)
+			x[i] = 0.01*i ;
+
+		DormandPrince54 dp54 = new DormandPrince54(func, 0, 0, w) ;
+		dp54.setTolerances(1e-10, 1e-10);
+		DormandPrince853 dp853 = new DormandPrince853(func, 0, 0, w) ;
+		dp853.setTolerances(1e-10, 1e-10);
+
+		Timer timer = new Timer() ;
+		timer.start();
+		double[][] y54 = dp54.integrate(x) ;
+		double[][] y853 = dp853.integrate(x) ;
+		timer.stop();
+		timer.show();
+
+		double err54 = 0, err853 = 0 ;
+		for(int i=0; i<x.length; i++) {
+			err54 = Math.max(err54, Math.abs(y54[0][i]-Math.sin(w*x[i]))) ;
+			err853 = Math.max(err853, Math.abs(y853[0][i]-Math.sin(w*x[i]))) ;
+		}
+		System.out.println("DOPRI5: max error = " + err54 + ", steps = " + dp54.getNumberOfSteps());
+		System.out.println("DOP853: max error = " + err853 + ", steps = " + dp853.getNumberOfSteps());
+	}
+
+}
@@ -0,0 +1,93 @@
+package tests;
+
+import java.util.Random;
+
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
+
+import mathLib.matrix.Gemm;
+import mathLib.matrix.Matrix;
+import no.uib.cipr.matrix.DenseMatrix;
+
+/**
+ * Dense matrix product benchmark: Matrix.times() against the previous triple loop,
+ * EJML and MTJ
+ *
+ */
+public class TestGemm {
+
+	static double[][] random(int m, int n, Random r) {
+		double[][] a = new double[m][n];
+		for(int i=0; i<m; i++)
+			for(int j=0; j<n; j++)
+				a[i][j] = r.nextDouble()-0.5;
+		return a;
+	}
+
+	static double[][] naive(double[][] A, double[][] B) {
+		int m = A.length, n = B[0].length, k = B.length;
+		double[][] C = new double[m][n];
+		for(int i=0; i<m; i++)
+			for(int j=0; j<n; j++)
+				for(int p=0; p<k; p++)
+					C[i][j] += A[i][p]*B[p][j];
+		return C;
+	}
+
+	static double maxDiff(double[][] A, double[][] B) {
+		double d = 0.0;
+		for(int i=0; i<A.length; i++)
+			for(int j=0; j<A[0].length; j++)
+				d = Math.max(d, Math.abs(A[i][j]-B[i][j]));
+		return d;
+	}
+
+	public static void main(String[] args) {
+		Random r = new Random(1);
+		//Correctness on odd sizes
+		for(int[] s : new int[][] {{1,1,1},{7,5,3},{33,65,17},{130,515,260},{257,3,300}}) {
+			double[][] A = random(s[0], s[2], r), B = random(s[2], s[1], r);
+			double[][] C = new Matrix(A).times(new Matrix(B)).getData();
+			System.out.println(s[0]+"x"+s[2]+" * "+s[2]+"x"+s[1]+": max diff = "+maxDiff(C, naive(A, B)));
+		}
+
+		int[] sizes = args.length > 0 ? new int[] {Integer.parseInt(args[0])} : new int[] {256, 512, 1024};
+		for(int n : sizes) {
+			double[][] A = random(n, n, r), B = random(n, n, r);
+			double gflop = 2.0*n*n*n/1e9;
+			System.out.println("n = "+n);
+
+			if(n <= 1024) {
+				long t = System.nanoTime();
+				naive(A, B);
+				print("triple loop", t, gflop);
+			}
+
+			double[][] C = new double[n][n];
+			for(int rep=0; rep<3; rep++) {
+				long t = System.nanoTime();
+				Gemm.mult(A, B, C, n, n, n);
+				print("Gemm", t, gflop);
+			}
+
+			DenseMatrix64F a = new DenseMatrix64F(A), b = new DenseMatrix64F(B), c = new DenseMatrix64F(n, n);
+			for(int rep=0; rep<3; rep++) {
+				long t = System.nanoTime();
+				CommonOps.mult(a, b, c);
+				print("EJML", t, gflop);
+			}
+
+			DenseMatrix ma = new DenseMatrix(A), mb = new DenseMatrix(B), mc = new DenseMatrix(n, n);
+			for(int rep=0; rep<3; rep++) {
+				long t = System.nanoTime();
+				ma.mult(mb, mc);
+				print("MTJ", t, gflop);
+			}
+		}
+	}
+
+	static void print(String name, long t, double gflop) {
+		double sec = (System.nanoTime()-t)/1e9;
+		System.out.println(String.format("  %-12s %8.3f s  %6.2f GFLOPS", name, sec, gflop/sec));
+	}
+}
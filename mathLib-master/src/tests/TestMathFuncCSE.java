@@ -0,0 +1,55 @@
+package tests;
+
+import mathLib.func.symbolic.FMath;
+import mathLib.func.symbolic.MathFuncOptimizer;
+import mathLib.func.symbolic.intf.MathFunc;
+import mathLib.util.CompiledFunc;
+
+/**
+ * Evaluation time of a derivative-heavy integrand compiled with and without
+ * common-subexpression elimination and constant folding
+ *
+ */
+public class TestMathFuncCSE {
+	public static void main(String[] args) {
+		MathFunc x = FMath.x, y = FMath.y;
+		//u = sin(x*y)*exp(x+y)/(1+x^2+y^2)
+		MathFunc u = FMath.sin(x.M(y)).M(FMath.exp(x.A(y))).D(FMath.C1.A(x.M(x)).A(y.M(y)));
+		//grad(u).grad(u) + u*u as in the stiffness integrand of a Helmholtz weak form
+		MathFunc ux = u.diff("x"), uy = u.diff("y");
+		MathFunc f = ux.M(ux).A(uy.M(uy)).A(u.M(u).M(FMath.C(2.0).M(0.5)));
+
+		int n = 1000000;
+		double[][] pts = new double[2][n];
+		for(int i=0; i<n; i++) {
+			pts[0][i] = Math.random();
+			pts[1][i] = Math.random();
+		}
+		double[] out0 = new double[n], out1 = new double[n];
+
+		MathFuncOptimizer.enabled = false;
+		CompiledFunc plain = f.compileWithASM("x", "y");
+		MathFuncOptimizer.enabled = true;
+		CompiledFunc cse = f.compileWithASM("x", "y");
+
+		double t0 = 0, t1 = 0;
+		for(int rep=0; rep<10; rep++) {
+			long begin = System.nanoTime();
+			plain.apply(pts, out0, n);
+			long mid = System.nanoTime();
+			cse.apply(pts, out1, n);
+			long end = System.nanoTime();
+			if(rep >= 5) { //skip warm up
+				t0 += (mid-begin)*1e-6;
+				t1 += (end-mid)*1e-6;
+			}
+		}
+		double err = 0;
+		for(int i=0; i<n; i++)
+			err = Math.max(err, Math.abs(out0[i]-out1[i])/(1+Math.abs(out0[i])));
+		System.out.println("Expression length: "+f.getExpr().length());
+		System.out.println("Without CSE: "+t0/5+" ms");
+		System.out.println("With CSE:    "+t1/5+" ms");
+		System.out.println("Max relative difference: "+err);
+	}
+}
@@ -0,0 +1,85 @@
+package tests;
+
+import static mathLib.func.symbolic.FMath.*;
+
+import java.util.HashMap;
+
+import mathLib.fem.assembler.MatrixFreeLaplace;
+import mathLib.fem.assembler.ParallelAssembler;
+import mathLib.fem.core.Element;
+import mathLib.fem.core.Mesh;
+import mathLib.fem.core.Node;
+import mathLib.fem.core.NodeType;
+import mathLib.fem.element.FEBilinearRectangleOld;
+import mathLib.fem.util.MeshGenerator;
+import mathLib.fem.weakform.WeakFormLaplace;
+import mathLib.func.symbolic.intf.MathFunc;
+import mathLib.matrix.algebra.FlatCompressedRowMatrix;
+import mathLib.matrix.algebra.FullVector;
+import mathLib.matrix.algebra.solver.Solver;
+import mathLib.matrix.algebra.solver.precond.JacobiPreconditioner;
+import mathLib.util.Timer;
+
+public class TestMatrixFree {
+
+	public static void main(String[] args) {
+		int n = 100;
+		// quadrilaterals of the map (s,t) -> (s+0.1*s*t, t)
+		Mesh mesh = MeshGenerator.quadrilateral2D(0, 1, 0, 1, n, n, 0.1);
+		mesh.computeNodeBelongsToElements();
+		HashMap<NodeType, MathFunc> mapNTF = new HashMap<NodeType, MathFunc>();
+		mapNTF.put(NodeType.Dirichlet, null);
+		mesh.markBorderNode(mapNTF);
+
+		// the assembled matrix of the same form
+		FEBilinearRectangleOld fe = new FEBilinearRectangleOld();
+		fe.initDOFIndexGenerator(mesh);
+		for(Element e : mesh.getElementList())
+			fe.assignTo(e);
+		WeakFormLaplace weakForm = new WeakFormLaplace();
+		weakForm.setF(C0);
+		weakForm.setParam(C1, C0, null, null);
+		ParallelAssembler assembler = new ParallelAssembler(mesh, weakForm::createKernel);
+		assembler.assemble();
+		FlatCompressedRowMatrix A = assembler.getStiffnessMatrix();
+
+		MatrixFreeLaplace op = new MatrixFreeLaplace(mesh, 1.0, 0.0);
+		int N = op.getRowDim();
+		FullVector u = new FullVector(N), y1 = new FullVector(N), y2 = new FullVector(N);
+		for(int i=0; i<N; i++)
+			u.getData()[i] = Math.sin(i);
+		A.mult(u, y1);
+		op.mult(u, y2);
+		System.out.println("max difference of A*u = " + y1.add(-1.0, y2).normInf());
+
+		Timer timer = new Timer();
+		timer.start();
+		for(int k=0; k<100; k++)
+			A.mult(u, y1);
+		timer.stop();
+		timer.show();
+		timer.start();
+		for(int k=0; k<100; k++)
+			op.mult(u, y2);
+		timer.stop();
+		timer.show();
+
+		// -Laplace(u) = 0, u = x*y on the boundary
+		op.setDirichlet();
+		FullVector b = new FullVector(N), g = new FullVector(N), x = new FullVector(N);
+		for(int i=0; i<N; i++) {
+			Node node = mesh.getNodeList().at(i+1);
+			g.getData()[i] = node.coord(1)*node.coord(2);
+		}
+		op.liftDirichlet(b, g);
+		Solver solver = new Solver();
+		solver.solveCG(op, b, x, new JacobiPreconditioner(op.getDiagonal(new double[N])));
+		A.mult(x, y1);
+		double res = 0;
+		for(int i=0; i<N; i++)
+			if(mesh.getNodeList().at(i+1).getNodeType() != NodeType.Dirichlet)
+				res = Math.max(res, Math.abs(y1.getData()[i]));
+		System.out.println("max interior residual of the assembled system = " + res);
+	}
+
+}
@@ -0,0 +1,147 @@
+package tests;
+
+import static mathLib.func.symbolic.FMath.*;
+
+import mathLib.fem.assembler.AssemblerScalar;
+import mathLib.fem.assembler.NumericKernel;
+import mathLib.fem.assembler.ParallelAssembler;
+import mathLib.fem.core.Element;
+import mathLib.fem.core.Mesh;
+import mathLib.fem.core.MeshGeometry;
+import mathLib.fem.core.Node;
+import mathLib.fem.element.FEBilinearRectangleOld;
+import mathLib.fem.element.FELinearTriangleOld;
+import mathLib.fem.util.Constant;
+import mathLib.fem.util.MeshGenerator;
+import mathLib.fem.util.container.NodeList;
+import mathLib.fem.weakform.WeakFormLaplace;
+import mathLib.matrix.algebra.intf.SparseMatrix;
+import mathLib.util.Timer;
+
+public class TestMeshGeometry {
+
+	public static void main(String[] args) {
+		// quadrilaterals of the map (s,t) -> (s+0.1*s*t, t), area 1.05
+		int n = 200;
+		Mesh mesh = MeshGenerator.quadrilateral2D(0, 1, 0, 1, n, n, 0.1);
+		mesh.computeNodeBelongsToElements();
+		FEBilinearRectangleOld fe = new FEBilinearRectangleOld();
+		fe.initDOFIndexGenerator(mesh);
+		for(Element e : mesh.getElementList())
+			fe.assignTo(e);
+
+		MeshGeometry geometry = mesh.getGeometry();
+		double area = 0;
+		int affine = 0;
+		for(int i=0; i<geometry.getNumberOfElements(); i++) {
+			area += geometry.getMeasure(i);
+			if(geometry.isAffine(i))
+				affine++;
+		}
+		System.out.println("area = " + area + ", affine elements = " + affine);
+
+		WeakFormLaplace weakForm = new WeakFormLaplace();
+		weakForm.setF(C1);
+		weakForm.setParam(C1, C1, null, null);
+		ParallelAssembler cached = new ParallelAssembler(mesh, weakForm::createKernel, 1);
+		ParallelAssembler computed = new ParallelAssembler(mesh, () -> new NumericKernelWrapper(weakForm), 1);
+
+		Timer timer = new Timer();
+		cached.assemble();
+		computed.assemble();
+		timer.start();
+		for(int k=0; k<10; k++)
+			cached.assemble();
+		timer.stop();
+		timer.show();
+		timer.start();
+		for(int k=0; k<10; k++)
+			computed.assemble();
+		timer.stop();
+		timer.show();
+		double[] a1 = cached.getStiffnessMatrix().getValues(), a2 = computed.getStiffnessMatrix().getValues();
+		double diff = 0;
+		for(int i=0; i<a1.length; i++)
+			diff = Math.max(diff, Math.abs(a1[i]-a2[i]));
+		System.out.println("max difference of the stiffness matrices = " + diff);
+
+		// move the nodes: x -> 2x, the area doubles
+		Node last = mesh.getNodeList().at(mesh.getNodeList().size());
+		mesh.findNodeByCoord(last.coords(), Constant.meshEps);
+		for(Node node : mesh.getNodeList())
+			node.setCoord(1, 2*node.coord(1));
+		// detected by the geometry and the spatial index, no need to invalidate them
+		area = 0;
+		for(int i=0; i<geometry.getNumberOfElements(); i++)
+			area += mesh.getGeometry().getMeasure(i);
+		System.out.println("area after moving the nodes = " + area);
+		System.out.println("moved node found = " + (mesh.findNodeByCoord(last.coords(), Constant.meshEps) == last) +
+				", element found at x = 1.9: " + (mesh.getElementByCoord(new double[]{1.9, 0.5}) != null));
+
+		// every other triangle given clockwise
+		double[][] ccw = assembleTriangles(false), cw = assembleTriangles(true);
+		diff = 0;
+		for(int i=0; i<ccw.length; i++)
+			for(int j=0; j<ccw.length; j++)
+				diff = Math.max(diff, Math.abs(ccw[i][j]-cw[i][j]));
+		System.out.println("max difference with clockwise triangles = " + diff);
+	}
+
+	static double[][] assembleTriangles(boolean clockwise) {
+		Mesh grid = MeshGenerator.rectangle2D(0, 1, 0, 2, 6, 6);
+		Mesh mesh = new Mesh();
+		for(Node node : grid.getNodeList())
+			mesh.addNode(new Node(node.globalIndex, node.coord(1), node.coord(2)));
+		for(Element e : grid.getElementList()) {
+			NodeList nodes = new NodeList();
+			int n = e.nodes.size();
+			boolean reverse = clockwise && mesh.getElementList().size()%2 == 0;
+			for(int i=1; i<=n; i++)
+				nodes.add(mesh.getNodeList().at(e.nodes.at(reverse ? n+1-i : i).globalIndex));
+			mesh.addElement(new Element(nodes));
+		}
+		mesh.computeNodeBelongsToElements();
+		// the geometry is cached before the vertices are reordered, the DOFs after
+		mesh.getGeometry();
+		for(Element e : mesh.getElementList())
+			e.adjustVerticeToCounterClockwise();
+		FELinearTriangleOld fe = new FELinearTriangleOld();
+		fe.initDOFIndexGenerator(mesh);
+		for(Element e : mesh.getElementList())
+			fe.assignTo(e);
+
+		WeakFormLaplace weakForm = new WeakFormLaplace();
+		weakForm.setF(C1);
+		weakForm.setParam(C1, C1, null, null);
+		AssemblerScalar assembler = new AssemblerScalar(mesh, weakForm);
+		assembler.printInfo(false);
+		assembler.assemble();
+		SparseMatrix stiff = assembler.getStiffnessMatrix();
+		int n = stiff.getRowDim();
+		double[][] A = new double[n][n];
+		for(int i=0; i<n; i++)
+			for(int j=0; j<n; j++)
+				A[i][j] = stiff.get(i+1, j+1);
+		return A;
+	}
+
+	/**
+	 * Kernel of the weak form that computes the Jacobians on each element
+	 */
+	static class NumericKernelWrapper extends NumericKernel {
+		NumericKernel kernel;
+
+		NumericKernelWrapper(WeakFormLaplace weakForm) {
+			kernel = (NumericKernel)weakForm.createKernel();
+		}
+
+		@Override
+		public void assembleLocal(Element e, double[][] A, double[] b) {
+			kernel.assembleLocal(e, A, b);
+		}
+
+		@Override
+		protected void assembleDomain(double[][] A, double[] b) {
+		}
+	}
+}
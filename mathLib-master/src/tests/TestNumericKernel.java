@@ -0,0 +1,57 @@
+package tests;
+
+import static mathLib.func.symbolic.FMath.*;
+
+import java.util.HashMap;
+
+import mathLib.fem.assembler.ParallelAssembler;
+import mathLib.fem.assembler.WeakFormOldKernel;
+import mathLib.fem.core.Element;
+import mathLib.fem.core.Mesh;
+import mathLib.fem.core.NodeType;
+import mathLib.fem.element.FELinearTriangleOld;
+import mathLib.fem.util.MeshGenerator;
+import mathLib.fem.weakform.WeakFormLaplace;
+import mathLib.func.symbolic.intf.MathFunc;
+import mathLib.util.Timer;
+
+public class TestNumericKernel {
+
+	public static void main(String[] args) {
+		Mesh mesh = MeshGenerator.rectangle2D(0, 1, 0, 1, 20, 20);
+		mesh.computeNodeBelongsToElements();
+		HashMap<NodeType, MathFunc> mapNTF = new HashMap<NodeType, MathFunc>();
+		mapNTF.put(NodeType.Robin, null);
+		mesh.markBorderNode(mapNTF);
+		FELinearTriangleOld fe = new FELinearTriangleOld();
+		fe.initDOFIndexGenerator(mesh);
+		for(Element e : mesh.getElementList())
+			fe.assignTo(e);
+
+		// -Laplace(u) + u = f, u_n + u = g
+		WeakFormLaplace weakForm = new WeakFormLaplace();
+		weakForm.setF(x.M(y).A(1.0));
+		weakForm.setParam(C1, C1, x.A(y), C1);
+
+		ParallelAssembler symbolic = new ParallelAssembler(mesh, () -> new WeakFormOldKernel(weakForm), 1);
+		ParallelAssembler numeric = new ParallelAssembler(mesh, weakForm::createKernel);
+
+		Timer timer = new Timer();
+		timer.start();
+		symbolic.assemble();
+		timer.stop();
+		timer.show();
+		timer.start();
+		numeric.assemble();
+		timer.stop();
+		timer.show();
+
+		// the symbolic path integrates the mass terms with a lower order rule
+		double[] a1 = symbolic.getStiffnessMatrix().getValues(), a2 = numeric.getStiffnessMatrix().getValues();
+		double diff = 0;
+		for(int i=0; i<a1.length; i++)
+			diff = Math.max(diff, Math.abs(a1[i]-a2[i]));
+		System.out.println("max difference of the stiffness matrices = " + diff);
+	}
+
+}
@@ -0,0 +1,80 @@
+package tests;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import mathLib.sequence.EpsilonTableau;
+import mathLib.sequence.MemoizedSequence;
+import mathLib.sequence.RichardsonTableau;
+import mathLib.sequence.Sequence;
+
+public class TestSequenceAcceleration {
+	public static void main(String[] args) {
+		// partial sums of 1 - 1/2 + 1/3 - ... = ln 2, the error of S_n is about 1/(2n)
+		AtomicLong count = new AtomicLong() ;
+		Sequence partialSums = n -> {
+			count.incrementAndGet() ;
+			double s = 0 ;
+			for(long k=1; k<=n+1; k++)
+				s += (k % 2 == 1 ? 1.0 : -1.0)/k ;
+			return s ;
+		} ;
+		double ln2 = Math.log(2) ;
+
+		System.out.println("ln 2 by the Wynn epsilon algorithm") ;
+		EpsilonTableau epsilon = new EpsilonTableau() ;
+		for(int n=0; n<=20; n++) {
+			double s = partialSums.evaluate(n) ;
+			double e = epsilon.add(s) ;
+			if(n % 4 == 0)
+				System.out.println("n = " + n + ", error of S_n = " + Math.abs(s - ln2) + ", error of Wynn = " + Math.abs(e - ln2)) ;
+		}
+
+		// the same through Sequence.wynn(): each partial sum is computed once
+		count.set(0) ;
+		Sequence wynn = partialSums.wynn() ;
+		double diff = 0 ;
+		epsilon.reset() ;
+		for(int n=0; n<=20; n++)
+			diff = Math.max(diff, Math.abs(wynn.evaluate(n) - epsilon.add(partialSums.evaluate(n)))) ;
+		System.out.println("Sequence.wynn() - EpsilonTableau = " + diff) ;
+		System.out.println("terms computed = " + count.get() + " (21 by wynn(), 21 by the check)") ;
+
+		// MemoizedSequence: term k goes to slot k mod capacity
+		count.set(0) ;
+		MemoizedSequence memo = new MemoizedSequence(partialSums, 4) ;
+		for(int n=0; n<8; n++)
+			memo.evaluate(n) ;
+		memo.evaluate(7) ;
+		memo.evaluate(4) ;
+		System.out.println("memoized, 10 queries of 8 terms: computed = " + count.get()) ;
+		memo.evaluate(0) ;
+		System.out.println("term 0 after it was replaced: computed = " + count.get()) ;
+		memo.clear() ;
+		memo.evaluate(7) ;
+		System.out.println("term 7 after clear(): computed = " + count.get()) ;
+
+		// trapezoid rule for the integral of e^x on [0,1] with n intervals: T_n = I + c1/n^2 + c2/n^4 + ...
+		Sequence trapezoid = n -> {
+			if(n == 0)
+				return 0.0 ; // term 0 has weight 0 in the tableau
+			double h = 1.0/n ;
+			double s = 0.5*(1 + Math.E) ;
+			for(long k=1; k<n; k++)
+				s += Math.exp(k*h) ;
+			return s*h ;
+		} ;
+		double exact = Math.E - 1 ;
+
+		System.out.println("integral of e^x on [0,1] by Richardson extrapolation of the trapezoid rule") ;
+		RichardsonTableau richardson = new RichardsonTableau(6) ;
+		richardson.add(trapezoid.evaluate(0)) ;
+		for(int n=1; n<=12; n++) {
+			double t = trapezoid.evaluate(n) ;
+			double r = richardson.add(t) ;
+			System.out.println("n = " + n + ", error of T_n = " + Math.abs(t - exact) + ", error of Richardson = " + Math.abs(r - exact) +
+					", estimate = " + richardson.getErrorEstimate()) ;
+		}
+		System.out.println("Sequence.richardsonTableau(6) - RichardsonTableau = " +
+				Math.abs(trapezoid.richardsonTableau(6).evaluate(12) - richardson.getEstimate())) ;
+	}
+}
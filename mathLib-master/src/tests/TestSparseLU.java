@@ -0,0 +1,104 @@
+package tests;
+
+import mathLib.matrix.algebra.CompressedColMatrix;
+import mathLib.matrix.algebra.FullVector;
+import mathLib.matrix.algebra.SparseMatrixRowMajor;
+import mathLib.matrix.algebra.intf.SparseMatrix;
+import mathLib.matrix.algebra.solver.LUDecomposition;
+import mathLib.matrix.algebra.solver.SparseCholesky;
+import mathLib.matrix.algebra.solver.SparseLU;
+
+/**
+ * Sparse direct solvers on the 5-point finite difference matrices of
+ * <tt>-u''+c*u'</tt> on an <tt>m*m</tt> grid: fill-in with and without AMD ordering,
+ * residual, refactorization and the old map based <tt>LUDecomposition.LU</tt>
+ *
+ */
+public class TestSparseLU {
+
+	static SparseMatrix grid(int m, double c) {
+		int n = m*m;
+		SparseMatrix A = new SparseMatrixRowMajor(n, n);
+		for(int i=0; i<m; i++) {
+			for(int j=0; j<m; j++) {
+				int k = i*m+j+1;
+				A.set(k, k, 4.0);
+				if(i > 0) A.set(k, k-m, -1.0-c);
+				if(i < m-1) A.set(k, k+m, -1.0+c);
+				if(j > 0) A.set(k, k-1, -1.0-c);
+				if(j < m-1) A.set(k, k+1, -1.0+c);
+			}
+		}
+		return A;
+	}
+
+	static double residual(CompressedColMatrix A, double[] x, double[] b) {
+		double[] r = b.clone();
+		int[][] ri = A.getRowIndex();
+		double[][] rx = A.getData();
+		for(int j=0; j<A.getColDim(); j++)
+			for(int p=0; p<ri[j].length; p++)
+				r[ri[j][p]] -= rx[j][p]*x[j];
+		double max = 0.0;
+		for(double v : r)
+			max = Math.max(max, Math.abs(v));
+		return max;
+	}
+
+	public static void main(String[] args) {
+		//Old LU against SparseLU on a small matrix
+		{
+			int m = 20, n = m*m;
+			SparseMatrix S = grid(m, 0.3);
+			CompressedColMatrix A = new CompressedColMatrix(S, false);
+			SparseMatrixRowMajor L = new SparseMatrixRowMajor(n, n);
+			SparseMatrix U = new SparseMatrixRowMajor(n, n);
+			SparseMatrix P = new SparseMatrixRowMajor(n, n);
+			long t = System.nanoTime();
+			LUDecomposition.LU((SparseMatrixRowMajor)S.copy(), L, U, P);
+			print("LUDecomposition.LU n="+n, t);
+			t = System.nanoTime();
+			new SparseLU(A);
+			print("SparseLU n="+n, t);
+		}
+
+		int m = args.length > 0 ? Integer.parseInt(args[0]) : 250;
+		int n = m*m;
+		FullVector f = new FullVector(n, 1.0);
+		FullVector u = new FullVector(n);
+
+		CompressedColMatrix A = new CompressedColMatrix(grid(m, 0.0), false);
+		long t = System.nanoTime();
+		SparseCholesky chol = new SparseCholesky(A);
+		print("SparseCholesky AMD n="+n+" nnz(L)="+chol.getNonzeros(), t);
+		chol.solve(f, u);
+		System.out.println("  residual = "+residual(A, u.getData(), f.getData()));
+		t = System.nanoTime();
+		chol.factor(A);
+		print("  refactorization", t);
+		if(m <= 100) {
+			t = System.nanoTime();
+			SparseCholesky natural = new SparseCholesky(A, null);
+			print("SparseCholesky natural nnz(L)="+natural.getNonzeros(), t);
+		}
+
+		A = new CompressedColMatrix(grid(m, 0.3), false);
+		t = System.nanoTime();
+		SparseLU lu = new SparseLU(A);
+		print("SparseLU AMD n="+n+" nnz(L+U)="+lu.getNonzeros(), t);
+		lu.solve(f, u);
+		System.out.println("  residual = "+residual(A, u.getData(), f.getData()));
+		for(double[] col : A.getData())
+			for(int p=0; p<col.length; p++)
+				col[p] *= 2.0;
+		t = System.nanoTime();
+		lu.factor(A);
+		print("  refactorization", t);
+		lu.solve(f, u);
+		System.out.println("  residual = "+residual(A, u.getData(), f.getData()));
+	}
+
+	static void print(String name, long t) {
+		System.out.println(String.format("%-50s %8.3f s", name, (System.nanoTime()-t)/1e9));
+	}
+}
@@ -0,0 +1,46 @@
+package tests;
+
+import mathLib.ode.solvers.BDF;
+import mathLib.ode.solvers.DerivnFunction;
+import mathLib.ode.solvers.JacobianFunction;
+import mathLib.ode.solvers.RosenbrockW;
+import mathLib.util.Timer;
+
+public class TestStiffSolvers {
+
+	public static void main(String[] args) {
+		// Robertson chemical kinetics, y(0) = (1, 0, 0)
+		DerivnFunction func = (x, y) -> new double[] {
+				-0.04*y[0] + 1e4*y[1]*y[2],
+				0.04*y[0] - 1e4*y[1]*y[2] - 3e7*y[1]*y[1],
+				3e7*y[1]*y[1]} ;
+		JacobianFunction jac = (x, y, J) -> {
+			J[0][0] = -0.04 ; J[0][1] = 1e4*y[2] ; J[0][2] = 1e4*y[1] ;
+			J[1][0] = 0.04 ; J[1][1] = -1e4*y[2] - 6e7*y[1] ; J[1][2] = -1e4*y[1] ;
+			J[2][0] = 0.0 ; J[2][1] = 6e7*y[1] ; J[2][2] = 0.0 ;
+		} ;
+
+		double[] x = {0.4, 4, 40, 400, 4e3, 4e4, 4e5, 4e6, 4e7} ;
+
+		BDF bdf = new BDF(func, 0, 1, 0, 0) ;
+		bdf.setTolerances(1e-6, 1e-10);
+		RosenbrockW row = new RosenbrockW(func, 0, 1, 0, 0) ;
+		row.setTolerances(1e-6, 1e-10);
+		row.setJacobian(jac);
+
+		Timer timer = new Timer() ;
+		timer.start();
+		double[][] yBdf = bdf.integrate(x) ;
+		double[][] yRow = row.integrate(x) ;
+		timer.stop();
+		timer.show();
+
+		for(int i=0; i<x.length; i++)
+			System.out.println("x = " + x[i] + " : BDF y2 = " + yBdf[1][i] + ", Rosenbrock y2 = " + yRow[1][i]);
+		System.out.println("BDF: steps = " + bdf.getNumberOfSteps() + ", Jacobians = " + bdf.getNumberOfJacobians()
+				+ ", LU = " + bdf.getNumberOfDecompositions());
+		System.out.println("Rosenbrock-W: steps = " + row.getNumberOfSteps() + ", Jacobians = " + row.getNumberOfJacobians()
+				+ ", LU = " + row.getNumberOfDecompositions());
+	}
+
+}